@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.contract;
+
+import android.content.ContentProviderOperation;
+import android.os.Parcel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+
+/**
+ * The format of the {@link TaskContract#EXTRA_OPERATION_STREAM} of {@link TaskContract#METHOD_BULK_WRITE}.
+ * <p>
+ * Each {@link ContentProviderOperation} is written as the length of its marshalled {@link Parcel}, followed by the {@link Parcel} data. The stream ends
+ * with the end of the file.
+ */
+public final class OperationStream
+{
+    private OperationStream()
+    {
+    }
+
+
+    /**
+     * Writes the given {@link ContentProviderOperation} to the given stream.
+     */
+    public static void write(DataOutputStream out, ContentProviderOperation operation) throws IOException
+    {
+        Parcel parcel = Parcel.obtain();
+        try
+        {
+            operation.writeToParcel(parcel, 0);
+            byte[] data = parcel.marshall();
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        finally
+        {
+            parcel.recycle();
+        }
+    }
+
+
+    /**
+     * Reads the next {@link ContentProviderOperation} from the given stream.
+     *
+     * @return The next {@link ContentProviderOperation} or <code>null</code> if the end of the stream has been reached.
+     */
+    public static ContentProviderOperation read(DataInputStream in) throws IOException
+    {
+        int length;
+        try
+        {
+            length = in.readInt();
+        }
+        catch (EOFException e)
+        {
+            return null;
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        Parcel parcel = Parcel.obtain();
+        try
+        {
+            parcel.unmarshall(data, 0, length);
+            parcel.setDataPosition(0);
+            return ContentProviderOperation.CREATOR.createFromParcel(parcel);
+        }
+        finally
+        {
+            parcel.recycle();
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.dmfs.tasks.contract;
 
 import android.content.ContentResolver;
 import android.content.Intent;
+import android.database.Cursor;
 import android.net.Uri;
 import android.provider.BaseColumns;
 import android.provider.SyncStateContract;
@@ -70,6 +71,127 @@ public final class TaskContract
      */
     public static final String ACCOUNT_TYPE = "account_type";
 
+    /**
+     * URI parameter to request a page of the given size when querying {@link Tasks} or {@link Instances}. Pages are keyset based, so fetching a page costs
+     * the same, no matter how deep into the result it is. To make the order of the rows total, the provider appends {@link BaseColumns#_ID} to the sort
+     * order. The sort order must consist of plain columns (each optionally followed by a <code>COLLATE</code> clause and <code>ASC</code> or
+     * <code>DESC</code>), otherwise the query fails with an {@link IllegalArgumentException}.
+     * <p>
+     * If there might be more rows, the extras of the result {@link Cursor} contain {@link #EXTRA_NEXT_PAGE}. Use {@link #getNextPageUri(Uri, Cursor)} to get
+     * the {@link Uri} of the next page and query it with the same projection, selection and sort order.
+     * <p>
+     * Note, the provider adds any sort column that's missing in the projection to the result.
+     * <p>
+     * Value: Integer
+     */
+    public static final String PAGE_SIZE_PARAMETER = "page_size";
+
+    /**
+     * URI parameter with the key of the last row of the previous page, as returned in {@link #EXTRA_NEXT_PAGE}. Only valid together with {@link
+     * #PAGE_SIZE_PARAMETER}.
+     * <p>
+     * Value: String
+     */
+    public static final String PAGE_AFTER_PARAMETER = "page_after";
+
+    /**
+     * A String extra of a page {@link Cursor}, containing the key to get the next page. It's absent if this is the last page.
+     */
+    public static final String EXTRA_NEXT_PAGE = "org.dmfs.tasks.NEXT_PAGE";
+
+    /**
+     * The name of a {@link android.content.ContentProvider#call(String, String, android.os.Bundle)} method to apply a large number of {@link
+     * android.content.ContentProviderOperation}s as a single logical operation, like an initial sync.
+     * <p>
+     * In contrast to {@link android.content.ContentProvider#applyBatch(ArrayList)} the operations are not committed in a single transaction. The provider
+     * commits them in chunks, each chunk ends at an operation which allows yielding, once the chunk has been running for a while. Operations are never split
+     * at other operations, so a batch without any yield points still runs in a single transaction. There is no limit on the number of operations between yield
+     * points.
+     * <p>
+     * Back-references are relative to the last operation which allows yielding, i.e. back-reference <code>0</code> refers to the last operation which allows
+     * yielding and an operation which allows yielding can't refer to any previous operation. This keeps the memory required for back-references independent
+     * of the total number of operations.
+     * <p>
+     * The operations are passed either as an {@link ArrayList} in {@link #EXTRA_OPERATIONS} or, if they don't fit into a single Binder transaction, as a
+     * stream in {@link #EXTRA_OPERATION_STREAM}.
+     * <p>
+     * The result contains {@link #EXTRA_COMMITTED_OPERATIONS} and, if requested, {@link #EXTRA_RESULTS}. If an operation fails, the chunk of the failing
+     * operation is rolled back, any previous chunks remain committed. In that case the result also contains {@link #EXTRA_ERROR} and the caller may continue
+     * with the first operation that has not been committed.
+     */
+    public static final String METHOD_BULK_WRITE = "bulk_write";
+
+    /**
+     * An {@link ArrayList} extra of {@link #METHOD_BULK_WRITE}, containing the {@link android.content.ContentProviderOperation}s to apply.
+     */
+    public static final String EXTRA_OPERATIONS = "org.dmfs.tasks.OPERATIONS";
+
+    /**
+     * A {@link android.os.ParcelFileDescriptor} extra of {@link #METHOD_BULK_WRITE}, to read the {@link android.content.ContentProviderOperation}s to apply
+     * from, usually the read side of a pipe. Use {@link OperationStream#write(java.io.DataOutputStream, android.content.ContentProviderOperation)} to write
+     * the operations and close the stream after the last one. The call returns when all operations have been applied, so the operations have to be written
+     * on another thread.
+     */
+    public static final String EXTRA_OPERATION_STREAM = "org.dmfs.tasks.OPERATION_STREAM";
+
+    /**
+     * A Boolean extra of {@link #METHOD_BULK_WRITE}, to request the {@link android.content.ContentProviderResult}s of the committed operations in {@link
+     * #EXTRA_RESULTS}. Defaults to <code>false</code>.
+     */
+    public static final String EXTRA_RETURN_RESULTS = "org.dmfs.tasks.RETURN_RESULTS";
+
+    /**
+     * A {@link android.content.ContentProviderResult} array extra of the result of {@link #METHOD_BULK_WRITE}, containing the results of all committed
+     * operations. It's only present if {@link #EXTRA_RETURN_RESULTS} was <code>true</code>.
+     */
+    public static final String EXTRA_RESULTS = "org.dmfs.tasks.RESULTS";
+
+    /**
+     * An Integer extra of the result of {@link #METHOD_BULK_WRITE}, containing the number of operations that have been committed.
+     */
+    public static final String EXTRA_COMMITTED_OPERATIONS = "org.dmfs.tasks.COMMITTED_OPERATIONS";
+
+    /**
+     * A String extra of the result of {@link #METHOD_BULK_WRITE}, containing the reason of the failure. It's absent if all operations have been committed.
+     */
+    public static final String EXTRA_ERROR = "org.dmfs.tasks.ERROR";
+
+    /**
+     * URI parameter of change notification {@link Uri}s. If present it contains a comma separated list of the column groups that have changed, i.e. any of
+     * {@link #CHANGED_DATES}, {@link #CHANGED_STATUS}, {@link #CHANGED_TITLE}, {@link #CHANGED_LIST} and {@link #CHANGED_OTHER}. If absent, anything may
+     * have changed, including the set of rows.
+     * <p>
+     * Updates of single tasks or instances are notified with the item {@link Uri} of the task or instance. Observers can use the hint to skip reloading data
+     * which can't be affected by a change. Note, if many rows change at once, only the collection {@link Uri} is notified.
+     */
+    public static final String CHANGED_COLUMNS = "changed";
+
+    /**
+     * Value of {@link #CHANGED_COLUMNS}, indicating that any of the dates of a task (start, due, duration, time zone, all-day flag or recurrence) has
+     * changed.
+     */
+    public static final String CHANGED_DATES = "dates";
+
+    /**
+     * Value of {@link #CHANGED_COLUMNS}, indicating that the status of a task (status, percent complete or completed date) has changed.
+     */
+    public static final String CHANGED_STATUS = "status";
+
+    /**
+     * Value of {@link #CHANGED_COLUMNS}, indicating that the title, description or location of a task has changed.
+     */
+    public static final String CHANGED_TITLE = "title";
+
+    /**
+     * Value of {@link #CHANGED_COLUMNS}, indicating that the list of a task has changed.
+     */
+    public static final String CHANGED_LIST = "list";
+
+    /**
+     * Value of {@link #CHANGED_COLUMNS}, indicating that any other column has changed.
+     */
+    public static final String CHANGED_OTHER = "other";
+
     /**
      * Account name for local, unsynced task lists.
      */
@@ -103,6 +225,24 @@ public final class TaskContract
      */
     public static final String ACTION_BROADCAST_TASK_STARTING = "org.dmfs.android.tasks.TASK_START";
 
+    /**
+     * The action of the broadcast that's send when alarms of tasks trigger. Alarms that trigger at the same time are delivered in a single broadcast, the
+     * intent contains an {@link #EXTRA_INSTANCE_URIS} and an {@link #EXTRA_ALARM_IDS} extra.
+     */
+    public static final String ACTION_BROADCAST_TASK_REMINDER = "org.dmfs.android.tasks.TASK_REMINDER";
+
+    /**
+     * The name of the {@link #ACTION_BROADCAST_TASK_REMINDER} extra that contains the {@link ArrayList} of the instance {@link Uri}s the alarms triggered
+     * for.
+     */
+    public final static String EXTRA_INSTANCE_URIS = "org.dmfs.provider.tasks.extra.INSTANCE_URIS";
+
+    /**
+     * The name of the {@link #ACTION_BROADCAST_TASK_REMINDER} extra that contains a long array with the {@link Property.Alarm#PROPERTY_ID} of the alarm
+     * that triggered for the instance {@link Uri} at the same index of {@link #EXTRA_INSTANCE_URIS}.
+     */
+    public final static String EXTRA_ALARM_IDS = "org.dmfs.provider.tasks.extra.ALARM_IDS";
+
     /**
      * A Long extra that contains a timestamp of the event that's triggered. So this is either the timestamp of the start or due date of the task.
      */
@@ -149,6 +289,38 @@ public final class TaskContract
     }
 
 
+    /**
+     * Returns the {@link Uri} of the page after the given one or <code>null</code> if the given page is the last one.
+     *
+     * @param pageUri
+     *         The {@link Uri} the page has been loaded from. It must contain a {@link #PAGE_SIZE_PARAMETER}.
+     * @param page
+     *         The page {@link Cursor}.
+     *
+     * @return The {@link Uri} of the next page or <code>null</code>.
+     */
+    public static Uri getNextPageUri(Uri pageUri, Cursor page)
+    {
+        String next = page.getExtras().getString(EXTRA_NEXT_PAGE);
+        if (next == null)
+        {
+            return null;
+        }
+        Uri.Builder builder = pageUri.buildUpon().clearQuery();
+        for (String name : pageUri.getQueryParameterNames())
+        {
+            if (!PAGE_AFTER_PARAMETER.equals(name))
+            {
+                for (String value : pageUri.getQueryParameters(name))
+                {
+                    builder.appendQueryParameter(name, value);
+                }
+            }
+        }
+        return builder.appendQueryParameter(PAGE_AFTER_PARAMETER, next).build();
+    }
+
+
     /**
      * A table provided for sync adapters to use for storing private sync state data.
      * <p/>
@@ -955,10 +1127,67 @@ public final class TaskContract
 
         public static final String CONTENT_URI_PATH = "tasks";
 
+        /**
+         * The path of the search URI. Searches return the instances of the matching tasks together with their {@link #SCORE}.
+         * <p>
+         * By default a search also finds words which contain the search string anywhere and tolerates small typos. Providers may be configured to use an
+         * SQLite FTS4 index instead, in which case each word of the search string only matches words starting with it and the score is the fraction of the
+         * search words a task matches.
+         */
         public static final String SEARCH_URI_PATH = "tasks_search";
 
         public static final String SEARCH_QUERY_PARAMETER = "q";
 
+        /**
+         * Search URI parameter to limit the number of search results.
+         * <p>
+         * Note, limited results are always ordered by descending score and ascending task id, so the next page can be requested with {@link
+         * #SEARCH_AFTER_SCORE_PARAMETER} and {@link #SEARCH_AFTER_TASK_ID_PARAMETER}. Any other sort order is ignored.
+         * </p>
+         * <p>
+         * Value: Integer
+         * </p>
+         */
+        public static final String SEARCH_LIMIT_PARAMETER = "limit";
+
+        /**
+         * Search URI parameter to specify the minimum {@link #SCORE} of the search results. Defaults to 0.33.
+         * <p>
+         * Value: Float
+         * </p>
+         */
+        public static final String SEARCH_MIN_SCORE_PARAMETER = "min_score";
+
+        /**
+         * Search URI parameter to continue a search after a specific result. This is the {@link #SCORE} of the last result of the previous page and must be
+         * given together with {@link #SEARCH_AFTER_TASK_ID_PARAMETER}.
+         * <p>
+         * Note, when continuing a search, the results are always ordered by descending score and ascending task id. Any other sort order is ignored.
+         * </p>
+         * <p>
+         * Value: Double
+         * </p>
+         */
+        public static final String SEARCH_AFTER_SCORE_PARAMETER = "after_score";
+
+        /**
+         * Search URI parameter to continue a search after a specific result. This is the {@link Instances#TASK_ID} of the last result of the previous page
+         * and must be given together with {@link #SEARCH_AFTER_SCORE_PARAMETER}.
+         * <p>
+         * Value: Long
+         * </p>
+         */
+        public static final String SEARCH_AFTER_TASK_ID_PARAMETER = "after_task_id";
+
+        /**
+         * Search URI parameter to identify an as-you-type search. Consecutive searches with the same session id which refine the previous query (i.e. the
+         * user keeps typing) are served faster, because the provider can reuse the result of the previous query. Use a new session id for every new search.
+         * <p>
+         * Value: String
+         * </p>
+         */
+        public static final String SEARCH_SESSION_PARAMETER = "session";
+
         public static final String DEFAULT_SORT_ORDER = DUE;
 
         public static final String[] SYNC_ADAPTER_COLUMNS = new String[] {
@@ -986,6 +1215,24 @@ public final class TaskContract
             builder.appendQueryParameter(SEARCH_QUERY_PARAMETER, Uri.encode(query));
             return builder.build();
         }
+
+
+        /**
+         * Get a search {@link Uri} which returns no more than the given number of the best results.
+         *
+         * @param authority
+         *         The authority.
+         * @param query
+         *         The search query.
+         * @param limit
+         *         The maximum number of results.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getSearchUri(String authority, String query, int limit)
+        {
+            return getSearchUri(authority, query).buildUpon().appendQueryParameter(SEARCH_LIMIT_PARAMETER, String.valueOf(limit)).build();
+        }
     }
 
 
@@ -1211,6 +1458,39 @@ public final class TaskContract
          */
         public static final String VISIBLE = "visible";
 
+        /**
+         * The bucket of an instance in a query with {@link #BUCKETS_PARAMETER}. That's the number of bucket boundaries at or before the instance, or {@link
+         * #BUCKET_NONE} if the instance doesn't have a value in the bucket column.
+         * <p>
+         * Value: Integer
+         * </p>
+         * <p>
+         * read-only
+         * </p>
+         */
+        public static final String BUCKET = "bucket";
+
+        /**
+         * The {@link #BUCKET} of instances which don't have a value in the bucket column.
+         */
+        public static final int BUCKET_NONE = -1;
+
+        /**
+         * URI parameter with a comma separated list of ascending bucket boundaries in milliseconds since the epoch. If present, each instance is assigned to
+         * the {@link #BUCKET} its {@link #BUCKET_COLUMN_PARAMETER} value falls into and the result is sorted by bucket first. All-day values are compared to
+         * the boundaries in local time, just like all-day dates are presented.
+         * <p>
+         * This allows loading all instances of a grouping by time ranges with a single query. Use {@link #getBucketsContentUri(String, String, long...)} to
+         * build the {@link Uri}.
+         * </p>
+         */
+        public static final String BUCKETS_PARAMETER = "buckets";
+
+        /**
+         * URI parameter with the column to determine the {@link #BUCKET} from, either {@link #INSTANCE_DUE} (the default) or {@link #INSTANCE_START}.
+         */
+        public static final String BUCKET_COLUMN_PARAMETER = "bucket_column";
+
         public static final String CONTENT_URI_PATH = "instances";
 
         public static final String DEFAULT_SORT_ORDER = INSTANCE_DUE_SORTING;
@@ -1229,6 +1509,36 @@ public final class TaskContract
             return getUriFactory(authority).getUri(CONTENT_URI_PATH);
         }
 
+
+        /**
+         * Get the instances content {@link Uri} which assigns each instance to a {@link #BUCKET}.
+         *
+         * @param authority
+         *         The authority.
+         * @param column
+         *         The column to determine the bucket from, either {@link #INSTANCE_DUE} or {@link #INSTANCE_START}.
+         * @param boundaries
+         *         The ascending boundaries of the buckets.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getBucketsContentUri(String authority, String column, long... boundaries)
+        {
+            StringBuilder buckets = new StringBuilder(boundaries.length * 14);
+            for (long boundary : boundaries)
+            {
+                if (buckets.length() > 0)
+                {
+                    buckets.append(',');
+                }
+                buckets.append(boundary);
+            }
+            return getContentUri(authority).buildUpon()
+                    .appendQueryParameter(BUCKETS_PARAMETER, buckets.toString())
+                    .appendQueryParameter(BUCKET_COLUMN_PARAMETER, column)
+                    .build();
+        }
+
     }
 
 
@@ -1278,12 +1588,44 @@ public final class TaskContract
     }
 
 
+    /**
+     * Columns of the reminder queue. The queue contains one row per alarm property and instance of an open task.
+     */
     public interface AlarmsColumns
     {
+        /**
+         * The {@link Property.Alarm#PROPERTY_ID} of the alarm.
+         * <p>
+         * Value: Long
+         */
         String ALARM_ID = "alarm_id";
 
+        /**
+         * The id of the instance the alarm triggers for.
+         * <p>
+         * Value: Long
+         */
+        String INSTANCE_ID = "instance_id";
+
+        /**
+         * The id of the task of the instance.
+         * <p>
+         * Value: Long
+         */
+        String TASK_ID = "task_id";
+
+        /**
+         * The time when the alarm has been delivered the last time or <code>null</code> if it has not been delivered yet.
+         * <p>
+         * Value: Long
+         */
         String LAST_TRIGGER = "last_trigger";
 
+        /**
+         * The timestamp of when the alarm triggers. Alarms of floating and all-day tasks trigger at their local time.
+         * <p>
+         * Value: Long
+         */
         String NEXT_TRIGGER = "next_trigger";
     }
 
@@ -1310,6 +1652,233 @@ public final class TaskContract
     }
 
 
+    /**
+     * Columns of the task counts.
+     */
+    public interface CountsColumns
+    {
+        /**
+         * The id of the list the counts belong to.
+         * <p>
+         * Value: Long
+         * <p>
+         * read-only
+         */
+        String LIST_ID = "list_id";
+
+        /**
+         * The number of open tasks. Each recurring task is counted once.
+         * <p>
+         * Value: Integer
+         * <p>
+         * read-only
+         */
+        String OPEN_COUNT = "open_count";
+
+        /**
+         * The number of open tasks which are overdue, i.e. which have a due date in the past. All-day tasks are overdue when they were due before today.
+         * <p>
+         * Value: Integer
+         * <p>
+         * read-only
+         */
+        String OVERDUE_COUNT = "overdue_count";
+
+        /**
+         * The number of open tasks which are due today and not overdue yet.
+         * <p>
+         * Value: Integer
+         * <p>
+         * read-only
+         */
+        String DUE_TODAY_COUNT = "due_today_count";
+
+        /**
+         * The number of open tasks which are due after today.
+         * <p>
+         * Value: Integer
+         * <p>
+         * read-only
+         */
+        String DUE_LATER_COUNT = "due_later_count";
+
+        /**
+         * The number of open tasks without a due date.
+         * <p>
+         * Value: Integer
+         * <p>
+         * read-only
+         */
+        String NO_DUE_COUNT = "no_due_count";
+
+        /**
+         * The number of open tasks which are pinned.
+         * <p>
+         * Value: Integer
+         * <p>
+         * read-only
+         */
+        String PINNED_COUNT = "pinned_count";
+    }
+
+
+    /**
+     * Counts of open tasks per list. This returns one row per list, including lists without any open tasks. "Today" refers to the default time zone of the
+     * device.
+     * <p>
+     * All counts are computed in a single pass and cached by the provider until the data changes or a due date or the end of the day passes, so this is a
+     * lot cheaper than counting the rows of instance queries. Use a selection on {@link #LIST_ID} to get the counts of specific lists.
+     * <p>
+     * This table is read-only.
+     */
+    public static final class Counts implements CountsColumns
+    {
+        public static final String CONTENT_URI_PATH = "counts";
+
+
+        /**
+         * Get the task counts content {@link Uri} using the given authority.
+         *
+         * @param authority
+         *         The authority.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getContentUri(String authority)
+        {
+            return getUriFactory(authority).getUri(CONTENT_URI_PATH);
+        }
+    }
+
+
+    /**
+     * Columns of the change log.
+     */
+    public interface ChangeColumns
+    {
+        /**
+         * The sequence number of the change. Sequence numbers are strictly increasing. Use the sequence number of the last change you've seen as the token to
+         * get all subsequent changes.
+         * <p>
+         * Value: Long
+         * <p>
+         * read-only
+         */
+        String SEQUENCE = "_id";
+
+        /**
+         * The id of the task that has been changed.
+         * <p>
+         * Value: Long
+         * <p>
+         * read-only
+         */
+        String TASK_ID = "task_id";
+
+        /**
+         * The id of the instance that has been changed or <code>null</code> if the change has not been applied to a specific instance. Changes applied to an
+         * instance result in an entry with the instance id in addition to the entry of the task. Note, changes of a task usually change its instances too.
+         * <p>
+         * Value: Long
+         * <p>
+         * read-only
+         */
+        String INSTANCE_ID = "instance_id";
+
+        /**
+         * The operation, one of {@link Changes#OPERATION_INSERT}, {@link Changes#OPERATION_UPDATE}, {@link Changes#OPERATION_DELETE} or {@link
+         * Changes#OPERATION_TRUNCATED}.
+         * <p>
+         * Value: Integer
+         * <p>
+         * read-only
+         */
+        String OPERATION = "operation";
+
+        /**
+         * The {@link Tasks#VERSION} of the task after the change.
+         * <p>
+         * Value: Long
+         * <p>
+         * read-only
+         */
+        String VERSION = "version";
+    }
+
+
+    /**
+     * The change log of the tasks. The provider keeps the most recent changes of all tasks, which allows consumers to update their state incrementally
+     * instead of reloading all the tasks whenever something has changed.
+     * <p>
+     * Query {@link #getContentUri(String, long)} with the {@link #SEQUENCE} of the last change you've seen to get all subsequent changes in the order they
+     * have been applied. If the change log has been truncated in the meantime, the first row has the operation {@link #OPERATION_TRUNCATED}. In that case
+     * changes have been lost and you have to reload all the data you're interested in.
+     * <p>
+     * This table is read-only.
+     */
+    public static final class Changes implements ChangeColumns
+    {
+        public static final String CONTENT_URI_PATH = "changes";
+
+        /**
+         * URI parameter with the sequence token to return the changes after.
+         * <p>
+         * Value: Long
+         */
+        public static final String SINCE_PARAMETER = "since";
+
+        /**
+         * A task has been inserted.
+         */
+        public static final int OPERATION_INSERT = 0;
+
+        /**
+         * A task has been updated.
+         */
+        public static final int OPERATION_UPDATE = 1;
+
+        /**
+         * A task has been deleted. Note, unless the task has been deleted by a sync adapter, the task still exists with {@link Tasks#_DELETED} set.
+         */
+        public static final int OPERATION_DELETE = 2;
+
+        /**
+         * Changes after the given token have been removed from the change log, so the result is incomplete.
+         */
+        public static final int OPERATION_TRUNCATED = -1;
+
+
+        /**
+         * Get the changes content {@link Uri} using the given authority. It returns all the changes in the change log.
+         *
+         * @param authority
+         *         The authority.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getContentUri(String authority)
+        {
+            return getUriFactory(authority).getUri(CONTENT_URI_PATH);
+        }
+
+
+        /**
+         * Get the {@link Uri} of all changes after the given sequence token.
+         *
+         * @param authority
+         *         The authority.
+         * @param since
+         *         The {@link #SEQUENCE} of the last change already seen.
+         *
+         * @return A {@link Uri}.
+         */
+        public static Uri getContentUri(String authority, long since)
+        {
+            return getContentUri(authority).buildUpon().appendQueryParameter(SINCE_PARAMETER, String.valueOf(since)).build();
+        }
+    }
+
+
     public interface PropertySyncColumns
     {
         String SYNC1 = "prop_sync1";
@@ -1710,6 +2279,8 @@ public final class TaskContract
             uriFactory.addUri(Categories.CONTENT_URI_PATH);
             uriFactory.addUri(Alarms.CONTENT_URI_PATH);
             uriFactory.addUri(Properties.CONTENT_URI_PATH);
+            uriFactory.addUri(Changes.CONTENT_URI_PATH);
+            uriFactory.addUri(Counts.CONTENT_URI_PATH);
             sUriFactories.put(authority, uriFactory);
 
         }
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+
+import org.dmfs.tasks.contract.OperationStream;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link TaskContract#METHOD_BULK_WRITE} of {@link TaskProvider}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskProviderBulkWriteTest
+{
+    private final static String ACCOUNT_NAME = "bulk";
+    private final static String ACCOUNT_TYPE = "org.dmfs.bulk";
+
+    private String mAuthority;
+    private ContentProviderClient mClient;
+
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mAuthority = AuthorityUtil.taskAuthority(context);
+        mClient = context.getContentResolver().acquireContentProviderClient(mAuthority);
+    }
+
+
+    @After
+    public void tearDown() throws Exception
+    {
+        mClient.delete(syncAdapterUri(TaskLists.getContentUri(mAuthority)), null, null);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+        {
+            mClient.close();
+        }
+        else
+        {
+            mClient.release();
+        }
+    }
+
+
+    @Test
+    public void testBulkWrite() throws Exception
+    {
+        // way more than 500 operations between yield points
+        ArrayList<ContentProviderOperation> operations = operations(2000, false);
+
+        Bundle extras = new Bundle();
+        extras.putParcelableArrayList(TaskContract.EXTRA_OPERATIONS, operations);
+        extras.putBoolean(TaskContract.EXTRA_RETURN_RESULTS, true);
+        Bundle result = mClient.call(TaskContract.METHOD_BULK_WRITE, null, extras);
+
+        assertThat(result.getString(TaskContract.EXTRA_ERROR), is(nullValue()));
+        assertThat(result.getInt(TaskContract.EXTRA_COMMITTED_OPERATIONS), is(2000));
+        assertThat(result.getParcelableArray(TaskContract.EXTRA_RESULTS).length, is(2000));
+        assertThat(((ContentProviderResult) result.getParcelableArray(TaskContract.EXTRA_RESULTS)[1999]).uri, is(notNullValue()));
+        assertThat(taskCount(), is(2000));
+    }
+
+
+    @Test
+    public void testStreamedBulkWrite() throws Exception
+    {
+        final List<ContentProviderOperation> operations = operations(20000, true);
+
+        final ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+        Thread writer = new Thread(() ->
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]))))
+            {
+                for (ContentProviderOperation operation : operations)
+                {
+                    OperationStream.write(out, operation);
+                }
+            }
+            catch (Exception e)
+            {
+                throw new RuntimeException("Can't write operations", e);
+            }
+        });
+        writer.start();
+
+        Bundle extras = new Bundle();
+        extras.putParcelable(TaskContract.EXTRA_OPERATION_STREAM, pipe[0]);
+        Bundle result = mClient.call(TaskContract.METHOD_BULK_WRITE, null, extras);
+        pipe[0].close();
+        writer.join();
+
+        assertThat(result.getString(TaskContract.EXTRA_ERROR), is(nullValue()));
+        assertThat(result.getInt(TaskContract.EXTRA_COMMITTED_OPERATIONS), is(20000));
+        assertThat(result.containsKey(TaskContract.EXTRA_RESULTS), is(false));
+        assertThat(taskCount(), is(20000));
+    }
+
+
+    @Test
+    public void testPartialFailure() throws Exception
+    {
+        ArrayList<ContentProviderOperation> operations = operations(3000, true);
+        // an operation which fails
+        operations.add(ContentProviderOperation.newInsert(syncAdapterUri(Tasks.getContentUri(mAuthority)))
+                .withValue(Tasks.LIST_ID, Long.MAX_VALUE)
+                .withValue(Tasks.TITLE, "invalid")
+                .withYieldAllowed(true)
+                .build());
+
+        Bundle extras = new Bundle();
+        extras.putParcelableArrayList(TaskContract.EXTRA_OPERATIONS, operations);
+        Bundle result = mClient.call(TaskContract.METHOD_BULK_WRITE, null, extras);
+
+        assertThat(result.getString(TaskContract.EXTRA_ERROR), is(notNullValue()));
+        int committed = result.getInt(TaskContract.EXTRA_COMMITTED_OPERATIONS);
+        assertThat(committed, lessThan(operations.size()));
+        // all committed tasks are present, everything else has been rolled back
+        assertThat(taskCount(), is(committed));
+    }
+
+
+    @Test
+    public void testBackReferences() throws Exception
+    {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 3; ++i)
+        {
+            // back-references are relative to the last yield point, so every task refers to the list right before it
+            operations.add(ContentProviderOperation.newInsert(syncAdapterUri(TaskLists.getContentUri(mAuthority)))
+                    .withValue(TaskLists.LIST_NAME, "bulk " + i)
+                    .withValue(TaskLists.SYNC_ENABLED, 1)
+                    .withValue(TaskLists.VISIBLE, 1)
+                    .withYieldAllowed(true)
+                    .build());
+            for (int j = 0; j < 2; ++j)
+            {
+                operations.add(ContentProviderOperation.newInsert(syncAdapterUri(Tasks.getContentUri(mAuthority)))
+                        .withValueBackReference(Tasks.LIST_ID, 0)
+                        .withValue(Tasks.TITLE, "task " + i + " " + j)
+                        .build());
+            }
+        }
+        // an operation which allows yielding can't refer to any previous operation
+        operations.add(ContentProviderOperation.newInsert(syncAdapterUri(Tasks.getContentUri(mAuthority)))
+                .withValueBackReference(Tasks.LIST_ID, 0)
+                .withValue(Tasks.TITLE, "invalid")
+                .withYieldAllowed(true)
+                .build());
+
+        Bundle extras = new Bundle();
+        extras.putParcelableArrayList(TaskContract.EXTRA_OPERATIONS, operations);
+        Bundle result = mClient.call(TaskContract.METHOD_BULK_WRITE, null, extras);
+
+        assertThat(result.getString(TaskContract.EXTRA_ERROR), is(notNullValue()));
+        assertThat(result.getInt(TaskContract.EXTRA_COMMITTED_OPERATIONS), is(9));
+        try (Cursor cursor = mClient.query(syncAdapterUri(Tasks.getContentUri(mAuthority)), new String[] { Tasks.TITLE },
+                Tasks.LIST_NAME + "=?", new String[] { "bulk 1" }, Tasks.TITLE))
+        {
+            assertThat(cursor.getCount(), is(2));
+            cursor.moveToFirst();
+            assertThat(cursor.getString(0), is("task 1 0"));
+        }
+    }
+
+
+    private ArrayList<ContentProviderOperation> operations(int tasks, boolean yieldAllowed) throws Exception
+    {
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskLists.LIST_NAME, "bulk");
+        listValues.put(TaskLists.SYNC_ENABLED, 1);
+        listValues.put(TaskLists.VISIBLE, 1);
+        long listId = ContentUris.parseId(mClient.insert(syncAdapterUri(TaskLists.getContentUri(mAuthority)), listValues));
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; ++i)
+        {
+            operations.add(ContentProviderOperation.newInsert(syncAdapterUri(Tasks.getContentUri(mAuthority)))
+                    .withValue(Tasks.LIST_ID, listId)
+                    .withValue(Tasks.TITLE, "task " + i)
+                    .withValue(Tasks.DTSTART, System.currentTimeMillis() + i * 3600L * 1000L)
+                    .withValue(Tasks.TZ, "Europe/Berlin")
+                    .withYieldAllowed(yieldAllowed)
+                    .build());
+        }
+        return operations;
+    }
+
+
+    private int taskCount() throws Exception
+    {
+        try (Cursor cursor = mClient.query(syncAdapterUri(Tasks.getContentUri(mAuthority)), null, null, null, null))
+        {
+            return cursor.getCount();
+        }
+    }
+
+
+    private Uri syncAdapterUri(Uri uri)
+    {
+        return uri.buildUpon()
+                .appendQueryParameter(TaskContract.CALLER_IS_SYNCADAPTER, "true")
+                .appendQueryParameter(TaskContract.ACCOUNT_NAME, ACCOUNT_NAME)
+                .appendQueryParameter(TaskContract.ACCOUNT_TYPE, ACCOUNT_TYPE)
+                .build();
+    }
+}
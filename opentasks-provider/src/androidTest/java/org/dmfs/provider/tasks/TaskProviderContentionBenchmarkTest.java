@@ -0,0 +1,197 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * A benchmark of the query latency of {@link TaskProvider} while a sync adapter applies a large batch.
+ * <p>
+ * This runs a batch of 500 sync adapter operations in a background thread while repeatedly querying the instances table. With write-ahead logging, queries
+ * don't have to wait for the batch to be committed, because the connection pool serves them from a separate connection.
+ * <p>
+ * Like the other benchmarks this only runs on request, i.e. when the instrumentation argument {@code benchmark} is {@code true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TaskProviderContentionBenchmarkTest
+{
+    private final static String TAG = "ContentionBenchmark";
+    private final static String ACCOUNT_NAME = "benchmark";
+    private final static String ACCOUNT_TYPE = "org.dmfs.benchmark";
+    private final static int BATCH_SIZE = 500;
+
+    private String mAuthority;
+    private ContentProviderClient mClient;
+
+
+    @BeforeClass
+    public static void assumeBenchmark()
+    {
+        Assume.assumeTrue(Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString("benchmark")));
+    }
+
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mAuthority = AuthorityUtil.taskAuthority(context);
+        mClient = context.getContentResolver().acquireContentProviderClient(mAuthority);
+    }
+
+
+    @After
+    public void tearDown() throws Exception
+    {
+        mClient.delete(syncAdapterUri(TaskLists.getContentUri(mAuthority)), null, null);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+        {
+            mClient.close();
+        }
+        else
+        {
+            mClient.release();
+        }
+    }
+
+
+    @Test
+    public void testQueriesDuringSyncBatch() throws Exception
+    {
+        final ArrayList<ContentProviderOperation> batch = new ArrayList<>(BATCH_SIZE);
+        batch.add(ContentProviderOperation.newInsert(syncAdapterUri(TaskLists.getContentUri(mAuthority)))
+                .withValue(TaskLists.LIST_NAME, "benchmark")
+                .withValue(TaskLists.SYNC_ENABLED, 1)
+                .withValue(TaskLists.VISIBLE, 1)
+                .build());
+        for (int i = 1; i < BATCH_SIZE; ++i)
+        {
+            batch.add(ContentProviderOperation.newInsert(syncAdapterUri(Tasks.getContentUri(mAuthority)))
+                    .withValueBackReference(Tasks.LIST_ID, 0)
+                    .withValue(Tasks.TITLE, "task " + i)
+                    .withValue(Tasks.DTSTART, System.currentTimeMillis() + i * 3600L * 1000L)
+                    .withValue(Tasks.TZ, "Europe/Berlin")
+                    .withValue(Tasks.RRULE, i % 10 == 0 ? "FREQ=DAILY;COUNT=20" : null)
+                    .build());
+        }
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final long[] batchNanos = new long[1];
+        final AtomicReference<Exception> batchError = new AtomicReference<>();
+        Thread writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    long start = System.nanoTime();
+                    mClient.applyBatch(batch);
+                    batchNanos[0] = System.nanoTime() - start;
+                }
+                catch (Exception e)
+                {
+                    batchError.set(e);
+                }
+                finally
+                {
+                    done.set(true);
+                }
+            }
+        });
+
+        writer.start();
+        int queries = 0;
+        long totalNanos = 0;
+        long maxNanos = 0;
+        while (!done.get())
+        {
+            long start = System.nanoTime();
+            Cursor cursor = mClient.query(Instances.getContentUri(mAuthority), null, null, null, null);
+            try
+            {
+                cursor.getCount();
+            }
+            finally
+            {
+                cursor.close();
+            }
+            long nanos = System.nanoTime() - start;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            queries += 1;
+        }
+        writer.join();
+        if (batchError.get() != null)
+        {
+            throw batchError.get();
+        }
+
+        Log.i(TAG, String.format(Locale.ENGLISH, "batch of %d operations took %.1f ms, %d queries meanwhile, mean %.2f ms, max %.2f ms", BATCH_SIZE,
+                batchNanos[0] / 1000000.0, queries, queries == 0 ? 0 : totalNanos / 1000000.0 / queries, maxNanos / 1000000.0));
+
+        Cursor cursor = mClient.query(syncAdapterUri(Tasks.getContentUri(mAuthority)), null, null, null, null);
+        try
+        {
+            assertThat(cursor.getCount(), is(BATCH_SIZE - 1));
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+
+    private Uri syncAdapterUri(Uri uri)
+    {
+        return uri.buildUpon()
+                .appendQueryParameter(TaskContract.CALLER_IS_SYNCADAPTER, "true")
+                .appendQueryParameter(TaskContract.ACCOUNT_NAME, ACCOUNT_NAME)
+                .appendQueryParameter(TaskContract.ACCOUNT_TYPE, ACCOUNT_TYPE)
+                .build();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * Helpers to create change notification {@link Uri}s with a {@link TaskContract#CHANGED_COLUMNS} hint.
+ */
+final class ChangeHints
+{
+    private final static Map<String, String> COLUMN_GROUPS = new HashMap<>(64);
+
+    static
+    {
+        group(TaskContract.CHANGED_DATES, Tasks.DTSTART, Tasks.IS_ALLDAY, Tasks.TZ, Tasks.DUE, Tasks.DURATION, Tasks.RDATE, Tasks.EXDATE, Tasks.RRULE,
+                Tasks.ORIGINAL_INSTANCE_TIME, Tasks.ORIGINAL_INSTANCE_ALLDAY, Instances.INSTANCE_START, Instances.INSTANCE_START_SORTING,
+                Instances.INSTANCE_DUE, Instances.INSTANCE_DUE_SORTING, Instances.INSTANCE_DURATION, Instances.INSTANCE_ORIGINAL_TIME);
+        group(TaskContract.CHANGED_STATUS, Tasks.STATUS, Tasks.PERCENT_COMPLETE, Tasks.COMPLETED, Tasks.COMPLETED_IS_ALLDAY, Tasks.IS_CLOSED);
+        group(TaskContract.CHANGED_TITLE, Tasks.TITLE, Tasks.DESCRIPTION, Tasks.LOCATION);
+        group(TaskContract.CHANGED_LIST, Tasks.LIST_ID);
+    }
+
+
+    private static void group(String group, String... columns)
+    {
+        for (String column : columns)
+        {
+            COLUMN_GROUPS.put(column, group);
+        }
+    }
+
+
+    private ChangeHints()
+    {
+        // no instances
+    }
+
+
+    /**
+     * Returns the value of the {@link TaskContract#CHANGED_COLUMNS} parameter for a change of the given columns.
+     *
+     * @param columns
+     *         The names of the columns that have been updated.
+     *
+     * @return The hint, i.e. a comma separated list of column groups.
+     */
+    static String of(Collection<String> columns)
+    {
+        Set<String> groups = new TreeSet<>();
+        for (String column : columns)
+        {
+            String group = COLUMN_GROUPS.get(column);
+            groups.add(group == null ? TaskContract.CHANGED_OTHER : group);
+        }
+        return TextUtils.join(",", groups);
+    }
+
+
+    /**
+     * Returns the column groups of the given hint or <code>null</code> if the hint is <code>null</code>, i.e. anything may have changed.
+     */
+    static Set<String> groups(String hint)
+    {
+        return hint == null ? null : new TreeSet<>(Arrays.asList(TextUtils.split(hint, ",")));
+    }
+
+
+    /**
+     * Returns the change notification {@link Uri} of a specific row.
+     *
+     * @param contentUri
+     *         The content {@link Uri} of the table.
+     * @param id
+     *         The id of the row that has been changed.
+     * @param hint
+     *         The hint as returned by {@link #of(Collection)}.
+     *
+     * @return The change notification {@link Uri} of the row.
+     */
+    static Uri itemUri(Uri contentUri, long id, String hint)
+    {
+        return withHint(ContentUris.withAppendedId(contentUri, id), hint);
+    }
+
+
+    /**
+     * Returns the given {@link Uri} with the given hint.
+     *
+     * @param uri
+     *         A {@link Uri} without hint.
+     * @param hint
+     *         The hint or <code>null</code> if anything may have changed.
+     *
+     * @return The {@link Uri} with the hint.
+     */
+    static Uri withHint(Uri uri, String hint)
+    {
+        return hint == null ? uri : uri.buildUpon().appendQueryParameter(TaskContract.CHANGED_COLUMNS, hint).build();
+    }
+
+
+    /**
+     * Returns the given {@link Uri} without any hint.
+     */
+    static Uri withoutHint(Uri uri)
+    {
+        if (uri.getQueryParameter(TaskContract.CHANGED_COLUMNS) == null)
+        {
+            return uri;
+        }
+        Uri.Builder builder = uri.buildUpon().clearQuery();
+        for (String name : uri.getQueryParameterNames())
+        {
+            if (!TaskContract.CHANGED_COLUMNS.equals(name))
+            {
+                for (String value : uri.getQueryParameters(name))
+                {
+                    builder.appendQueryParameter(name, value);
+                }
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.text.TextUtils;
+
+import org.dmfs.tasks.contract.TaskContract;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * Coalesces change notifications and other tasks that need to run after data has changed.
+ * <p>
+ * Changes are collected until they are flushed. A flush can either be requested immediately or it's delayed by a given window. All changes which are collected
+ * within the window are sent at once, each {@link Uri} is notified only once and each task runs only once. That way a sync adapter which commits many small
+ * transactions doesn't trigger a round of loader restarts and broadcasts for each of them.
+ * <p>
+ * The {@link TaskContract#CHANGED_COLUMNS} hints of multiple notifications of the same {@link Uri} are merged. If the collection of an item {@link Uri} is
+ * notified too, or if too many items of the same collection have changed, only the collection is notified, with the merged hints of all its items.
+ */
+final class ChangeNotifier
+{
+    /**
+     * The maximum number of item {@link Uri}s of the same collection to notify individually.
+     */
+    private final static int MAX_ITEM_NOTIFICATIONS = 10;
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler;
+    private final long mWindow;
+
+    /**
+     * The pending {@link Uri}s and whether they should be synced to the network.
+     */
+    private final Map<Uri, Boolean> mPendingUris = new HashMap<>();
+    private final Set<Runnable> mPendingTasks = new LinkedHashSet<>();
+    private boolean mFlushPosted;
+
+    private final Runnable mFlush = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            flush();
+        }
+    };
+
+
+    /**
+     * @param resolver
+     *         The {@link ContentResolver} to send the notifications to.
+     * @param handler
+     *         The {@link Handler} to run delayed flushes on.
+     * @param window
+     *         The maximum time in milliseconds to delay a flush. If this is 0 all changes are flushed immediately.
+     */
+    ChangeNotifier(ContentResolver resolver, Handler handler, long window)
+    {
+        mResolver = resolver;
+        mHandler = handler;
+        mWindow = window;
+    }
+
+
+    /**
+     * Adds a {@link Uri} to notify with the next flush.
+     *
+     * @param uri
+     *         The {@link Uri} that has changed.
+     * @param syncToNetwork
+     *         Whether the change should be synced to the network.
+     */
+    synchronized void addUri(Uri uri, boolean syncToNetwork)
+    {
+        Boolean sync = mPendingUris.get(uri);
+        mPendingUris.put(uri, syncToNetwork || sync != null && sync);
+    }
+
+
+    /**
+     * Adds a task to run with the next flush. The same task is executed only once per flush, no matter how often it has been added.
+     *
+     * @param task
+     *         The task to run.
+     */
+    synchronized void addTask(Runnable task)
+    {
+        mPendingTasks.add(task);
+    }
+
+
+    /**
+     * Schedules a flush of the pending changes.
+     *
+     * @param immediately
+     *         Whether to flush the pending changes right away (on the calling thread) or within the coalescing window.
+     */
+    void schedule(boolean immediately)
+    {
+        if (immediately || mWindow <= 0)
+        {
+            flush();
+            return;
+        }
+
+        synchronized (this)
+        {
+            if (mFlushPosted || mPendingUris.isEmpty() && mPendingTasks.isEmpty())
+            {
+                // a flush is already on its way (or there is nothing to flush), it will take our changes too
+                return;
+            }
+            mFlushPosted = true;
+        }
+        mHandler.postDelayed(mFlush, mWindow);
+    }
+
+
+    /**
+     * Sends all pending notifications and runs all pending tasks.
+     */
+    void flush()
+    {
+        Map<Uri, Boolean> uris;
+        List<Runnable> tasks;
+        synchronized (this)
+        {
+            if (mFlushPosted)
+            {
+                mHandler.removeCallbacks(mFlush);
+                mFlushPosted = false;
+            }
+            uris = new HashMap<>(mPendingUris);
+            tasks = new ArrayList<>(mPendingTasks);
+            mPendingUris.clear();
+            mPendingTasks.clear();
+        }
+
+        for (Map.Entry<Uri, Boolean> uri : coalesced(uris).entrySet())
+        {
+            mResolver.notifyChange(uri.getKey(), null, uri.getValue());
+        }
+
+        for (Runnable task : tasks)
+        {
+            task.run();
+        }
+    }
+
+
+    /**
+     * Merges the notifications of the same {@link Uri} and replaces item notifications by collection notifications where appropriate.
+     */
+    private static Map<Uri, Boolean> coalesced(Map<Uri, Boolean> uris)
+    {
+        // merge the hints of all notifications of the same Uri, a null hint means anything may have changed
+        Map<Uri, Set<String>> hints = new HashMap<>();
+        Map<Uri, Boolean> sync = new HashMap<>();
+        for (Map.Entry<Uri, Boolean> uri : uris.entrySet())
+        {
+            merge(hints, sync, ChangeHints.withoutHint(uri.getKey()), ChangeHints.groups(uri.getKey().getQueryParameter(TaskContract.CHANGED_COLUMNS)),
+                    uri.getValue());
+        }
+
+        Map<Uri, List<Uri>> items = new HashMap<>();
+        for (Uri uri : hints.keySet())
+        {
+            Uri collection = collection(uri);
+            if (collection != null)
+            {
+                List<Uri> collectionItems = items.get(collection);
+                if (collectionItems == null)
+                {
+                    collectionItems = new ArrayList<>();
+                    items.put(collection, collectionItems);
+                }
+                collectionItems.add(uri);
+            }
+        }
+
+        for (Map.Entry<Uri, List<Uri>> collectionItems : items.entrySet())
+        {
+            Uri collection = collectionItems.getKey();
+            if (hints.containsKey(collection) || collectionItems.getValue().size() > MAX_ITEM_NOTIFICATIONS)
+            {
+                // the collection is notified anyway, or there are too many items
+                for (Uri item : collectionItems.getValue())
+                {
+                    merge(hints, sync, collection, hints.remove(item), sync.remove(item));
+                }
+            }
+        }
+
+        Map<Uri, Boolean> result = new HashMap<>();
+        for (Map.Entry<Uri, Set<String>> hint : hints.entrySet())
+        {
+            result.put(ChangeHints.withHint(hint.getKey(), hint.getValue() == null ? null : TextUtils.join(",", hint.getValue())), sync.get(hint.getKey()));
+        }
+        return result;
+    }
+
+
+    private static void merge(Map<Uri, Set<String>> hints, Map<Uri, Boolean> sync, Uri uri, Set<String> groups, boolean syncToNetwork)
+    {
+        if (!hints.containsKey(uri))
+        {
+            hints.put(uri, groups == null ? null : new TreeSet<>(groups));
+        }
+        else if (groups == null)
+        {
+            hints.put(uri, null);
+        }
+        else if (hints.get(uri) != null)
+        {
+            hints.get(uri).addAll(groups);
+        }
+        sync.put(uri, syncToNetwork || Boolean.TRUE.equals(sync.get(uri)));
+    }
+
+
+    /**
+     * Returns the collection {@link Uri} of the given item {@link Uri} or <code>null</code> if the given {@link Uri} is not an item {@link Uri}.
+     */
+    private static Uri collection(Uri uri)
+    {
+        List<String> segments = uri.getPathSegments();
+        if (segments.isEmpty() || !TextUtils.isDigitsOnly(segments.get(segments.size() - 1)))
+        {
+            return null;
+        }
+        Uri.Builder builder = uri.buildUpon().path(null);
+        for (String segment : segments.subList(0, segments.size() - 1))
+        {
+            builder.appendPath(segment);
+        }
+        return builder.build();
+    }
+}
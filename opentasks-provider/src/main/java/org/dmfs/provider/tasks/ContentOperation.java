@@ -17,6 +17,7 @@
 package org.dmfs.provider.tasks;
 
 import android.annotation.SuppressLint;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
@@ -25,119 +26,164 @@ import android.content.SharedPreferences.Editor;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteTransactionListener;
 import android.net.Uri;
-import android.os.Handler;
 import android.util.Log;
 
-import org.dmfs.provider.tasks.model.CursorContentValuesInstanceAdapter;
-import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
-import org.dmfs.provider.tasks.model.InstanceAdapter;
-import org.dmfs.provider.tasks.model.TaskAdapter;
-import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.NextTriggerColumns;
+import org.dmfs.provider.tasks.utils.LocalSortingUpdate;
+import org.dmfs.provider.tasks.utils.NextTriggers;
+import org.dmfs.provider.tasks.utils.Reminders;
 import org.dmfs.rfc5545.DateTime;
 import org.dmfs.tasks.contract.TaskContract;
 import org.dmfs.tasks.contract.TaskContract.Instances;
 import org.dmfs.tasks.contract.TaskContract.Tasks;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.TimeZone;
 
 
 public enum ContentOperation
 {
     /**
-     * When the local timezone has been changed we need to update the due and start sorting values. This handler will take care of running the appropriate
-     * update. In addition it fires an operation to update all notifications.
+     * When the local timezone has been changed we need to update the due and start sorting values. This handler updates the sorting values of all instances
+     * which depend on the local time zone in chunks. Each chunk is a separate transaction, so writers and notification alarms don't have to wait for the
+     * entire update. The progress is saved after each chunk, so an interrupted update is resumed when it's fired again (or when the provider starts) and the
+     * time zone hasn't changed in the meantime. In addition it fires an operation to update all notifications.
      */
-    UPDATE_TIMEZONE(new OperationHandler()
+    UPDATE_TIMEZONE(0, new OperationHandler()
     {
         @Override
-        public void handleOperation(Context context, Uri uri, SQLiteDatabase db, ContentValues values)
+        public ContentValues handleOperation(Context context, Uri uri, SQLiteDatabase db, Provider provider, ContentValues values)
         {
             long start = System.currentTimeMillis();
+            TimeZone timeZone = TimeZone.getDefault();
+            LocalSortingUpdate update = new LocalSortingUpdate(db, timeZone);
+            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
 
-            // request an update of all instance values
-            ContentValues vals = new ContentValues(1);
-            Instantiating.addUpdateRequest(vals);
+            if (!values.containsKey(KEY_CHUNK_AFTER))
+            {
+                // a new run, resume an interrupted update for the same time zone, otherwise start over
+                values = new ContentValues(4);
+                values.put(KEY_CHUNK_AFTER, timeZone.getID().equals(prefs.getString(PREFS_KEY_TIMEZONE_UPDATE_ZONE, null)) ?
+                        prefs.getLong(PREFS_KEY_TIMEZONE_UPDATE_AFTER, -1) : -1);
+                values.put(KEY_CHUNK_TOTAL, update.candidates());
+                values.put(KEY_CHUNK_DONE, 0);
+                values.put(KEY_CHUNK_START, start);
+            }
 
-            // execute update that triggers a recalculation of all due and start sorting values
-            int count = context.getContentResolver().update(
-                    TaskContract.Tasks.getContentUri(uri.getAuthority()).buildUpon().appendQueryParameter(TaskContract.CALLER_IS_SYNCADAPTER, "true").build(),
-                    vals, null, null);
+            int count;
+            db.beginTransactionWithListener(provider.transactionListener(db));
+            try
+            {
+                count = update.update(values.getAsLong(KEY_CHUNK_AFTER), TIMEZONE_CHUNK_SIZE);
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
 
-            Log.i("TaskProvider", "time to update " + count + " tasks: " + (System.currentTimeMillis() - start) + " ms");
+            if (count == 0)
+            {
+                // the triggers and reminders of floating and all-day tasks move with the local time zone
+                db.beginTransactionWithListener(provider.transactionListener(db));
+                try
+                {
+                    NextTriggers.updateFloating(db);
+                    Reminders.updateFloating(db);
+                    db.setTransactionSuccessful();
+                }
+                finally
+                {
+                    db.endTransaction();
+                }
 
-            // now update alarms as well
-            UPDATE_NOTIFICATION_ALARM.fire(context, null);
+                prefs.edit().remove(PREFS_KEY_TIMEZONE_UPDATE_ZONE).remove(PREFS_KEY_TIMEZONE_UPDATE_AFTER).apply();
+                Log.i("TaskProvider", "time to update " + values.getAsLong(KEY_CHUNK_DONE) + " instances: " + (System.currentTimeMillis() - values.getAsLong(
+                        KEY_CHUNK_START)) + " ms");
+
+                // notify the observers of the new order
+                provider.notifyChange(Instances.getContentUri(uri.getAuthority()));
+                provider.notifyChange(Tasks.getContentUri(uri.getAuthority()));
+
+                // now update alarms as well
+                UPDATE_NOTIFICATION_ALARM.fire(context, null);
+                return null;
+            }
+
+            // save the progress, so an interrupted update can be resumed
+            prefs.edit().putString(PREFS_KEY_TIMEZONE_UPDATE_ZONE, timeZone.getID()).putLong(PREFS_KEY_TIMEZONE_UPDATE_AFTER, update.lastId()).apply();
+
+            ContentValues next = new ContentValues(values);
+            next.put(KEY_CHUNK_AFTER, update.lastId());
+            next.put(KEY_CHUNK_DONE, values.getAsLong(KEY_CHUNK_DONE) + count);
+            Log.v("TaskProvider", "updated " + next.getAsLong(KEY_CHUNK_DONE) + " of " + values.getAsLong(KEY_CHUNK_TOTAL) + " instances, "
+                    + (System.currentTimeMillis() - start) + " ms for " + count + " instances");
+
+            // continue with the next chunk
+            return next;
         }
     }),
 
     /**
-     * Takes care of everything we need to send task start and task due broadcasts.
+     * Takes care of everything we need to send task start, task due and reminder broadcasts.
      */
-    POST_NOTIFICATIONS(new OperationHandler()
+    POST_NOTIFICATIONS(2, new OperationHandler()
     {
 
         @Override
-        public void handleOperation(Context context, Uri uri, SQLiteDatabase db, ContentValues values)
+        public ContentValues handleOperation(Context context, Uri uri, SQLiteDatabase db, Provider provider, ContentValues values)
         {
-            TimeZone localTimeZone = TimeZone.getDefault();
-
             // the date-time of when the last notification was shown
             DateTime lastAlarm = getLastAlarmTimestamp(context);
             // the current time, we show all notifications between <set> and now
             DateTime now = DateTime.nowAndHere();
 
-            String lastAlarmString = Long.toString(lastAlarm.getInstance());
-            String nowString = Long.toString(now.getInstance());
-
-            // load all tasks that have started or became due since the last time we've shown a notification.
-            Cursor instancesCursor = db.query(TaskDatabaseHelper.Tables.INSTANCE_VIEW, null, "((" + TaskContract.Instances.INSTANCE_DUE_SORTING + ">? and "
-                    + TaskContract.Instances.INSTANCE_DUE_SORTING + "<=?) or (" + TaskContract.Instances.INSTANCE_START_SORTING + ">? and "
-                    + TaskContract.Instances.INSTANCE_START_SORTING + "<=?)) and " + Instances.IS_CLOSED + " = 0 and " + Tasks._DELETED + "=0", new String[] {
-                    lastAlarmString, nowString, lastAlarmString, nowString }, null, null, null);
-
-            try
+            // load all instances that have started or became due since the last time we've shown a notification.
+            try (Cursor triggers = NextTriggers.triggered(db, lastAlarm.getTimestamp(), now.getTimestamp()))
             {
-                while (instancesCursor.moveToNext())
+                while (triggers.moveToNext())
                 {
-                    InstanceAdapter task = new CursorContentValuesInstanceAdapter(InstanceAdapter._ID.getFrom(instancesCursor), instancesCursor, null);
-
-                    DateTime instanceDue = task.valueOf(InstanceAdapter.INSTANCE_DUE);
-                    if (instanceDue != null && !instanceDue.isFloating())
-                    {
-                        // make sure we compare instances in local time
-                        instanceDue = instanceDue.shiftTimeZone(localTimeZone);
-                    }
-
-                    DateTime instanceStart = task.valueOf(InstanceAdapter.INSTANCE_START);
-                    if (instanceStart != null && !instanceStart.isFloating())
-                    {
-                        // make sure we compare instances in local time
-                        instanceStart = instanceStart.shiftTimeZone(localTimeZone);
-                    }
-
-                    if (instanceDue != null && lastAlarm.getInstance() < instanceDue.getInstance() && instanceDue.getInstance() <= now.getInstance())
+                    Uri instanceUri = ContentUris.withAppendedId(Instances.getContentUri(uri.getAuthority()), triggers.getLong(0));
+                    if (triggers.getInt(1) == NextTriggerColumns.TYPE_DUE)
                     {
                         // this task became due since the last alarm, send a due broadcast
-                        sendBroadcast(context, TaskContract.ACTION_BROADCAST_TASK_DUE, task.uri(uri.getAuthority()));
+                        sendBroadcast(context, TaskContract.ACTION_BROADCAST_TASK_DUE, instanceUri);
                     }
-                    else if (instanceStart != null && lastAlarm.getInstance() < instanceStart.getInstance() && instanceStart.getInstance() <= now.getInstance())
+                    else
                     {
                         // this task has started since the last alarm, send a start broadcast
-                        sendBroadcast(context, TaskContract.ACTION_BROADCAST_TASK_STARTING, task.uri(uri.getAuthority()));
+                        sendBroadcast(context, TaskContract.ACTION_BROADCAST_TASK_STARTING, instanceUri);
                     }
                 }
             }
-            finally
+
+            // deliver all reminders that triggered since the last alarm, reminders which trigger together are sent in batches
+            try (Cursor reminders = Reminders.triggered(db, lastAlarm.getTimestamp(), now.getTimestamp()))
             {
-                instancesCursor.close();
+                ArrayList<Uri> instanceUris = new ArrayList<>(REMINDER_BATCH_SIZE);
+                long[] alarmIds = new long[REMINDER_BATCH_SIZE];
+                while (reminders.moveToNext())
+                {
+                    alarmIds[instanceUris.size()] = reminders.getLong(0);
+                    instanceUris.add(ContentUris.withAppendedId(Instances.getContentUri(uri.getAuthority()), reminders.getLong(1)));
+                    if (instanceUris.size() == REMINDER_BATCH_SIZE || reminders.isLast())
+                    {
+                        sendReminderBroadcast(context, instanceUris, Arrays.copyOf(alarmIds, instanceUris.size()));
+                        instanceUris = new ArrayList<>(REMINDER_BATCH_SIZE);
+                    }
+                }
             }
+            Reminders.delivered(db, lastAlarm.getTimestamp(), now.getTimestamp(), now.getTimestamp());
 
             // all notifications up to now have been triggered
             saveLastAlarmTime(context, now);
 
             // set the alarm for the next notification
             UPDATE_NOTIFICATION_ALARM.fire(context, null);
+            return null;
         }
 
 
@@ -176,18 +222,39 @@ public enum ContentOperation
             intent.setPackage(context.getPackageName());
             context.sendBroadcast(intent);
         }
+
+
+        /**
+         * Sends a reminder broadcast for a batch of alarms.
+         *
+         * @param context
+         *         A {@link Context}.
+         * @param instanceUris
+         *         The instance uris.
+         * @param alarmIds
+         *         The ids of the alarms that triggered for the instance at the same index.
+         */
+        private void sendReminderBroadcast(Context context, ArrayList<Uri> instanceUris, long[] alarmIds)
+        {
+            Intent intent = new Intent(TaskContract.ACTION_BROADCAST_TASK_REMINDER);
+            intent.putParcelableArrayListExtra(TaskContract.EXTRA_INSTANCE_URIS, instanceUris);
+            intent.putExtra(TaskContract.EXTRA_ALARM_IDS, alarmIds);
+            // only notify our own package
+            intent.setPackage(context.getPackageName());
+            context.sendBroadcast(intent);
+        }
     }),
 
     /**
-     * Determines the date-time of when the next task becomes due or starts (whatever happens first) and sets an alarm to trigger a notification.
+     * Determines the date-time of when the next task becomes due or starts or the next reminder triggers (whatever happens first) and sets an alarm to trigger
+     * a notification.
      */
-    UPDATE_NOTIFICATION_ALARM(new OperationHandler()
+    UPDATE_NOTIFICATION_ALARM(1, new OperationHandler()
     {
 
         @Override
-        public void handleOperation(Context context, Uri uri, SQLiteDatabase db, ContentValues values)
+        public ContentValues handleOperation(Context context, Uri uri, SQLiteDatabase db, Provider provider, ContentValues values)
         {
-            TimeZone localTimeZone = TimeZone.getDefault();
             DateTime lastAlarm = getLastAlarmTimestamp(context);
             DateTime now = DateTime.nowAndHere();
 
@@ -198,69 +265,22 @@ public enum ContentOperation
                 saveLastAlarmTime(context, now);
             }
 
-            String lastAlarmString = Long.toString(lastAlarm.getInstance());
-
-            DateTime nextAlarm = null;
-
-            // find the next task that starts
-            Cursor nextInstanceStartCursor = db.query(TaskDatabaseHelper.Tables.INSTANCE_VIEW, null, TaskContract.Instances.INSTANCE_START_SORTING + ">? and "
-                            + Instances.IS_CLOSED + " = 0 and " + Tasks._DELETED + "=0", new String[] { lastAlarmString }, null, null,
-                    TaskContract.Instances.INSTANCE_START_SORTING, "1");
-
-            try
-            {
-                if (nextInstanceStartCursor.moveToNext())
-                {
-                    TaskAdapter task = new CursorContentValuesTaskAdapter(TaskAdapter.INSTANCE_TASK_ID.getFrom(nextInstanceStartCursor),
-                            nextInstanceStartCursor, null);
-                    nextAlarm = task.valueOf(TaskAdapter.INSTANCE_START);
-                    if (!nextAlarm.isFloating())
-                    {
-                        nextAlarm = nextAlarm.shiftTimeZone(localTimeZone);
-                    }
-                }
-            }
-            finally
-            {
-                nextInstanceStartCursor.close();
-            }
-
-            // find the next task that's due
-            Cursor nextInstanceDueCursor = db.query(TaskDatabaseHelper.Tables.INSTANCE_VIEW, null, TaskContract.Instances.INSTANCE_DUE_SORTING + ">? and "
-                            + Instances.IS_CLOSED + " = 0 and " + Tasks._DELETED + "=0", new String[] { lastAlarmString }, null, null,
-                    TaskContract.Instances.INSTANCE_DUE_SORTING, "1");
-
-            try
+            // find the next task that starts or becomes due and the next reminder
+            Long nextTrigger = NextTriggers.next(db, lastAlarm.getTimestamp());
+            Long nextReminder = Reminders.next(db, lastAlarm.getTimestamp());
+            if (nextTrigger == null || nextReminder != null && nextReminder < nextTrigger)
             {
-                if (nextInstanceDueCursor.moveToNext())
-                {
-                    TaskAdapter task = new CursorContentValuesTaskAdapter(TaskAdapter.INSTANCE_TASK_ID.getFrom(nextInstanceDueCursor), nextInstanceDueCursor,
-                            null);
-                    DateTime nextDue = task.valueOf(TaskAdapter.INSTANCE_DUE);
-                    if (!nextDue.isFloating())
-                    {
-                        nextDue = nextDue.shiftTimeZone(localTimeZone);
-                    }
-
-                    if (nextAlarm == null || nextAlarm.getInstance() > nextDue.getInstance())
-                    {
-                        nextAlarm = nextDue;
-                    }
-                }
+                nextTrigger = nextReminder;
             }
-            finally
-            {
-                nextInstanceDueCursor.close();
-            }
-
-            if (nextAlarm != null)
+            if (nextTrigger != null)
             {
-                TaskProviderBroadcastReceiver.planNotificationUpdate(context, nextAlarm);
+                TaskProviderBroadcastReceiver.planNotificationUpdate(context, new DateTime(TimeZone.getDefault(), nextTrigger));
             }
             else
             {
                 saveLastAlarmTime(context, now);
             }
+            return null;
         }
 
 
@@ -282,11 +302,6 @@ public enum ContentOperation
 
     });
 
-    /**
-     * A lock object to serialize the execution of all incoming {@link ContentOperation}.
-     */
-    private final static Object mLock = new Object();
-
     /**
      * The base path of the Uri to trigger content operations.
      */
@@ -297,12 +312,39 @@ public enum ContentOperation
      */
     private final OperationHandler mHandler;
 
+    /**
+     * The priority of this {@link ContentOperation}, pending operations with a higher priority run first.
+     */
+    private final int mPriority;
+
+    /**
+     * The number of instances to update in a single chunk of {@link #UPDATE_TIMEZONE}.
+     */
+    private static final int TIMEZONE_CHUNK_SIZE = 500;
+
+    /**
+     * The keys of the chunk values of {@link #UPDATE_TIMEZONE}, the id of the last instance of the previous chunk, the total number of instances to update,
+     * the number of instances updated so far and the time the update started.
+     */
+    private static final String KEY_CHUNK_AFTER = "after";
+    private static final String KEY_CHUNK_TOTAL = "total";
+    private static final String KEY_CHUNK_DONE = "done";
+    private static final String KEY_CHUNK_START = "start";
+
+    /**
+     * The maximum number of reminders to send in a single broadcast.
+     */
+    private static final int REMINDER_BATCH_SIZE = 100;
+
     private static final String PREFS_NAME = "org.dmfs.provider.tasks";
     private static final String PREFS_KEY_LAST_ALARM_TIMESTAMP = "org.dmfs.provider.tasks.prefs.LAST_ALARM_TIMESTAMP";
+    private static final String PREFS_KEY_TIMEZONE_UPDATE_ZONE = "org.dmfs.provider.tasks.prefs.TIMEZONE_UPDATE_ZONE";
+    private static final String PREFS_KEY_TIMEZONE_UPDATE_AFTER = "org.dmfs.provider.tasks.prefs.TIMEZONE_UPDATE_AFTER";
 
 
-    ContentOperation(OperationHandler handler)
+    ContentOperation(int priority, OperationHandler handler)
     {
+        mPriority = priority;
         mHandler = handler;
     }
 
@@ -322,32 +364,45 @@ public enum ContentOperation
 
 
     /**
-     * Run the operation on the given handler.
+     * Run a chunk of this operation. Operations are not thread-safe, they are serialized by {@link ContentOperationQueue}.
      *
      * @param context
      *         A {@link Context}.
-     * @param handler
-     *         A {@link Handler} to run the operation on.
      * @param uri
      *         The {@link Uri} that triggered this operation.
      * @param db
      *         The database.
+     * @param provider
+     *         The {@link Provider} that runs this operation.
      * @param values
-     *         The {@link ContentValues} that were supplied.
+     *         The {@link ContentValues} that were supplied or the values returned by the previous chunk.
+     *
+     * @return The values of the next chunk or <code>null</code> if the operation is complete.
      */
-    void run(final Context context, Handler handler, final Uri uri, final SQLiteDatabase db, final ContentValues values)
+    ContentValues handle(Context context, Uri uri, SQLiteDatabase db, Provider provider, ContentValues values)
     {
-        handler.post(new Runnable()
-        {
-            @Override
-            public void run()
-            {
-                synchronized (mLock)
-                {
-                    mHandler.handleOperation(context, uri, db, values);
-                }
-            }
-        });
+        return mHandler.handleOperation(context, uri, db, provider, values);
+    }
+
+
+    /**
+     * Returns the priority of this operation. If multiple operations are pending, the one with the highest priority runs first.
+     */
+    int priority()
+    {
+        return mPriority;
+    }
+
+
+    /**
+     * Returns whether an {@link #UPDATE_TIMEZONE} operation has been interrupted before it was complete.
+     *
+     * @param context
+     *         A {@link Context}.
+     */
+    static boolean isTimeZoneUpdatePending(Context context)
+    {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).contains(PREFS_KEY_TIMEZONE_UPDATE_ZONE);
     }
 
 
@@ -413,7 +468,30 @@ public enum ContentOperation
 
     public interface OperationHandler
     {
-        void handleOperation(Context context, Uri uri, SQLiteDatabase db, ContentValues values);
+        /**
+         * Handles the operation.
+         *
+         * @return The values to run the next chunk of the operation with or <code>null</code> if the operation is complete.
+         */
+        ContentValues handleOperation(Context context, Uri uri, SQLiteDatabase db, Provider provider, ContentValues values);
+    }
+
+
+    /**
+     * The parts of the provider an operation needs to write to the database like any other caller of the provider.
+     */
+    public interface Provider
+    {
+        /**
+         * Returns the {@link SQLiteTransactionListener} to begin transactions on the given database with.
+         */
+        SQLiteTransactionListener transactionListener(SQLiteDatabase db);
+
+
+        /**
+         * Notifies the observers of the given {@link Uri} about a committed change.
+         */
+        void notifyChange(Uri uri);
     }
 
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+
+/**
+ * Runs {@link ContentOperation}s on a {@link Handler}.
+ * <p>
+ * Each {@link ContentOperation} is pending at most once. Firing an operation which is pending already doesn't add another run, it just replaces the values of
+ * the pending run. That way a burst of writes results in a single {@link ContentOperation#UPDATE_NOTIFICATION_ALARM} run. Pending operations run one at a
+ * time, ordered by their {@link ContentOperation#priority()}, and each run is posted separately, so other messages of the {@link Handler} are not blocked.
+ * <p>
+ * An operation can run in chunks by returning the values of its next chunk. The next chunk is queued like a new run, so operations with a higher priority
+ * run in between. If the operation is fired again before its next chunk runs, the new run replaces the remaining chunks.
+ */
+final class ContentOperationQueue
+{
+    /**
+     * Runs a chunk of a {@link ContentOperation}.
+     */
+    interface Runner
+    {
+        /**
+         * Runs the given operation.
+         *
+         * @return The values of the next chunk or <code>null</code> if the operation is complete.
+         */
+        ContentValues run(ContentOperation operation, Uri uri, ContentValues values);
+    }
+
+
+    private final Handler mHandler;
+    private final Runner mRunner;
+
+    private final Map<ContentOperation, Pending> mPending = new EnumMap<>(ContentOperation.class);
+    private final Map<ContentOperation, Integer> mCoalesced = new EnumMap<>(ContentOperation.class);
+    private boolean mRunPosted;
+
+    private final Runnable mRunNext = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            runNext();
+        }
+    };
+
+
+    /**
+     * @param handler
+     *         The {@link Handler} to run the operations on.
+     * @param runner
+     *         The {@link Runner} that executes the operations.
+     */
+    ContentOperationQueue(Handler handler, Runner runner)
+    {
+        mHandler = handler;
+        mRunner = runner;
+    }
+
+
+    /**
+     * Schedules a run of the given {@link ContentOperation}.
+     *
+     * @param operation
+     *         The {@link ContentOperation} to run.
+     * @param uri
+     *         The {@link Uri} that triggered the operation.
+     * @param values
+     *         The values of the operation.
+     */
+    synchronized void schedule(ContentOperation operation, Uri uri, ContentValues values)
+    {
+        if (mPending.put(operation, new Pending(uri, values)) != null)
+        {
+            Integer coalesced = mCoalesced.get(operation);
+            mCoalesced.put(operation, coalesced == null ? 1 : coalesced + 1);
+        }
+        postRun();
+    }
+
+
+    /**
+     * Returns the number of runs of the given {@link ContentOperation} that have been coalesced with a pending run so far.
+     */
+    synchronized int coalesced(ContentOperation operation)
+    {
+        Integer coalesced = mCoalesced.get(operation);
+        return coalesced == null ? 0 : coalesced;
+    }
+
+
+    private void runNext()
+    {
+        ContentOperation operation = null;
+        Pending pending;
+        synchronized (this)
+        {
+            mRunPosted = false;
+            for (ContentOperation candidate : mPending.keySet())
+            {
+                if (operation == null || candidate.priority() > operation.priority())
+                {
+                    operation = candidate;
+                }
+            }
+            if (operation == null)
+            {
+                return;
+            }
+            pending = mPending.remove(operation);
+            // post the next run right away, in case the operation fails
+            postRun();
+        }
+
+        ContentValues next = mRunner.run(operation, pending.mUri, pending.mValues);
+
+        if (next != null)
+        {
+            synchronized (this)
+            {
+                if (mPending.containsKey(operation))
+                {
+                    // the operation has been fired again in the meantime, that run starts over
+                    Log.v("ContentOperationQueue", "dropping remaining chunks of " + operation);
+                }
+                else
+                {
+                    mPending.put(operation, new Pending(pending.mUri, next));
+                    postRun();
+                }
+            }
+        }
+    }
+
+
+    private void postRun()
+    {
+        if (!mRunPosted && !mPending.isEmpty())
+        {
+            mRunPosted = true;
+            mHandler.post(mRunNext);
+        }
+    }
+
+
+    private final static class Pending
+    {
+        private final Uri mUri;
+        private final ContentValues mValues;
+
+
+        private Pending(Uri uri, ContentValues values)
+        {
+            mUri = uri;
+            mValues = values;
+        }
+    }
+}
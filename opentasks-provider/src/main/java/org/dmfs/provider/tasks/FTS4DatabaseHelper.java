@@ -0,0 +1,298 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+
+/**
+ * An alternative search engine which is based on an SQLite FTS4 virtual table rather than the n-gram tables of {@link FTSDatabaseHelper}.
+ * <p>
+ * The virtual table is maintained by triggers on the tasks table, it is created and populated by {@link #migrate(SQLiteDatabase, int)} which can be called
+ * while the provider is in use. Until the migration is complete, searches should be performed by {@link FTSDatabaseHelper}.
+ * <p>
+ * Each word of the search string is used as a prefix query. The score of a task is the fraction of the words it matches, which is roughly what the score of
+ * {@link FTSDatabaseHelper} means. Note, unlike the n-gram search, this doesn't find matches in the middle of a word (searching "port" finds "portable"
+ * but not "passport") and it doesn't tolerate typos. The result has the same columns as the n-gram search, the <code>text</code> column contains one of
+ * the words that matched.
+ */
+public final class FTS4DatabaseHelper
+{
+    private final static String TAG = "FTS4DatabaseHelper";
+
+    public static final String FTS4_TASK_TABLE = "FTS4_Task";
+
+    /**
+     * The maximum number of words of a search string we take into account.
+     */
+    private final static int MAX_SEARCH_TERMS = 16;
+
+    private final static String SQL_CREATE_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS " + FTS4_TASK_TABLE + " USING fts4(" + Tasks.TITLE + ", "
+            + Tasks.DESCRIPTION + ", " + Tasks.LOCATION + ", tokenize=%s)";
+
+    private final static String SQL_CREATE_INSERT_TRIGGER = "CREATE TRIGGER IF NOT EXISTS fts4_task_insert_trigger AFTER INSERT ON " + Tables.TASKS
+            + " BEGIN INSERT INTO " + FTS4_TASK_TABLE + " (docid, " + Tasks.TITLE + ", " + Tasks.DESCRIPTION + ", " + Tasks.LOCATION + ") VALUES (new."
+            + Tasks._ID + ", new." + Tasks.TITLE + ", new." + Tasks.DESCRIPTION + ", new." + Tasks.LOCATION + "); END";
+
+    private final static String SQL_CREATE_UPDATE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS fts4_task_update_trigger AFTER UPDATE OF " + Tasks.TITLE + ", "
+            + Tasks.DESCRIPTION + ", " + Tasks.LOCATION + " ON " + Tables.TASKS + " BEGIN DELETE FROM " + FTS4_TASK_TABLE + " WHERE docid = old." + Tasks._ID
+            + "; INSERT INTO " + FTS4_TASK_TABLE + " (docid, " + Tasks.TITLE + ", " + Tasks.DESCRIPTION + ", " + Tasks.LOCATION + ") VALUES (new." + Tasks._ID
+            + ", new." + Tasks.TITLE + ", new." + Tasks.DESCRIPTION + ", new." + Tasks.LOCATION + "); END";
+
+    private final static String SQL_CREATE_DELETE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS fts4_task_delete_trigger AFTER DELETE ON " + Tables.TASKS
+            + " BEGIN DELETE FROM " + FTS4_TASK_TABLE + " WHERE docid = old." + Tasks._ID + "; END";
+
+    private final static String SQL_MIGRATE_TASKS = "INSERT INTO " + FTS4_TASK_TABLE + " (docid, " + Tasks.TITLE + ", " + Tasks.DESCRIPTION + ", "
+            + Tasks.LOCATION + ") SELECT " + Tasks._ID + ", " + Tasks.TITLE + ", " + Tasks.DESCRIPTION + ", " + Tasks.LOCATION + " FROM " + Tables.TASKS
+            + " WHERE " + Tasks._ID + " NOT IN (SELECT docid FROM " + FTS4_TASK_TABLE + ") LIMIT %d";
+
+    /**
+     * The column containing the matching word, this is the same column that {@link FTSDatabaseHelper} returns with the matching n-gram.
+     */
+    private final static String TEXT = "text";
+
+    private final static String SQL_MATCH_TERM = "SELECT docid, %s as " + TEXT + " FROM " + FTS4_TASK_TABLE + " WHERE " + FTS4_TASK_TABLE + " MATCH ?";
+
+    private final static String SQL_RAW_QUERY_SEARCH_TASK = "SELECT " + Tables.INSTANCE_VIEW + ".*, " + TEXT + ", (1.0 * matches / %d) as " + Tasks.SCORE
+            + " from (SELECT docid, min(" + TEXT + ") as " + TEXT + ", count(*) as matches from (%s) group by docid) join " + Tables.INSTANCE_VIEW + " on (" + Tables.INSTANCE_VIEW + "."
+            + TaskContract.Instances.TASK_ID + " = docid) where %s group by " + TaskContract.Instances.TASK_ID + " having %s and "
+            + Tasks.VISIBLE + " = 1 order by %s%s;";
+
+
+    private FTS4DatabaseHelper()
+    {
+        // no instances
+    }
+
+
+    /**
+     * Creates the FTS4 table and triggers, if necessary, and indexes up to <code>limit</code> tasks which have not been indexed yet. This should be called
+     * within a transaction.
+     *
+     * @param db
+     *         The writable {@link SQLiteDatabase}.
+     * @param limit
+     *         The maximum number of tasks to index.
+     *
+     * @return The number of tasks that have been indexed, if this is less than <code>limit</code> the migration is complete.
+     */
+    public static int migrate(SQLiteDatabase db, int limit)
+    {
+        if (!exists(db))
+        {
+            try
+            {
+                // unicode61 handles diacritics and non-ascii case folding, but it's not available on older SQLite versions
+                db.execSQL(String.format(Locale.ENGLISH, SQL_CREATE_TABLE, "unicode61"));
+            }
+            catch (SQLiteException e)
+            {
+                Log.i(TAG, "unicode61 tokenizer not available, falling back to simple tokenizer", e);
+                db.execSQL(String.format(Locale.ENGLISH, SQL_CREATE_TABLE, "simple"));
+            }
+            db.execSQL(SQL_CREATE_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_DELETE_TRIGGER);
+        }
+        try (SQLiteStatement statement = db.compileStatement(String.format(Locale.ENGLISH, SQL_MIGRATE_TASKS, limit)))
+        {
+            return statement.executeUpdateDelete();
+        }
+    }
+
+
+    /**
+     * Removes the FTS4 table and triggers, so they no longer need to be maintained.
+     *
+     * @param db
+     *         The writable {@link SQLiteDatabase}.
+     */
+    public static void drop(SQLiteDatabase db)
+    {
+        if (exists(db))
+        {
+            db.execSQL("DROP TRIGGER IF EXISTS fts4_task_insert_trigger");
+            db.execSQL("DROP TRIGGER IF EXISTS fts4_task_update_trigger");
+            db.execSQL("DROP TRIGGER IF EXISTS fts4_task_delete_trigger");
+            db.execSQL("DROP TABLE IF EXISTS " + FTS4_TASK_TABLE);
+        }
+    }
+
+
+    private static boolean exists(SQLiteDatabase db)
+    {
+        return DatabaseUtils.longForQuery(db, "SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name = ?", new String[] { FTS4_TASK_TABLE }) > 0;
+    }
+
+
+    /**
+     * Queries the task database to get a cursor with the search results. The result has the same columns as the result of {@link
+     * FTSDatabaseHelper#getTaskSearchCursor(SQLiteDatabase, String, String[], String, String[], String)}.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param searchString
+     *         The search query string.
+     * @param projection
+     *         The database projection for the query.
+     * @param selection
+     *         The selection for the query.
+     * @param selectionArgs
+     *         The arguments for the query.
+     * @param sortOrder
+     *         The sorting order of the query.
+     *
+     * @return A cursor of the task database with the search result.
+     */
+    public static Cursor getTaskSearchCursor(SQLiteDatabase db, String searchString, String[] projection, String selection, String[] selectionArgs,
+                                             String sortOrder)
+    {
+        return getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder, SearchResultWindow.DEFAULT);
+    }
+
+
+    /**
+     * Queries the task database to get a cursor with the search results within the given {@link SearchResultWindow}.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param searchString
+     *         The search query string.
+     * @param projection
+     *         The database projection for the query.
+     * @param selection
+     *         The selection for the query.
+     * @param selectionArgs
+     *         The arguments for the query.
+     * @param sortOrder
+     *         The sorting order of the query.
+     * @param window
+     *         The {@link SearchResultWindow} of the results to return.
+     *
+     * @return A cursor of the task database with the search result.
+     */
+    public static Cursor getTaskSearchCursor(SQLiteDatabase db, String searchString, String[] projection, String selection, String[] selectionArgs,
+                                             String sortOrder, SearchResultWindow window)
+    {
+        return getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder, window, null);
+    }
+
+
+    /**
+     * Queries the task database to get a cursor with the search results within the given {@link SearchResultWindow}.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param searchString
+     *         The search query string.
+     * @param projection
+     *         The database projection for the query.
+     * @param selection
+     *         The selection for the query.
+     * @param selectionArgs
+     *         The arguments for the query.
+     * @param sortOrder
+     *         The sorting order of the query.
+     * @param window
+     *         The {@link SearchResultWindow} of the results to return.
+     * @param cancellationSignal
+     *         A {@link CancellationSignal} to cancel the query or <code>null</code>.
+     *
+     * @return A cursor of the task database with the search result.
+     */
+    public static Cursor getTaskSearchCursor(SQLiteDatabase db, String searchString, String[] projection, String selection, String[] selectionArgs,
+                                             String sortOrder, SearchResultWindow window, CancellationSignal cancellationSignal)
+    {
+        Set<String> words = searchWords(searchString);
+
+        StringBuilder matchQuery = new StringBuilder(256);
+        for (String word : words)
+        {
+            if (matchQuery.length() > 0)
+            {
+                matchQuery.append(" UNION ALL ");
+            }
+            // words contain only letters and digits, but escape them anyway
+            matchQuery.append(String.format(Locale.ENGLISH, SQL_MATCH_TERM, DatabaseUtils.sqlEscapeString(word)));
+        }
+        if (words.isEmpty())
+        {
+            // nothing to search for, return an empty result with the usual columns
+            matchQuery.append("SELECT 0 as docid, NULL as " + TEXT + " WHERE 0");
+        }
+
+        StringBuilder selectionBuilder = new StringBuilder(256);
+        if (!TextUtils.isEmpty(selection))
+        {
+            selectionBuilder.append("(").append(selection).append(") AND ");
+        }
+        selectionBuilder.append(Tasks._DELETED).append(" = 0");
+
+        String[] queryArgs = new String[words.size() + (selectionArgs == null ? 0 : selectionArgs.length)];
+        int i = 0;
+        for (String word : words)
+        {
+            // quote the prefix query, so the word is not interpreted as an operator
+            queryArgs[i++] = "\"" + word + "*\"";
+        }
+        if (selectionArgs != null)
+        {
+            System.arraycopy(selectionArgs, 0, queryArgs, i, selectionArgs.length);
+        }
+
+        return db.rawQueryWithFactory(null,
+                String.format(Locale.ENGLISH, SQL_RAW_QUERY_SEARCH_TASK, Math.max(1, words.size()), matchQuery.toString(), selectionBuilder.toString(),
+                        window.having(), window.orderBy(sortOrder), window.limit()),
+                queryArgs, null, cancellationSignal);
+    }
+
+
+    /**
+     * Splits the search string into words, each of them is used as a prefix query.
+     */
+    private static Set<String> searchWords(String searchString)
+    {
+        Set<String> words = new LinkedHashSet<>();
+        if (searchString == null)
+        {
+            return words;
+        }
+        for (String word : searchString.toLowerCase(Locale.getDefault()).split("[^\\p{L}\\p{N}]+"))
+        {
+            if (!word.isEmpty() && words.size() < MAX_SEARCH_TERMS)
+            {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -18,7 +18,11 @@ package org.dmfs.provider.tasks;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.CancellationSignal;
 import android.text.TextUtils;
 
 import org.dmfs.jems.iterable.decorators.Chunked;
@@ -34,6 +38,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 
@@ -51,8 +56,6 @@ public class FTSDatabaseHelper
      */
     private final static int NGRAM_SEARCH_CHUNK_SIZE = 500;
 
-    private final static float SEARCH_RESULTS_MIN_SCORE = 0.33f;
-
     /**
      * A Generator for 3-grams.
      */
@@ -63,12 +66,6 @@ public class FTSDatabaseHelper
      */
     private final static NGramGenerator TETRAGRAM_GENERATOR = new NGramGenerator(4, 3 /* shorter words are fully covered by trigrams */).setAddSpaceInFront(
             true);
-    private static final String PROPERTY_NGRAM_SELECTION = String.format("%s = ? AND %s = ? AND %s = ?", FTSContentColumns.TASK_ID, FTSContentColumns.TYPE,
-            FTSContentColumns.PROPERTY_ID);
-    private static final String NON_PROPERTY_NGRAM_SELECTION = String.format("%s = ? AND %s = ? AND %s is null", FTSContentColumns.TASK_ID,
-            FTSContentColumns.TYPE,
-            FTSContentColumns.PROPERTY_ID);
-    private static final String[] NGRAM_SYNC_COLUMNS = { "_rowid_", FTSContentColumns.NGRAM_ID };
 
 
     /**
@@ -121,8 +118,26 @@ public class FTSDatabaseHelper
     }
 
 
+    /**
+     * The columns of the table of tasks waiting to be indexed.
+     */
+    public interface FTSPendingColumns
+    {
+        /**
+         * The row id of the task to index.
+         */
+        String TASK_ID = "fts_pending_task_id";
+    }
+
+
     public static final String FTS_CONTENT_TABLE = "FTS_Content";
+    public static final String FTS_PENDING_TABLE = "FTS_Pending";
     public static final String FTS_NGRAM_TABLE = "FTS_Ngram";
+
+    /**
+     * Indicates whether the current thread has added any n-grams to the search index since the last call to {@link #searchIndexChanged()}.
+     */
+    private final static ThreadLocal<Boolean> INDEX_CHANGED = new ThreadLocal<>();
     public static final String FTS_TASK_VIEW = "FTS_Task_View";
     public static final String FTS_TASK_PROPERTY_VIEW = "FTS_Task_Property_View";
 
@@ -141,12 +156,49 @@ public class FTSDatabaseHelper
     private final static String SQL_CREATE_NGRAM_TABLE = "CREATE TABLE " + FTS_NGRAM_TABLE + "( " + NGramColumns.NGRAM_ID
             + " Integer PRIMARY KEY AUTOINCREMENT, " + NGramColumns.TEXT + " Text)";
 
-    // FIXME: at present the minimum score is hard coded can we leave that decision to the caller?
+    /**
+     * SQL command to create the table of tasks waiting to be indexed.
+     */
+    private final static String SQL_CREATE_PENDING_TABLE = "CREATE TABLE IF NOT EXISTS " + FTS_PENDING_TABLE + "( " + FTSPendingColumns.TASK_ID
+            + " Integer PRIMARY KEY ON CONFLICT IGNORE)";
+
+    private final static String SQL_RAW_QUERY_PENDING_TASKS = "SELECT " + FTS_PENDING_TABLE + "." + FTSPendingColumns.TASK_ID + ", " + Tables.TASKS + "."
+            + Tasks._ID + ", " + Tasks.TITLE + ", " + Tasks.DESCRIPTION + ", " + Tasks.LOCATION + " from " + FTS_PENDING_TABLE + " left join " + Tables.TASKS
+            + " on (" + FTS_PENDING_TABLE + "." + FTSPendingColumns.TASK_ID + " = " + Tables.TASKS + "." + Tasks._ID + ") limit %d;";
+
+    /**
+     * A temporary table to hold the ngram ids of the entry that's currently being updated.
+     */
+    private final static String FTS_NEW_NGRAM_TABLE = "temp.FTS_New_Ngram";
+
+    private final static String SQL_CREATE_NEW_NGRAM_TABLE = "CREATE TEMP TABLE IF NOT EXISTS FTS_New_Ngram ( " + NGramColumns.NGRAM_ID
+            + " Integer PRIMARY KEY ON CONFLICT IGNORE)";
+
+    private final static String SQL_CLEAR_NEW_NGRAMS = "DELETE FROM " + FTS_NEW_NGRAM_TABLE;
+
+    private final static String SQL_INSERT_NEW_NGRAM = "INSERT INTO " + FTS_NEW_NGRAM_TABLE + " (" + NGramColumns.NGRAM_ID + ") VALUES (?)";
+
+    /**
+     * The selection of the entries of a specific task, type and property. Note, this uses "IS" to compare the property id, which also matches if the property
+     * id argument is <code>null</code>.
+     */
+    private final static String ENTRY_SELECTION = FTSContentColumns.TASK_ID + " = ? AND " + FTSContentColumns.TYPE + " = ? AND "
+            + FTSContentColumns.PROPERTY_ID + " IS ?";
+
+    private final static String SQL_DELETE_STALE_NGRAMS = "DELETE FROM " + FTS_CONTENT_TABLE + " WHERE " + ENTRY_SELECTION + " AND "
+            + FTSContentColumns.NGRAM_ID + " NOT IN (SELECT " + NGramColumns.NGRAM_ID + " FROM " + FTS_NEW_NGRAM_TABLE + ")";
+
+    private final static String SQL_INSERT_MISSING_NGRAMS = "INSERT OR IGNORE INTO " + FTS_CONTENT_TABLE + " (" + FTSContentColumns.TASK_ID + ", "
+            + FTSContentColumns.TYPE + ", " + FTSContentColumns.PROPERTY_ID + ", " + FTSContentColumns.NGRAM_ID + ") SELECT ?1, ?2, ?3, " + NGramColumns.NGRAM_ID
+            + " FROM " + FTS_NEW_NGRAM_TABLE + " WHERE " + NGramColumns.NGRAM_ID + " NOT IN (SELECT " + FTSContentColumns.NGRAM_ID + " FROM "
+            + FTS_CONTENT_TABLE + " WHERE " + FTSContentColumns.TASK_ID + " = ?1 AND " + FTSContentColumns.TYPE + " = ?2 AND " + FTSContentColumns.PROPERTY_ID
+            + " IS ?3)";
+
     private final static String SQL_RAW_QUERY_SEARCH_TASK = "SELECT %s " + ", (1.0*count(DISTINCT " + NGramColumns.NGRAM_ID + ")/?) as " + TaskContract.Tasks.SCORE + " from "
             + FTS_NGRAM_TABLE + " join " + FTS_CONTENT_TABLE + " on (" + FTS_NGRAM_TABLE + "." + NGramColumns.NGRAM_ID + "=" + FTS_CONTENT_TABLE + "."
             + FTSContentColumns.NGRAM_ID + ") join " + Tables.INSTANCE_VIEW + " on (" + Tables.INSTANCE_VIEW + "." + TaskContract.Instances.TASK_ID + " = " + FTS_CONTENT_TABLE + "."
-            + FTSContentColumns.TASK_ID + ") where %s group by " + TaskContract.Instances.TASK_ID + " having " + TaskContract.Tasks.SCORE + " >= " + SEARCH_RESULTS_MIN_SCORE
-            + " and " + Tasks.VISIBLE + " = 1 order by %s;";
+            + FTSContentColumns.TASK_ID + ") where %s group by " + TaskContract.Instances.TASK_ID + " having %s"
+            + " and " + Tasks.VISIBLE + " = 1 order by %s%s;";
 
     private final static String SQL_RAW_QUERY_SEARCH_TASK_DEFAULT_PROJECTION = Tables.INSTANCE_VIEW + ".* ," + FTS_NGRAM_TABLE + "." + NGramColumns.TEXT;
 
@@ -207,6 +259,10 @@ public class FTSDatabaseHelper
             db.execSQL(TaskDatabaseHelper.createIndexString(FTS_CONTENT_TABLE, true, FTSContentColumns.TYPE, FTSContentColumns.TASK_ID,
                     FTSContentColumns.PROPERTY_ID));
         }
+        if (oldVersion < 23)
+        {
+            db.execSQL(SQL_CREATE_PENDING_TABLE);
+        }
     }
 
 
@@ -220,6 +276,7 @@ public class FTSDatabaseHelper
     {
         db.execSQL(SQL_CREATE_SEARCH_CONTENT_TABLE);
         db.execSQL(SQL_CREATE_NGRAM_TABLE);
+        db.execSQL(SQL_CREATE_PENDING_TABLE);
         db.execSQL(SQL_CREATE_SEARCH_TASK_DELETE_TRIGGER);
         db.execSQL(SQL_CREATE_SEARCH_TASK_DELETE_PROPERTY_TRIGGER);
 
@@ -299,24 +356,110 @@ public class FTSDatabaseHelper
      */
     public static void updateTaskFTSEntries(SQLiteDatabase db, TaskAdapter task)
     {
-        // title
-        if (task.isUpdated(TaskAdapter.TITLE))
-        {
-            updateEntry(db, task.id(), -1, SearchableTypes.TITLE, task.valueOf(TaskAdapter.TITLE));
-        }
+        updateTaskFTSEntries(db, Collections.singletonList(task));
+    }
 
-        // location
-        if (task.isUpdated(TaskAdapter.LOCATION))
+
+    /**
+     * Updates the existing searchables entries for all the given tasks. The statements are compiled only once for all tasks, so this is much faster than
+     * updating each task by itself.
+     *
+     * @param db
+     *         The writable {@link SQLiteDatabase}.
+     * @param tasks
+     *         The {@link TaskAdapter}s containing the new values.
+     */
+    public static void updateTaskFTSEntries(SQLiteDatabase db, Iterable<TaskAdapter> tasks)
+    {
+        try (NgramStatements statements = new NgramStatements(db))
         {
-            updateEntry(db, task.id(), -1, SearchableTypes.LOCATION, task.valueOf(TaskAdapter.LOCATION));
+            for (TaskAdapter task : tasks)
+            {
+                // title
+                if (task.isUpdated(TaskAdapter.TITLE))
+                {
+                    updateEntry(db, statements, task.id(), -1, SearchableTypes.TITLE, task.valueOf(TaskAdapter.TITLE));
+                }
+
+                // location
+                if (task.isUpdated(TaskAdapter.LOCATION))
+                {
+                    updateEntry(db, statements, task.id(), -1, SearchableTypes.LOCATION, task.valueOf(TaskAdapter.LOCATION));
+                }
+
+                // description
+                if (task.isUpdated(TaskAdapter.DESCRIPTION))
+                {
+                    updateEntry(db, statements, task.id(), -1, SearchableTypes.DESCRIPTION, task.valueOf(TaskAdapter.DESCRIPTION));
+                }
+            }
         }
+    }
 
-        // description
-        if (task.isUpdated(TaskAdapter.DESCRIPTION))
+
+    /**
+     * Schedules an update of the searchable entries of the given task. The update is performed by the next call to {@link
+     * #updatePendingTaskFTSEntries(SQLiteDatabase, int)}.
+     *
+     * @param db
+     *         The writable {@link SQLiteDatabase}.
+     * @param taskId
+     *         The row id of the task.
+     */
+    public static void scheduleTaskFTSUpdate(SQLiteDatabase db, long taskId)
+    {
+        ContentValues values = new ContentValues(1);
+        values.put(FTSPendingColumns.TASK_ID, taskId);
+        db.insert(FTS_PENDING_TABLE, null, values);
+    }
+
+
+    /**
+     * Returns whether there are any tasks waiting to be indexed.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     *
+     * @return <code>true</code> if there are pending updates, <code>false</code> otherwise.
+     */
+    public static boolean hasPendingTaskFTSUpdates(SQLiteDatabase db)
+    {
+        return DatabaseUtils.queryNumEntries(db, FTS_PENDING_TABLE) > 0;
+    }
+
+
+    /**
+     * Updates the searchable entries of up to <code>limit</code> of the tasks scheduled with {@link #scheduleTaskFTSUpdate(SQLiteDatabase, long)}. This
+     * should be called within a transaction.
+     *
+     * @param db
+     *         The writable {@link SQLiteDatabase}.
+     * @param limit
+     *         The maximum number of tasks to update.
+     *
+     * @return The number of tasks that have been processed, if this is less than <code>limit</code> there are no more pending tasks.
+     */
+    public static int updatePendingTaskFTSEntries(SQLiteDatabase db, int limit)
+    {
+        int count = 0;
+        try (Cursor c = db.rawQuery(String.format(Locale.ENGLISH, SQL_RAW_QUERY_PENDING_TASKS, limit), null);
+             NgramStatements statements = new NgramStatements(db))
         {
-            updateEntry(db, task.id(), -1, SearchableTypes.DESCRIPTION, task.valueOf(TaskAdapter.DESCRIPTION));
+            while (c.moveToNext())
+            {
+                long taskId = c.getLong(0);
+                // tasks which have been deleted in the meantime are skipped, the FTS entries have been removed by a trigger already
+                if (!c.isNull(1))
+                {
+                    updateEntry(db, statements, taskId, -1, SearchableTypes.TITLE, c.getString(2));
+                    updateEntry(db, statements, taskId, -1, SearchableTypes.DESCRIPTION, c.getString(3));
+                    updateEntry(db, statements, taskId, -1, SearchableTypes.LOCATION, c.getString(4));
+                }
+                db.delete(FTS_PENDING_TABLE, FTSPendingColumns.TASK_ID + " = " + taskId, null);
+                count += 1;
+            }
         }
-
+        return count;
     }
 
 
@@ -338,6 +481,38 @@ public class FTSDatabaseHelper
     }
 
 
+    /**
+     * Returns a {@link SQLiteTransactionListener} which needs to be passed to {@link SQLiteDatabase#beginTransactionWithListener(SQLiteTransactionListener)}
+     * in order to cache the ngram ids learned during write transactions.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase} the transaction is started on.
+     *
+     * @return An {@link SQLiteTransactionListener}.
+     */
+    public static SQLiteTransactionListener transactionListener(SQLiteDatabase db)
+    {
+        return NgramIdCache.of(db).transactionListener();
+    }
+
+
+    /**
+     * Returns whether the current thread has added any n-grams to the search index since the last call and resets that state. This is meant to be called
+     * after the transaction has ended, to find out whether cached search state (like {@link SearchSession}s) is still valid.
+     * <p>
+     * Note, removing n-grams from the search index doesn't count as a change. It can only lower the score of a task, so any cached candidates are still a
+     * superset of the actual results.
+     *
+     * @return <code>true</code> if the current thread has added n-grams to the search index.
+     */
+    public static boolean searchIndexChanged()
+    {
+        boolean changed = Boolean.TRUE.equals(INDEX_CHANGED.get());
+        INDEX_CHANGED.remove();
+        return changed;
+    }
+
+
     /**
      * Returns the IDs of each of the provided ngrams, creating them in th database if necessary.
      *
@@ -355,10 +530,59 @@ public class FTSDatabaseHelper
             return Collections.emptySet();
         }
 
-        Set<String> missingNgrams = new HashSet<>(ngrams);
+        NgramIdCache cache = NgramIdCache.of(db);
         Set<Long> ngramIds = new HashSet<>(ngrams.size() * 2);
+        Set<String> missingNgrams = knownNgramIds(db, cache, ngrams, ngramIds);
 
-        for (Iterable<String> chunk : new Chunked<>(NGRAM_SEARCH_CHUNK_SIZE, ngrams))
+        ContentValues values = new ContentValues(1);
+
+        // now insert the missing ngrams and store their ids
+        for (String ngram : missingNgrams)
+        {
+            values.put(NGramColumns.TEXT, ngram);
+            long id = db.insert(FTS_NGRAM_TABLE, null, values);
+            ngramIds.add(id);
+            cache.put(db, ngram, id);
+        }
+        return ngramIds;
+
+    }
+
+
+    /**
+     * Adds the IDs of the given ngrams that already exist to the given set of ids and returns the ngrams that don't exist in the database. The ids are taken
+     * from the {@link NgramIdCache} if possible, only the remaining ones are queried from the database.
+     *
+     * @param db
+     *         A {@link SQLiteDatabase}.
+     * @param cache
+     *         The {@link NgramIdCache} of the database.
+     * @param ngrams
+     *         The NGrams.
+     * @param ngramIds
+     *         The {@link Set} to add the ids to.
+     *
+     * @return The ngrams which don't exist in the database.
+     */
+    private static Set<String> knownNgramIds(SQLiteDatabase db, NgramIdCache cache, Set<String> ngrams, Set<Long> ngramIds)
+    {
+        Set<String> uncachedNgrams = new HashSet<>();
+        for (String ngram : ngrams)
+        {
+            Long id = cache.get(ngram);
+            if (id == null)
+            {
+                uncachedNgrams.add(ngram);
+            }
+            else
+            {
+                ngramIds.add(id);
+            }
+        }
+
+        Set<String> missingNgrams = new HashSet<>(uncachedNgrams);
+
+        for (Iterable<String> chunk : new Chunked<>(NGRAM_SEARCH_CHUNK_SIZE, uncachedNgrams))
         {
             // build selection and arguments for each chunk
             // we can't do this in a single query because the length of sql statement and number of arguments is limited.
@@ -391,24 +615,24 @@ public class FTSDatabaseHelper
                     missingNgrams.remove(c.getString(1));
                     // remember its id
                     ngramIds.add(c.getLong(0));
+                    cache.put(db, c.getString(1), c.getLong(0));
                 }
             }
         }
+        return missingNgrams;
+    }
 
-        ContentValues values = new ContentValues(1);
 
-        // now insert the missing ngrams and store their ids
-        for (String ngram : missingNgrams)
+    private static void updateEntry(SQLiteDatabase db, long taskId, long propertyId, int type, String searchableText)
+    {
+        try (NgramStatements statements = new NgramStatements(db))
         {
-            values.put(NGramColumns.TEXT, ngram);
-            ngramIds.add(db.insert(FTS_NGRAM_TABLE, null, values));
+            updateEntry(db, statements, taskId, propertyId, type, searchableText);
         }
-        return ngramIds;
-
     }
 
 
-    private static void updateEntry(SQLiteDatabase db, long taskId, long propertyId, int type, String searchableText)
+    private static void updateEntry(SQLiteDatabase db, NgramStatements statements, long taskId, long propertyId, int type, String searchableText)
     {
         // generate nGrams
         Set<String> propertyNgrams = TRIGRAM_GENERATOR.getNgrams(searchableText);
@@ -417,99 +641,91 @@ public class FTSDatabaseHelper
         // get an ID for each of the Ngrams.
         Set<Long> ngramIds = ngramIds(db, propertyNgrams);
 
-        // unlink unused ngrams from the task and get the missing ones we have to link to the tak
-        Set<Long> missing = syncNgrams(db, taskId, propertyId, type, ngramIds);
-
-        // insert ngram relations for all new ngrams
-        addNgrams(db, missing, taskId, propertyId, type);
+        // unlink unused ngrams from the task and link the missing ones
+        statements.sync(taskId, type == SearchableTypes.PROPERTY ? propertyId : null, type, ngramIds);
     }
 
 
     /**
-     * Inserts NGrams relations for a task entry.
-     *
-     * @param db
-     *         A writable {@link SQLiteDatabase}.
-     * @param ngramIds
-     *         The set of NGram ids.
-     * @param taskId
-     *         The row id of the task.
-     * @param propertyId
-     *         The row id of the property.
+     * The statements to synchronize the NGram relations of a task entry with a few set based statements.
+     * <p>
+     * The new ngram ids are written to a temporary table, then all relations which are not in that table are deleted and all relations which don't exist yet
+     * are inserted. The statements are compiled once, so they can be reused for any number of entries.
      */
-    private static void addNgrams(SQLiteDatabase db, Set<Long> ngramIds, long taskId, Long propertyId, int contentType)
+    private final static class NgramStatements implements AutoCloseable
     {
-        ContentValues values = new ContentValues(4);
-        for (Long ngramId : ngramIds)
+        private final SQLiteStatement mClearNew;
+        private final SQLiteStatement mInsertNew;
+        private final SQLiteStatement mDeleteStale;
+        private final SQLiteStatement mInsertMissing;
+
+
+        NgramStatements(SQLiteDatabase db)
         {
-            values.put(FTSContentColumns.TASK_ID, taskId);
-            values.put(FTSContentColumns.NGRAM_ID, ngramId);
-            values.put(FTSContentColumns.TYPE, contentType);
-            if (contentType == SearchableTypes.PROPERTY)
+            db.execSQL(SQL_CREATE_NEW_NGRAM_TABLE);
+            mClearNew = db.compileStatement(SQL_CLEAR_NEW_NGRAMS);
+            mInsertNew = db.compileStatement(SQL_INSERT_NEW_NGRAM);
+            mDeleteStale = db.compileStatement(SQL_DELETE_STALE_NGRAMS);
+            mInsertMissing = db.compileStatement(SQL_INSERT_MISSING_NGRAMS);
+        }
+
+
+        /**
+         * Synchronizes the NGram relations of a task entry.
+         *
+         * @param taskId
+         *         The task row id.
+         * @param propertyId
+         *         The property row id or <code>null</code> if <code>contentType</code> is not {@link SearchableTypes#PROPERTY}.
+         * @param contentType
+         *         The {@link SearchableTypes} type.
+         * @param ngramIds
+         *         The set of ngrams ids which should be linked to the task
+         */
+        void sync(long taskId, Long propertyId, int contentType, Set<Long> ngramIds)
+        {
+            mClearNew.executeUpdateDelete();
+
+            for (Long ngramId : ngramIds)
             {
-                values.put(FTSContentColumns.PROPERTY_ID, propertyId);
+                mInsertNew.bindLong(1, ngramId);
+                mInsertNew.executeInsert();
             }
-            else
+
+            bindEntry(mDeleteStale, taskId, propertyId, contentType);
+            mDeleteStale.executeUpdateDelete();
+
+            bindEntry(mInsertMissing, taskId, propertyId, contentType);
+            if (mInsertMissing.executeUpdateDelete() > 0)
             {
-                values.putNull(FTSContentColumns.PROPERTY_ID);
+                INDEX_CHANGED.set(true);
             }
-            db.insert(FTS_CONTENT_TABLE, null, values);
         }
 
+
+        @Override
+        public void close()
+        {
+            mClearNew.close();
+            mInsertNew.close();
+            mDeleteStale.close();
+            mInsertMissing.close();
+        }
     }
 
 
-    /**
-     * Synchronizes the NGram relations of a task
-     *
-     * @param db
-     *         The writable {@link SQLiteDatabase}.
-     * @param taskId
-     *         The task row id.
-     * @param propertyId
-     *         The property row id, ignored if <code>contentType</code> is not {@link SearchableTypes#PROPERTY}.
-     * @param contentType
-     *         The {@link SearchableTypes} type.
-     * @param ngramsIds
-     *         The set of ngrams ids which should be linked to the task
-     *
-     * @return The number of deleted relations.
-     */
-    private static Set<Long> syncNgrams(SQLiteDatabase db, long taskId, long propertyId, int contentType, Set<Long> ngramsIds)
+    private static void bindEntry(SQLiteStatement statement, long taskId, Long propertyId, int contentType)
     {
-        String selection;
-        String[] selectionArgs;
-        if (SearchableTypes.PROPERTY == contentType)
+        statement.bindLong(1, taskId);
+        statement.bindLong(2, contentType);
+        if (propertyId == null)
         {
-            selection = PROPERTY_NGRAM_SELECTION;
-            selectionArgs = new String[] { String.valueOf(taskId), String.valueOf(contentType), String.valueOf(propertyId) };
+            statement.bindNull(3);
         }
         else
         {
-            selection = NON_PROPERTY_NGRAM_SELECTION;
-            selectionArgs = new String[] { String.valueOf(taskId), String.valueOf(contentType) };
+            statement.bindLong(3, propertyId);
         }
-
-        // In order to sync the ngrams, we go over each existing ngram and delete ngram relations not in the set of new ngrams
-        // Then we return the set of ngrams we didn't find
-        Set<Long> missing = new HashSet<>(ngramsIds);
-        try (Cursor c = db.query(FTS_CONTENT_TABLE, NGRAM_SYNC_COLUMNS, selection, selectionArgs, null, null, null))
-        {
-            while (c.moveToNext())
-            {
-                Long ngramId = c.getLong(1);
-                if (!ngramsIds.contains(ngramId))
-                {
-                    db.delete(FTS_CONTENT_TABLE, "_rowid_ = ?", new String[] { c.getString(0) });
-                }
-                else
-                {
-                    // this ngram wasn't missing
-                    missing.remove(ngramId);
-                }
-            }
-        }
-        return missing;
     }
 
 
@@ -534,6 +750,65 @@ public class FTSDatabaseHelper
     public static Cursor getTaskSearchCursor(SQLiteDatabase db, String searchString, String[] projection, String selection, String[] selectionArgs,
                                              String sortOrder)
     {
+        return getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder, SearchResultWindow.DEFAULT);
+    }
+
+
+    /**
+     * Queries the task database to get a cursor with the search results within the given {@link SearchResultWindow}.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param searchString
+     *         The search query string.
+     * @param projection
+     *         The database projection for the query.
+     * @param selection
+     *         The selection for the query.
+     * @param selectionArgs
+     *         The arguments for the query.
+     * @param sortOrder
+     *         The sorting order of the query.
+     * @param window
+     *         The {@link SearchResultWindow} of the results to return.
+     *
+     * @return A cursor of the task database with the search result.
+     */
+    public static Cursor getTaskSearchCursor(SQLiteDatabase db, String searchString, String[] projection, String selection, String[] selectionArgs,
+                                             String sortOrder, SearchResultWindow window)
+    {
+        return getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder, window, null, null);
+    }
+
+
+    /**
+     * Queries the task database to get a cursor with the search results within the given {@link SearchResultWindow}, refining the previous search of the
+     * given {@link SearchSession}.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param searchString
+     *         The search query string.
+     * @param projection
+     *         The database projection for the query.
+     * @param selection
+     *         The selection for the query.
+     * @param selectionArgs
+     *         The arguments for the query.
+     * @param sortOrder
+     *         The sorting order of the query.
+     * @param window
+     *         The {@link SearchResultWindow} of the results to return.
+     * @param session
+     *         The {@link SearchSession} of an as-you-type search or <code>null</code>.
+     * @param cancellationSignal
+     *         A {@link CancellationSignal} to cancel the query or <code>null</code>.
+     *
+     * @return A cursor of the task database with the search result.
+     */
+    public static Cursor getTaskSearchCursor(SQLiteDatabase db, String searchString, String[] projection, String selection, String[] selectionArgs,
+                                             String sortOrder, SearchResultWindow window, SearchSession session, CancellationSignal cancellationSignal)
+    {
 
         StringBuilder selectionBuilder = new StringBuilder(1024);
 
@@ -556,35 +831,42 @@ public class FTSDatabaseHelper
         if (searchString != null && searchString.length() > 1)
         {
 
-            selectionBuilder.append(NGramColumns.TEXT);
+            // resolve the ngram ids up front, ngrams which don't exist can't match anyway, but they still count when calculating the score
+            Set<Long> ngramIds = new HashSet<>(ngrams.size() * 2);
+            knownNgramIds(db, NgramIdCache.of(db), ngrams, ngramIds);
+
+            selectionBuilder.append(FTS_CONTENT_TABLE);
+            selectionBuilder.append(".");
+            selectionBuilder.append(FTSContentColumns.NGRAM_ID);
             selectionBuilder.append(" in (");
+            // these are numbers, there is no need to use arguments
+            selectionBuilder.append(idList(ngramIds));
 
-            for (int i = 0, count = ngrams.size(); i < count; ++i)
+            if (session != null)
             {
-                if (i > 0)
+                Set<Long> candidates = session.candidates(db, ngramIds, ngrams.size(), window.minScore());
+                if (candidates != null)
                 {
-                    selectionBuilder.append(",");
+                    // restrict the search to the tasks which can reach the minimum score
+                    selectionBuilder.append(" ) AND ");
+                    selectionBuilder.append(FTS_CONTENT_TABLE);
+                    selectionBuilder.append(".");
+                    selectionBuilder.append(FTSContentColumns.TASK_ID);
+                    selectionBuilder.append(" in (");
+                    selectionBuilder.append(idList(candidates));
                 }
-                selectionBuilder.append("?");
-
             }
 
             // selection arguments
             if (selectionArgs != null && selectionArgs.length > 0)
             {
-                queryArgs = new String[selectionArgs.length + ngrams.size() + 1];
+                queryArgs = new String[selectionArgs.length + 1];
                 queryArgs[0] = String.valueOf(ngrams.size());
                 System.arraycopy(selectionArgs, 0, queryArgs, 1, selectionArgs.length);
-                String[] ngramArray = ngrams.toArray(new String[ngrams.size()]);
-                System.arraycopy(ngramArray, 0, queryArgs, selectionArgs.length + 1, ngramArray.length);
             }
             else
             {
-                String[] temp = ngrams.toArray(new String[ngrams.size()]);
-
-                queryArgs = new String[temp.length + 1];
-                queryArgs[0] = String.valueOf(ngrams.size());
-                System.arraycopy(temp, 0, queryArgs, 1, temp.length);
+                queryArgs = new String[] { String.valueOf(ngrams.size()) };
             }
             selectionBuilder.append(" ) ");
         }
@@ -614,17 +896,18 @@ public class FTSDatabaseHelper
         selectionBuilder.append(Tasks._DELETED);
         selectionBuilder.append(" = 0");
 
-        if (sortOrder == null)
-        {
-            sortOrder = Tasks.SCORE + " desc";
-        }
-        else
-        {
-            sortOrder = Tasks.SCORE + " desc, " + sortOrder;
-        }
         Cursor c = db.rawQueryWithFactory(null,
-                String.format(SQL_RAW_QUERY_SEARCH_TASK, SQL_RAW_QUERY_SEARCH_TASK_DEFAULT_PROJECTION, selectionBuilder.toString(), sortOrder), queryArgs,
-                null);
+                String.format(SQL_RAW_QUERY_SEARCH_TASK, SQL_RAW_QUERY_SEARCH_TASK_DEFAULT_PROJECTION, selectionBuilder.toString(), window.having(),
+                        window.orderBy(sortOrder), window.limit()), queryArgs, null, cancellationSignal);
         return c;
     }
+
+
+    /**
+     * Returns a comma separated list of the given ids to be used in an SQL <code>in</code> clause.
+     */
+    static String idList(Set<Long> ids)
+    {
+        return TextUtils.join(",", ids);
+    }
 }
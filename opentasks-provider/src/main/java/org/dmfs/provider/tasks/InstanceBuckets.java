@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+import org.dmfs.tasks.contract.TaskContract.Instances;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+
+/**
+ * Assigns instances to the {@link Instances#BUCKET}s given by the {@link Instances#BUCKETS_PARAMETER} of a query {@link Uri}.
+ * <p>
+ * The bucket is computed by SQLite, so a grouping by time ranges can load all its instances with a single query instead of one query per group.
+ */
+final class InstanceBuckets
+{
+    private final String mColumn;
+    private final long[] mBoundaries;
+    private final TimeZone mTimeZone;
+
+
+    /**
+     * Returns the {@link InstanceBuckets} requested by the given {@link Uri} or <code>null</code> if the {@link Uri} doesn't request any buckets.
+     *
+     * @throws IllegalArgumentException
+     *         if the parameters are invalid.
+     */
+    static InstanceBuckets of(Uri uri)
+    {
+        String buckets = uri.getQueryParameter(Instances.BUCKETS_PARAMETER);
+        if (buckets == null)
+        {
+            return null;
+        }
+
+        String column = uri.getQueryParameter(Instances.BUCKET_COLUMN_PARAMETER);
+        if (column == null)
+        {
+            column = Instances.INSTANCE_DUE;
+        }
+        else if (!Instances.INSTANCE_DUE.equals(column) && !Instances.INSTANCE_START.equals(column))
+        {
+            throw new IllegalArgumentException("Can't create buckets by " + column);
+        }
+
+        String[] values = buckets.isEmpty() ? new String[0] : TextUtils.split(buckets, ",");
+        long[] boundaries = new long[values.length];
+        try
+        {
+            for (int i = 0; i < values.length; ++i)
+            {
+                boundaries[i] = Long.parseLong(values[i].trim());
+                if (i > 0 && boundaries[i] <= boundaries[i - 1])
+                {
+                    throw new IllegalArgumentException("Bucket boundaries must be ascending " + buckets);
+                }
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Invalid bucket boundaries " + buckets, e);
+        }
+        return new InstanceBuckets(column, boundaries, TimeZone.getDefault());
+    }
+
+
+    InstanceBuckets(String column, long[] boundaries, TimeZone timeZone)
+    {
+        mColumn = column;
+        mBoundaries = boundaries.clone();
+        mTimeZone = timeZone;
+    }
+
+
+    /**
+     * Returns the given projection with the bucket expression. If the projection doesn't contain {@link Instances#BUCKET} the bucket is appended.
+     */
+    String[] projection(String[] projection)
+    {
+        if (projection == null)
+        {
+            return new String[] { "*", expression() };
+        }
+        String[] result = projection.clone();
+        boolean found = false;
+        for (int i = 0; i < result.length; ++i)
+        {
+            if (Instances.BUCKET.equals(result[i]))
+            {
+                result[i] = expression();
+                found = true;
+            }
+        }
+        if (!found)
+        {
+            result = Arrays.copyOf(result, result.length + 1);
+            result[result.length - 1] = expression();
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the given sort order, sorting by bucket first.
+     */
+    String sortOrder(String sortOrder)
+    {
+        return TextUtils.isEmpty(sortOrder) ? Instances.BUCKET : Instances.BUCKET + ", " + sortOrder;
+    }
+
+
+    private String expression()
+    {
+        StringBuilder result = new StringBuilder(64 + mBoundaries.length * 64);
+        result.append("(CASE WHEN ").append(mColumn).append(" IS NULL THEN ").append(Instances.BUCKET_NONE);
+        result.append(" WHEN ").append(Instances.IS_ALLDAY).append("=1 THEN ");
+        // all-day values are stored as UTC midnight, so we compare them to the boundaries in local time
+        appendBuckets(result, true);
+        result.append(" ELSE ");
+        appendBuckets(result, false);
+        result.append(" END) AS ").append(Instances.BUCKET);
+        return result.toString();
+    }
+
+
+    private void appendBuckets(StringBuilder result, boolean allDay)
+    {
+        if (mBoundaries.length == 0)
+        {
+            result.append(0);
+            return;
+        }
+        result.append("(CASE");
+        for (int i = 0; i < mBoundaries.length; ++i)
+        {
+            long boundary = mBoundaries[i];
+            result.append(" WHEN ").append(mColumn).append(" < ").append(allDay ? boundary + mTimeZone.getOffset(boundary) : boundary);
+            result.append(" THEN ").append(i);
+        }
+        result.append(" ELSE ").append(mBoundaries.length).append(" END)");
+    }
+}
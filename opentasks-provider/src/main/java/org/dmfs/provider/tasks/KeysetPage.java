@@ -0,0 +1,349 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.BaseColumns;
+import android.text.TextUtils;
+
+import org.dmfs.tasks.contract.TaskContract;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Keyset pagination of a query. Instead of skipping rows with an OFFSET (which means SQLite has to step through all the skipped rows) the next page is
+ * selected by comparing the sort columns with the values of the last row of the previous page. With a matching index this costs the same for every page.
+ * <p>
+ * The key of a page consists of the values of all sort columns of the last row. To make the order total, {@link BaseColumns#_ID} is appended to the sort
+ * order if it's not already part of it. Only sort orders consisting of plain columns, each with an optional collation and direction, are supported.
+ * <p>
+ * SQLite sorts <code>null</code> values before any other value, which is taken into account when comparing keys.
+ * <p>
+ * The key values keep their native type. Numbers are added to the selection as literals, because a text argument doesn't compare as expected with the
+ * values of columns that have no numeric affinity (like computed columns of a view). Text values are passed as selection arguments.
+ */
+final class KeysetPage
+{
+    private final static Pattern SORT_TERM = Pattern.compile("([A-Za-z_][A-Za-z0-9_.]*)(?:\\s+COLLATE\\s+([A-Za-z_]+))?(?:\\s+(ASC|DESC))?",
+            Pattern.CASE_INSENSITIVE);
+
+    private final static String NULL_VALUE = "-";
+    private final static String VALUE_PREFIX = "=";
+    private final static String INTEGER_PREFIX = "i";
+    private final static String FLOAT_PREFIX = "f";
+
+    private final List<SortKey> mKeys;
+    private final int mPageSize;
+    private final String mAfter;
+
+
+    /**
+     * Creates the page of the given size after the row with the given key.
+     *
+     * @param sortOrder
+     *         The sort order of the query.
+     * @param pageSize
+     *         The maximum number of rows on the page.
+     * @param after
+     *         The key of the last row of the previous page, as returned in {@link TaskContract#EXTRA_NEXT_PAGE}, or <code>null</code> for the first page.
+     *
+     * @throws IllegalArgumentException
+     *         if the sort order is not supported or the key is not valid.
+     */
+    KeysetPage(String sortOrder, int pageSize, String after)
+    {
+        if (pageSize <= 0)
+        {
+            throw new IllegalArgumentException("Invalid page size " + pageSize);
+        }
+        mKeys = sortKeys(sortOrder);
+        mPageSize = pageSize;
+        mAfter = after;
+    }
+
+
+    /**
+     * Returns the given projection, extended by any sort column that's missing. We need these to build the key of the next page.
+     */
+    String[] projection(String[] projection)
+    {
+        if (projection == null)
+        {
+            // all columns are returned anyway
+            return null;
+        }
+        List<String> result = new ArrayList<>(Arrays.asList(projection));
+        for (SortKey key : mKeys)
+        {
+            if (!result.contains(key.column) && !result.contains(key.name))
+            {
+                result.add(key.column);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+
+    /**
+     * Returns the selection of the rows after the key or <code>null</code> if this is the first page.
+     */
+    String selection()
+    {
+        return mAfter == null ? null : selection(0);
+    }
+
+
+    /**
+     * Returns the arguments of {@link #selection()}.
+     */
+    String[] selectionArgs()
+    {
+        if (mAfter == null)
+        {
+            return new String[0];
+        }
+        List<Object> values = decoded(mAfter);
+        List<String> args = new ArrayList<>(values.size() * 2);
+        for (Object value : values)
+        {
+            if (value instanceof String)
+            {
+                // each text value is used twice, see selection(int)
+                args.add((String) value);
+                args.add((String) value);
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+
+    /**
+     * Returns the total sort order of the page.
+     */
+    String sortOrder()
+    {
+        List<String> terms = new ArrayList<>(mKeys.size());
+        for (SortKey key : mKeys)
+        {
+            terms.add(key.term);
+        }
+        return TextUtils.join(", ", terms);
+    }
+
+
+    /**
+     * Returns the limit of the query.
+     */
+    String limit()
+    {
+        return String.valueOf(mPageSize);
+    }
+
+
+    /**
+     * Returns the given page {@link Cursor} with the key of the next page in its extras. If the page is not full, it's the last one and no key is added.
+     */
+    Cursor withNextPage(Cursor cursor)
+    {
+        if (cursor == null || cursor.getCount() < mPageSize || !cursor.moveToLast())
+        {
+            return cursor;
+        }
+        List<Object> values = new ArrayList<>(mKeys.size());
+        for (SortKey key : mKeys)
+        {
+            int index = cursor.getColumnIndexOrThrow(key.name);
+            switch (cursor.getType(index))
+            {
+                case Cursor.FIELD_TYPE_NULL:
+                    values.add(null);
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values.add(cursor.getLong(index));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values.add(cursor.getDouble(index));
+                    break;
+                default:
+                    values.add(cursor.getString(index));
+            }
+        }
+        cursor.moveToPosition(-1);
+
+        final Bundle extras = new Bundle(cursor.getExtras());
+        extras.putString(TaskContract.EXTRA_NEXT_PAGE, encoded(values));
+        return new CursorWrapper(cursor)
+        {
+            @Override
+            public Bundle getExtras()
+            {
+                return extras;
+            }
+        };
+    }
+
+
+    private String selection(int index)
+    {
+        if (index == mKeys.size())
+        {
+            // all keys are equal, this is the last row of the previous page
+            return "0";
+        }
+        SortKey key = mKeys.get(index);
+        String column = key.collation == null ? key.column : key.column + " COLLATE " + key.collation;
+        String rest = selection(index + 1);
+        Object value = decoded(mAfter).get(index);
+        boolean isNull = value == null;
+        // numbers are safe to add literally, anything else is a selection argument
+        String operand = value instanceof Number ? value.toString() : "?";
+        if (key.descending)
+        {
+            return isNull ?
+                    String.format(Locale.ENGLISH, "(%s IS NULL AND %s)", column, rest) :
+                    String.format(Locale.ENGLISH, "(%s < %s OR %s IS NULL OR (%s = %s AND %s))", column, operand, column, column, operand, rest);
+        }
+        return isNull ?
+                String.format(Locale.ENGLISH, "((%s IS NULL AND %s) OR %s IS NOT NULL)", column, rest, column) :
+                String.format(Locale.ENGLISH, "(%s > %s OR (%s = %s AND %s))", column, operand, column, operand, rest);
+    }
+
+
+    private List<Object> decoded(String key)
+    {
+        String[] parts = TextUtils.split(key, ",");
+        if (parts.length != mKeys.size())
+        {
+            throw new IllegalArgumentException("Page key doesn't match the sort order");
+        }
+        List<Object> result = new ArrayList<>(parts.length);
+        try
+        {
+            for (String part : parts)
+            {
+                if (NULL_VALUE.equals(part))
+                {
+                    result.add(null);
+                }
+                else if (part.startsWith(VALUE_PREFIX))
+                {
+                    result.add(Uri.decode(part.substring(VALUE_PREFIX.length())));
+                }
+                else if (part.startsWith(INTEGER_PREFIX))
+                {
+                    result.add(Long.parseLong(part.substring(INTEGER_PREFIX.length())));
+                }
+                else if (part.startsWith(FLOAT_PREFIX))
+                {
+                    double value = Double.parseDouble(part.substring(FLOAT_PREFIX.length()));
+                    if (Double.isNaN(value) || Double.isInfinite(value))
+                    {
+                        throw new IllegalArgumentException("Invalid page key " + key);
+                    }
+                    result.add(value);
+                }
+                else
+                {
+                    throw new IllegalArgumentException("Invalid page key " + key);
+                }
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Invalid page key " + key, e);
+        }
+        return result;
+    }
+
+
+    private static String encoded(List<Object> values)
+    {
+        List<String> parts = new ArrayList<>(values.size());
+        for (Object value : values)
+        {
+            if (value == null)
+            {
+                parts.add(NULL_VALUE);
+            }
+            else if (value instanceof Long)
+            {
+                parts.add(INTEGER_PREFIX + value);
+            }
+            else if (value instanceof Double)
+            {
+                parts.add(FLOAT_PREFIX + value);
+            }
+            else
+            {
+                parts.add(VALUE_PREFIX + Uri.encode(value.toString()));
+            }
+        }
+        return TextUtils.join(",", parts);
+    }
+
+
+    private static List<SortKey> sortKeys(String sortOrder)
+    {
+        List<SortKey> keys = new ArrayList<>();
+        boolean hasId = false;
+        for (String term : TextUtils.split(sortOrder == null ? "" : sortOrder, ","))
+        {
+            Matcher matcher = SORT_TERM.matcher(term.trim());
+            if (!matcher.matches())
+            {
+                throw new IllegalArgumentException("Sort order '" + sortOrder + "' is not supported for paging");
+            }
+            SortKey key = new SortKey(term.trim(), matcher.group(1), matcher.group(2), "DESC".equalsIgnoreCase(matcher.group(3)));
+            keys.add(key);
+            hasId |= BaseColumns._ID.equals(key.name);
+        }
+        if (!hasId)
+        {
+            keys.add(new SortKey(BaseColumns._ID, BaseColumns._ID, null, false));
+        }
+        return keys;
+    }
+
+
+    private final static class SortKey
+    {
+        final String term;
+        final String column;
+        final String name;
+        final String collation;
+        final boolean descending;
+
+
+        SortKey(String term, String column, String collation, boolean descending)
+        {
+            this.term = term;
+            this.column = column;
+            this.name = column.substring(column.lastIndexOf('.') + 1);
+            this.collation = collation;
+            this.descending = descending;
+        }
+    }
+}
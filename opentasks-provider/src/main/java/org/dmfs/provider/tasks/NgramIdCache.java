@@ -0,0 +1,206 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteTransactionListener;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+
+/**
+ * A bounded LRU cache of the ids of the n-grams in the {@link FTSDatabaseHelper#FTS_NGRAM_TABLE} of a specific database.
+ * <p>
+ * N-gram ids which have been learned during a transaction are only published when the outermost transaction is committed. To track transactions, the {@link
+ * SQLiteTransactionListener} returned by {@link #transactionListener()} must be passed to {@link SQLiteDatabase#beginTransactionWithListener(SQLiteTransactionListener)}.
+ * Ids learned during any other transaction are ignored, since we can't tell whether that transaction will be committed or rolled back.
+ */
+final class NgramIdCache
+{
+    /**
+     * The maximum number of n-gram ids to cache. With the average n-gram being 3-4 chars this takes a few hundred KB.
+     */
+    private final static int MAX_SIZE = 10000;
+
+    private final static Map<SQLiteDatabase, NgramIdCache> CACHES = new WeakHashMap<>();
+
+
+    /**
+     * Returns the {@link NgramIdCache} of the given database.
+     *
+     * @param db
+     *         An {@link SQLiteDatabase}.
+     *
+     * @return The {@link NgramIdCache} of the database.
+     */
+    static NgramIdCache of(SQLiteDatabase db)
+    {
+        synchronized (CACHES)
+        {
+            NgramIdCache cache = CACHES.get(db);
+            if (cache == null)
+            {
+                cache = new NgramIdCache();
+                CACHES.put(db, cache);
+            }
+            return cache;
+        }
+    }
+
+
+    private final Map<String, Long> mCache = new LinkedHashMap<String, Long>(MAX_SIZE / 4, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+        {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    /**
+     * The current transaction of a thread or <code>null</code> if the thread is not in a tracked transaction.
+     */
+    private final ThreadLocal<Transaction> mTransaction = new ThreadLocal<>();
+
+    private final SQLiteTransactionListener mTransactionListener = new SQLiteTransactionListener()
+    {
+        @Override
+        public void onBegin()
+        {
+            Transaction transaction = mTransaction.get();
+            if (transaction == null)
+            {
+                transaction = new Transaction();
+                mTransaction.set(transaction);
+            }
+            transaction.mDepth += 1;
+        }
+
+
+        @Override
+        public void onCommit()
+        {
+            Transaction transaction = mTransaction.get();
+            // nested transactions are only committed with the outermost transaction
+            if (transaction != null && --transaction.mDepth == 0)
+            {
+                mTransaction.remove();
+                if (!transaction.mFailed && !transaction.mIds.isEmpty())
+                {
+                    synchronized (mCache)
+                    {
+                        mCache.putAll(transaction.mIds);
+                    }
+                }
+            }
+        }
+
+
+        @Override
+        public void onRollback()
+        {
+            Transaction transaction = mTransaction.get();
+            if (transaction != null)
+            {
+                // the ids learned during the transaction may no longer be valid, a failed nested transaction fails the entire transaction
+                transaction.mFailed = true;
+                if (--transaction.mDepth == 0)
+                {
+                    mTransaction.remove();
+                }
+            }
+        }
+    };
+
+
+    private NgramIdCache()
+    {
+        // use of(SQLiteDatabase)
+    }
+
+
+    /**
+     * Returns the {@link SQLiteTransactionListener} which publishes the ids learned during a transaction on commit and drops them on rollback.
+     */
+    SQLiteTransactionListener transactionListener()
+    {
+        return mTransactionListener;
+    }
+
+
+    /**
+     * Returns the id of the given n-gram or <code>null</code> if it's not known.
+     */
+    Long get(String ngram)
+    {
+        Transaction transaction = mTransaction.get();
+        if (transaction != null)
+        {
+            Long id = transaction.mIds.get(ngram);
+            if (id != null)
+            {
+                return id;
+            }
+        }
+        synchronized (mCache)
+        {
+            return mCache.get(ngram);
+        }
+    }
+
+
+    /**
+     * Remembers the id of an n-gram that has been read from or written to the given database.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase} the id was read from or written to.
+     * @param ngram
+     *         The n-gram.
+     * @param id
+     *         The id of the n-gram.
+     */
+    void put(SQLiteDatabase db, String ngram, long id)
+    {
+        Transaction transaction = mTransaction.get();
+        if (transaction != null)
+        {
+            transaction.mIds.put(ngram, id);
+        }
+        else if (!db.inTransaction())
+        {
+            synchronized (mCache)
+            {
+                mCache.put(ngram, id);
+            }
+        }
+        // else: we're in an untracked transaction, the id might not survive it, so don't cache it
+    }
+
+
+    /**
+     * The state of a tracked transaction of a thread.
+     */
+    private final static class Transaction
+    {
+        private int mDepth;
+        private boolean mFailed;
+        private final Map<String, Long> mIds = new HashMap<>();
+    }
+}
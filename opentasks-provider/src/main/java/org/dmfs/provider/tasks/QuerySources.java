@@ -0,0 +1,131 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Picks the narrowest table or view to serve a query from. The default task and instance views join the lists table to provide a couple of list columns. Most
+ * queries (e.g. of notifications and widgets) don't need any of them, but SQLite can't drop the join, because it doesn't know that every task belongs to an
+ * existing list.
+ * <p>
+ * The referenced columns are determined by looking at all identifiers in the projection, the selection and the sort order. This may find a few false
+ * positives (like quoted strings in a selection), which just means we fall back to the wider view.
+ */
+final class QuerySources
+{
+    private final static Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /**
+     * Identifiers which require the wide views, i.e. the list columns and explicit references to the views themselves.
+     */
+    private final static Set<String> WIDE_VIEW_IDENTIFIERS = new HashSet<>();
+
+    static
+    {
+        for (String column : TaskDatabaseHelper.LIST_COLUMNS)
+        {
+            WIDE_VIEW_IDENTIFIERS.add(column.toLowerCase(Locale.ENGLISH));
+        }
+        WIDE_VIEW_IDENTIFIERS.add(Tables.TASKS_VIEW.toLowerCase(Locale.ENGLISH));
+        WIDE_VIEW_IDENTIFIERS.add(Tables.INSTANCE_CLIENT_VIEW.toLowerCase(Locale.ENGLISH));
+        WIDE_VIEW_IDENTIFIERS.add(Tables.LISTS.toLowerCase(Locale.ENGLISH));
+    }
+
+
+    private QuerySources()
+    {
+        // no instances
+    }
+
+
+    /**
+     * Returns the source of a query of the tasks, either {@link Tables#TASKS_VIEW} or {@link Tables#TASKS}.
+     *
+     * @param projection
+     *         The projection of the query, <code>null</code> selects all columns.
+     * @param selection
+     *         The selection of the query.
+     * @param sortOrder
+     *         The sort order of the query.
+     */
+    static String tasks(String[] projection, String selection, String sortOrder)
+    {
+        return needsListColumns(projection, selection, sortOrder) ? Tables.TASKS_VIEW : Tables.TASKS;
+    }
+
+
+    /**
+     * Returns the source of a query of the instances, either {@link Tables#INSTANCE_CLIENT_VIEW} or {@link Tables#INSTANCE_TASK_CLIENT_VIEW}.
+     * <p>
+     * Note, the instances table can never be omitted, since it defines the rows of the result and the tasks table is needed to exclude deleted tasks.
+     *
+     * @param projection
+     *         The projection of the query, <code>null</code> selects all columns.
+     * @param selection
+     *         The selection of the query.
+     * @param sortOrder
+     *         The sort order of the query.
+     */
+    static String instances(String[] projection, String selection, String sortOrder)
+    {
+        return needsListColumns(projection, selection, sortOrder) ? Tables.INSTANCE_CLIENT_VIEW : Tables.INSTANCE_TASK_CLIENT_VIEW;
+    }
+
+
+    private static boolean needsListColumns(String[] projection, String selection, String sortOrder)
+    {
+        if (projection == null)
+        {
+            // all columns
+            return true;
+        }
+        for (String column : projection)
+        {
+            if (column.contains("*") || references(column))
+            {
+                return true;
+            }
+        }
+        return references(selection) || references(sortOrder);
+    }
+
+
+    private static boolean references(String sql)
+    {
+        if (sql == null)
+        {
+            return false;
+        }
+        Matcher matcher = IDENTIFIER.matcher(sql);
+        while (matcher.find())
+        {
+            if (WIDE_VIEW_IDENTIFIERS.contains(matcher.group().toLowerCase(Locale.ENGLISH)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
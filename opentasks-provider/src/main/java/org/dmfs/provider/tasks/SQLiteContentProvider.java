@@ -19,13 +19,16 @@ package org.dmfs.provider.tasks;
 import android.content.ContentProvider;
 import android.content.ContentProviderOperation;
 import android.content.ContentProviderResult;
-import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteTransactionListener;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 
 import org.dmfs.iterables.SingletonIterable;
 import org.dmfs.jems.fragile.Fragile;
@@ -34,7 +37,10 @@ import org.dmfs.jems.single.Single;
 import org.dmfs.provider.tasks.utils.Profiled;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
@@ -73,8 +79,15 @@ abstract class SQLiteContentProvider extends ContentProvider
      */
     private static final int MAX_OPERATIONS_PER_YIELD_POINT = 500;
 
+    /**
+     * The time in milliseconds after which a chunk of {@link #applyInChunks(Iterator, List)} is committed at the next yield point.
+     */
+    private static final long CHUNK_DURATION = 200;
+
     private final Iterable<TransactionEndTask> mTransactionEndTasks;
 
+    private ChangeNotifier mChangeNotifier;
+
 
     protected SQLiteContentProvider(Iterable<TransactionEndTask> transactionEndTasks)
     {
@@ -87,6 +100,10 @@ abstract class SQLiteContentProvider extends ContentProvider
     public boolean onCreate()
     {
         mOpenHelper = getDatabaseHelper(getContext());
+        // coalesced notifications are flushed on a dedicated thread, so neither the main thread nor long running background work can delay them
+        HandlerThread notifierThread = new HandlerThread("changeNotifier");
+        notifierThread.start();
+        mChangeNotifier = new ChangeNotifier(getContext().getContentResolver(), new Handler(notifierThread.getLooper()), notificationWindow());
         return true;
     }
 
@@ -96,6 +113,31 @@ abstract class SQLiteContentProvider extends ContentProvider
      */
     protected abstract SQLiteOpenHelper getDatabaseHelper(Context context);
 
+    /**
+     * Returns an {@link SQLiteTransactionListener} to be notified about the begin, commit and rollback of the transactions of this provider.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase} the transaction is started on.
+     *
+     * @return An {@link SQLiteTransactionListener} or <code>null</code>.
+     */
+    protected SQLiteTransactionListener transactionListener(SQLiteDatabase db)
+    {
+        return null;
+    }
+
+
+    /**
+     * Returns the time in milliseconds to coalesce change notifications of sync adapters. Changes by other callers are always notified right away.
+     *
+     * @return The coalescing window in milliseconds, 0 to notify all changes right away.
+     */
+    protected long notificationWindow()
+    {
+        return 0;
+    }
+
+
     /**
      * The equivalent of the {@link #insert} method, but invoked within a transaction.
      */
@@ -125,6 +167,27 @@ abstract class SQLiteContentProvider extends ContentProvider
     }
 
 
+    /**
+     * Call this to add a task to run when the changes of the transaction are notified. Change notifications of sync adapters are coalesced, so the same task
+     * runs only once, no matter how many transactions posted it within the coalescing window.
+     */
+    protected void postNotifyTask(Runnable task)
+    {
+        mChangeNotifier.addTask(task);
+    }
+
+
+    /**
+     * Call this to notify a change which has been committed outside of the transactions of {@link #insert}, {@link #update}, {@link #delete}, {@link
+     * #bulkInsert} and {@link #applyBatch}. The change is sent right away, together with any other pending change notifications.
+     */
+    protected void notifyChange(Uri uri)
+    {
+        mChangeNotifier.addUri(uri, false);
+        mChangeNotifier.schedule(true);
+    }
+
+
     public boolean isCallerSyncAdapter(Uri uri)
     {
         return false;
@@ -154,7 +217,7 @@ abstract class SQLiteContentProvider extends ContentProvider
             SQLiteDatabase db = mOpenHelper.getWritableDatabase();
             if (!applyingBatch)
             {
-                db.beginTransaction();
+                db.beginTransactionWithListener(transactionListener(db));
                 try
                 {
                     result = insertInTransaction(db, uri, values, callerIsSyncAdapter);
@@ -180,17 +243,13 @@ abstract class SQLiteContentProvider extends ContentProvider
     {
         return new Profiled("BulkInsert").run((Single<Integer>) () ->
         {
-            int numValues = values.length;
+            int numValues;
             boolean callerIsSyncAdapter = isCallerSyncAdapter(uri);
             SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-            db.beginTransaction();
+            db.beginTransactionWithListener(transactionListener(db));
             try
             {
-                for (int i = 0; i < numValues; i++)
-                {
-                    insertInTransaction(db, uri, values[i], callerIsSyncAdapter);
-                    db.yieldIfContendedSafely();
-                }
+                numValues = bulkInsertInTransaction(db, uri, values, callerIsSyncAdapter);
                 endTransaction(db);
             }
             finally
@@ -203,6 +262,21 @@ abstract class SQLiteContentProvider extends ContentProvider
     }
 
 
+    /**
+     * The equivalent of the {@link #bulkInsert} method, but invoked within a transaction. By default this calls {@link #insertInTransaction(SQLiteDatabase,
+     * Uri, ContentValues, boolean)} for each of the values. Subclasses can override this to insert the values in batches.
+     */
+    protected int bulkInsertInTransaction(SQLiteDatabase db, Uri uri, ContentValues[] values, boolean callerIsSyncAdapter)
+    {
+        for (ContentValues value : values)
+        {
+            insertInTransaction(db, uri, value, callerIsSyncAdapter);
+            db.yieldIfContendedSafely();
+        }
+        return values.length;
+    }
+
+
     @Override
     public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs)
     {
@@ -214,7 +288,7 @@ abstract class SQLiteContentProvider extends ContentProvider
             SQLiteDatabase db = mOpenHelper.getWritableDatabase();
             if (!applyingBatch)
             {
-                db.beginTransaction();
+                db.beginTransactionWithListener(transactionListener(db));
                 try
                 {
                     count = updateInTransaction(db, uri, values, selection, selectionArgs, callerIsSyncAdapter);
@@ -246,7 +320,7 @@ abstract class SQLiteContentProvider extends ContentProvider
             SQLiteDatabase db = mOpenHelper.getWritableDatabase();
             if (!applyingBatch)
             {
-                db.beginTransaction();
+                db.beginTransactionWithListener(transactionListener(db));
                 try
                 {
                     count = deleteInTransaction(db, uri, selection, selectionArgs, callerIsSyncAdapter);
@@ -277,7 +351,7 @@ abstract class SQLiteContentProvider extends ContentProvider
                     int opCount = 0;
                     boolean callerIsSyncAdapter = false;
                     SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-                    db.beginTransaction();
+                    db.beginTransactionWithListener(transactionListener(db));
                     try
                     {
                         mApplyingBatch.set(true);
@@ -318,6 +392,100 @@ abstract class SQLiteContentProvider extends ContentProvider
     }
 
 
+    /**
+     * Applies the given {@link ContentProviderOperation}s in chunks, each in its own transaction.
+     * <p>
+     * A chunk is committed right before an operation which allows yielding, once the chunk has been running for {@link #CHUNK_DURATION} milliseconds, so the
+     * size of the chunks adapts to the cost of the operations and other threads get the database between two chunks. Operations which don't allow yielding are
+     * never separated from the previous operation. Unlike {@link #applyBatch(ArrayList)} there is no limit on the number of operations between yield points.
+     * <p>
+     * Back-references are relative to the last operation which allows yielding, i.e. back-reference <code>0</code> refers to the last operation which allows
+     * yielding and an operation which allows yielding can't refer to any previous operation. That way only the results since the last yield point are kept,
+     * regardless of the total number of operations.
+     *
+     * @param operations
+     *         The {@link ContentProviderOperation}s to apply.
+     * @param results
+     *         A {@link List} to add the {@link ContentProviderResult}s to or <code>null</code> if the results are not needed. Results are added when their chunk
+     *         has been committed, so if an operation fails, this contains the results of all committed operations.
+     *
+     * @return The number of operations that have been applied.
+     *
+     * @throws OperationApplicationException
+     *         if an operation failed. The chunk of the failing operation has been rolled back, all previous chunks remain committed. {@link
+     *         OperationApplicationException#getNumSuccessfulYieldPoints()} returns the number of committed operations.
+     */
+    protected int applyInChunks(Iterator<ContentProviderOperation> operations, List<ContentProviderResult> results) throws OperationApplicationException
+    {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        ContentProviderResult[] backReferences = new ContentProviderResult[16];
+        List<ContentProviderResult> chunkResults = results == null ? null : new ArrayList<ContentProviderResult>();
+        int backReferenceCount = 0;
+        int committed = 0;
+        try
+        {
+            ContentProviderOperation next = operations.hasNext() ? operations.next() : null;
+            while (next != null)
+            {
+                int count = 0;
+                final long chunkStartTime = SystemClock.elapsedRealtime();
+                boolean callerIsSyncAdapter = false;
+                db.beginTransactionWithListener(transactionListener(db));
+                try
+                {
+                    mApplyingBatch.set(true);
+                    do
+                    {
+                        if (!callerIsSyncAdapter && isCallerSyncAdapter(next.getUri()))
+                        {
+                            callerIsSyncAdapter = true;
+                        }
+                        if (next.isYieldAllowed())
+                        {
+                            // operations after a yield point can't refer to the results before it
+                            backReferenceCount = 0;
+                        }
+                        if (backReferenceCount == backReferences.length)
+                        {
+                            backReferences = Arrays.copyOf(backReferences, backReferenceCount * 2);
+                        }
+                        ContentProviderResult result = next.apply(this, backReferences, backReferenceCount);
+                        backReferences[backReferenceCount] = result;
+                        backReferenceCount += 1;
+                        if (chunkResults != null)
+                        {
+                            chunkResults.add(result);
+                        }
+                        count += 1;
+                        next = operations.hasNext() ? operations.next() : null;
+                    }
+                    while (next != null && !(next.isYieldAllowed() && SystemClock.elapsedRealtime() - chunkStartTime >= CHUNK_DURATION));
+                    endTransaction(db);
+                }
+                finally
+                {
+                    mApplyingBatch.set(false);
+                    db.endTransaction();
+                    onEndTransaction(callerIsSyncAdapter);
+                }
+                committed += count;
+                if (chunkResults != null)
+                {
+                    results.addAll(chunkResults);
+                    chunkResults.clear();
+                }
+            }
+        }
+        catch (OperationApplicationException | RuntimeException e)
+        {
+            OperationApplicationException exception = new OperationApplicationException(e.getMessage(), committed);
+            exception.initCause(e);
+            throw exception;
+        }
+        return committed;
+    }
+
+
     protected void onEndTransaction(boolean callerIsSyncAdapter)
     {
         Set<Uri> changed;
@@ -326,12 +494,12 @@ abstract class SQLiteContentProvider extends ContentProvider
             changed = new HashSet<Uri>(mChangedUris);
             mChangedUris.clear();
         }
-        ContentResolver resolver = getContext().getContentResolver();
         for (Uri uri : changed)
         {
-            boolean syncToNetwork = !callerIsSyncAdapter && syncToNetwork(uri);
-            resolver.notifyChange(uri, null, syncToNetwork);
+            mChangeNotifier.addUri(uri, !callerIsSyncAdapter && syncToNetwork(uri));
         }
+        // sync adapters often commit lots of small transactions, don't flood our observers with notifications
+        mChangeNotifier.schedule(!callerIsSyncAdapter);
     }
 
 
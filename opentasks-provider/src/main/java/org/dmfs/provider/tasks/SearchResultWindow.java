@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.net.Uri;
+
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.Locale;
+
+
+/**
+ * The part of the ranked search results a client is interested in, i.e. the minimum score, the result to continue after and the maximum number of results.
+ * <p>
+ * All values are parsed to numbers, so they can safely be added to the SQL statement literally.
+ */
+public final class SearchResultWindow
+{
+    /**
+     * The minimum score of a search result, unless the client specifies a different one.
+     */
+    public final static float DEFAULT_MIN_SCORE = 0.33f;
+
+    /**
+     * A {@link SearchResultWindow} that contains all results with at least the default score.
+     */
+    public final static SearchResultWindow DEFAULT = new SearchResultWindow(DEFAULT_MIN_SCORE, null, 0, 0);
+
+    private final float mMinScore;
+    private final Double mAfterScore;
+    private final long mAfterTaskId;
+    private final int mLimit;
+
+
+    /**
+     * Creates a {@link SearchResultWindow} from the query parameters of the given search {@link Uri}.
+     *
+     * @param uri
+     *         A search {@link Uri}.
+     *
+     * @return A {@link SearchResultWindow}.
+     *
+     * @throws IllegalArgumentException
+     *         if any of the parameters is invalid.
+     */
+    public static SearchResultWindow fromUri(Uri uri)
+    {
+        String minScore = uri.getQueryParameter(Tasks.SEARCH_MIN_SCORE_PARAMETER);
+        String afterScore = uri.getQueryParameter(Tasks.SEARCH_AFTER_SCORE_PARAMETER);
+        String afterTaskId = uri.getQueryParameter(Tasks.SEARCH_AFTER_TASK_ID_PARAMETER);
+        String limit = uri.getQueryParameter(Tasks.SEARCH_LIMIT_PARAMETER);
+
+        if ((afterScore == null) != (afterTaskId == null))
+        {
+            throw new IllegalArgumentException(
+                    String.format("%s and %s must be given together", Tasks.SEARCH_AFTER_SCORE_PARAMETER, Tasks.SEARCH_AFTER_TASK_ID_PARAMETER));
+        }
+        try
+        {
+            SearchResultWindow result = new SearchResultWindow(
+                    minScore == null ? DEFAULT_MIN_SCORE : Float.parseFloat(minScore),
+                    afterScore == null ? null : Double.valueOf(afterScore),
+                    afterTaskId == null ? 0 : Long.parseLong(afterTaskId),
+                    limit == null ? 0 : Integer.parseInt(limit));
+            if (result.mLimit < 0 || Float.isNaN(result.mMinScore) || result.mAfterScore != null && (result.mAfterScore.isNaN() || result.mAfterScore
+                    .isInfinite()))
+            {
+                throw new IllegalArgumentException("Invalid search parameters in " + uri);
+            }
+            return result;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Invalid search parameters in " + uri, e);
+        }
+    }
+
+
+    private SearchResultWindow(float minScore, Double afterScore, long afterTaskId, int limit)
+    {
+        mMinScore = minScore;
+        mAfterScore = afterScore;
+        mAfterTaskId = afterTaskId;
+        mLimit = limit;
+    }
+
+
+    /**
+     * Returns the minimum score of the results.
+     */
+    public float minScore()
+    {
+        return mMinScore;
+    }
+
+
+    /**
+     * Returns the condition to add to the <code>HAVING</code> clause of a search query which has a {@link Tasks#SCORE} column and is grouped by {@link
+     * TaskContract.Instances#TASK_ID}.
+     */
+    public String having()
+    {
+        StringBuilder result = new StringBuilder(128);
+        result.append(Tasks.SCORE).append(" >= ").append(String.format(Locale.ENGLISH, "%f", mMinScore));
+        if (mAfterScore != null)
+        {
+            result.append(" and (").append(Tasks.SCORE).append(" < ").append(mAfterScore)
+                    .append(" or ").append(Tasks.SCORE).append(" = ").append(mAfterScore)
+                    .append(" and ").append(TaskContract.Instances.TASK_ID).append(" > ").append(mAfterTaskId).append(")");
+        }
+        return result.toString();
+    }
+
+
+    /**
+     * Returns the <code>ORDER BY</code> clause of a search query with the given client sort order. The results are always ordered by descending score
+     * first. When the results are paged, i.e. limited or continued after a specific result, the client sort order is ignored, because all pages need to be
+     * in the order of the continuation key.
+     */
+    public String orderBy(String sortOrder)
+    {
+        if (sortOrder == null || mLimit > 0 || mAfterScore != null)
+        {
+            return Tasks.SCORE + " desc, " + TaskContract.Instances.TASK_ID;
+        }
+        return Tasks.SCORE + " desc, " + sortOrder + ", " + TaskContract.Instances.TASK_ID;
+    }
+
+
+    /**
+     * Returns the <code>LIMIT</code> clause of a search query, including a leading space, or an empty String if the number of results is not limited.
+     */
+    public String limit()
+    {
+        return mLimit > 0 ? " limit " + mLimit : "";
+    }
+}
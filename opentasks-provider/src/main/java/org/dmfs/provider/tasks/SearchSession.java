@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.FTSDatabaseHelper.FTSContentColumns;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * The state of an as-you-type search of the n-gram search engine. It remembers the n-grams of the previous query of the session and the number of these
+ * n-grams each task contains.
+ * <p>
+ * When the user keeps typing, the n-grams of the new query are usually a superset of the n-grams of the previous query. In that case only the new n-grams have
+ * to be looked up, which allows to determine the candidate tasks (the tasks which can reach the minimum score) without scanning the postings of all the
+ * n-grams again.
+ * <p>
+ * A session doesn't know about changes of the search index, so it must be discarded whenever n-grams are added to the search index, see {@link
+ * FTSDatabaseHelper#searchIndexChanged()}. Removed n-grams don't matter, they only turn some of the candidates into non-matches.
+ */
+public final class SearchSession
+{
+    /**
+     * The maximum number of candidates to return. Restricting a search to more tasks than that doesn't make it any faster.
+     */
+    private final static int MAX_CANDIDATES = 2000;
+
+    private final static String SQL_MATCH_COUNTS = "SELECT " + FTSContentColumns.TASK_ID + ", count(DISTINCT " + FTSContentColumns.NGRAM_ID + ") FROM "
+            + FTSDatabaseHelper.FTS_CONTENT_TABLE + " WHERE " + FTSContentColumns.NGRAM_ID + " in (%s) GROUP BY " + FTSContentColumns.TASK_ID;
+
+    private Set<Long> mNgramIds = new HashSet<>();
+    private final Map<Long, Integer> mMatchCounts = new HashMap<>();
+
+
+    /**
+     * Returns the ids of all tasks which may reach the given minimum score for a query with the given n-grams. Tasks which are not in the result are
+     * guaranteed not to reach the minimum score.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param ngramIds
+     *         The ids of the known n-grams of the query.
+     * @param ngramCount
+     *         The total number of n-grams of the query, including the unknown ones.
+     * @param minScore
+     *         The minimum score of a result.
+     *
+     * @return The ids of the candidate tasks or <code>null</code> if there are too many candidates to restrict the search to.
+     */
+    public synchronized Set<Long> candidates(SQLiteDatabase db, Set<Long> ngramIds, int ngramCount, float minScore)
+    {
+        Set<Long> newNgramIds;
+        if (ngramIds.containsAll(mNgramIds))
+        {
+            // the query has been refined, we only need to look up the new n-grams
+            newNgramIds = new HashSet<>(ngramIds);
+            newNgramIds.removeAll(mNgramIds);
+        }
+        else
+        {
+            // this is a different query, start over
+            mMatchCounts.clear();
+            newNgramIds = ngramIds;
+        }
+
+        if (!newNgramIds.isEmpty())
+        {
+            // the new n-grams are disjoint with the previous ones, so we can just add the number of matches
+            try (Cursor cursor = db.rawQuery(String.format(SQL_MATCH_COUNTS, FTSDatabaseHelper.idList(newNgramIds)), null))
+            {
+                while (cursor.moveToNext())
+                {
+                    long taskId = cursor.getLong(0);
+                    Integer count = mMatchCounts.get(taskId);
+                    mMatchCounts.put(taskId, (count == null ? 0 : count) + cursor.getInt(1));
+                }
+            }
+        }
+        mNgramIds = new HashSet<>(ngramIds);
+
+        // be a bit lenient, the database might round the score differently
+        double minMatches = minScore * ngramCount - 0.001;
+        Set<Long> result = new HashSet<>();
+        for (Map.Entry<Long, Integer> entry : mMatchCounts.entrySet())
+        {
+            if (entry.getValue() >= minMatches)
+            {
+                if (result.size() == MAX_CANDIDATES)
+                {
+                    return null;
+                }
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.os.CancellationSignal;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.tasks.contract.TaskContract.Counts;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+
+/**
+ * Computes the {@link Counts} of open tasks per list.
+ * <p>
+ * All counts are computed in a single pass over the open tasks and their current instances. The result of an unfiltered query is cached until it's
+ * invalidated by a change of the data or until time passes the next due date or the end of the day, whichever comes first.
+ */
+final class TaskCounts
+{
+    private final static String[] COLUMNS = {
+            Counts.LIST_ID, Counts.OPEN_COUNT, Counts.OVERDUE_COUNT, Counts.DUE_TODAY_COUNT, Counts.DUE_LATER_COUNT, Counts.NO_DUE_COUNT,
+            Counts.PINNED_COUNT };
+
+    /**
+     * Internal column with the next timed due date in the future, this is when the cached counts expire.
+     */
+    private final static String NEXT_DUE = "next_due";
+
+    private List<long[]> mCache;
+    private long mCacheExpiry;
+    private String mCacheTimeZone;
+    private int mGeneration;
+
+
+    /**
+     * Drops the cached counts. Call this whenever the data has changed.
+     */
+    synchronized void invalidate()
+    {
+        mCache = null;
+        mGeneration++;
+    }
+
+
+    /**
+     * Returns the counts, using the current time and the default time zone.
+     */
+    Cursor query(SQLiteDatabase db, String[] projection, String selection, String[] selectionArgs, String sortOrder, CancellationSignal cancellationSignal)
+    {
+        return query(db, projection, selection, selectionArgs, sortOrder, cancellationSignal, System.currentTimeMillis(), TimeZone.getDefault());
+    }
+
+
+    Cursor query(SQLiteDatabase db, String[] projection, String selection, String[] selectionArgs, String sortOrder, CancellationSignal cancellationSignal,
+                 long now, TimeZone timeZone)
+    {
+        if (selection != null || sortOrder != null)
+        {
+            // a specific query, let SQLite do the filtering and sorting
+            SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+            builder.setTables("(" + aggregate(now, timeZone, false) + ")");
+            return builder.query(db, projection, selection, selectionArgs, null, null, sortOrder, null, cancellationSignal);
+        }
+
+        List<long[]> rows = cached(now, timeZone);
+        if (rows == null)
+        {
+            rows = load(db, now, timeZone, cancellationSignal);
+        }
+
+        String[] columns = projection == null ? COLUMNS : projection;
+        int[] indices = new int[columns.length];
+        List<String> allColumns = Arrays.asList(COLUMNS);
+        for (int i = 0; i < columns.length; ++i)
+        {
+            indices[i] = allColumns.indexOf(columns[i]);
+            if (indices[i] < 0)
+            {
+                throw new IllegalArgumentException("Unknown column " + columns[i]);
+            }
+        }
+
+        MatrixCursor result = new MatrixCursor(columns, rows.size());
+        for (long[] row : rows)
+        {
+            Object[] values = new Object[indices.length];
+            for (int i = 0; i < indices.length; ++i)
+            {
+                values[i] = row[indices[i]];
+            }
+            result.addRow(values);
+        }
+        return result;
+    }
+
+
+    private synchronized List<long[]> cached(long now, TimeZone timeZone)
+    {
+        return mCache != null && now < mCacheExpiry && timeZone.getID().equals(mCacheTimeZone) ? mCache : null;
+    }
+
+
+    private List<long[]> load(SQLiteDatabase db, long now, TimeZone timeZone, CancellationSignal cancellationSignal)
+    {
+        int generation;
+        synchronized (this)
+        {
+            generation = mGeneration;
+        }
+
+        List<long[]> rows = new ArrayList<>();
+        long expiry = tomorrow(now, timeZone);
+        try (Cursor c = db.rawQuery(aggregate(now, timeZone, true) + " ORDER BY " + Counts.LIST_ID, null, cancellationSignal))
+        {
+            int nextDueIdx = c.getColumnIndex(NEXT_DUE);
+            while (c.moveToNext())
+            {
+                long[] row = new long[COLUMNS.length];
+                for (int i = 0; i < COLUMNS.length; ++i)
+                {
+                    row[i] = c.getLong(c.getColumnIndex(COLUMNS[i]));
+                }
+                rows.add(row);
+                if (!c.isNull(nextDueIdx))
+                {
+                    // the task becomes overdue right after its due date
+                    expiry = Math.min(expiry, c.getLong(nextDueIdx) + 1);
+                }
+            }
+        }
+
+        synchronized (this)
+        {
+            if (generation == mGeneration)
+            {
+                // only cache the result if nothing has changed in the meantime
+                mCache = rows;
+                mCacheExpiry = expiry;
+                mCacheTimeZone = timeZone.getID();
+            }
+        }
+        return rows;
+    }
+
+
+    /**
+     * Returns the SQL of the aggregation.
+     */
+    private static String aggregate(long now, TimeZone timeZone, boolean withNextDue)
+    {
+        long todayStart = today(now, timeZone);
+        long tomorrowStart = tomorrow(now, timeZone);
+        // all-day dates are stored as UTC midnight of the respective day
+        long todayAllDay = todayStart + timeZone.getOffset(todayStart);
+        long tomorrowAllDay = todayAllDay + 24L * 3600L * 1000L;
+
+        String due = Tables.INSTANCES + "." + Instances.INSTANCE_DUE;
+        String allDay = "ifnull(" + Tables.TASKS + "." + Tasks.IS_ALLDAY + ", 0) = 1";
+        String timed = "ifnull(" + Tables.TASKS + "." + Tasks.IS_ALLDAY + ", 0) = 0";
+
+        return String.format(Locale.ENGLISH, "SELECT %s.%s AS %s, "
+                        + "count(%s.%s) AS %s, "
+                        + "count(CASE WHEN %s AND %s < %d OR %s AND %s < %d THEN 1 END) AS %s, "
+                        + "count(CASE WHEN %s AND %s >= %d AND %s < %d OR %s AND %s >= %d AND %s < %d THEN 1 END) AS %s, "
+                        + "count(CASE WHEN %s AND %s >= %d OR %s AND %s >= %d THEN 1 END) AS %s, "
+                        + "count(CASE WHEN %s.%s IS NOT NULL AND %s IS NULL THEN 1 END) AS %s, "
+                        + "count(CASE WHEN %s.%s IS NOT NULL AND %s.%s = 1 THEN 1 END) AS %s"
+                        + "%s "
+                        + "FROM %s LEFT JOIN %s ON (%s.%s = %s.%s AND %s.%s = 0 AND %s.%s = 0) "
+                        + "LEFT JOIN %s ON (%s.%s = %s.%s AND %s.%s = 0) "
+                        + "GROUP BY %s.%s",
+                Tables.LISTS, TaskLists._ID, Counts.LIST_ID,
+                Tables.INSTANCES, Instances._ID, Counts.OPEN_COUNT,
+                timed, due, now, allDay, due, todayAllDay, Counts.OVERDUE_COUNT,
+                timed, due, now, due, tomorrowStart, allDay, due, todayAllDay, due, tomorrowAllDay, Counts.DUE_TODAY_COUNT,
+                timed, due, tomorrowStart, allDay, due, tomorrowAllDay, Counts.DUE_LATER_COUNT,
+                Tables.INSTANCES, Instances._ID, due, Counts.NO_DUE_COUNT,
+                Tables.INSTANCES, Instances._ID, Tables.TASKS, Tasks.PINNED, Counts.PINNED_COUNT,
+                withNextDue ? String.format(Locale.ENGLISH, ", min(CASE WHEN %s AND %s >= %d THEN %s END) AS %s", timed, due, now, due, NEXT_DUE) : "",
+                Tables.LISTS, Tables.TASKS, Tables.TASKS, Tasks.LIST_ID, Tables.LISTS, TaskLists._ID, Tables.TASKS, Tasks.IS_CLOSED, Tables.TASKS,
+                Tasks._DELETED,
+                Tables.INSTANCES, Tables.INSTANCES, Instances.TASK_ID, Tables.TASKS, Tasks._ID, Tables.INSTANCES, Instances.DISTANCE_FROM_CURRENT,
+                Tables.LISTS, TaskLists._ID);
+    }
+
+
+    private static long today(long now, TimeZone timeZone)
+    {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+
+    private static long tomorrow(long now, TimeZone timeZone)
+    {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(today(now, timeZone));
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -25,11 +25,11 @@ import android.util.Log;
 
 import org.dmfs.jems.optional.adapters.First;
 import org.dmfs.jems.predicate.elementary.Equals;
-import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
-import org.dmfs.provider.tasks.model.TaskAdapter;
-import org.dmfs.provider.tasks.processors.EntityProcessor;
 import org.dmfs.provider.tasks.processors.NoOpProcessor;
 import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.ParallelInstantiation;
+import org.dmfs.provider.tasks.utils.NextTriggers;
+import org.dmfs.provider.tasks.utils.Reminders;
 import org.dmfs.provider.tasks.utils.TableColumns;
 import org.dmfs.tasks.contract.TaskContract;
 import org.dmfs.tasks.contract.TaskContract.Properties;
@@ -38,6 +38,9 @@ import org.dmfs.tasks.contract.TaskContract.Property.Category;
 import org.dmfs.tasks.contract.TaskContract.TaskLists;
 import org.dmfs.tasks.contract.TaskContract.Tasks;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
 
@@ -71,7 +74,7 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
     /**
      * The database version.
      */
-    private static final int DATABASE_VERSION = 22;
+    private static final int DATABASE_VERSION = 28;
 
 
     /**
@@ -95,6 +98,8 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
 
         String INSTANCE_CLIENT_VIEW = "Instance_Client_View";
 
+        String INSTANCE_TASK_CLIENT_VIEW = "Instance_Task_Client_View";
+
         String INSTANCE_PROPERTY_VIEW = "Instance_Property_View";
 
         String INSTANCE_CATEGORY_VIEW = "Instance_Cagetory_View";
@@ -108,6 +113,10 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
         String ALARMS = "Alarms";
 
         String SYNCSTATE = "SyncState";
+
+        String CHANGES = "Changes";
+
+        String NEXT_TRIGGER = "Next_Trigger";
     }
 
 
@@ -125,6 +134,41 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
     }
 
 
+    /**
+     * Columns of the internal table of pending start and due triggers, see {@link NextTriggers}.
+     */
+    public interface NextTriggerColumns
+    {
+        String INSTANCE_ID = "instance_id";
+
+        String TASK_ID = "task_id";
+
+        /**
+         * The type of the trigger, either {@link #TYPE_START} or {@link #TYPE_DUE}.
+         */
+        String TYPE = "type";
+
+        /**
+         * The timestamp of the trigger. Floating and all-day triggers are converted to the local time zone, see {@link NextTriggers}.
+         */
+        String TIME = "time";
+
+        int TYPE_START = 1;
+
+        /**
+         * Due triggers are greater than start triggers, so a due trigger wins if both are returned for the same instance.
+         */
+        int TYPE_DUE = 2;
+    }
+
+
+    /**
+     * The list columns the task and instance views add to the columns of the tasks.
+     */
+    public final static List<String> LIST_COLUMNS = Collections.unmodifiableList(
+            Arrays.asList(Tasks.ACCOUNT_NAME, Tasks.ACCOUNT_TYPE, Tasks.LIST_OWNER, Tasks.LIST_NAME, Tasks.LIST_ACCESS_LEVEL, Tasks.LIST_COLOR,
+                    Tasks.VISIBLE));
+
     /**
      * SQL command to create a view that combines tasks with some data from the list they belong to.
      */
@@ -185,29 +229,13 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
      * <p>
      * This is the instances view as seen by the content provider clients.
      */
-    private final static String SQL_CREATE_INSTANCE_CLIENT_VIEW = "CREATE VIEW " + Tables.INSTANCE_CLIENT_VIEW + " AS SELECT "
-            + Tables.INSTANCES + ".*, "
-            // override task due, start and original times with the instance values
-            + Tables.INSTANCES + "." + TaskContract.Instances.INSTANCE_START + " as " + Tasks.DTSTART + ", "
-            + Tables.INSTANCES + "." + TaskContract.Instances.INSTANCE_DUE + " as " + Tasks.DUE + ", "
-            + Tables.INSTANCES + "." + TaskContract.Instances.INSTANCE_ORIGINAL_TIME + " as " + Tasks.ORIGINAL_INSTANCE_TIME + ", "
-            // override task duration with null, we already have a due
-            + "null as " + Tasks.DURATION + ", "
-            // override recurrence values with null, instances themselves are not recurring
-            + "null as " + Tasks.RRULE + ", "
-            + "null as " + Tasks.RDATE + ", "
-            + "null as " + Tasks.EXDATE + ", "
-            + Tables.TASKS + ".*, "
-            + Tables.LISTS + "." + Tasks.ACCOUNT_NAME + ", "
-            + Tables.LISTS + "." + Tasks.ACCOUNT_TYPE + ", "
-            + Tables.LISTS + "." + Tasks.LIST_OWNER + ", "
-            + Tables.LISTS + "." + Tasks.LIST_NAME + ", "
-            + Tables.LISTS + "." + Tasks.LIST_ACCESS_LEVEL + ", "
-            + Tables.LISTS + "." + Tasks.LIST_COLOR + ", "
-            + Tables.LISTS + "." + Tasks.VISIBLE
-            + " FROM " + Tables.TASKS
-            + " JOIN " + Tables.LISTS + " ON (" + Tables.TASKS + "." + TaskContract.Tasks.LIST_ID + "=" + Tables.LISTS + "." + TaskContract.TaskLists._ID + ")"
-            + " JOIN " + Tables.INSTANCES + " ON (" + Tables.TASKS + "." + TaskContract.Tasks._ID + "=" + Tables.INSTANCES + "." + TaskContract.Instances.TASK_ID + ");";
+    private final static String SQL_CREATE_INSTANCE_CLIENT_VIEW = instanceClientView(Tables.INSTANCE_CLIENT_VIEW, true);
+
+    /**
+     * SQL command to create a view like {@link Tables#INSTANCE_CLIENT_VIEW}, but without the list columns. Queries which don't need any list columns use this
+     * one, so they don't pay for joining the lists table.
+     */
+    private final static String SQL_CREATE_INSTANCE_TASK_CLIENT_VIEW = instanceClientView(Tables.INSTANCE_TASK_CLIENT_VIEW, false);
 
     /**
      * SQL command to create a view that combines task instances view with the belonging properties.
@@ -489,13 +517,90 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
                     + "FOREIGN KEY (" + CategoriesMapping.CATEGORY_ID + ") REFERENCES " + Tables.CATEGORIES + "(" + TaskContract.Categories._ID + "));";
 
     /**
-     * SQL command to create the alarms table the stores the already triggered alarms.
+     * SQL command to create the alarms table that contains the reminder queue, see {@link Reminders}.
      */
     private final static String SQL_CREATE_ALARMS_TABLE =
-            "CREATE TABLE " + Tables.ALARMS
-                    + " ( " + TaskContract.Alarms.ALARM_ID + " INTEGER,"
-                    + TaskContract.Alarms.LAST_TRIGGER + " TEXT,"
-                    + TaskContract.Alarms.NEXT_TRIGGER + " TEXT);";
+            "CREATE TABLE IF NOT EXISTS " + Tables.ALARMS
+                    + " ( " + TaskContract.Alarms.ALARM_ID + " INTEGER NOT NULL,"
+                    + TaskContract.Alarms.INSTANCE_ID + " INTEGER NOT NULL,"
+                    + TaskContract.Alarms.TASK_ID + " INTEGER NOT NULL,"
+                    + TaskContract.Alarms.LAST_TRIGGER + " INTEGER,"
+                    + TaskContract.Alarms.NEXT_TRIGGER + " INTEGER NOT NULL);";
+
+    /**
+     * SQL command to create a trigger that removes the reminders of deleted instances.
+     */
+    private final static String SQL_CREATE_ALARM_INSTANCE_CLEANUP_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS alarm_instance_cleanup_trigger AFTER DELETE ON " + Tables.INSTANCES + " BEGIN "
+                    + " DELETE FROM " + Tables.ALARMS + " WHERE " + TaskContract.Alarms.INSTANCE_ID + " = OLD." + TaskContract.Instances._ID + ";"
+                    + " END;";
+
+    /**
+     * The maximum number of rows to keep in the change log. Older changes are removed automatically.
+     */
+    public final static int MAX_CHANGES = 10000;
+
+    /**
+     * SQL command to create the change log table.
+     */
+    private final static String SQL_CREATE_CHANGES_TABLE =
+            "CREATE TABLE " + Tables.CHANGES
+                    + " ( " + TaskContract.Changes.SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + TaskContract.Changes.TASK_ID + " INTEGER,"
+                    + TaskContract.Changes.INSTANCE_ID + " INTEGER,"
+                    + TaskContract.Changes.OPERATION + " INTEGER,"
+                    + TaskContract.Changes.VERSION + " INTEGER);";
+
+    /**
+     * SQL command to create a trigger that truncates the change log to {@link #MAX_CHANGES} rows. Sequence numbers are assigned without gaps, so this only
+     * needs to look at the primary key.
+     */
+    private final static String SQL_CREATE_CHANGES_TRUNCATE_TRIGGER =
+            "CREATE TRIGGER change_log_truncate_trigger AFTER INSERT ON " + Tables.CHANGES + " BEGIN "
+                    + " DELETE FROM " + Tables.CHANGES + " WHERE " + TaskContract.Changes.SEQUENCE + " <= NEW." + TaskContract.Changes.SEQUENCE + " - "
+                    + MAX_CHANGES + ";"
+                    + " END;";
+
+    /**
+     * SQL command to create a trigger that logs the removal of a task. Tasks are not only removed by the task processors, but also by other triggers (e.g.
+     * when their list is removed), so this is done by a trigger to catch all of them. The change is logged with the last version of the task.
+     */
+    private final static String SQL_CREATE_CHANGES_DELETE_TRIGGER =
+            "CREATE TRIGGER change_log_delete_trigger AFTER DELETE ON " + Tables.TASKS + " BEGIN "
+                    + " INSERT INTO " + Tables.CHANGES + " (" + TaskContract.Changes.TASK_ID + ", " + TaskContract.Changes.OPERATION + ", "
+                    + TaskContract.Changes.VERSION + ") VALUES (OLD." + Tasks._ID + ", " + TaskContract.Changes.OPERATION_DELETE + ", OLD." + Tasks.VERSION + ");"
+                    + " END;";
+
+    /**
+     * SQL command to create a trigger that logs a task being flagged as deleted. The version is read back from the table, since it's incremented by {@link
+     * #SQL_CREATE_TASK_VERSION_TRIGGER}.
+     */
+    private final static String SQL_CREATE_CHANGES_FLAG_DELETED_TRIGGER =
+            "CREATE TRIGGER change_log_flag_deleted_trigger AFTER UPDATE OF " + Tasks._DELETED + " ON " + Tables.TASKS + " WHEN NEW." + Tasks._DELETED
+                    + " <> 0 AND OLD." + Tasks._DELETED + " = 0 BEGIN "
+                    + " INSERT INTO " + Tables.CHANGES + " (" + TaskContract.Changes.TASK_ID + ", " + TaskContract.Changes.OPERATION + ", "
+                    + TaskContract.Changes.VERSION + ") SELECT " + Tasks._ID + ", " + TaskContract.Changes.OPERATION_DELETE + ", " + Tasks.VERSION + " FROM "
+                    + Tables.TASKS + " WHERE " + Tasks._ID + " = NEW." + Tasks._ID + ";"
+                    + " END;";
+
+    /**
+     * SQL command to create the table of pending start and due triggers.
+     */
+    private final static String SQL_CREATE_NEXT_TRIGGER_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + Tables.NEXT_TRIGGER
+                    + " ( " + NextTriggerColumns.INSTANCE_ID + " INTEGER NOT NULL,"
+                    + NextTriggerColumns.TASK_ID + " INTEGER NOT NULL,"
+                    + NextTriggerColumns.TYPE + " INTEGER NOT NULL,"
+                    + NextTriggerColumns.TIME + " INTEGER NOT NULL);";
+
+    /**
+     * SQL command to create a trigger that removes the triggers of deleted instances. Most instances are removed by {@link NextTriggers#update(SQLiteDatabase,
+     * long)} already, but instances are also removed by other triggers, e.g. when a list is removed.
+     */
+    private final static String SQL_CREATE_NEXT_TRIGGER_CLEANUP_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS next_trigger_cleanup_trigger AFTER DELETE ON " + Tables.INSTANCES + " BEGIN "
+                    + " DELETE FROM " + Tables.NEXT_TRIGGER + " WHERE " + NextTriggerColumns.INSTANCE_ID + " = OLD." + TaskContract.Instances._ID + ";"
+                    + " END;";
 
     /**
      * SQL command to create the table for extended properties.
@@ -537,6 +642,85 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
     private final static String SQL_DROP_PROPERTIES_TABLE = "DROP TABLE " + Tables.PROPERTIES + ";";
 
 
+    /**
+     * Builds the SQL command to create a view that combines task instances with the data of their tasks. The task DTSTART, DUE and ORIGINAL_INSTANCE_TIME
+     * values are replaced with respective values of the instance.
+     *
+     * @param name
+     *         The name of the view.
+     * @param withLists
+     *         Whether to include the list columns.
+     *
+     * @return An SQL command string.
+     */
+    private static String instanceClientView(String name, boolean withLists)
+    {
+        StringBuilder builder = new StringBuilder("CREATE VIEW ").append(name).append(" AS SELECT ")
+                .append(Tables.INSTANCES).append(".*, ")
+                // override task due, start and original times with the instance values
+                .append(Tables.INSTANCES).append(".").append(TaskContract.Instances.INSTANCE_START).append(" as ").append(Tasks.DTSTART).append(", ")
+                .append(Tables.INSTANCES).append(".").append(TaskContract.Instances.INSTANCE_DUE).append(" as ").append(Tasks.DUE).append(", ")
+                .append(Tables.INSTANCES).append(".").append(TaskContract.Instances.INSTANCE_ORIGINAL_TIME).append(" as ").append(Tasks.ORIGINAL_INSTANCE_TIME)
+                .append(", ")
+                // override task duration with null, we already have a due
+                .append("null as ").append(Tasks.DURATION).append(", ")
+                // override recurrence values with null, instances themselves are not recurring
+                .append("null as ").append(Tasks.RRULE).append(", ")
+                .append("null as ").append(Tasks.RDATE).append(", ")
+                .append("null as ").append(Tasks.EXDATE).append(", ")
+                .append(Tables.TASKS).append(".*");
+        if (withLists)
+        {
+            for (String column : LIST_COLUMNS)
+            {
+                builder.append(", ").append(Tables.LISTS).append(".").append(column);
+            }
+        }
+        builder.append(" FROM ").append(Tables.TASKS);
+        if (withLists)
+        {
+            builder.append(" JOIN ").append(Tables.LISTS)
+                    .append(" ON (").append(Tables.TASKS).append(".").append(Tasks.LIST_ID).append("=").append(Tables.LISTS).append(".").append(TaskLists._ID)
+                    .append(")");
+        }
+        builder.append(" JOIN ").append(Tables.INSTANCES)
+                .append(" ON (").append(Tables.TASKS).append(".").append(Tasks._ID).append("=").append(Tables.INSTANCES).append(".")
+                .append(TaskContract.Instances.TASK_ID).append(");");
+        return builder.toString();
+    }
+
+
+    private static void createNextTriggerTable(SQLiteDatabase db)
+    {
+        db.execSQL(SQL_CREATE_NEXT_TRIGGER_TABLE);
+        // covers the queries of the next trigger, so these don't need to touch the table at all
+        db.execSQL(createIndexString(Tables.NEXT_TRIGGER, false, NextTriggerColumns.TIME, NextTriggerColumns.TYPE, NextTriggerColumns.INSTANCE_ID));
+        db.execSQL(createIndexString(Tables.NEXT_TRIGGER, false, NextTriggerColumns.TASK_ID));
+        db.execSQL(SQL_CREATE_NEXT_TRIGGER_CLEANUP_TRIGGER);
+    }
+
+
+    private static void createAlarmsTable(SQLiteDatabase db)
+    {
+        db.execSQL(SQL_CREATE_ALARMS_TABLE);
+        // covers the queries of the next reminders
+        db.execSQL(createIndexString(Tables.ALARMS, false, TaskContract.Alarms.NEXT_TRIGGER, TaskContract.Alarms.ALARM_ID, TaskContract.Alarms.INSTANCE_ID));
+        db.execSQL(createIndexString(Tables.ALARMS, false, TaskContract.Alarms.TASK_ID));
+        db.execSQL(createIndexString(Tables.ALARMS, false, TaskContract.Alarms.ALARM_ID));
+        db.execSQL(SQL_CREATE_ALARM_INSTANCE_CLEANUP_TRIGGER);
+    }
+
+
+    /**
+     * The alarms table used to have a different schema, but it has never been populated, so it's just replaced.
+     */
+    private static void replaceAlarmsTable(SQLiteDatabase db)
+    {
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.ALARMS);
+        createAlarmsTable(db);
+    }
+
+
     /**
      * Builds a string that creates an index on the given table for the given columns.
      *
@@ -584,6 +768,8 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
     {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
         mListener = listener;
+        // use write-ahead logging, so readers get their own connections and don't have to wait for long running transactions (like sync batches)
+        setWriteAheadLoggingEnabled(true);
     }
 
 
@@ -629,7 +815,7 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
         db.execSQL(SQL_CREATE_CATEGORIES_MAPPING_TABLE);
 
         // create alarms table
-        db.execSQL(SQL_CREATE_ALARMS_TABLE);
+        createAlarmsTable(db);
 
         // create properties table
         db.execSQL(SQL_CREATE_PROPERTIES_TABLE);
@@ -637,11 +823,21 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
         // create syncstate table
         db.execSQL(SQL_CREATE_SYNCSTATE_TABLE);
 
+        // create change log table
+        db.execSQL(SQL_CREATE_CHANGES_TABLE);
+        db.execSQL(SQL_CREATE_CHANGES_TRUNCATE_TRIGGER);
+        db.execSQL(SQL_CREATE_CHANGES_DELETE_TRIGGER);
+        db.execSQL(SQL_CREATE_CHANGES_FLAG_DELETED_TRIGGER);
+
+        // create next trigger table
+        createNextTriggerTable(db);
+
         // create views
         db.execSQL(SQL_CREATE_TASK_VIEW);
         db.execSQL(SQL_CREATE_TASK_PROPERTY_VIEW);
         db.execSQL(SQL_CREATE_INSTANCE_VIEW);
         db.execSQL(SQL_CREATE_INSTANCE_CLIENT_VIEW);
+        db.execSQL(SQL_CREATE_INSTANCE_TASK_CLIENT_VIEW);
         db.execSQL(SQL_CREATE_INSTANCE_PROPERTY_VIEW);
         db.execSQL(SQL_CREATE_INSTANCE_CATEGORY_VIEW);
 
@@ -850,8 +1046,11 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
             db.beginTransaction();
             try
             {
+                // the instances processor maintains the triggers and reminders too
+                createNextTriggerTable(db);
+                replaceAlarmsTable(db);
+
                 // make sure we upgrade the instances of every recurring task
-                EntityProcessor<TaskAdapter> processor = new Instantiating(new NoOpProcessor<>());
                 try (Cursor c = db.query(Tables.TASKS,
                         new String[] {
                                 TaskContract.Tasks._ID, Tasks.ORIGINAL_INSTANCE_ID, Tasks.DTSTART, Tasks.DUE, Tasks.DURATION, Tasks.IS_CLOSED, Tasks.TZ,
@@ -859,13 +1058,8 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
                         String.format(Locale.ENGLISH, "%s is null", TaskContract.Tasks.ORIGINAL_INSTANCE_ID),
                         null, null, null, null))
                 {
-                    while (c.moveToNext())
-                    {
-                        ContentValues values = new ContentValues();
-                        Instantiating.addUpdateRequest(values);
-                        TaskAdapter adapter = new CursorContentValuesTaskAdapter(c, values);
-                        processor.update(db, adapter, false);
-                    }
+                    // the recurrence sets are expanded in parallel, the instances are written on this thread
+                    new ParallelInstantiation(new Instantiating(new NoOpProcessor<>()), 100).update(db, c);
                 }
                 db.setTransactionSuccessful();
             }
@@ -875,6 +1069,35 @@ public class TaskDatabaseHelper extends SQLiteOpenHelper
             }
         }
 
+        if (oldVersion < 24)
+        {
+            db.execSQL(SQL_CREATE_CHANGES_TABLE);
+            db.execSQL(SQL_CREATE_CHANGES_TRUNCATE_TRIGGER);
+        }
+
+        if (oldVersion < 25)
+        {
+            db.execSQL(SQL_CREATE_INSTANCE_TASK_CLIENT_VIEW);
+        }
+
+        if (oldVersion < 26)
+        {
+            createNextTriggerTable(db);
+            NextTriggers.rebuild(db);
+        }
+
+        if (oldVersion < 27)
+        {
+            replaceAlarmsTable(db);
+            Reminders.rebuild(db);
+        }
+
+        if (oldVersion < 28)
+        {
+            db.execSQL(SQL_CREATE_CHANGES_DELETE_TRIGGER);
+            db.execSQL(SQL_CREATE_CHANGES_FLAG_DELETED_TRIGGER);
+        }
+
         // upgrade FTS
         FTSDatabaseHelper.onUpgrade(db, oldVersion, newVersion);
 
@@ -19,11 +19,14 @@ package org.dmfs.provider.tasks;
 import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.accounts.OnAccountsUpdateListener;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
@@ -31,10 +34,15 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteTransactionListener;
 import android.net.Uri;
+import android.os.Binder;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -51,11 +59,14 @@ import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
 import org.dmfs.provider.tasks.model.InstanceAdapter;
 import org.dmfs.provider.tasks.model.ListAdapter;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.Batches;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
 import org.dmfs.provider.tasks.processors.instances.Detaching;
 import org.dmfs.provider.tasks.processors.instances.TaskValueDelegate;
 import org.dmfs.provider.tasks.processors.lists.ListCommitProcessor;
 import org.dmfs.provider.tasks.processors.tasks.AutoCompleting;
+import org.dmfs.provider.tasks.processors.tasks.ChangeLogging;
+import org.dmfs.provider.tasks.processors.tasks.DeferredSearchable;
 import org.dmfs.provider.tasks.processors.tasks.Instantiating;
 import org.dmfs.provider.tasks.processors.tasks.Moving;
 import org.dmfs.provider.tasks.processors.tasks.Originating;
@@ -64,12 +75,18 @@ import org.dmfs.provider.tasks.processors.tasks.Reparenting;
 import org.dmfs.provider.tasks.processors.tasks.Searchable;
 import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
 import org.dmfs.provider.tasks.processors.tasks.Validating;
+import org.dmfs.provider.tasks.utils.CompositeTransactionListener;
+import org.dmfs.provider.tasks.utils.MetadataCache;
+import org.dmfs.provider.tasks.utils.Profiled;
+import org.dmfs.provider.tasks.utils.StatementCache;
+import org.dmfs.tasks.contract.OperationStream;
 import org.dmfs.tasks.contract.TaskContract;
 import org.dmfs.tasks.contract.TaskContract.Alarms;
 import org.dmfs.tasks.contract.TaskContract.Categories;
 import org.dmfs.tasks.contract.TaskContract.CategoriesColumns;
 import org.dmfs.tasks.contract.TaskContract.Instances;
 import org.dmfs.tasks.contract.TaskContract.Properties;
+import org.dmfs.tasks.contract.TaskContract.Property.Alarm;
 import org.dmfs.tasks.contract.TaskContract.PropertyColumns;
 import org.dmfs.tasks.contract.TaskContract.SyncState;
 import org.dmfs.tasks.contract.TaskContract.TaskColumns;
@@ -77,10 +94,21 @@ import org.dmfs.tasks.contract.TaskContract.TaskListColumns;
 import org.dmfs.tasks.contract.TaskContract.TaskListSyncColumns;
 import org.dmfs.tasks.contract.TaskContract.TaskLists;
 import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.dmfs.tasks.provider.R;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -91,8 +119,6 @@ import java.util.concurrent.atomic.AtomicReference;
  * <p>
  * TODO: add support for recurring tasks
  * <p>
- * TODO: add support for reminders
- * <p>
  * TODO: add support for attendees
  * <p>
  * TODO: refactor the selection stuff
@@ -118,12 +144,47 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     private static final int SEARCH = 1007;
     private static final int SYNCSTATE = 1008;
     private static final int SYNCSTATE_ID = 1009;
+    private static final int CHANGES = 1010;
+    private static final int COUNTS = 1011;
 
     private static final int OPERATIONS = 100000;
 
     private final static Set<String> TASK_LIST_SYNC_COLUMNS = new HashSet<String>(Arrays.asList(TaskLists.SYNC_ADAPTER_COLUMNS));
     private static final String TAG = "TaskProvider";
 
+    /**
+     * The maximum number of tasks to index in a single transaction when deferred search indexing is enabled.
+     */
+    private static final int SEARCH_INDEX_BATCH_SIZE = 50;
+
+    /**
+     * The maximum number of tasks to migrate to the FTS4 search engine in a single transaction.
+     */
+    private static final int SEARCH_MIGRATION_BATCH_SIZE = 500;
+
+    /**
+     * The maximum number of tasks to pass to the processors at once in {@link #bulkInsert(Uri, ContentValues[])}.
+     */
+    private static final int BULK_INSERT_BATCH_SIZE = 100;
+
+    /**
+     * The maximum number of {@link SearchSession}s to keep.
+     */
+    private static final int MAX_SEARCH_SESSIONS = 4;
+
+    /**
+     * The task to run after tasks have been changed. It updates the notification alarms and sends the provider changed broadcast.
+     */
+    private final Runnable mProviderChangedTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            updateNotifications();
+            Utils.sendActionProviderChangedBroadCast(getContext(), mAuthority);
+        }
+    };
+
     /**
      * A list of {@link EntityProcessor}s to execute when doing operations on the instances table.
      */
@@ -154,6 +215,11 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
      */
     Handler mAsyncHandler;
 
+    /**
+     * The queue of pending {@link ContentOperation}s, they run on {@link #mAsyncHandler}.
+     */
+    private ContentOperationQueue mOperationQueue;
+
     /**
      * Boolean to track if there are changes within a transaction.
      * <p>
@@ -173,6 +239,44 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
      */
     private AtomicReference<Set<Account>> mAccountCache = new AtomicReference<>(Collections.emptySet());
 
+    /**
+     * Indicates whether the search index is updated after the commit rather than in the transaction itself.
+     */
+    private boolean mDeferredSearchIndexing;
+
+    /**
+     * Indicates whether an update of the search index has been posted to {@link #mAsyncHandler} but not started yet.
+     */
+    private final AtomicBoolean mSearchIndexUpdatePosted = new AtomicBoolean(false);
+
+    /**
+     * Indicates whether searches are supposed to use the FTS4 search engine.
+     */
+    private boolean mFts4Search;
+
+    /**
+     * Indicates whether the FTS4 search engine has been migrated and can be used. Until then searches use the n-gram search engine.
+     */
+    private volatile boolean mFts4SearchReady;
+
+    /**
+     * The {@link SearchSession}s of the most recent as-you-type searches by session key. Sessions are discarded whenever a transaction adds n-grams to the
+     * search index.
+     */
+    private final Map<String, SearchSession> mSearchSessions = Collections.synchronizedMap(new LinkedHashMap<String, SearchSession>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SearchSession> eldest)
+        {
+            return size() > MAX_SEARCH_SESSIONS;
+        }
+    });
+
+    /**
+     * The task counts, cached until the next write transaction.
+     */
+    private final TaskCounts mTaskCounts = new TaskCounts();
+
 
     public TaskProvider()
     {
@@ -186,13 +290,19 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     {
         mAuthority = AuthorityUtil.taskAuthority(getContext());
 
-        mTaskProcessorChain = new Validating(
-                new AutoCompleting(new Relating(new Reparenting(new Instantiating(new Searchable(new Moving(new Originating(new TaskCommitProcessor()))))))));
+        mDeferredSearchIndexing = getContext().getResources().getBoolean(R.bool.opentasks_deferred_search_indexing);
+        mFts4Search = getContext().getResources().getBoolean(R.bool.opentasks_fts4_search);
+
+        EntityProcessor<TaskAdapter> committingChain = new Moving(new Originating(new TaskCommitProcessor()));
+        mTaskProcessorChain = new Validating(new ChangeLogging(
+                new AutoCompleting(new Relating(new Reparenting(new Instantiating(
+                        mDeferredSearchIndexing ? new DeferredSearchable(committingChain) : new Searchable(committingChain)))))));
 
         mListProcessorChain = new org.dmfs.provider.tasks.processors.lists.Validating(new ListCommitProcessor());
 
         mInstanceProcessorChain = new org.dmfs.provider.tasks.processors.instances.Validating(
-                new Detaching(new TaskValueDelegate(mTaskProcessorChain), mTaskProcessorChain));
+                new org.dmfs.provider.tasks.processors.instances.ChangeLogging(
+                        new Detaching(new TaskValueDelegate(mTaskProcessorChain), mTaskProcessorChain)));
 
         mUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
         mUriMatcher.addURI(mAuthority, TaskContract.TaskLists.CONTENT_URI_PATH, LISTS);
@@ -219,6 +329,10 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
         mUriMatcher.addURI(mAuthority, TaskContract.SyncState.CONTENT_URI_PATH, SYNCSTATE);
         mUriMatcher.addURI(mAuthority, TaskContract.SyncState.CONTENT_URI_PATH + "/#", SYNCSTATE_ID);
 
+        mUriMatcher.addURI(mAuthority, TaskContract.Changes.CONTENT_URI_PATH, CHANGES);
+
+        mUriMatcher.addURI(mAuthority, TaskContract.Counts.CONTENT_URI_PATH, COUNTS);
+
         ContentOperation.register(mUriMatcher, mAuthority, OPERATIONS);
 
         boolean result = super.onCreate();
@@ -227,12 +341,47 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
         HandlerThread thread = new HandlerThread("backgroundHandler");
         thread.start();
         mAsyncHandler = new Handler(thread.getLooper());
+        // operations write to the database like any other caller, with our transaction listener and our change notifications
+        ContentOperation.Provider provider = new ContentOperation.Provider()
+        {
+            @Override
+            public SQLiteTransactionListener transactionListener(SQLiteDatabase db)
+            {
+                return TaskProvider.this.transactionListener(db);
+            }
+
+
+            @Override
+            public void notifyChange(Uri uri)
+            {
+                TaskProvider.this.notifyChange(uri);
+            }
+        };
+        mOperationQueue = new ContentOperationQueue(mAsyncHandler,
+                (operation, uri, values) -> operation.handle(getContext(), uri, getDatabaseHelper().getWritableDatabase(), provider, values));
 
         AccountManager accountManager = AccountManager.get(getContext());
         accountManager.addOnAccountsUpdatedListener(this, mAsyncHandler, true);
 
         updateNotifications();
 
+        mAsyncHandler.post(() ->
+        {
+            if (ContentOperation.isTimeZoneUpdatePending(getContext()))
+            {
+                // resume an interrupted time zone update
+                ContentOperation.UPDATE_TIMEZONE.fire(getContext(), null);
+            }
+        });
+
+        if (mDeferredSearchIndexing)
+        {
+            // index any tasks left over from the last run
+            postSearchIndexUpdate();
+        }
+
+        mAsyncHandler.post(() -> new Profiled("SearchEngineMigration").run(this::migrateSearchEngine));
+
         return result;
     }
 
@@ -530,7 +679,16 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder)
     {
-        final SQLiteDatabase db = getDatabaseHelper().getWritableDatabase();
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder, CancellationSignal cancellationSignal)
+    {
+        // note, this returns the same database as getWritableDatabase(), with write-ahead logging enabled the connection pool runs queries
+        // on a separate connection (unless this thread is in a transaction), so readers don't have to wait for writers
+        final SQLiteDatabase db = getDatabaseHelper().getReadableDatabase();
         SQLiteQueryBuilder sqlBuilder = new SQLiteQueryBuilder();
         // initialize appendWhere, this allows us to append all other selections with a preceding "AND"
         sqlBuilder.appendWhere(" 1=1 ");
@@ -572,6 +730,10 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 break;
 
             case TASKS:
+                if (sortOrder == null || sortOrder.length() == 0)
+                {
+                    sortOrder = TaskContract.Tasks.DEFAULT_SORT_ORDER;
+                }
                 if (shouldLoadProperties(uri))
                 {
                     // extended properties were requested, therefore change to task view that includes these properties
@@ -579,7 +741,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 }
                 else
                 {
-                    sqlBuilder.setTables(Tables.TASKS_VIEW);
+                    // don't join the lists unless we need any of their columns
+                    sqlBuilder.setTables(QuerySources.tasks(projection, selection, sortOrder));
                 }
                 if (!isSyncAdapter)
                 {
@@ -588,13 +751,13 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                     sqlBuilder.appendWhere(Tasks._DELETED);
                     sqlBuilder.appendWhere("=0");
                 }
+                break;
+
+            case TASK_ID:
                 if (sortOrder == null || sortOrder.length() == 0)
                 {
                     sortOrder = TaskContract.Tasks.DEFAULT_SORT_ORDER;
                 }
-                break;
-
-            case TASK_ID:
                 if (shouldLoadProperties(uri))
                 {
                     // extended properties were requested, therefore change to task view that includes these properties
@@ -602,7 +765,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 }
                 else
                 {
-                    sqlBuilder.setTables(Tables.TASKS_VIEW);
+                    // don't join the lists unless we need any of their columns
+                    sqlBuilder.setTables(QuerySources.tasks(projection, selection, sortOrder));
                 }
                 selectId(sqlBuilder, TaskColumns._ID, uri);
                 if (!isSyncAdapter)
@@ -612,13 +776,13 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                     sqlBuilder.appendWhere(Tasks._DELETED);
                     sqlBuilder.appendWhere("=0");
                 }
-                if (sortOrder == null || sortOrder.length() == 0)
-                {
-                    sortOrder = TaskContract.Tasks.DEFAULT_SORT_ORDER;
-                }
                 break;
 
             case INSTANCES:
+                if (sortOrder == null || sortOrder.length() == 0)
+                {
+                    sortOrder = TaskContract.Instances.DEFAULT_SORT_ORDER;
+                }
                 if (shouldLoadProperties(uri))
                 {
                     // extended properties were requested, therefore change to instance view that includes these properties
@@ -626,7 +790,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 }
                 else
                 {
-                    sqlBuilder.setTables(Tables.INSTANCE_CLIENT_VIEW);
+                    // don't join the lists unless we need any of their columns
+                    sqlBuilder.setTables(QuerySources.instances(projection, selection, sortOrder));
                 }
                 if (!isSyncAdapter)
                 {
@@ -635,13 +800,19 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                     sqlBuilder.appendWhere(Tasks._DELETED);
                     sqlBuilder.appendWhere("=0");
                 }
-                if (sortOrder == null || sortOrder.length() == 0)
+                InstanceBuckets buckets = InstanceBuckets.of(uri);
+                if (buckets != null)
                 {
-                    sortOrder = TaskContract.Instances.DEFAULT_SORT_ORDER;
+                    projection = buckets.projection(projection);
+                    sortOrder = buckets.sortOrder(sortOrder);
                 }
                 break;
 
             case INSTANCE_ID:
+                if (sortOrder == null || sortOrder.length() == 0)
+                {
+                    sortOrder = TaskContract.Instances.DEFAULT_SORT_ORDER;
+                }
                 if (shouldLoadProperties(uri))
                 {
                     // extended properties were requested, therefore change to instance view that includes these properties
@@ -649,7 +820,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 }
                 else
                 {
-                    sqlBuilder.setTables(Tables.INSTANCE_CLIENT_VIEW);
+                    // don't join the lists unless we need any of their columns
+                    sqlBuilder.setTables(QuerySources.instances(projection, selection, sortOrder));
                 }
                 selectId(sqlBuilder, Instances._ID, uri);
                 if (!isSyncAdapter)
@@ -659,10 +831,6 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                     sqlBuilder.appendWhere(Tasks._DELETED);
                     sqlBuilder.appendWhere("=0");
                 }
-                if (sortOrder == null || sortOrder.length() == 0)
-                {
-                    sortOrder = TaskContract.Instances.DEFAULT_SORT_ORDER;
-                }
                 break;
 
             case CATEGORIES:
@@ -694,9 +862,18 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 break;
 
             case SEARCH:
+                if (mDeferredSearchIndexing)
+                {
+                    // make sure all tasks are indexed before we search
+                    updateSearchIndex();
+                }
                 String searchString = uri.getQueryParameter(Tasks.SEARCH_QUERY_PARAMETER);
                 searchString = Uri.decode(searchString);
-                Cursor searchCursor = FTSDatabaseHelper.getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder);
+                SearchResultWindow window = SearchResultWindow.fromUri(uri);
+                Cursor searchCursor = mFts4SearchReady ?
+                        FTS4DatabaseHelper.getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder, window, cancellationSignal) :
+                        FTSDatabaseHelper.getTaskSearchCursor(db, searchString, projection, selection, selectionArgs, sortOrder, window,
+                                searchSession(uri.getQueryParameter(Tasks.SEARCH_SESSION_PARAMETER)), cancellationSignal);
                 if (searchCursor != null)
                 {
                     // attach tasks uri for notifications, that way the search results are updated when a task changes
@@ -704,17 +881,123 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 }
                 return searchCursor;
 
+            case CHANGES:
+            {
+                sqlBuilder.setTables(changesSince(db, uri.getQueryParameter(TaskContract.Changes.SINCE_PARAMETER)));
+                if (sortOrder == null || sortOrder.length() == 0)
+                {
+                    sortOrder = TaskContract.Changes.SEQUENCE;
+                }
+                Cursor c = sqlBuilder.query(db, projection, selection, selectionArgs, null, null, sortOrder, null, cancellationSignal);
+                if (c != null)
+                {
+                    // any change of a task results in a new change log entry
+                    c.setNotificationUri(getContext().getContentResolver(), Tasks.getContentUri(mAuthority));
+                }
+                return c;
+            }
+
+            case COUNTS:
+            {
+                Cursor c = mTaskCounts.query(db, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+                // counts change with any task or list
+                c.setNotificationUri(getContext().getContentResolver(), TaskContract.getContentUri(mAuthority));
+                return c;
+            }
+
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
-        Cursor c = sqlBuilder.query(db, projection, selection, selectionArgs, null, null, sortOrder);
+        KeysetPage page = null;
+        String limit = null;
+        String pageSize = uri.getQueryParameter(TaskContract.PAGE_SIZE_PARAMETER);
+        if (pageSize != null)
+        {
+            int match = mUriMatcher.match(uri);
+            if (match != TASKS && match != INSTANCES || uri.getQueryParameter(Instances.BUCKETS_PARAMETER) != null)
+            {
+                throw new IllegalArgumentException("Paging is not supported for " + uri);
+            }
+            try
+            {
+                page = new KeysetPage(sortOrder, Integer.parseInt(pageSize), uri.getQueryParameter(TaskContract.PAGE_AFTER_PARAMETER));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Invalid page size " + pageSize, e);
+            }
+            String pageSelection = page.selection();
+            if (pageSelection != null)
+            {
+                selection = updateSelection(new StringBuilder(pageSelection), selection);
+                selectionArgs = joined(page.selectionArgs(), selectionArgs);
+            }
+            projection = page.projection(projection);
+            sortOrder = page.sortOrder();
+            limit = page.limit();
+        }
+
+        Cursor c = sqlBuilder.query(db, projection, selection, selectionArgs, null, null, sortOrder, limit, cancellationSignal);
 
         if (c != null)
         {
             c.setNotificationUri(getContext().getContentResolver(), uri);
         }
-        return c;
+        return page == null ? c : page.withNextPage(c);
+    }
+
+
+    private static String[] joined(String[] first, String[] second)
+    {
+        if (second == null || second.length == 0)
+        {
+            return first;
+        }
+        String[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+
+    /**
+     * Returns a sub-query of all changes after the given sequence token. If changes after the token have been truncated (or the token is larger than any
+     * sequence number we've ever handed out, which happens when the database has been recreated) the result starts with a row with operation {@link
+     * TaskContract.Changes#OPERATION_TRUNCATED}.
+     */
+    private String changesSince(SQLiteDatabase db, String sinceParam)
+    {
+        long since = -1;
+        if (sinceParam != null)
+        {
+            try
+            {
+                since = Long.parseLong(sinceParam);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Invalid sequence token " + sinceParam, e);
+            }
+        }
+
+        String changes = String.format(Locale.ENGLISH, "SELECT * FROM %s WHERE %s > %d", Tables.CHANGES, TaskContract.Changes.SEQUENCE, since);
+        if (since < 0)
+        {
+            // all changes were requested
+            return "(" + changes + ")";
+        }
+
+        long first = DatabaseUtils.longForQuery(db,
+                String.format(Locale.ENGLISH, "SELECT ifnull(min(%s), 1) FROM %s", TaskContract.Changes.SEQUENCE, Tables.CHANGES), null);
+        long last = DatabaseUtils.longForQuery(db, "SELECT ifnull(max(seq), 0) FROM sqlite_sequence WHERE name = ?", new String[] { Tables.CHANGES });
+        if (since >= first - 1 && since <= last)
+        {
+            return "(" + changes + ")";
+        }
+        // changes have been lost, return a marker followed by the entire change log
+        return String.format(Locale.ENGLISH, "(SELECT %d AS %s, NULL AS %s, NULL AS %s, %d AS %s, NULL AS %s UNION ALL SELECT * FROM %s)",
+                first - 1, TaskContract.Changes.SEQUENCE, TaskContract.Changes.TASK_ID, TaskContract.Changes.INSTANCE_ID,
+                TaskContract.Changes.OPERATION_TRUNCATED, TaskContract.Changes.OPERATION, TaskContract.Changes.VERSION, Tables.CHANGES);
     }
 
 
@@ -873,6 +1156,11 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                         {
                             PropertyHandler handler = PropertyHandlerFactory.get(mimeType);
                             count += handler.delete(db, taskId, propertyId, cursor, isSyncAdapter);
+                            if (Alarm.CONTENT_ITEM_TYPE.equals(mimeType))
+                            {
+                                // reschedule the reminders
+                                mChanged.set(true);
+                            }
                         }
                     }
                 }
@@ -1001,6 +1289,11 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 {
                     postNotifyUri(Tasks.getContentUri(mAuthority));
                     postNotifyUri(Instances.getContentUri(mAuthority));
+                    if (Alarm.CONTENT_ITEM_TYPE.equals(mimetype))
+                    {
+                        // reschedule the reminders
+                        mChanged.set(true);
+                    }
                 }
                 break;
 
@@ -1025,6 +1318,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     {
         int count = 0;
         boolean dataChanged = false;
+        // tasks and instances are notified by their item Uris, there is no need to notify the Uri of the update
+        boolean notifyUri = true;
         switch (mUriMatcher.match(uri))
         {
             case SYNCSTATE_ID:
@@ -1101,6 +1396,10 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
 
             case TASKS:
             {
+                notifyUri = false;
+                // get the hint before the processors add any values
+                final String hint = ChangeHints.of(values.keySet());
+                final boolean syncColumnsOnly = TASK_LIST_SYNC_COLUMNS.containsAll(values.keySet());
                 // iterate over all tasks that match the selection
                 final Cursor cursor = db.query(Tables.TASKS_VIEW, null, selection, selectionArgs, null, null, null, null);
 
@@ -1115,7 +1414,11 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                         if (task.hasUpdates())
                         {
                             mTaskProcessorChain.update(db, task, isSyncAdapter);
-                            dataChanged |= !TASK_LIST_SYNC_COLUMNS.containsAll(values.keySet());
+                            if (!syncColumnsOnly)
+                            {
+                                dataChanged = true;
+                                postNotifyUri(ChangeHints.itemUri(Tasks.getContentUri(mAuthority), task.id(), hint));
+                            }
                         }
                         // note we still count the row even if no update was necessary
                         count++;
@@ -1128,8 +1431,8 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
 
                 if (dataChanged)
                 {
-                    postNotifyUri(Instances.getContentUri(mAuthority));
-                    postNotifyUri(Tasks.getContentUri(mAuthority));
+                    // we don't know which instances have been changed, so notify all of them
+                    postNotifyUri(ChangeHints.withHint(Instances.getContentUri(mAuthority), hint));
                 }
                 break;
             }
@@ -1140,10 +1443,14 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
 
             case INSTANCES:
             {
+                notifyUri = false;
+                // get the hint before the processors add any values
+                final String hint = ChangeHints.of(values.keySet());
                 // iterate over all instances that match the selection
 
                 try (Cursor cursor = db.query(Tables.INSTANCE_VIEW, null, selection, selectionArgs, null, null, null, null))
                 {
+                    final int taskIdIdx = cursor.getColumnIndex(Instances.TASK_ID);
                     while (cursor.moveToNext())
                     {
                         // clone task values if we have more than one task to update
@@ -1153,19 +1460,17 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
 
                         if (instance.hasUpdates())
                         {
+                            long taskId = cursor.getLong(taskIdIdx);
                             mInstanceProcessorChain.update(db, instance, isSyncAdapter);
                             dataChanged = true;
+                            postNotifyUri(ChangeHints.itemUri(Instances.getContentUri(mAuthority), instance.id(), hint));
+                            // the update may have been applied to the task or to a new override
+                            postNotifyUri(ChangeHints.itemUri(Tasks.getContentUri(mAuthority), taskId, hint));
                         }
                         // note we still count the row even if no update was necessary
                         count++;
                     }
                 }
-
-                if (dataChanged)
-                {
-                    postNotifyUri(Instances.getContentUri(mAuthority));
-                    postNotifyUri(Tasks.getContentUri(mAuthority));
-                }
                 break;
             }
             case PROPERTY_ID:
@@ -1204,6 +1509,11 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                         {
                             PropertyHandler handler = PropertyHandlerFactory.get(mimeType);
                             count += handler.update(db, taskId, propertyId, values, cursor, isSyncAdapter);
+                            if (Alarm.CONTENT_ITEM_TYPE.equals(mimeType))
+                            {
+                                // reschedule the reminders
+                                mChanged.set(true);
+                            }
                         }
                     }
                 }
@@ -1218,6 +1528,7 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                 String newCategorySelection = updateSelection(selectId(uri), selection);
                 validateCategoryValues(values, false, isSyncAdapter);
                 count = db.update(Tables.CATEGORIES, values, newCategorySelection, selectionArgs);
+                MetadataCache.of(db).invalidateCategories(db);
                 break;
             case ALARM_ID:
                 String newAlarmSelection = updateSelection(selectId(uri), selection);
@@ -1232,13 +1543,16 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
                     throw new IllegalArgumentException("Unknown URI " + uri);
                 }
 
-                operation.run(getContext(), mAsyncHandler, uri, db, values);
+                mOperationQueue.schedule(operation, uri, values);
         }
 
         if (dataChanged)
         {
             // send notifications, because non-sync columns have been updated
-            postNotifyUri(uri);
+            if (notifyUri)
+            {
+                postNotifyUri(uri);
+            }
             mChanged.set(true);
         }
 
@@ -1246,6 +1560,116 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     }
 
 
+    /**
+     * Posts an update of the search index to {@link #mAsyncHandler}, unless one has been posted already. This way multiple transactions in a row result in a
+     * single update.
+     */
+    private void postSearchIndexUpdate()
+    {
+        if (mSearchIndexUpdatePosted.compareAndSet(false, true))
+        {
+            mAsyncHandler.post(() ->
+            {
+                mSearchIndexUpdatePosted.set(false);
+                new Profiled("SearchIndexUpdate").run(this::updateSearchIndex);
+            });
+        }
+    }
+
+
+    /**
+     * Indexes all tasks which are waiting to be indexed. Each batch of tasks is indexed in a separate transaction, so writers don't have to wait too long.
+     */
+    private void updateSearchIndex()
+    {
+        SQLiteDatabase db = getDatabaseHelper().getWritableDatabase();
+        if (!FTSDatabaseHelper.hasPendingTaskFTSUpdates(db))
+        {
+            return;
+        }
+
+        int count;
+        do
+        {
+            db.beginTransactionWithListener(transactionListener(db));
+            try
+            {
+                count = FTSDatabaseHelper.updatePendingTaskFTSEntries(db, SEARCH_INDEX_BATCH_SIZE);
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+        } while (count == SEARCH_INDEX_BATCH_SIZE);
+        if (FTSDatabaseHelper.searchIndexChanged())
+        {
+            mSearchSessions.clear();
+        }
+    }
+
+
+    /**
+     * Returns the {@link SearchSession} with the given id of the calling app, creating it if necessary.
+     *
+     * @param sessionId
+     *         The session id as given by the caller, may be <code>null</code>.
+     *
+     * @return The {@link SearchSession} or <code>null</code> if no session id was given.
+     */
+    private SearchSession searchSession(String sessionId)
+    {
+        if (sessionId == null)
+        {
+            return null;
+        }
+
+        // different apps may use the same session ids
+        String key = Binder.getCallingUid() + ":" + sessionId;
+        synchronized (mSearchSessions)
+        {
+            SearchSession session = mSearchSessions.get(key);
+            if (session == null)
+            {
+                session = new SearchSession();
+                mSearchSessions.put(key, session);
+            }
+            return session;
+        }
+    }
+
+
+    /**
+     * Creates and populates the FTS4 search engine tables if the FTS4 search engine is enabled, or removes them if not. This runs in batches of separate
+     * transactions, so it doesn't block other writers for too long.
+     */
+    private void migrateSearchEngine()
+    {
+        SQLiteDatabase db = getDatabaseHelper().getWritableDatabase();
+        if (!mFts4Search)
+        {
+            FTS4DatabaseHelper.drop(db);
+            return;
+        }
+
+        int count;
+        do
+        {
+            db.beginTransactionWithListener(transactionListener(db));
+            try
+            {
+                count = FTS4DatabaseHelper.migrate(db, SEARCH_MIGRATION_BATCH_SIZE);
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+        } while (count == SEARCH_MIGRATION_BATCH_SIZE);
+        mFts4SearchReady = true;
+    }
+
+
     /**
      * Update task due and task start notifications.
      */
@@ -1310,6 +1734,127 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     }
 
 
+    @Override
+    protected int bulkInsertInTransaction(SQLiteDatabase db, Uri uri, ContentValues[] values, boolean isSyncAdapter)
+    {
+        if (mUriMatcher.match(uri) != TASKS)
+        {
+            return super.bulkInsertInTransaction(db, uri, values, isSyncAdapter);
+        }
+
+        // insert the tasks in batches, so the processors can handle an entire batch at once
+        List<TaskAdapter> batch = new ArrayList<>(BULK_INSERT_BATCH_SIZE);
+        Set<String> batchSyncIds = new HashSet<>();
+        for (ContentValues value : values)
+        {
+            TaskAdapter task = new ContentValuesTaskAdapter(value);
+            String originalSyncId = task.valueOf(TaskAdapter.ORIGINAL_INSTANCE_SYNC_ID);
+            // overrides need their master task to be in the database already, so an override of a task in the current batch starts a new batch
+            if (batch.size() == BULK_INSERT_BATCH_SIZE || originalSyncId != null && batchSyncIds.contains(originalSyncId))
+            {
+                insertTaskBatch(db, batch, isSyncAdapter);
+                batch.clear();
+                batchSyncIds.clear();
+            }
+            batch.add(task);
+            String syncId = task.valueOf(TaskAdapter.SYNC_ID);
+            if (syncId != null)
+            {
+                batchSyncIds.add(syncId);
+            }
+        }
+        insertTaskBatch(db, batch, isSyncAdapter);
+        return values.length;
+    }
+
+
+    private void insertTaskBatch(SQLiteDatabase db, List<TaskAdapter> batch, boolean isSyncAdapter)
+    {
+        if (batch.isEmpty())
+        {
+            return;
+        }
+
+        Batches.insertAll(mTaskProcessorChain, db, batch, isSyncAdapter);
+
+        mChanged.set(true);
+
+        postNotifyUri(Instances.getContentUri(mAuthority));
+        postNotifyUri(Tasks.getContentUri(mAuthority));
+
+        db.yieldIfContendedSafely();
+    }
+
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras)
+    {
+        if (!TaskContract.METHOD_BULK_WRITE.equals(method))
+        {
+            return super.call(method, arg, extras);
+        }
+
+        // call() is not covered by the provider permissions, so we have to enforce them ourselves
+        if (getWritePermission() != null)
+        {
+            getContext().enforceCallingOrSelfPermission(getWritePermission(), "Bulk writes require " + getWritePermission());
+        }
+
+        Iterator<ContentProviderOperation> operations;
+        ParcelFileDescriptor stream = extras == null ? null : (ParcelFileDescriptor) extras.getParcelable(TaskContract.EXTRA_OPERATION_STREAM);
+        if (stream != null)
+        {
+            operations = new StreamedOperations(stream);
+        }
+        else
+        {
+            ArrayList<ContentProviderOperation> list = extras == null ? null : extras.<ContentProviderOperation>getParcelableArrayList(
+                    TaskContract.EXTRA_OPERATIONS);
+            if (list == null)
+            {
+                throw new IllegalArgumentException("Bulk write without any operations");
+            }
+            operations = list.iterator();
+        }
+
+        // only collect the results if the caller wants them, a large stream would otherwise keep all of them in memory
+        List<ContentProviderResult> results = extras.getBoolean(TaskContract.EXTRA_RETURN_RESULTS, false) ? new ArrayList<ContentProviderResult>() : null;
+        Bundle result = new Bundle();
+        int committed;
+        try
+        {
+            committed = applyInChunks(operations, results);
+        }
+        catch (OperationApplicationException e)
+        {
+            // report the committed operations, so the caller can continue where we stopped
+            committed = e.getNumSuccessfulYieldPoints();
+            Log.e(TAG, String.format(Locale.ENGLISH, "Bulk write failed after %d committed operations", committed), e);
+            result.putString(TaskContract.EXTRA_ERROR, String.valueOf(e.getMessage()));
+        }
+        finally
+        {
+            if (stream != null)
+            {
+                try
+                {
+                    stream.close();
+                }
+                catch (IOException e)
+                {
+                    // nothing to do
+                }
+            }
+        }
+        result.putInt(TaskContract.EXTRA_COMMITTED_OPERATIONS, committed);
+        if (results != null)
+        {
+            result.putParcelableArray(TaskContract.EXTRA_RESULTS, results.toArray(new ContentProviderResult[0]));
+        }
+        return result;
+    }
+
+
     @Override
     public String getType(Uri uri)
     {
@@ -1336,12 +1881,23 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     @Override
     protected void onEndTransaction(boolean callerIsSyncAdapter)
     {
-        super.onEndTransaction(callerIsSyncAdapter);
+        MetadataCache.of(getDatabaseHelper().getWritableDatabase()).onTransactionEnded();
+        // the transaction has been committed, so sessions which have been built meanwhile won't see the new n-grams
+        if (FTSDatabaseHelper.searchIndexChanged())
+        {
+            mSearchSessions.clear();
+        }
+        mTaskCounts.invalidate();
         if (mChanged.compareAndSet(true, false))
         {
-            updateNotifications();
-            Utils.sendActionProviderChangedBroadCast(getContext(), mAuthority);
+            // these are sent with the change notifications, so they are coalesced too
+            postNotifyTask(mProviderChangedTask);
+            if (mDeferredSearchIndexing)
+            {
+                postSearchIndexUpdate();
+            }
         }
+        super.onEndTransaction(callerIsSyncAdapter);
 
         if (Boolean.TRUE.equals(mStaleListCreated.get()))
         {
@@ -1352,6 +1908,21 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
     }
 
 
+    @Override
+    protected long notificationWindow()
+    {
+        return getContext().getResources().getInteger(R.integer.opentasks_notification_window);
+    }
+
+
+    @Override
+    protected SQLiteTransactionListener transactionListener(SQLiteDatabase db)
+    {
+        return new CompositeTransactionListener(FTSDatabaseHelper.transactionListener(db), StatementCache.of(db).transactionListener(),
+                MetadataCache.of(db).transactionListener());
+    }
+
+
     @Override
     public SQLiteOpenHelper getDatabaseHelper(Context context)
     {
@@ -1396,6 +1967,57 @@ public final class TaskProvider extends SQLiteContentProvider implements OnAccou
         // cache the known accounts so we can check whether we know accounts for which new lists are added
         mAccountCache.set(new HashSet<>(Arrays.asList(accounts)));
         // TODO: we probably can move the cleanup code here and get rid of the Utils class
-        Utils.cleanUpLists(getContext(), getDatabaseHelper().getWritableDatabase(), accounts, mAuthority);
+        SQLiteDatabase db = getDatabaseHelper().getWritableDatabase();
+        Utils.cleanUpLists(getContext(), db, transactionListener(db), accounts, mAuthority);
+    }
+
+
+    /**
+     * An {@link Iterator} of the {@link ContentProviderOperation}s in a {@link TaskContract#EXTRA_OPERATION_STREAM}. The operations are read as they are
+     * applied, so the stream is never held in memory as a whole.
+     */
+    private final static class StreamedOperations implements Iterator<ContentProviderOperation>
+    {
+        private final DataInputStream mInput;
+        private ContentProviderOperation mNext;
+        private boolean mEnd;
+
+
+        private StreamedOperations(ParcelFileDescriptor stream)
+        {
+            mInput = new DataInputStream(new BufferedInputStream(new ParcelFileDescriptor.AutoCloseInputStream(stream)));
+        }
+
+
+        @Override
+        public boolean hasNext()
+        {
+            if (mNext == null && !mEnd)
+            {
+                try
+                {
+                    mNext = OperationStream.read(mInput);
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException("Can't read the operation stream", e);
+                }
+                mEnd = mNext == null;
+            }
+            return mNext != null;
+        }
+
+
+        @Override
+        public ContentProviderOperation next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException("No more operations in the stream");
+            }
+            ContentProviderOperation result = mNext;
+            mNext = null;
+            return result;
+        }
     }
 }
@@ -20,21 +20,21 @@ import android.accounts.Account;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteTransactionListener;
 
 import org.dmfs.iterables.SingletonIterable;
 import org.dmfs.jems.iterable.composite.Joined;
 import org.dmfs.jems.iterable.decorators.Mapped;
 import org.dmfs.jems.procedure.composite.Batch;
 import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.utils.MetadataCache;
 import org.dmfs.provider.tasks.utils.ResourceArray;
 import org.dmfs.provider.tasks.utils.With;
 import org.dmfs.tasks.contract.TaskContract;
 import org.dmfs.tasks.contract.TaskContract.Instances;
 import org.dmfs.tasks.contract.TaskContract.SyncState;
 import org.dmfs.tasks.contract.TaskContract.TaskListColumns;
-import org.dmfs.tasks.contract.TaskContract.TaskListSyncColumns;
 import org.dmfs.tasks.contract.TaskContract.TaskLists;
 import org.dmfs.tasks.contract.TaskContract.Tasks;
 import org.dmfs.tasks.provider.R;
@@ -42,6 +42,7 @@ import org.dmfs.tasks.provider.R;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -56,7 +57,6 @@ public class Utils
     {
         // TODO: Using the TaskContract content uri results in a "Unknown URI content" error message. Using the Tasks content uri instead will break the
         // broadcast receiver. We have to find away around this
-        // TODO: coalesce fast consecutive broadcasts, a delay of up to 1 second should be acceptable
 
         new With<>(new Intent(Intent.ACTION_PROVIDER_CHANGED, TaskContract.getContentUri(authority)))
                 .process(providerChangedIntent ->
@@ -71,46 +71,51 @@ public class Utils
     }
 
 
-    public static void cleanUpLists(Context context, SQLiteDatabase db, Account[] accounts, String authority)
+    /**
+     * Removes all task lists of accounts which no longer exist.
+     *
+     * @param context
+     *         A {@link Context}.
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param transactionListener
+     *         The provider's {@link SQLiteTransactionListener}, which keeps its caches in sync with the transaction.
+     * @param accounts
+     *         The existing {@link Account}s.
+     * @param authority
+     *         The authority of the provider.
+     */
+    public static void cleanUpLists(Context context, SQLiteDatabase db, SQLiteTransactionListener transactionListener, Account[] accounts, String authority)
     {
         // make a list of the accounts array
         List<Account> accountList = Arrays.asList(accounts);
 
-        db.beginTransaction();
+        MetadataCache cache = MetadataCache.of(db);
+        db.beginTransactionWithListener(transactionListener);
 
         try
         {
-            Cursor c = db.query(Tables.LISTS, new String[] { TaskListColumns._ID, TaskListSyncColumns.ACCOUNT_NAME, TaskListSyncColumns.ACCOUNT_TYPE }, null,
-                    null, null, null, null);
-
             // build a list of all task list ids that no longer have an account
             List<Long> obsoleteLists = new ArrayList<Long>();
-            try
+            for (Map.Entry<Long, MetadataCache.TaskList> list : cache.taskLists(db).entrySet())
             {
-                while (c.moveToNext())
+                String accountType = list.getValue().accountType();
+                // mark list for removal if it is non-local and the account
+                // is not in accountList
+                if (!TaskContract.LOCAL_ACCOUNT_TYPE.equals(accountType))
                 {
-                    String accountType = c.getString(2);
-                    // mark list for removal if it is non-local and the account
-                    // is not in accountList
-                    if (!TaskContract.LOCAL_ACCOUNT_TYPE.equals(accountType))
+                    Account account = new Account(list.getValue().accountName(), accountType);
+                    if (!accountList.contains(account))
                     {
-                        Account account = new Account(c.getString(1), accountType);
-                        if (!accountList.contains(account))
-                        {
-                            obsoleteLists.add(c.getLong(0));
-
-                            // remove syncstate for this account right away
-                            db.delete(Tables.SYNCSTATE, SyncState.ACCOUNT_NAME + "=? and " + SyncState.ACCOUNT_TYPE + "=?", new String[] {
-                                    account.name,
-                                    account.type });
-                        }
+                        obsoleteLists.add(list.getKey());
+
+                        // remove syncstate for this account right away
+                        db.delete(Tables.SYNCSTATE, SyncState.ACCOUNT_NAME + "=? and " + SyncState.ACCOUNT_TYPE + "=?", new String[] {
+                                account.name,
+                                account.type });
                     }
                 }
             }
-            finally
-            {
-                c.close();
-            }
 
             if (obsoleteLists.size() == 0)
             {
@@ -126,6 +131,7 @@ public class Utils
                     db.delete(Tables.LISTS, TaskListColumns._ID + "=" + id, null);
                 }
             }
+            cache.invalidateTaskLists(db);
             db.setTransactionSuccessful();
         }
         finally
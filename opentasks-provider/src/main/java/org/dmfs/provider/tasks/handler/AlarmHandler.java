@@ -20,11 +20,13 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import org.dmfs.provider.tasks.utils.Reminders;
 import org.dmfs.tasks.contract.TaskContract.Property;
 
 
 /**
- * This class is used to handle alarm property values during database transactions.
+ * This class is used to handle alarm property values during database transactions. It keeps the reminder queue of the task up to date, removed alarms
+ * are removed from the queue by a database trigger.
  *
  * @author Tobias Reinsch <tobias@dmfs.org>
  */
@@ -102,7 +104,9 @@ public class AlarmHandler extends PropertyHandler
     public long insert(SQLiteDatabase db, long taskId, ContentValues values, boolean isSyncAdapter)
     {
         values = validateValues(db, taskId, -1, true, values, isSyncAdapter);
-        return super.insert(db, taskId, values, isSyncAdapter);
+        long id = super.insert(db, taskId, values, isSyncAdapter);
+        Reminders.update(db, taskId);
+        return id;
     }
 
 
@@ -128,6 +132,8 @@ public class AlarmHandler extends PropertyHandler
     public int update(SQLiteDatabase db, long taskId, long propertyId, ContentValues values, Cursor oldValues, boolean isSyncAdapter)
     {
         values = validateValues(db, taskId, propertyId, false, values, isSyncAdapter);
-        return super.update(db, taskId, propertyId, values, oldValues, isSyncAdapter);
+        int count = super.update(db, taskId, propertyId, values, oldValues, isSyncAdapter);
+        Reminders.update(db, taskId);
+        return count;
     }
 }
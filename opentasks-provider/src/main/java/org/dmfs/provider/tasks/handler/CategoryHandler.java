@@ -22,6 +22,7 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.dmfs.provider.tasks.TaskDatabaseHelper.CategoriesMapping;
 import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.utils.MetadataCache;
 import org.dmfs.tasks.contract.TaskContract.Categories;
 import org.dmfs.tasks.contract.TaskContract.Properties;
 import org.dmfs.tasks.contract.TaskContract.Property.Category;
@@ -36,10 +37,12 @@ import org.dmfs.tasks.contract.TaskContract.Tasks;
 public class CategoryHandler extends PropertyHandler
 {
 
+    private static final String[] TASK_LIST_ID_PROJECTION = { Tasks.LIST_ID };
+    private static final String TASK_ID_SELECTION = Tasks._ID + "=?";
+
     private static final String[] CATEGORY_ID_PROJECTION = { Categories._ID, Categories.NAME, Categories.COLOR };
 
     private static final String CATEGORY_ID_SELECTION = Categories._ID + "=? and " + Categories.ACCOUNT_NAME + "=? and " + Categories.ACCOUNT_TYPE + "=?";
-    private static final String CATEGORY_NAME_SELECTION = Categories.NAME + "=? and " + Categories.ACCOUNT_NAME + "=? and " + Categories.ACCOUNT_TYPE + "=?";
 
     public static final String IS_NEW_CATEGORY = "is_new_category";
 
@@ -79,77 +82,60 @@ public class CategoryHandler extends PropertyHandler
         {
             throw new IllegalArgumentException("No task id was supplied for the category property");
         }
-        String[] queryArgs = { values.getAsString(Properties.TASK_ID) };
-        String[] queryProjection = { Tasks.ACCOUNT_NAME, Tasks.ACCOUNT_TYPE };
-        String querySelection = Tasks._ID + "=?";
-        Cursor taskCursor = db.query(Tables.TASKS_VIEW, queryProjection, querySelection, queryArgs, null, null, null);
+        MetadataCache cache = MetadataCache.of(db);
+        MetadataCache.TaskList taskList = taskList(db, cache, values.getAsString(Properties.TASK_ID));
 
         String accountName = null;
         String accountType = null;
-        try
+        if (taskList != null)
         {
-            if (taskCursor.moveToNext())
-            {
-                accountName = taskCursor.getString(0);
-                accountType = taskCursor.getString(1);
+            accountName = taskList.accountName();
+            accountType = taskList.accountType();
 
-                values.put(Categories.ACCOUNT_NAME, accountName);
-                values.put(Categories.ACCOUNT_TYPE, accountType);
-            }
-        }
-        finally
-        {
-            if (taskCursor != null)
-            {
-                taskCursor.close();
-            }
+            values.put(Categories.ACCOUNT_NAME, accountName);
+            values.put(Categories.ACCOUNT_TYPE, accountType);
         }
 
         if (accountName != null && accountType != null)
         {
-            // search for matching categories
-            String[] categoryArgs;
-            Cursor cursor;
-
             if (values.containsKey(Categories._ID))
             {
                 // serach by ID
-                categoryArgs = new String[] { values.getAsString(Category.CATEGORY_ID), accountName, accountType };
-                cursor = db.query(Tables.CATEGORIES, CATEGORY_ID_PROJECTION, CATEGORY_ID_SELECTION, categoryArgs, null, null, null);
+                String[] categoryArgs = new String[] { values.getAsString(Category.CATEGORY_ID), accountName, accountType };
+                Cursor cursor = db.query(Tables.CATEGORIES, CATEGORY_ID_PROJECTION, CATEGORY_ID_SELECTION, categoryArgs, null, null, null);
+                try
+                {
+                    if (cursor != null && cursor.getCount() == 1)
+                    {
+                        cursor.moveToNext();
+                        putCategory(values, new MetadataCache.Category(cursor.getLong(0), cursor.getString(1), cursor.getInt(2)));
+                    }
+                    else
+                    {
+                        values.put(IS_NEW_CATEGORY, true);
+                    }
+                }
+                finally
+                {
+                    if (cursor != null)
+                    {
+                        cursor.close();
+                    }
+                }
             }
             else
             {
-                // search by name
-                categoryArgs = new String[] { values.getAsString(Category.CATEGORY_NAME), accountName, accountType };
-                cursor = db.query(Tables.CATEGORIES, CATEGORY_ID_PROJECTION, CATEGORY_NAME_SELECTION, categoryArgs, null, null, null);
-            }
-            try
-            {
-                if (cursor != null && cursor.getCount() == 1)
+                // search by name, this is what sync adapters usually do, so it's cached
+                MetadataCache.Category category = cache.category(db, accountName, accountType, values.getAsString(Category.CATEGORY_NAME));
+                if (category != null)
                 {
-                    cursor.moveToNext();
-                    Long categoryID = cursor.getLong(0);
-                    String categoryName = cursor.getString(1);
-                    int color = cursor.getInt(2);
-
-                    values.put(Category.CATEGORY_ID, categoryID);
-                    values.put(Category.CATEGORY_NAME, categoryName);
-                    values.put(Category.CATEGORY_COLOR, color);
-                    values.put(IS_NEW_CATEGORY, false);
+                    putCategory(values, category);
                 }
                 else
                 {
                     values.put(IS_NEW_CATEGORY, true);
                 }
             }
-            finally
-            {
-                if (cursor != null)
-                {
-                    cursor.close();
-                }
-            }
-
         }
 
         return values;
@@ -243,6 +229,13 @@ public class CategoryHandler extends PropertyHandler
 
             long categoryID = db.insert(Tables.CATEGORIES, "", newCategoryValues);
             values.put(Category.CATEGORY_ID, categoryID);
+
+            if (categoryID != -1)
+            {
+                Integer color = values.getAsInteger(Category.CATEGORY_COLOR);
+                MetadataCache.of(db).putCategory(db, values.getAsString(Categories.ACCOUNT_NAME), values.getAsString(Categories.ACCOUNT_TYPE),
+                        new MetadataCache.Category(categoryID, values.getAsString(Category.CATEGORY_NAME), color == null ? 0 : color));
+            }
         }
 
         // remove redundant values
@@ -254,6 +247,44 @@ public class CategoryHandler extends PropertyHandler
     }
 
 
+    /**
+     * Returns the task list of the task with the given id.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param cache
+     *         The {@link MetadataCache} of the database.
+     * @param taskId
+     *         The row id of the task.
+     *
+     * @return The {@link MetadataCache.TaskList} of the task or <code>null</code> if there is no such task.
+     */
+    private MetadataCache.TaskList taskList(SQLiteDatabase db, MetadataCache cache, String taskId)
+    {
+        Cursor taskCursor = db.query(Tables.TASKS, TASK_LIST_ID_PROJECTION, TASK_ID_SELECTION, new String[] { taskId }, null, null, null);
+        try
+        {
+            return taskCursor.moveToNext() ? cache.taskList(db, taskCursor.getLong(0)) : null;
+        }
+        finally
+        {
+            taskCursor.close();
+        }
+    }
+
+
+    /**
+     * Puts the values of the given existing category into the given {@link ContentValues}.
+     */
+    private void putCategory(ContentValues values, MetadataCache.Category category)
+    {
+        values.put(Category.CATEGORY_ID, category.id());
+        values.put(Category.CATEGORY_NAME, category.name());
+        values.put(Category.CATEGORY_COLOR, category.color());
+        values.put(IS_NEW_CATEGORY, false);
+    }
+
+
     /**
      * Inserts a relation entry in the database to link task and category.
      *
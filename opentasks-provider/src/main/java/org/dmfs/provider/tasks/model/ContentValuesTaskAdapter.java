@@ -21,6 +21,7 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.adapters.FieldAdapter;
+import org.dmfs.provider.tasks.utils.StatementCache;
 import org.dmfs.tasks.contract.TaskContract;
 
 
@@ -114,12 +115,12 @@ public class ContentValuesTaskAdapter extends AbstractTaskAdapter
 
         if (mId < 0)
         {
-            mId = db.insert(TaskDatabaseHelper.Tables.TASKS, null, mValues);
+            mId = StatementCache.of(db).insert(db, TaskDatabaseHelper.Tables.TASKS, mValues);
             return mId > 0 ? 1 : 0;
         }
         else
         {
-            return db.update(TaskDatabaseHelper.Tables.TASKS, mValues, TaskContract.TaskColumns._ID + "=" + mId, null);
+            return StatementCache.of(db).update(db, TaskDatabaseHelper.Tables.TASKS, mValues, TaskContract.TaskColumns._ID, mId);
         }
     }
 
@@ -23,6 +23,7 @@ import android.database.sqlite.SQLiteDatabase;
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.adapters.FieldAdapter;
 import org.dmfs.provider.tasks.utils.ContainsValues;
+import org.dmfs.provider.tasks.utils.StatementCache;
 import org.dmfs.tasks.contract.TaskContract;
 
 
@@ -130,7 +131,7 @@ public class CursorContentValuesTaskAdapter extends AbstractTaskAdapter
             return 0;
         }
 
-        return db.update(TaskDatabaseHelper.Tables.TASKS, mValues, TaskContract.TaskColumns._ID + "=" + mId, null);
+        return StatementCache.of(db).update(db, TaskDatabaseHelper.Tables.TASKS, mValues, TaskContract.TaskColumns._ID, mId);
     }
 
 
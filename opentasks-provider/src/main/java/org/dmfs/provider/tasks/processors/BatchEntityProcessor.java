@@ -0,0 +1,45 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.model.EntityAdapter;
+
+import java.util.List;
+
+
+/**
+ * An {@link EntityProcessor} which can insert a batch of entities at once.
+ * <p>
+ * Inserting a batch has the same result as inserting each entity by itself in the given order, as long as the entities of the batch don't depend on each
+ * other. It gives the processor a chance to replace per entity queries by a single query for the entire batch.
+ */
+public interface BatchEntityProcessor<T extends EntityAdapter<T>> extends EntityProcessor<T>
+{
+    /**
+     * Inserts all the given entities. When this returns, all the given entities have been committed.
+     *
+     * @param db
+     *         The writable {@link SQLiteDatabase}.
+     * @param entityAdapters
+     *         The entities to insert.
+     * @param isSyncAdapter
+     *         <code>true</code> if the caller is a sync adapter, false otherwise.
+     */
+    void insertAll(SQLiteDatabase db, List<T> entityAdapters, boolean isSyncAdapter);
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.model.EntityAdapter;
+
+import java.util.List;
+
+
+/**
+ * Helpers to insert batches of entities.
+ */
+public final class Batches
+{
+    private Batches()
+    {
+    }
+
+
+    /**
+     * Inserts the given entities with the given {@link EntityProcessor}. If the processor is a {@link BatchEntityProcessor}, the entities are inserted as a
+     * batch, otherwise they are inserted one by one.
+     *
+     * @param processor
+     *         The {@link EntityProcessor} to insert the entities with.
+     * @param db
+     *         The writable {@link SQLiteDatabase}.
+     * @param entityAdapters
+     *         The entities to insert.
+     * @param isSyncAdapter
+     *         <code>true</code> if the caller is a sync adapter, false otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends EntityAdapter<T>> void insertAll(EntityProcessor<T> processor, SQLiteDatabase db, List<T> entityAdapters, boolean isSyncAdapter)
+    {
+        if (processor instanceof BatchEntityProcessor)
+        {
+            ((BatchEntityProcessor<T>) processor).insertAll(db, entityAdapters, isSyncAdapter);
+            return;
+        }
+
+        for (T entityAdapter : entityAdapters)
+        {
+            processor.insert(db, entityAdapter, isSyncAdapter);
+        }
+    }
+}
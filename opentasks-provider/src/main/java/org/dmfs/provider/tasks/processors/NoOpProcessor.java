@@ -20,13 +20,15 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.dmfs.provider.tasks.model.EntityAdapter;
 
+import java.util.List;
+
 
 /**
  * A simple No-Op {@link EntityProcessor}.
  *
  * @author Marten Gajda
  */
-public final class NoOpProcessor<T extends EntityAdapter<T>> implements EntityProcessor<T>
+public final class NoOpProcessor<T extends EntityAdapter<T>> implements BatchEntityProcessor<T>
 {
     @Override
     public T insert(SQLiteDatabase db, T entityAdapter, boolean isSyncAdapter)
@@ -35,6 +37,13 @@ public final class NoOpProcessor<T extends EntityAdapter<T>> implements EntityPr
     }
 
 
+    @Override
+    public void insertAll(SQLiteDatabase db, List<T> entityAdapters, boolean isSyncAdapter)
+    {
+        // do nothing
+    }
+
+
     @Override
     public T update(SQLiteDatabase db, T entityAdapter, boolean isSyncAdapter)
     {
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.instances;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.model.InstanceAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.utils.ChangeLog;
+import org.dmfs.tasks.contract.TaskContract.Changes;
+
+
+/**
+ * An instance {@link EntityProcessor} which adds the changes of instances to the change log. This complements the entries of the task processor chain, which
+ * doesn't know which instance has been addressed.
+ */
+public final class ChangeLogging implements EntityProcessor<InstanceAdapter>
+{
+    private final EntityProcessor<InstanceAdapter> mDelegate;
+
+
+    public ChangeLogging(EntityProcessor<InstanceAdapter> delegate)
+    {
+        mDelegate = delegate;
+    }
+
+
+    @Override
+    public InstanceAdapter insert(SQLiteDatabase db, InstanceAdapter instance, boolean isSyncAdapter)
+    {
+        // inserting instances is not supported yet, if it ever will be, the task chain logs the new task
+        return mDelegate.insert(db, instance, isSyncAdapter);
+    }
+
+
+    @Override
+    public InstanceAdapter update(SQLiteDatabase db, InstanceAdapter instance, boolean isSyncAdapter)
+    {
+        long taskId = instance.valueOf(InstanceAdapter.TASK_ID);
+        long instanceId = instance.id();
+        InstanceAdapter result = mDelegate.update(db, instance, isSyncAdapter);
+        ChangeLog.log(db, taskId, instanceId, Changes.OPERATION_UPDATE);
+        return result;
+    }
+
+
+    @Override
+    public void delete(SQLiteDatabase db, InstanceAdapter instance, boolean isSyncAdapter)
+    {
+        long taskId = instance.valueOf(InstanceAdapter.TASK_ID);
+        long instanceId = instance.id();
+        Long version = ChangeLog.version(db, taskId);
+        mDelegate.delete(db, instance, isSyncAdapter);
+        Long newVersion = ChangeLog.version(db, taskId);
+        ChangeLog.log(db, taskId, instanceId, Changes.OPERATION_DELETE, newVersion == null ? version : newVersion);
+    }
+}
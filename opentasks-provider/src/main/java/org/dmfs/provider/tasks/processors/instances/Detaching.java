@@ -34,6 +34,7 @@ import org.dmfs.provider.tasks.model.TaskAdapter;
 import org.dmfs.provider.tasks.model.adapters.IntegerFieldAdapter;
 import org.dmfs.provider.tasks.model.adapters.LongFieldAdapter;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.utils.FastForwardedStart;
 import org.dmfs.provider.tasks.utils.Timestamps;
 import org.dmfs.rfc5545.DateTime;
 import org.dmfs.rfc5545.Duration;
@@ -173,9 +174,12 @@ public final class Detaching implements EntityProcessor<InstanceAdapter>
                         // rule has no count limit, allowing us to exclude exdates
                         ruleSet.addExceptions(new RecurrenceList(new Timestamps(masterTask.valueOf(TaskAdapter.EXDATE)).value()));
                     }
+                    // without a COUNT limit we don't have to count the skipped instances and can fast forward the rule
                     RecurrenceSetIterator ruleIterator = ruleSet.iterator(
                             oldStart.getTimeZone(),
-                            oldStart.getTimestamp());
+                            rule.getCount() == null ?
+                                    new FastForwardedStart(oldStart, rule, instanceOriginalTime.getTimestamp()).value().getTimestamp() :
+                                    oldStart.getTimestamp());
 
                     // move DTSTART to next RRULE instance which is > instanceOriginalTime
                     // reduce COUNT by the number of skipped instances, if present
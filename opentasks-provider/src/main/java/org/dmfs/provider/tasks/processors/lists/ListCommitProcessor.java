@@ -21,6 +21,7 @@ import android.database.sqlite.SQLiteDatabase;
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.ListAdapter;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.utils.MetadataCache;
 import org.dmfs.tasks.contract.TaskContract;
 
 
@@ -36,6 +37,7 @@ public final class ListCommitProcessor implements EntityProcessor<ListAdapter>
     public ListAdapter insert(SQLiteDatabase db, ListAdapter list, boolean isSyncAdapter)
     {
         list.commit(db);
+        MetadataCache.of(db).invalidateTaskLists(db);
         return list;
     }
 
@@ -44,6 +46,7 @@ public final class ListCommitProcessor implements EntityProcessor<ListAdapter>
     public ListAdapter update(SQLiteDatabase db, ListAdapter list, boolean isSyncAdapter)
     {
         list.commit(db);
+        MetadataCache.of(db).invalidateTaskLists(db);
         return list;
     }
 
@@ -52,5 +55,6 @@ public final class ListCommitProcessor implements EntityProcessor<ListAdapter>
     public void delete(SQLiteDatabase db, ListAdapter list, boolean isSyncAdapter)
     {
         db.delete(TaskDatabaseHelper.Tables.LISTS, TaskContract.TaskLists._ID + "=" + list.id(), null);
+        MetadataCache.of(db).invalidateTaskLists(db);
     }
 }
@@ -22,10 +22,14 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
 import org.dmfs.rfc5545.DateTime;
 import org.dmfs.tasks.contract.TaskContract;
 
+import java.util.List;
+
 
 /**
  * A processor to adjust some task values automatically.
@@ -34,7 +38,7 @@ import org.dmfs.tasks.contract.TaskContract;
  *
  * @author Marten Gajda
  */
-public final class AutoCompleting implements EntityProcessor<TaskAdapter>
+public final class AutoCompleting implements BatchEntityProcessor<TaskAdapter>
 {
     private final EntityProcessor<TaskAdapter> mDelegate;
 
@@ -53,6 +57,38 @@ public final class AutoCompleting implements EntityProcessor<TaskAdapter>
 
     @Override
     public TaskAdapter insert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        prepareInsert(db, task, isSyncAdapter);
+
+        TaskAdapter result = mDelegate.insert(db, task, isSyncAdapter);
+
+        if (isSyncAdapter)
+        {
+            linkOverrides(db, result);
+        }
+        return result;
+    }
+
+
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        for (TaskAdapter task : tasks)
+        {
+            prepareInsert(db, task, isSyncAdapter);
+        }
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
+        if (isSyncAdapter)
+        {
+            for (TaskAdapter task : tasks)
+            {
+                linkOverrides(db, task);
+            }
+        }
+    }
+
+
+    private void prepareInsert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
     {
         updateFields(db, task, isSyncAdapter);
 
@@ -61,18 +97,19 @@ public final class AutoCompleting implements EntityProcessor<TaskAdapter>
             // set created date for tasks created on the device
             task.set(TaskAdapter.CREATED, DateTime.now());
         }
+    }
 
-        TaskAdapter result = mDelegate.insert(db, task, isSyncAdapter);
 
-        if (isSyncAdapter && result.isRecurring())
+    private void linkOverrides(SQLiteDatabase db, TaskAdapter task)
+    {
+        if (task.isRecurring())
         {
             // task is recurring, update ORIGINAL_INSTANCE_ID of all exceptions that may already exists
             ContentValues values = new ContentValues(1);
-            TaskAdapter.ORIGINAL_INSTANCE_ID.setIn(values, result.id());
+            TaskAdapter.ORIGINAL_INSTANCE_ID.setIn(values, task.id());
             db.update(TaskDatabaseHelper.Tables.TASKS, values, TaskContract.Tasks.ORIGINAL_INSTANCE_SYNC_ID + "=? and "
-                    + TaskContract.Tasks.ORIGINAL_INSTANCE_ID + " is null", new String[] { result.valueOf(TaskAdapter.SYNC_ID) });
+                    + TaskContract.Tasks.ORIGINAL_INSTANCE_ID + " is null", new String[] { task.valueOf(TaskAdapter.SYNC_ID) });
         }
-        return result;
     }
 
 
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.tasks;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.utils.ChangeLog;
+import org.dmfs.tasks.contract.TaskContract.Changes;
+
+import java.util.List;
+
+
+/**
+ * A task {@link EntityProcessor} which adds every insert and update to the change log.
+ * <p>
+ * Deletes are logged by triggers on the tasks table, since tasks are also removed by other triggers (e.g. when their list is removed), which never reach
+ * this processor.
+ */
+public final class ChangeLogging implements BatchEntityProcessor<TaskAdapter>
+{
+    private final EntityProcessor<TaskAdapter> mDelegate;
+
+
+    public ChangeLogging(EntityProcessor<TaskAdapter> delegate)
+    {
+        mDelegate = delegate;
+    }
+
+
+    @Override
+    public TaskAdapter insert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        TaskAdapter result = mDelegate.insert(db, task, isSyncAdapter);
+        ChangeLog.log(db, result.id(), null, Changes.OPERATION_INSERT);
+        return result;
+    }
+
+
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
+        for (TaskAdapter task : tasks)
+        {
+            ChangeLog.log(db, task.id(), null, Changes.OPERATION_INSERT);
+        }
+    }
+
+
+    @Override
+    public TaskAdapter update(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        TaskAdapter result = mDelegate.update(db, task, isSyncAdapter);
+        ChangeLog.log(db, result.id(), null, Changes.OPERATION_UPDATE);
+        return result;
+    }
+
+
+    @Override
+    public void delete(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        // the change is logged by a trigger
+        mDelegate.delete(db, task, isSyncAdapter);
+    }
+}
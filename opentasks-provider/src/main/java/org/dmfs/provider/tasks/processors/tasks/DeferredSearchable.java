@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.tasks;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.FTSDatabaseHelper;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+
+import java.util.List;
+
+
+/**
+ * An {@link EntityProcessor} which, unlike {@link Searchable}, doesn't update the fast text search table right away. Instead it schedules an update of the
+ * searchable entries of inserted and updated tasks which has to be performed by calling {@link FTSDatabaseHelper#updatePendingTaskFTSEntries(SQLiteDatabase,
+ * int)} at a later time.
+ */
+public final class DeferredSearchable implements BatchEntityProcessor<TaskAdapter>
+{
+    private final EntityProcessor<TaskAdapter> mDelegate;
+
+
+    public DeferredSearchable(EntityProcessor<TaskAdapter> delegate)
+    {
+        mDelegate = delegate;
+    }
+
+
+    @Override
+    public TaskAdapter insert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        TaskAdapter result = mDelegate.insert(db, task, isSyncAdapter);
+        scheduleUpdate(db, task, result.id());
+        return result;
+    }
+
+
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
+        for (TaskAdapter task : tasks)
+        {
+            scheduleUpdate(db, task, task.id());
+        }
+    }
+
+
+    @Override
+    public TaskAdapter update(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
+    {
+        TaskAdapter result = mDelegate.update(db, task, isSyncAdapter);
+        scheduleUpdate(db, task, result.id());
+        return result;
+    }
+
+
+    @Override
+    public void delete(SQLiteDatabase db, TaskAdapter entityAdapter, boolean isSyncAdapter)
+    {
+        // the FTS entries are removed by a trigger
+        mDelegate.delete(db, entityAdapter, isSyncAdapter);
+    }
+
+
+    private void scheduleUpdate(SQLiteDatabase db, TaskAdapter task, long taskId)
+    {
+        if (task.isUpdated(TaskAdapter.TITLE) || task.isUpdated(TaskAdapter.DESCRIPTION) || task.isUpdated(TaskAdapter.LOCATION))
+        {
+            FTSDatabaseHelper.scheduleTaskFTSUpdate(db, taskId);
+        }
+    }
+}
@@ -32,13 +32,19 @@ import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
 import org.dmfs.provider.tasks.model.TaskAdapter;
 import org.dmfs.provider.tasks.model.adapters.BooleanFieldAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
 import org.dmfs.provider.tasks.processors.tasks.instancedata.TaskRelated;
 import org.dmfs.provider.tasks.utils.InstanceValuesIterable;
 import org.dmfs.provider.tasks.utils.Limited;
+import org.dmfs.provider.tasks.utils.NextTriggers;
 import org.dmfs.provider.tasks.utils.Range;
+import org.dmfs.provider.tasks.utils.Reminders;
+import org.dmfs.provider.tasks.utils.StatementCache;
 import org.dmfs.tasks.contract.TaskContract;
 
+import java.util.List;
 import java.util.Locale;
 
 
@@ -47,7 +53,7 @@ import java.util.Locale;
  *
  * @author Marten Gajda
  */
-public final class Instantiating implements EntityProcessor<TaskAdapter>
+public final class Instantiating implements BatchEntityProcessor<TaskAdapter>
 {
 
     /**
@@ -88,17 +94,35 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
     public TaskAdapter insert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
     {
         TaskAdapter result = mDelegate.insert(db, task, isSyncAdapter);
+        insertInstances(db, result);
+        return result;
+    }
+
+
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
+        // the instances are written with the cached prepared statements of the StatementCache
+        for (TaskAdapter task : tasks)
+        {
+            insertInstances(db, task);
+        }
+    }
+
+
+    private void insertInstances(SQLiteDatabase db, TaskAdapter task)
+    {
         if (task.valueOf(TaskAdapter.ORIGINAL_INSTANCE_ID) != null)
         {
             // an override was created, insert a single task
-            updateOverrideInstance(db, result, result.id());
+            updateOverrideInstance(db, task, task.id());
         }
         else
         {
             // update the recurring instances, there may already be overrides, so we use the update method
-            updateMasterInstances(db, result, result.id());
+            updateMasterInstances(db, task, task.id());
         }
-        return result;
     }
 
 
@@ -135,6 +159,38 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
     {
         // Note: there is a database trigger which cleans the instances table automatically when a task is deleted
         mDelegate.delete(db, entityAdapter, isSyncAdapter);
+        // deleted tasks don't trigger any notifications or reminders
+        NextTriggers.update(db, entityAdapter.id());
+        Reminders.update(db, entityAdapter.id());
+    }
+
+
+    /**
+     * Updates the instances of the given master task, using the given expected instance values rather than expanding them.
+     * <p>
+     * This is meant for {@link ParallelInstantiation}, which expands the instances of many tasks in advance. The given {@link Iterable} must return the same
+     * values as {@link #expectedInstances(TaskAdapter)} and may be iterated only once.
+     *
+     * @param db
+     *         An {@link SQLiteDatabase}.
+     * @param task
+     *         The {@link TaskAdapter} of the master task.
+     * @param instanceValues
+     *         The expected instance values of the task.
+     */
+    void updateInstances(SQLiteDatabase db, TaskAdapter task, Iterable<ContentValues> instanceValues)
+    {
+        updateMasterInstances(db, task, task.id(), instanceValues);
+    }
+
+
+    /**
+     * Returns the expected instance values of the given task.
+     */
+    static Iterable<ContentValues> expectedInstances(TaskAdapter task)
+    {
+        // for very long or even infinite series we need to stop iterating at some point.
+        return new Mapped<>(Single::value, new Limited<>(10000 /* hard limit for infinite rules*/, new InstanceValuesIterable(task)));
     }
 
 
@@ -172,12 +228,12 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
             {
                 if (c.moveToFirst())
                 {
-                    db.update(TaskDatabaseHelper.Tables.INSTANCES, new TaskRelated(id, values).value(), String.format(Locale.ENGLISH, "%s = %d",
-                            TaskContract.Instances._ID, c.getLong(0)), null);
+                    StatementCache.of(db).update(db, TaskDatabaseHelper.Tables.INSTANCES, new TaskRelated(id, values).value(),
+                            TaskContract.Instances._ID, c.getLong(0));
                 }
                 else
                 {
-                    db.insert(TaskDatabaseHelper.Tables.INSTANCES, "", new TaskRelated(id, values).value());
+                    StatementCache.of(db).insert(db, TaskDatabaseHelper.Tables.INSTANCES, new TaskRelated(id, values).value());
                 }
             }
         }
@@ -185,6 +241,8 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
         {
             throw new RuntimeException("no instance returned for task which was supposed to have exactly one");
         }
+        NextTriggers.update(db, id);
+        Reminders.update(db, id);
 
         // ensure the distance from current is set properly for all sibling instances
         try (Cursor c = db.query(TaskDatabaseHelper.Tables.TASKS, null,
@@ -212,6 +270,24 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
      *         the row id of the new task
      */
     private void updateMasterInstances(SQLiteDatabase db, TaskAdapter taskAdapter, long id)
+    {
+        updateMasterInstances(db, taskAdapter, id, expectedInstances(taskAdapter));
+    }
+
+
+    /**
+     * Updates the instances of an existing task to match the given expected instances.
+     *
+     * @param db
+     *         An {@link SQLiteDatabase}.
+     * @param taskAdapter
+     *         the {@link TaskAdapter} of the task to update
+     * @param id
+     *         the row id of the new task
+     * @param instanceValues
+     *         the expected instance values of the task
+     */
+    private void updateMasterInstances(SQLiteDatabase db, TaskAdapter taskAdapter, long id, Iterable<ContentValues> instanceValues)
     {
         try (Cursor existingInstances = db.query(
                 TaskDatabaseHelper.Tables.INSTANCE_VIEW,
@@ -236,12 +312,8 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
             final int isClosedIdx = existingInstances.getColumnIndex(TaskContract.Instances.IS_CLOSED);
             final int distanceIdx = existingInstances.getColumnIndex(TaskContract.Instances.DISTANCE_FROM_CURRENT);
 
-            // get an Iterator of all expected instances
-            // for very long or even infinite series we need to stop iterating at some point.
-
             Iterable<Pair<Optional<ContentValues>, Optional<Integer>>> diff = new Diff<>(
-                    new Mapped<>(Single::value,
-                            new Limited<>(10000 /* hard limit for infinite rules*/, new InstanceValuesIterable(taskAdapter))),
+                    instanceValues,
                     new Range(existingInstances.getCount()),
                     (newInstanceValues, cursorRow) ->
                     {
@@ -250,10 +322,23 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
                                 - existingInstances.getLong(startIdx));
                     });
 
+            final StatementCache statements = StatementCache.of(db);
             int distance = -1;
+            int unmatchedRows = existingInstances.getCount();
             // sync the instances table with the new instances
             for (Pair<Optional<ContentValues>, Optional<Integer>> next : diff)
             {
+                if (unmatchedRows == 0 && distance >= UPCOMING_INSTANCE_COUNT_LIMIT - 1)
+                {
+                    // all existing instances have been handled and we don't expand any more new instances, no need to iterate any further
+                    break;
+                }
+
+                if (next.right().isPresent())
+                {
+                    unmatchedRows -= 1;
+                }
+
                 if (distance >= UPCOMING_INSTANCE_COUNT_LIMIT - 1)
                 {
                     // if we already expanded enough instances, we pretend no other instance exists
@@ -269,8 +354,7 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
                 {
                     // there is no new instance for this old one, remove it
                     existingInstances.moveToPosition(next.right().value());
-                    db.delete(TaskDatabaseHelper.Tables.INSTANCES,
-                            String.format(Locale.ENGLISH, "%s = %d", TaskContract.Instances._ID, existingInstances.getLong(idIdx)), null);
+                    statements.delete(db, TaskDatabaseHelper.Tables.INSTANCES, TaskContract.Instances._ID, existingInstances.getLong(idIdx));
                 }
                 else if (!next.right().isPresent())
                 {
@@ -282,7 +366,7 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
                         distance += 1;
                     }
                     values.put(TaskContract.Instances.DISTANCE_FROM_CURRENT, distance);
-                    db.insert(TaskDatabaseHelper.Tables.INSTANCES, "", values);
+                    statements.insert(db, TaskDatabaseHelper.Tables.INSTANCES, values);
                 }
                 else // both sides are present
                 {
@@ -302,8 +386,7 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
                         }
 
                         // TODO: only update if something actually changed
-                        db.update(TaskDatabaseHelper.Tables.INSTANCES, values,
-                                String.format(Locale.ENGLISH, "%s = %d", TaskContract.Instances._ID, existingInstances.getLong(idIdx)), null);
+                        statements.update(db, TaskDatabaseHelper.Tables.INSTANCES, values, TaskContract.Instances._ID, existingInstances.getLong(idIdx));
                     }
                     else if (distance >= 0 || existingInstances.getInt(isClosedIdx) == 0)
                     {
@@ -313,13 +396,15 @@ public final class Instantiating implements EntityProcessor<TaskAdapter>
                         {
                             ContentValues contentValues = new ContentValues(1);
                             contentValues.put(TaskContract.Instances.DISTANCE_FROM_CURRENT, distance);
-                            db.update(TaskDatabaseHelper.Tables.INSTANCES, contentValues,
-                                    String.format(Locale.ENGLISH, "%s = %d", TaskContract.Instances._ID, existingInstances.getLong(idIdx)), null);
+                            statements.update(db, TaskDatabaseHelper.Tables.INSTANCES, contentValues, TaskContract.Instances._ID,
+                                    existingInstances.getLong(idIdx));
                         }
                     }
                 }
             }
         }
+        NextTriggers.update(db, id);
+        Reminders.update(db, id);
     }
 
 }
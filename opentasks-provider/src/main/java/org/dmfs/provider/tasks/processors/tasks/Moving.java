@@ -23,9 +23,13 @@ import android.database.sqlite.SQLiteDatabase;
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
 import org.dmfs.tasks.contract.TaskContract;
 
+import java.util.List;
+
 
 /**
  * This processor makes sure that changing the list a task belongs is properly handled by sync adapters. This is achieved by emulating an atomic copy & delete
@@ -36,7 +40,7 @@ import org.dmfs.tasks.contract.TaskContract;
  *
  * @author Marten Gajda
  */
-public final class Moving implements EntityProcessor<TaskAdapter>
+public final class Moving implements BatchEntityProcessor<TaskAdapter>
 {
     private final EntityProcessor<TaskAdapter> mDelegate;
 
@@ -54,6 +58,13 @@ public final class Moving implements EntityProcessor<TaskAdapter>
     }
 
 
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
+    }
+
+
     @Override
     public TaskAdapter update(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
     {
@@ -21,9 +21,12 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
 import org.dmfs.tasks.contract.TaskContract;
 
+import java.util.List;
 import java.util.Locale;
 
 
@@ -33,7 +36,7 @@ import java.util.Locale;
  *
  * @author Marten Gajda
  */
-public final class Originating implements EntityProcessor<TaskAdapter>
+public final class Originating implements BatchEntityProcessor<TaskAdapter>
 {
     private final EntityProcessor<TaskAdapter> mDelegate;
 
@@ -48,17 +51,34 @@ public final class Originating implements EntityProcessor<TaskAdapter>
     public TaskAdapter insert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
     {
         TaskAdapter result = mDelegate.insert(db, task, isSyncAdapter);
-        String syncId = result.valueOf(TaskAdapter.SYNC_ID);
+        updateOverrides(db, result);
+        return result;
+    }
+
+
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
+        for (TaskAdapter task : tasks)
+        {
+            updateOverrides(db, task);
+        }
+    }
+
+
+    private void updateOverrides(SQLiteDatabase db, TaskAdapter task)
+    {
+        String syncId = task.valueOf(TaskAdapter.SYNC_ID);
         if (syncId != null)
         {
             // A master task with a syncId has been inserted.
             // Update original ID of any existing overrides.
             ContentValues values = new ContentValues(1);
-            values.put(TaskContract.Tasks.ORIGINAL_INSTANCE_ID, result.id());
+            values.put(TaskContract.Tasks.ORIGINAL_INSTANCE_ID, task.id());
             db.update(TaskDatabaseHelper.Tables.TASKS, values, String.format(Locale.ENGLISH, "%s = ?", TaskContract.Tasks.ORIGINAL_INSTANCE_SYNC_ID),
                     new String[] { syncId });
         }
-        return result;
     }
 
 
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Updates the instances of many master tasks at once, like {@link Instantiating} does for a single task.
+ * <p>
+ * Expanding the recurrence of a task is pure computation and doesn't need the database, so it's done on a pool of worker threads, while the calling thread is
+ * the only one writing to the database. The tasks are read from the given {@link Cursor} in batches. While the instances of one batch are written, the next
+ * batch is expanded already. The instances are written in the order of the {@link Cursor}, using the very same code as {@link Instantiating}, so the result is
+ * exactly the same as if each task has been updated by {@link Instantiating} in turn.
+ * <p>
+ * The workers only expand as many instances as the update is expected to use, that is the number of existing instances plus a small margin. In case the
+ * update needs more instances, it continues the expansion on the calling thread.
+ */
+public final class ParallelInstantiation
+{
+    /**
+     * The number of instances to expand in addition to the existing ones.
+     */
+    private final static int PREFETCH_MARGIN = 2;
+
+    private final static String SQL_INSTANCE_COUNT = String.format(Locale.ENGLISH,
+            "SELECT coalesce(%1$s, %2$s), count(*) FROM %3$s WHERE %1$s IN (%%1$s) OR %2$s IN (%%1$s) GROUP BY 1",
+            Instances.ORIGINAL_INSTANCE_ID, Instances.TASK_ID, TaskDatabaseHelper.Tables.INSTANCE_VIEW);
+
+    private final Instantiating mInstantiating;
+    private final int mBatchSize;
+
+
+    /**
+     * @param instantiating
+     *         The {@link Instantiating} processor to write the instances with.
+     * @param batchSize
+     *         The number of tasks to expand in advance.
+     */
+    public ParallelInstantiation(Instantiating instantiating, int batchSize)
+    {
+        mInstantiating = instantiating;
+        mBatchSize = batchSize;
+    }
+
+
+    /**
+     * Updates the instances of all tasks in the given {@link Cursor}. The {@link Cursor} must contain master tasks only. This should be called in a
+     * transaction.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param tasks
+     *         A {@link Cursor} of the master tasks to update, this needs to contain all the columns required to expand the instances.
+     *
+     * @return The number of tasks that have been updated.
+     */
+    public int update(SQLiteDatabase db, Cursor tasks)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try
+        {
+            int count = 0;
+            List<Expansion> batch = submit(db, executor, tasks);
+            while (!batch.isEmpty())
+            {
+                // submit the next batch before writing this one, so it's expanded while we write
+                List<Expansion> nextBatch = submit(db, executor, tasks);
+                for (Expansion expansion : batch)
+                {
+                    mInstantiating.updateInstances(db, expansion.mTask, expansion.instances());
+                    count += 1;
+                }
+                batch = nextBatch;
+            }
+            return count;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private List<Expansion> submit(SQLiteDatabase db, ExecutorService executor, Cursor tasks)
+    {
+        List<TaskAdapter> batch = new ArrayList<>(mBatchSize);
+        while (batch.size() < mBatchSize && tasks.moveToNext())
+        {
+            batch.add(new CursorContentValuesTaskAdapter(tasks.getLong(tasks.getColumnIndexOrThrow(Tasks._ID)), snapshot(tasks), new ContentValues()));
+        }
+
+        Map<Long, Integer> instanceCounts = instanceCounts(db, batch);
+        List<Expansion> result = new ArrayList<>(batch.size());
+        for (TaskAdapter task : batch)
+        {
+            Integer instanceCount = instanceCounts.get(task.id());
+            result.add(new Expansion(executor, task, (instanceCount == null ? 0 : instanceCount) + PREFETCH_MARGIN));
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the number of existing instances (including overrides) of the given tasks.
+     */
+    private Map<Long, Integer> instanceCounts(SQLiteDatabase db, List<TaskAdapter> tasks)
+    {
+        Map<Long, Integer> result = new HashMap<>(tasks.size() * 2);
+        if (tasks.isEmpty())
+        {
+            return result;
+        }
+        List<String> ids = new ArrayList<>(tasks.size());
+        for (TaskAdapter task : tasks)
+        {
+            ids.add(Long.toString(task.id()));
+        }
+        try (Cursor c = db.rawQuery(String.format(Locale.ENGLISH, SQL_INSTANCE_COUNT, TextUtils.join(",", ids)), null))
+        {
+            while (c.moveToNext())
+            {
+                result.put(c.getLong(0), c.getInt(1));
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns a single row {@link Cursor} with the values of the current row of the given {@link Cursor}.
+     */
+    private static Cursor snapshot(Cursor cursor)
+    {
+        int columns = cursor.getColumnCount();
+        Object[] row = new Object[columns];
+        for (int i = 0; i < columns; ++i)
+        {
+            switch (cursor.getType(i))
+            {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    row[i] = cursor.getLong(i);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    row[i] = cursor.getDouble(i);
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    row[i] = cursor.getString(i);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    row[i] = cursor.getBlob(i);
+                    break;
+                default:
+                    row[i] = null;
+            }
+        }
+        MatrixCursor result = new MatrixCursor(cursor.getColumnNames(), 1);
+        result.addRow(row);
+        result.moveToFirst();
+        return result;
+    }
+
+
+    /**
+     * The instance expansion of a single task.
+     */
+    private final static class Expansion
+    {
+        private final TaskAdapter mTask;
+        private final Iterator<ContentValues> mIterator;
+        private final Future<List<ContentValues>> mPrefix;
+
+
+        private Expansion(ExecutorService executor, TaskAdapter task, int prefetch)
+        {
+            mTask = task;
+            // the iterator is advanced by the worker first and continued by the writer once the prefix has been consumed
+            mIterator = Instantiating.expectedInstances(task).iterator();
+            mPrefix = executor.submit(() ->
+            {
+                List<ContentValues> prefix = new ArrayList<>(prefetch);
+                while (prefix.size() < prefetch && mIterator.hasNext())
+                {
+                    prefix.add(mIterator.next());
+                }
+                return prefix;
+            });
+        }
+
+
+        /**
+         * Returns the instances of the task, waiting for the worker if necessary. The result can be iterated only once.
+         */
+        Iterable<ContentValues> instances()
+        {
+            List<ContentValues> prefix = prefix();
+            return () -> new Iterator<ContentValues>()
+            {
+                private int mNext;
+
+
+                @Override
+                public boolean hasNext()
+                {
+                    return mNext < prefix.size() || mIterator.hasNext();
+                }
+
+
+                @Override
+                public ContentValues next()
+                {
+                    return mNext < prefix.size() ? prefix.get(mNext++) : mIterator.next();
+                }
+            };
+        }
+
+
+        private List<ContentValues> prefix()
+        {
+            try
+            {
+                return mPrefix.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while expanding the instances of task " + mTask.id(), e);
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof RuntimeException)
+                {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException("Can't expand the instances of task " + mTask.id(), e.getCause());
+            }
+        }
+    }
+}
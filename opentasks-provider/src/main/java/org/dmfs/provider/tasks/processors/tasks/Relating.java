@@ -22,9 +22,15 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.utils.StatementCache;
 import org.dmfs.tasks.contract.TaskContract;
 
+import java.util.List;
+import java.util.Locale;
+
 
 /**
  * A processor that updates relations for new tasks.
@@ -39,8 +45,29 @@ import org.dmfs.tasks.contract.TaskContract;
  *
  * @author Marten Gajda
  */
-public final class Relating implements EntityProcessor<TaskAdapter>
+public final class Relating implements BatchEntityProcessor<TaskAdapter>
 {
+    /**
+     * Sets the {@link TaskContract.Property.Relation#RELATED_ID} of all relations pointing to the UIDs of a batch of new tasks. The task ids need to be
+     * inserted into this string using {@link String#format(Locale, String, Object...)}.
+     */
+    private final static String SQL_RELATE_BATCH = String.format(Locale.ENGLISH,
+            "UPDATE %1$s SET %2$s = (SELECT max(%3$s) FROM %4$s WHERE %3$s IN (%%1$s) AND %5$s = %1$s.%6$s) "
+                    + "WHERE %7$s = ? AND %6$s IN (SELECT %5$s FROM %4$s WHERE %3$s IN (%%1$s))",
+            TaskDatabaseHelper.Tables.PROPERTIES, TaskContract.Property.Relation.RELATED_ID, TaskContract.Tasks._ID, TaskDatabaseHelper.Tables.TASKS,
+            TaskContract.Tasks._UID, TaskContract.Property.Relation.RELATED_UID, TaskContract.Property.Relation.MIMETYPE);
+
+    /**
+     * Sets the {@link TaskContract.Tasks#PARENT_ID} of all tasks with a parent relation to a task of a batch of new tasks. The task ids need to be inserted
+     * into this string using {@link String#format(Locale, String, Object...)}.
+     */
+    private final static String SQL_REPARENT_BATCH = String.format(Locale.ENGLISH,
+            "UPDATE %1$s SET %2$s = (SELECT %3$s FROM %4$s WHERE %5$s = %1$s.%6$s AND %7$s = ?1 AND %8$s = ?2 AND %3$s IN (%%1$s)) "
+                    + "WHERE %6$s IN (SELECT %5$s FROM %4$s WHERE %7$s = ?1 AND %8$s = ?2 AND %3$s IN (%%1$s))",
+            TaskDatabaseHelper.Tables.TASKS, TaskContract.Tasks.PARENT_ID, TaskContract.Property.Relation.RELATED_ID, TaskDatabaseHelper.Tables.PROPERTIES,
+            TaskContract.Property.Relation.TASK_ID, TaskContract.Tasks._ID, TaskContract.Property.Relation.MIMETYPE,
+            TaskContract.Property.Relation.RELATED_TYPE);
+
     private final EntityProcessor<TaskAdapter> mDelegate;
 
 
@@ -69,9 +96,9 @@ public final class Relating implements EntityProcessor<TaskAdapter>
             ContentValues v = new ContentValues(1);
             v.put(TaskContract.Property.Relation.RELATED_ID, result.id());
 
-            int updates = db.update(TaskDatabaseHelper.Tables.PROPERTIES, v,
-                    TaskContract.Property.Relation.MIMETYPE + "= ? AND " + TaskContract.Property.Relation.RELATED_UID + "=?", new String[] {
-                            TaskContract.Property.Relation.CONTENT_ITEM_TYPE, uid });
+            int updates = StatementCache.of(db).update(db, TaskDatabaseHelper.Tables.PROPERTIES, v,
+                    TaskContract.Property.Relation.MIMETYPE + "= ? AND " + TaskContract.Property.Relation.RELATED_UID + "=?",
+                    TaskContract.Property.Relation.CONTENT_ITEM_TYPE, uid);
 
             if (updates > 0)
             {
@@ -93,7 +120,7 @@ public final class Relating implements EntityProcessor<TaskAdapter>
                 {
                     while (c.moveToNext())
                     {
-                        db.update(TaskDatabaseHelper.Tables.TASKS, parentIdValues, TaskContract.Tasks._ID + " = ?", new String[] { c.getString(0) });
+                        StatementCache.of(db).update(db, TaskDatabaseHelper.Tables.TASKS, parentIdValues, TaskContract.Tasks._ID, c.getLong(0));
                     }
                 }
                 // TODO, way also may have to do this for all the siblings of these tasks.
@@ -103,6 +130,38 @@ public final class Relating implements EntityProcessor<TaskAdapter>
     }
 
 
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
+
+        if (!isSyncAdapter || tasks.isEmpty())
+        {
+            // the tasks were created on the device, so they don't have a UID
+            return;
+        }
+
+        StringBuilder ids = new StringBuilder(tasks.size() * 8);
+        for (TaskAdapter task : tasks)
+        {
+            if (ids.length() > 0)
+            {
+                ids.append(',');
+            }
+            ids.append(task.id());
+        }
+
+        // Update all relations that point to any of the new tasks with a single statement. If multiple new tasks have the same UID, the last one wins,
+        // just like it does when inserting one task after the other.
+        db.execSQL(String.format(Locale.ENGLISH, SQL_RELATE_BATCH, ids), new Object[] { TaskContract.Property.Relation.CONTENT_ITEM_TYPE });
+
+        // update the PARENT_IDs of all tasks which refer to any of the new tasks as their parent
+        // TODO, way also may have to do this for all the siblings of these tasks.
+        db.execSQL(String.format(Locale.ENGLISH, SQL_REPARENT_BATCH, ids),
+                new Object[] { TaskContract.Property.Relation.CONTENT_ITEM_TYPE, TaskContract.Property.Relation.RELTYPE_PARENT });
+    }
+
+
     @Override
     public TaskAdapter update(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
     {
@@ -123,9 +182,9 @@ public final class Relating implements EntityProcessor<TaskAdapter>
             ContentValues v = new ContentValues(1);
             v.put(TaskContract.Property.Relation.RELATED_UID, uid);
 
-            db.update(TaskDatabaseHelper.Tables.PROPERTIES, v,
-                    TaskContract.Property.Relation.MIMETYPE + "= ? AND " + TaskContract.Property.Relation.RELATED_ID + "=?", new String[] {
-                            TaskContract.Property.Relation.CONTENT_ITEM_TYPE, Long.toString(result.id()) });
+            StatementCache.of(db).update(db, TaskDatabaseHelper.Tables.PROPERTIES, v,
+                    TaskContract.Property.Relation.MIMETYPE + "= ? AND " + TaskContract.Property.Relation.RELATED_ID + "=?",
+                    TaskContract.Property.Relation.CONTENT_ITEM_TYPE, Long.toString(result.id()));
         }
         return result;
     }
@@ -142,9 +201,8 @@ public final class Relating implements EntityProcessor<TaskAdapter>
             return;
         }
 
-        db.delete(TaskDatabaseHelper.Tables.PROPERTIES, TaskContract.Property.Relation.MIMETYPE + "= ? AND " + TaskContract.Property.Relation.RELATED_ID + "=?",
-                new String[] {
-                        TaskContract.Property.Relation.CONTENT_ITEM_TYPE,
-                        Long.toString(task.id()) });
+        StatementCache.of(db).delete(db, TaskDatabaseHelper.Tables.PROPERTIES,
+                TaskContract.Property.Relation.MIMETYPE + "= ? AND " + TaskContract.Property.Relation.RELATED_ID + "=?",
+                TaskContract.Property.Relation.CONTENT_ITEM_TYPE, Long.toString(task.id()));
     }
 }
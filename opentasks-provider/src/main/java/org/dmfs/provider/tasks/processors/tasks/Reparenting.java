@@ -21,16 +21,20 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
 import org.dmfs.tasks.contract.TaskContract;
 
+import java.util.List;
+
 
 /**
  * An {@link EntityProcessor} which updates a task's parent-child relations when its {@link TaskContract.Tasks#PARENT_ID} is updated.
  *
  * @author Marten Gajda
  */
-public final class Reparenting implements EntityProcessor<TaskAdapter>
+public final class Reparenting implements BatchEntityProcessor<TaskAdapter>
 {
     private final EntityProcessor<TaskAdapter> mDelegate;
 
@@ -53,6 +57,20 @@ public final class Reparenting implements EntityProcessor<TaskAdapter>
     }
 
 
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
+        for (TaskAdapter task : tasks)
+        {
+            if (task.isUpdated(TaskAdapter.PARENT_ID))
+            {
+                linkParent(db, task);
+            }
+        }
+    }
+
+
     @Override
     public TaskAdapter update(SQLiteDatabase db, TaskAdapter entityAdapter, boolean isSyncAdapter)
     {
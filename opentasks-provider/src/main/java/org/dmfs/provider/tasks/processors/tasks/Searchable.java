@@ -20,16 +20,20 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.dmfs.provider.tasks.FTSDatabaseHelper;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
 import org.dmfs.provider.tasks.utils.Profiled;
 
+import java.util.List;
+
 
 /**
  * An {@link EntityProcessor} to update the fast text search table when inserting or updating a task.
  *
  * @author Marten Gajda
  */
-public final class Searchable implements EntityProcessor<TaskAdapter>
+public final class Searchable implements BatchEntityProcessor<TaskAdapter>
 {
     private final EntityProcessor<TaskAdapter> mDelegate;
 
@@ -49,6 +53,14 @@ public final class Searchable implements EntityProcessor<TaskAdapter>
     }
 
 
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
+        new Profiled("InsertFTSBatch").run(() -> FTSDatabaseHelper.updateTaskFTSEntries(db, tasks));
+    }
+
+
     @Override
     public TaskAdapter update(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
     {
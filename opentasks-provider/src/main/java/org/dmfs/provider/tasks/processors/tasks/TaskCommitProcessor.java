@@ -20,16 +20,19 @@ import android.database.sqlite.SQLiteDatabase;
 
 import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.TaskAdapter;
-import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.utils.StatementCache;
 import org.dmfs.tasks.contract.TaskContract;
 
+import java.util.List;
+
 
 /**
  * A processor that performs the actual operations on tasks.
  *
  * @author Marten Gajda
  */
-public final class TaskCommitProcessor implements EntityProcessor<TaskAdapter>
+public final class TaskCommitProcessor implements BatchEntityProcessor<TaskAdapter>
 {
     @Override
     public TaskAdapter insert(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
@@ -39,6 +42,16 @@ public final class TaskCommitProcessor implements EntityProcessor<TaskAdapter>
     }
 
 
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        for (TaskAdapter task : tasks)
+        {
+            task.commit(db);
+        }
+    }
+
+
     @Override
     public TaskAdapter update(SQLiteDatabase db, TaskAdapter task, boolean isSyncAdapter)
     {
@@ -55,7 +68,7 @@ public final class TaskCommitProcessor implements EntityProcessor<TaskAdapter>
         if (isSyncAdapter || TaskContract.LOCAL_ACCOUNT_TYPE.equals(accountType))
         {
             // this is a local task or it's removed by a sync adapter, in either case we delete it right away
-            db.delete(TaskDatabaseHelper.Tables.TASKS, TaskContract.TaskColumns._ID + "=" + task.id(), null);
+            StatementCache.of(db).delete(db, TaskDatabaseHelper.Tables.TASKS, TaskContract.TaskColumns._ID, task.id());
         }
         else
         {
@@ -16,26 +16,27 @@
 
 package org.dmfs.provider.tasks.processors.tasks;
 
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
-import org.dmfs.provider.tasks.TaskDatabaseHelper;
 import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.BatchEntityProcessor;
+import org.dmfs.provider.tasks.processors.Batches;
 import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.utils.MetadataCache;
 import org.dmfs.rfc5545.Duration;
 import org.dmfs.tasks.contract.TaskContract;
 
+import java.util.List;
+import java.util.Map;
+
 
 /**
  * A processor that validates the values of a task.
  *
  * @author Marten Gajda
  */
-public final class Validating implements EntityProcessor<TaskAdapter>
+public final class Validating implements BatchEntityProcessor<TaskAdapter>
 {
-    private static final String[] TASKLIST_ID_PROJECTION = { TaskContract.TaskLists._ID };
-    private static final String TASKLISTS_ID_SELECTION = TaskContract.TaskLists._ID + "=";
-
     private final EntityProcessor<TaskAdapter> mDelegate;
 
 
@@ -57,24 +58,35 @@ public final class Validating implements EntityProcessor<TaskAdapter>
             throw new IllegalArgumentException("LIST_ID is required on INSERT");
         }
 
-        // TODO: get rid of this query and use a cache instead
         // TODO: ensure that the list is writable unless the caller is a sync adapter
-        Cursor cursor = db.query(TaskDatabaseHelper.Tables.LISTS, TASKLIST_ID_PROJECTION, TASKLISTS_ID_SELECTION + listId, null, null, null, null);
-        try
+        if (MetadataCache.of(db).taskList(db, listId) == null)
         {
-            if (cursor == null || cursor.getCount() != 1)
-            {
-                throw new IllegalArgumentException("LIST_ID must refer to an existing TaskList");
-            }
+            throw new IllegalArgumentException("LIST_ID must refer to an existing TaskList");
         }
-        finally
+        return mDelegate.insert(db, task, isSyncAdapter);
+    }
+
+
+    @Override
+    public void insertAll(SQLiteDatabase db, List<TaskAdapter> tasks, boolean isSyncAdapter)
+    {
+        Map<Long, MetadataCache.TaskList> taskLists = MetadataCache.of(db).taskLists(db);
+        for (TaskAdapter task : tasks)
         {
-            if (cursor != null)
+            verifyCommon(task, isSyncAdapter);
+
+            // LIST_ID must be present and refer to an existing TaskList row id
+            Long listId = task.valueOf(TaskAdapter.LIST_ID);
+            if (listId == null)
             {
-                cursor.close();
+                throw new IllegalArgumentException("LIST_ID is required on INSERT");
+            }
+            if (!taskLists.containsKey(listId))
+            {
+                throw new IllegalArgumentException("LIST_ID must refer to an existing TaskList");
             }
         }
-        return mDelegate.insert(db, task, isSyncAdapter);
+        Batches.insertAll(mDelegate, db, tasks, isSyncAdapter);
     }
 
 
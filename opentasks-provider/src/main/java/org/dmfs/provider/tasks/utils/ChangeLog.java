@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.tasks.contract.TaskContract.Changes;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+
+/**
+ * Writes the change log. Changes are written within the transaction that applies them, so the change log is always consistent with the tasks.
+ */
+public final class ChangeLog
+{
+    private ChangeLog()
+    {
+        // no instances
+    }
+
+
+    /**
+     * Returns the current version of the given task or <code>null</code> if the task doesn't exist.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param taskId
+     *         The id of the task.
+     */
+    public static Long version(SQLiteDatabase db, long taskId)
+    {
+        try (Cursor c = db.query(TaskDatabaseHelper.Tables.TASKS, new String[] { Tasks.VERSION }, Tasks._ID + "=" + taskId, null, null, null, null))
+        {
+            return c.moveToFirst() && !c.isNull(0) ? c.getLong(0) : null;
+        }
+    }
+
+
+    /**
+     * Adds a change to the change log.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param taskId
+     *         The id of the task that has been changed.
+     * @param instanceId
+     *         The id of the instance that has been changed or <code>null</code>.
+     * @param operation
+     *         The operation, one of {@link Changes#OPERATION_INSERT}, {@link Changes#OPERATION_UPDATE} or {@link Changes#OPERATION_DELETE}.
+     * @param version
+     *         The version of the task after the change or <code>null</code> if it's not known.
+     */
+    public static void log(SQLiteDatabase db, long taskId, Long instanceId, int operation, Long version)
+    {
+        ContentValues values = new ContentValues(4);
+        values.put(Changes.TASK_ID, taskId);
+        values.put(Changes.INSTANCE_ID, instanceId);
+        values.put(Changes.OPERATION, operation);
+        values.put(Changes.VERSION, version);
+        StatementCache.of(db).insert(db, TaskDatabaseHelper.Tables.CHANGES, values);
+    }
+
+
+    /**
+     * Adds a change to the change log, taking the version from the current state of the task.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param taskId
+     *         The id of the task that has been changed.
+     * @param instanceId
+     *         The id of the instance that has been changed or <code>null</code>.
+     * @param operation
+     *         The operation, one of {@link Changes#OPERATION_INSERT}, {@link Changes#OPERATION_UPDATE} or {@link Changes#OPERATION_DELETE}.
+     */
+    public static void log(SQLiteDatabase db, long taskId, Long instanceId, int operation)
+    {
+        log(db, taskId, instanceId, operation, version(db, taskId));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.database.sqlite.SQLiteTransactionListener;
+
+
+/**
+ * An {@link SQLiteTransactionListener} which forwards all events to a number of other {@link SQLiteTransactionListener}s.
+ * <p>
+ * All delegates are notified, even if one of them throws. The first exception is rethrown (with any further exceptions suppressed) once all delegates have
+ * been notified, so a failing delegate doesn't leave the others with an unbalanced transaction state.
+ */
+public final class CompositeTransactionListener implements SQLiteTransactionListener
+{
+    private final SQLiteTransactionListener[] mDelegates;
+
+
+    public CompositeTransactionListener(SQLiteTransactionListener... delegates)
+    {
+        mDelegates = delegates;
+    }
+
+
+    @Override
+    public void onBegin()
+    {
+        RuntimeException error = null;
+        for (SQLiteTransactionListener delegate : mDelegates)
+        {
+            try
+            {
+                delegate.onBegin();
+            }
+            catch (RuntimeException e)
+            {
+                error = combined(error, e);
+            }
+        }
+        rethrow(error);
+    }
+
+
+    @Override
+    public void onCommit()
+    {
+        RuntimeException error = null;
+        for (SQLiteTransactionListener delegate : mDelegates)
+        {
+            try
+            {
+                delegate.onCommit();
+            }
+            catch (RuntimeException e)
+            {
+                error = combined(error, e);
+            }
+        }
+        rethrow(error);
+    }
+
+
+    @Override
+    public void onRollback()
+    {
+        RuntimeException error = null;
+        for (SQLiteTransactionListener delegate : mDelegates)
+        {
+            try
+            {
+                delegate.onRollback();
+            }
+            catch (RuntimeException e)
+            {
+                error = combined(error, e);
+            }
+        }
+        rethrow(error);
+    }
+
+
+    private static RuntimeException combined(RuntimeException first, RuntimeException next)
+    {
+        if (first == null)
+        {
+            return next;
+        }
+        first.addSuppressed(next);
+        return first;
+    }
+
+
+    private static void rethrow(RuntimeException error)
+    {
+        if (error != null)
+        {
+            throw error;
+        }
+    }
+}
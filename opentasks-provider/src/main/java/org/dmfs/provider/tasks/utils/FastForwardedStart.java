@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import org.dmfs.jems.single.Single;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.Duration;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+
+/**
+ * A {@link Single} of an instance of a {@link RecurrenceRule} which is close to, but before a given target time. Iterating the rule starting at that instance
+ * returns the same instances (from that instance on) as iterating the rule from the original start.
+ * <p>
+ * This jumps close to the target in one step for simple rules having only FREQ, INTERVAL and UNTIL (and optionally WKST). For any other rule (in particular
+ * rules with a COUNT or any BY* parts), or if there is nothing to skip, this returns the original start, which means the caller has to iterate all instances.
+ * <p>
+ * Note, the result is not necessarily the last instance before the target. The caller is expected to fast forward the remaining few instances.
+ */
+public final class FastForwardedStart implements Single<DateTime>
+{
+    /**
+     * The parts a rule may contain to be fast forwarded in one step.
+     */
+    private final static Set<RecurrenceRule.Part> SUPPORTED_PARTS = EnumSet.of(
+            RecurrenceRule.Part.FREQ, RecurrenceRule.Part.INTERVAL, RecurrenceRule.Part.UNTIL, RecurrenceRule.Part.WKST);
+
+    private final static long MILLIS_PER_DAY = 24L * 3600L * 1000L;
+
+    private final DateTime mStart;
+    private final RecurrenceRule mRule;
+    private final long mTarget;
+
+
+    /**
+     * @param start
+     *         The start of the recurrence.
+     * @param rule
+     *         The {@link RecurrenceRule}, may be <code>null</code>.
+     * @param target
+     *         The timestamp to fast forward to.
+     */
+    public FastForwardedStart(DateTime start, RecurrenceRule rule, long target)
+    {
+        mStart = start;
+        mRule = rule;
+        mTarget = target;
+    }
+
+
+    @Override
+    public DateTime value()
+    {
+        if (mRule == null || mTarget <= mStart.getTimestamp() || !isSupported(mRule))
+        {
+            return mStart;
+        }
+
+        int interval = mRule.getInterval();
+        switch (mRule.getFreq())
+        {
+            case MINUTELY:
+                // the instances repeat every day if the interval divides a day
+                return mStart.isAllDay() || 24 * 60 % interval != 0 ? mStart : skipDays(1);
+            case HOURLY:
+                // the instances repeat every day if the interval divides a day
+                return mStart.isAllDay() || 24 % interval != 0 ? mStart : skipDays(1);
+            case DAILY:
+                return skipDays(interval);
+            case WEEKLY:
+                return skipDays(7 * interval);
+            case MONTHLY:
+                // skipping months is only safe if every month contains the day
+                return mStart.getDayOfMonth() > 28 ? mStart : skipMonths(interval);
+            case YEARLY:
+                // skipping years is only safe if every year contains the day
+                return mStart.getMonth() == 1 && mStart.getDayOfMonth() == 29 ? mStart : skipMonths(12 * interval);
+            default:
+                return mStart;
+        }
+    }
+
+
+    private boolean isSupported(RecurrenceRule rule)
+    {
+        for (RecurrenceRule.Part part : RecurrenceRule.Part.values())
+        {
+            if (!SUPPORTED_PARTS.contains(part) && rule.hasPart(part))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Skip whole periods of the given number of days, staying at least one period before the target.
+     */
+    private DateTime skipDays(int periodDays)
+    {
+        // note, this is only an approximation of the number of calendar days, that's why we stay one period before the target
+        long steps = (mTarget - mStart.getTimestamp()) / MILLIS_PER_DAY / periodDays - 1;
+        if (steps <= 0 || steps * periodDays > Integer.MAX_VALUE)
+        {
+            return mStart;
+        }
+        return mStart.addDuration(new Duration(1, (int) (steps * periodDays), 0));
+    }
+
+
+    /**
+     * Skip whole periods of the given number of months, staying at least one period before the target.
+     */
+    private DateTime skipMonths(int periodMonths)
+    {
+        DateTime target = new DateTime(mStart.isFloating() ? DateTime.UTC : mStart.getTimeZone(), mTarget);
+        long steps = ((target.getYear() - mStart.getYear()) * 12L + target.getMonth() - mStart.getMonth()) / periodMonths - 1;
+        if (steps <= 0)
+        {
+            return mStart;
+        }
+        long months = mStart.getMonth() + steps * periodMonths;
+        int year = (int) (mStart.getYear() + months / 12);
+        int month = (int) (months % 12);
+
+        if (mStart.isAllDay())
+        {
+            return new DateTime(year, month, mStart.getDayOfMonth());
+        }
+        if (mStart.isFloating())
+        {
+            return new DateTime(year, month, mStart.getDayOfMonth(), mStart.getHours(), mStart.getMinutes(), mStart.getSeconds());
+        }
+        return new DateTime(mStart.getTimeZone(), year, month, mStart.getDayOfMonth(), mStart.getHours(), mStart.getMinutes(), mStart.getSeconds());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+
+/**
+ * Recomputes the {@link Instances#INSTANCE_START_SORTING} and {@link Instances#INSTANCE_DUE_SORTING} values after the local time zone has changed.
+ * <p>
+ * The sorting values are the {@link DateTime#getInstance()} values of the local time. Only instances of tasks with a time zone depend on the local time zone,
+ * the sorting values of all-day and floating instances are the same in every time zone, so these are not touched at all. The values are rewritten directly,
+ * the tasks don't run through the processor chain.
+ * <p>
+ * The update runs in chunks of instances in the order of their ids, so it can be resumed after the last instance of the previous chunk.
+ */
+public final class LocalSortingUpdate
+{
+    private final static String SQL_ZONED = String.format(Locale.ENGLISH, "FROM %1$s I JOIN %2$s T ON (I.%3$s = T.%4$s) WHERE T.%5$s IS NOT NULL AND ifnull(T.%6$s, 0) = 0",
+            Tables.INSTANCES, Tables.TASKS, Instances.TASK_ID, Tasks._ID, Tasks.TZ, Tasks.IS_ALLDAY);
+
+    private final static String SQL_COUNT = "SELECT count(*) " + SQL_ZONED;
+
+    private final static String SQL_CHUNK = String.format(Locale.ENGLISH, "SELECT I.%s, I.%s, I.%s, I.%s ", Instances._ID, Instances.TASK_ID,
+            Instances.INSTANCE_START, Instances.INSTANCE_DUE) + SQL_ZONED + " AND I." + Instances._ID + " > ? ORDER BY I." + Instances._ID + " LIMIT ?";
+
+    private final static String SQL_UPDATE = String.format(Locale.ENGLISH, "UPDATE %s SET %s = ?, %s = ? WHERE %s = ?", Tables.INSTANCES,
+            Instances.INSTANCE_START_SORTING, Instances.INSTANCE_DUE_SORTING, Instances._ID);
+
+    private final SQLiteDatabase mDb;
+    private final TimeZone mTimeZone;
+    private long mLastId;
+
+
+    /**
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param timeZone
+     *         The local {@link TimeZone}.
+     */
+    public LocalSortingUpdate(SQLiteDatabase db, TimeZone timeZone)
+    {
+        mDb = db;
+        mTimeZone = timeZone;
+    }
+
+
+    /**
+     * Returns the number of instances which depend on the local time zone.
+     */
+    public long candidates()
+    {
+        return DatabaseUtils.longForQuery(mDb, SQL_COUNT, null);
+    }
+
+
+    /**
+     * Updates the next chunk of instances. This should be called in a transaction.
+     *
+     * @param after
+     *         The id of the last instance of the previous chunk, <code>-1</code> to start with the first instance.
+     * @param limit
+     *         The maximum number of instances to update.
+     *
+     * @return The number of instances that have been updated, <code>0</code> if there are no more instances to update.
+     */
+    public int update(long after, int limit)
+    {
+        int count = 0;
+        SQLiteStatement statement = mDb.compileStatement(SQL_UPDATE);
+        try (Cursor c = mDb.rawQuery(SQL_CHUNK, new String[] { Long.toString(after), Integer.toString(limit) }))
+        {
+            while (c.moveToNext())
+            {
+                bindSorting(statement, 1, c, 2);
+                bindSorting(statement, 2, c, 3);
+                statement.bindLong(3, c.getLong(0));
+                statement.executeUpdateDelete();
+                mLastId = c.getLong(0);
+                count += 1;
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+        return count;
+    }
+
+
+    /**
+     * Returns the id of the last instance that has been updated by {@link #update(long, int)}.
+     */
+    public long lastId()
+    {
+        return mLastId;
+    }
+
+
+    private void bindSorting(SQLiteStatement statement, int index, Cursor cursor, int column)
+    {
+        if (cursor.isNull(column))
+        {
+            statement.bindNull(index);
+        }
+        else
+        {
+            // the sorting values are the packed instance values of the local time, just like the ones written by Instantiating
+            statement.bindLong(index, new DateTime(mTimeZone, cursor.getLong(column)).getInstance());
+        }
+    }
+}
@@ -0,0 +1,599 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteTransactionListener;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.tasks.contract.TaskContract.Categories;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+
+/**
+ * A cache of the task lists and categories of a specific database, which are needed to validate almost every write operation.
+ * <p>
+ * All task lists are loaded at once, since there are usually only a few of them. Categories are cached by account and name in a bounded LRU cache.
+ * <p>
+ * The cache is invalidated transactionally. Changes made during a transaction that has been started with the {@link SQLiteTransactionListener} returned by
+ * {@link #transactionListener()} are only visible to the thread executing the transaction until it's committed. When it's rolled back, the cache is left
+ * untouched. Outside of such a transaction any invalidation takes effect immediately and nothing which has been read during an untracked transaction is cached,
+ * since we can't tell whether that transaction will be committed or rolled back.
+ * <p>
+ * The listener is notified right before the transaction is actually committed, so other threads may still load the old values at that time. To make sure
+ * these are not cached, {@link #onTransactionEnded()} must be called after {@link SQLiteDatabase#endTransaction()}, which invalidates the changes once again
+ * and publishes the categories of the transaction.
+ */
+public final class MetadataCache
+{
+    /**
+     * The maximum number of categories to cache.
+     */
+    private final static int MAX_CATEGORIES = 1000;
+
+    private final static String[] LIST_PROJECTION = {
+            TaskLists._ID, TaskLists.ACCOUNT_NAME, TaskLists.ACCOUNT_TYPE, TaskLists.ACCESS_LEVEL, TaskLists.VISIBLE };
+
+    private final static String[] CATEGORY_PROJECTION = { Categories._ID, Categories.NAME, Categories.COLOR };
+
+    private final static String CATEGORY_NAME_SELECTION = Categories.NAME + "=? and " + Categories.ACCOUNT_NAME + "=? and " + Categories.ACCOUNT_TYPE + "=?";
+
+    private final static Map<SQLiteDatabase, MetadataCache> CACHES = new WeakHashMap<>();
+
+
+    /**
+     * Returns the {@link MetadataCache} of the given database.
+     *
+     * @param db
+     *         An {@link SQLiteDatabase}.
+     *
+     * @return The {@link MetadataCache} of the database.
+     */
+    public static MetadataCache of(SQLiteDatabase db)
+    {
+        synchronized (CACHES)
+        {
+            MetadataCache cache = CACHES.get(db);
+            if (cache == null)
+            {
+                cache = new MetadataCache();
+                CACHES.put(db, cache);
+            }
+            return cache;
+        }
+    }
+
+
+    /**
+     * The committed task lists or <code>null</code> if they have not been loaded yet.
+     */
+    private Map<Long, TaskList> mLists;
+
+    /**
+     * Incremented whenever the committed task lists change, so lists which have been loaded concurrently are not cached.
+     */
+    private long mListsGeneration;
+
+    private final Map<String, Category> mCategories = new LinkedHashMap<String, Category>(MAX_CATEGORIES / 4, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Category> eldest)
+        {
+            return size() > MAX_CATEGORIES;
+        }
+    };
+
+    /**
+     * Incremented whenever the committed categories change, so categories which have been loaded concurrently are not cached.
+     */
+    private long mCategoriesGeneration;
+
+    /**
+     * The state of the current transaction of a thread or <code>null</code> if the thread is not in a tracked transaction.
+     */
+    private final ThreadLocal<Transaction> mTransaction = new ThreadLocal<>();
+
+    /**
+     * The last transaction of a thread which is being committed or <code>null</code> if there is none.
+     */
+    private final ThreadLocal<Transaction> mCommitted = new ThreadLocal<>();
+
+    private final SQLiteTransactionListener mTransactionListener = new SQLiteTransactionListener()
+    {
+        @Override
+        public void onBegin()
+        {
+            Transaction transaction = mTransaction.get();
+            if (transaction == null)
+            {
+                // the previous transaction of this thread has been committed by now, this happens when a batch yields
+                onTransactionEnded();
+                transaction = new Transaction();
+                mTransaction.set(transaction);
+            }
+            transaction.mDepth += 1;
+        }
+
+
+        @Override
+        public void onCommit()
+        {
+            Transaction transaction = mTransaction.get();
+            if (transaction != null && --transaction.mDepth == 0)
+            {
+                mTransaction.remove();
+                if (!transaction.mFailed && transaction.hasChanges())
+                {
+                    invalidate(transaction);
+                    mCommitted.set(transaction);
+                }
+            }
+        }
+
+
+        @Override
+        public void onRollback()
+        {
+            Transaction transaction = mTransaction.get();
+            if (transaction != null)
+            {
+                // a failed nested transaction fails the entire transaction
+                transaction.mFailed = true;
+                if (--transaction.mDepth == 0)
+                {
+                    mTransaction.remove();
+                }
+            }
+        }
+    };
+
+
+    private MetadataCache()
+    {
+        // use of(SQLiteDatabase)
+    }
+
+
+    /**
+     * Returns the {@link SQLiteTransactionListener} which publishes the changes of a transaction on commit and drops them on rollback.
+     */
+    public SQLiteTransactionListener transactionListener()
+    {
+        return mTransactionListener;
+    }
+
+
+    /**
+     * Completes the commit of the last transaction of the calling thread. This must be called after {@link SQLiteDatabase#endTransaction()} of every
+     * transaction that may have changed task lists or categories and that has been started with the {@link SQLiteTransactionListener} returned by {@link
+     * #transactionListener()}.
+     */
+    public void onTransactionEnded()
+    {
+        Transaction transaction = mCommitted.get();
+        if (transaction != null)
+        {
+            mCommitted.remove();
+            publish(transaction);
+        }
+    }
+
+
+    /**
+     * Returns all task lists of the given database by their row id.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     *
+     * @return An unmodifiable {@link Map} of all the task lists.
+     */
+    public Map<Long, TaskList> taskLists(SQLiteDatabase db)
+    {
+        Transaction transaction = mTransaction.get();
+        if (transaction != null && transaction.mListsChanged)
+        {
+            // the lists have been changed in this transaction, only this thread can see the changes
+            if (transaction.mLists == null)
+            {
+                transaction.mLists = loadLists(db);
+            }
+            return transaction.mLists;
+        }
+
+        long generation;
+        synchronized (this)
+        {
+            if (mLists != null)
+            {
+                return mLists;
+            }
+            generation = mListsGeneration;
+        }
+
+        Map<Long, TaskList> lists = loadLists(db);
+        if (transaction != null || !db.inTransaction())
+        {
+            synchronized (this)
+            {
+                if (generation == mListsGeneration)
+                {
+                    mLists = lists;
+                }
+            }
+        }
+        return lists;
+    }
+
+
+    /**
+     * Returns the task list with the given row id.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param id
+     *         The row id of the task list.
+     *
+     * @return The {@link TaskList} or <code>null</code> if there is no such list.
+     */
+    public TaskList taskList(SQLiteDatabase db, long id)
+    {
+        return taskLists(db).get(id);
+    }
+
+
+    /**
+     * Invalidates the cached task lists. This must be called whenever task lists are inserted, updated or deleted.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase} the task lists have been changed in.
+     */
+    public void invalidateTaskLists(SQLiteDatabase db)
+    {
+        Transaction transaction = mTransaction.get();
+        if (transaction != null)
+        {
+            transaction.mListsChanged = true;
+            transaction.mLists = null;
+            return;
+        }
+        synchronized (this)
+        {
+            mLists = null;
+            mListsGeneration += 1;
+        }
+    }
+
+
+    /**
+     * Returns the category with the given name in the given account.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param accountName
+     *         The name of the account.
+     * @param accountType
+     *         The type of the account.
+     * @param name
+     *         The name of the category.
+     *
+     * @return The {@link Category} or <code>null</code> if there is no unique category with that name.
+     */
+    public Category category(SQLiteDatabase db, String accountName, String accountType, String name)
+    {
+        String key = categoryKey(accountName, accountType, name);
+        Transaction transaction = mTransaction.get();
+        if (transaction != null)
+        {
+            Category category = transaction.mCategories.get(key);
+            if (category != null)
+            {
+                return category;
+            }
+        }
+
+        long generation;
+        synchronized (mCategories)
+        {
+            if (transaction == null || !transaction.mCategoriesChanged)
+            {
+                Category category = mCategories.get(key);
+                if (category != null)
+                {
+                    return category;
+                }
+            }
+            generation = mCategoriesGeneration;
+        }
+
+        Category category = loadCategory(db, accountName, accountType, name);
+        if (category != null)
+        {
+            if (transaction != null)
+            {
+                transaction.mCategories.put(key, category);
+            }
+            else if (!db.inTransaction())
+            {
+                synchronized (mCategories)
+                {
+                    if (generation == mCategoriesGeneration)
+                    {
+                        mCategories.put(key, category);
+                    }
+                }
+            }
+        }
+        return category;
+    }
+
+
+    /**
+     * Remembers a category that has just been inserted into the given database.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase} the category has been inserted into.
+     * @param accountName
+     *         The name of the account of the category.
+     * @param accountType
+     *         The type of the account of the category.
+     * @param category
+     *         The new {@link Category}.
+     */
+    public void putCategory(SQLiteDatabase db, String accountName, String accountType, Category category)
+    {
+        String key = categoryKey(accountName, accountType, category.name());
+        Transaction transaction = mTransaction.get();
+        if (transaction != null)
+        {
+            transaction.mCategories.put(key, category);
+        }
+        else if (!db.inTransaction())
+        {
+            synchronized (mCategories)
+            {
+                mCategories.put(key, category);
+            }
+        }
+        // else: we're in an untracked transaction, the category might not survive it, so don't cache it
+    }
+
+
+    /**
+     * Invalidates the cached categories. This must be called whenever existing categories are updated or deleted.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase} the categories have been changed in.
+     */
+    public void invalidateCategories(SQLiteDatabase db)
+    {
+        Transaction transaction = mTransaction.get();
+        if (transaction != null)
+        {
+            transaction.mCategoriesChanged = true;
+            transaction.mCategories.clear();
+            return;
+        }
+        synchronized (mCategories)
+        {
+            mCategories.clear();
+            mCategoriesGeneration += 1;
+        }
+    }
+
+
+    /**
+     * Invalidates the changes of a transaction that's about to be committed.
+     */
+    private void invalidate(Transaction transaction)
+    {
+        if (transaction.mListsChanged)
+        {
+            synchronized (this)
+            {
+                mLists = null;
+                mListsGeneration += 1;
+            }
+        }
+
+        synchronized (mCategories)
+        {
+            if (transaction.mCategoriesChanged)
+            {
+                mCategories.clear();
+                mCategoriesGeneration += 1;
+            }
+            transaction.mCategoriesGeneration = mCategoriesGeneration;
+        }
+    }
+
+
+    /**
+     * Publishes the changes of a transaction that has been committed. Anything that has been loaded while the commit was in progress may be outdated, so the
+     * changes are invalidated once again.
+     */
+    private void publish(Transaction transaction)
+    {
+        if (transaction.mListsChanged)
+        {
+            synchronized (this)
+            {
+                mLists = null;
+                mListsGeneration += 1;
+            }
+        }
+
+        synchronized (mCategories)
+        {
+            // if the categories have been changed by another transaction in the meantime, the ones of this transaction may be outdated
+            boolean current = mCategoriesGeneration == transaction.mCategoriesGeneration;
+            if (transaction.mCategoriesChanged)
+            {
+                mCategories.clear();
+                mCategoriesGeneration += 1;
+            }
+            if (current)
+            {
+                // these have been loaded or inserted after the last change, so they are valid now
+                mCategories.putAll(transaction.mCategories);
+            }
+        }
+    }
+
+
+    private static Map<Long, TaskList> loadLists(SQLiteDatabase db)
+    {
+        Map<Long, TaskList> result = new HashMap<>();
+        try (Cursor cursor = db.query(TaskDatabaseHelper.Tables.LISTS, LIST_PROJECTION, null, null, null, null, null))
+        {
+            while (cursor.moveToNext())
+            {
+                result.put(cursor.getLong(0), new TaskList(cursor.getString(1), cursor.getString(2), cursor.getInt(3), cursor.getInt(4) != 0));
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+
+    private static Category loadCategory(SQLiteDatabase db, String accountName, String accountType, String name)
+    {
+        try (Cursor cursor = db.query(TaskDatabaseHelper.Tables.CATEGORIES, CATEGORY_PROJECTION, CATEGORY_NAME_SELECTION,
+                new String[] { name, accountName, accountType }, null, null, null))
+        {
+            if (cursor.getCount() != 1 || !cursor.moveToFirst())
+            {
+                return null;
+            }
+            return new Category(cursor.getLong(0), cursor.getString(1), cursor.getInt(2));
+        }
+    }
+
+
+    private static String categoryKey(String accountName, String accountType, String name)
+    {
+        return accountType + '\u0000' + accountName + '\u0000' + name;
+    }
+
+
+    /**
+     * The changes of the current transaction of a thread.
+     */
+    private final static class Transaction
+    {
+        private int mDepth;
+        private boolean mFailed;
+        private boolean mListsChanged;
+        private Map<Long, TaskList> mLists;
+        private boolean mCategoriesChanged;
+        private final Map<String, Category> mCategories = new HashMap<>();
+        private long mCategoriesGeneration;
+
+
+        private boolean hasChanges()
+        {
+            return mListsChanged || mCategoriesChanged || !mCategories.isEmpty();
+        }
+    }
+
+
+    /**
+     * The cached values of a task list.
+     */
+    public final static class TaskList
+    {
+        private final String mAccountName;
+        private final String mAccountType;
+        private final int mAccessLevel;
+        private final boolean mVisible;
+
+
+        TaskList(String accountName, String accountType, int accessLevel, boolean visible)
+        {
+            mAccountName = accountName;
+            mAccountType = accountType;
+            mAccessLevel = accessLevel;
+            mVisible = visible;
+        }
+
+
+        public String accountName()
+        {
+            return mAccountName;
+        }
+
+
+        public String accountType()
+        {
+            return mAccountType;
+        }
+
+
+        public int accessLevel()
+        {
+            return mAccessLevel;
+        }
+
+
+        public boolean isVisible()
+        {
+            return mVisible;
+        }
+    }
+
+
+    /**
+     * The cached values of a category.
+     */
+    public final static class Category
+    {
+        private final long mId;
+        private final String mName;
+        private final int mColor;
+
+
+        public Category(long id, String name, int color)
+        {
+            mId = id;
+            mName = name;
+            mColor = color;
+        }
+
+
+        public long id()
+        {
+            return mId;
+        }
+
+
+        public String name()
+        {
+            return mName;
+        }
+
+
+        public int color()
+        {
+            return mColor;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.NextTriggerColumns;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+
+/**
+ * Maintains the {@link Tables#NEXT_TRIGGER} table. It contains the start and due times of all instances of open tasks, so the next notification alarm and the
+ * notifications to post can be determined by a seek on its covering index instead of scanning the instance view.
+ * <p>
+ * The trigger times are actual timestamps. The start and due timestamps of instances with a time zone are taken as they are. Floating and all-day instances
+ * take place at their local time, so their timestamps are converted to the local time zone. Whenever the instances of a task change, the triggers of the task
+ * must be updated within the same transaction. When the local time zone changes, the triggers of floating and all-day tasks must be updated using {@link
+ * #updateFloating(SQLiteDatabase)}.
+ */
+public final class NextTriggers
+{
+    /**
+     * The condition of tasks with a time zone, i.e. tasks which are not floating or all-day.
+     */
+    final static String ZONED = String.format(Locale.ENGLISH, "%1$s.%2$s IS NOT NULL AND ifnull(%1$s.%3$s, 0) = 0", Tables.TASKS, Tasks.TZ, Tasks.IS_ALLDAY);
+
+    private final static String SQL_DELETE = String.format(Locale.ENGLISH, "DELETE FROM %s WHERE %s = ?", Tables.NEXT_TRIGGER, NextTriggerColumns.TASK_ID);
+
+    private final static String SQL_DELETE_FLOATING = String.format(Locale.ENGLISH, "DELETE FROM %s WHERE %s IN (SELECT %s FROM %s WHERE NOT (%s))",
+            Tables.NEXT_TRIGGER, NextTriggerColumns.TASK_ID, Tasks._ID, Tables.TASKS, ZONED);
+
+    private final static String SQL_SELECT = String.format(Locale.ENGLISH,
+            "SELECT %1$s.%2$s, %1$s.%3$s, %%1$d, %1$s.%%2$s FROM %1$s JOIN %4$s ON (%1$s.%3$s = %4$s.%5$s) "
+                    + "WHERE %%3$s %1$s.%%2$s IS NOT NULL AND %4$s.%6$s = 0 AND %4$s.%7$s = 0 AND %8$s",
+            Tables.INSTANCES, Instances._ID, Instances.TASK_ID, Tables.TASKS, Tasks._ID, Tasks.IS_CLOSED, Tasks._DELETED, ZONED);
+
+    private final static String SQL_SELECT_FLOATING = String.format(Locale.ENGLISH,
+            "SELECT %1$s.%2$s, %1$s.%3$s, %1$s.%8$s, %1$s.%9$s FROM %1$s JOIN %4$s ON (%1$s.%3$s = %4$s.%5$s) "
+                    + "WHERE %%s %4$s.%6$s = 0 AND %4$s.%7$s = 0 AND NOT (%10$s)",
+            Tables.INSTANCES, Instances._ID, Instances.TASK_ID, Tables.TASKS, Tasks._ID, Tasks.IS_CLOSED, Tasks._DELETED, Instances.INSTANCE_START,
+            Instances.INSTANCE_DUE, ZONED);
+
+    private final static String SQL_SELECT_FLOATING_TASK = String.format(Locale.ENGLISH, SQL_SELECT_FLOATING,
+            Tables.INSTANCES + "." + Instances.TASK_ID + " = ? AND");
+
+    private final static String SQL_SELECT_FLOATING_ALL = String.format(Locale.ENGLISH, SQL_SELECT_FLOATING, "");
+
+    private final static String SQL_INSERT = String.format(Locale.ENGLISH, "INSERT INTO %s (%s, %s, %s, %s) ", Tables.NEXT_TRIGGER,
+            NextTriggerColumns.INSTANCE_ID, NextTriggerColumns.TASK_ID, NextTriggerColumns.TYPE, NextTriggerColumns.TIME);
+
+    private final static String SQL_INSERT_VALUES = SQL_INSERT + "VALUES (?, ?, ?, ?)";
+
+    private final static String SQL_INSERT_TASK = SQL_INSERT
+            + select(NextTriggerColumns.TYPE_START, Instances.INSTANCE_START, Tables.INSTANCES + "." + Instances.TASK_ID + " = ? AND")
+            + " UNION ALL "
+            + select(NextTriggerColumns.TYPE_DUE, Instances.INSTANCE_DUE, Tables.INSTANCES + "." + Instances.TASK_ID + " = ? AND");
+
+    private final static String SQL_INSERT_ALL = SQL_INSERT
+            + select(NextTriggerColumns.TYPE_START, Instances.INSTANCE_START, "")
+            + " UNION ALL "
+            + select(NextTriggerColumns.TYPE_DUE, Instances.INSTANCE_DUE, "");
+
+
+    private NextTriggers()
+    {
+        // no instances
+    }
+
+
+    /**
+     * Updates the triggers of the given task to match its current instances.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param taskId
+     *         The id of the task.
+     */
+    public static void update(SQLiteDatabase db, long taskId)
+    {
+        Object[] taskIdArg = new Object[] { taskId };
+        db.execSQL(SQL_DELETE, taskIdArg);
+        db.execSQL(SQL_INSERT_TASK, new Object[] { taskId, taskId });
+        insertFloating(db, SQL_SELECT_FLOATING_TASK, new String[] { Long.toString(taskId) });
+    }
+
+
+    /**
+     * Updates the triggers of all floating and all-day tasks. This must be called when the local time zone has changed.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     */
+    public static void updateFloating(SQLiteDatabase db)
+    {
+        db.execSQL(SQL_DELETE_FLOATING);
+        insertFloating(db, SQL_SELECT_FLOATING_ALL, null);
+    }
+
+
+    /**
+     * Returns the timestamp of the first trigger after the given timestamp or <code>null</code> if there is no such trigger.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param after
+     *         The timestamp to start at.
+     */
+    public static Long next(SQLiteDatabase db, long after)
+    {
+        try (Cursor c = db.query(Tables.NEXT_TRIGGER, new String[] { "min(" + NextTriggerColumns.TIME + ")" }, NextTriggerColumns.TIME + " > ?",
+                new String[] { Long.toString(after) }, null, null, null))
+        {
+            return c.moveToFirst() && !c.isNull(0) ? c.getLong(0) : null;
+        }
+    }
+
+
+    /**
+     * Returns the instances which have a trigger in the given time range. The result contains the {@link NextTriggerColumns#INSTANCE_ID} and the greatest
+     * {@link NextTriggerColumns#TYPE} of each instance in the range, i.e. {@link NextTriggerColumns#TYPE_DUE} if the instance became due and {@link
+     * NextTriggerColumns#TYPE_START} if it only started.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param after
+     *         The exclusive start timestamp of the range.
+     * @param until
+     *         The inclusive end timestamp of the range.
+     */
+    public static Cursor triggered(SQLiteDatabase db, long after, long until)
+    {
+        return db.query(Tables.NEXT_TRIGGER, new String[] { NextTriggerColumns.INSTANCE_ID, "max(" + NextTriggerColumns.TYPE + ")" },
+                NextTriggerColumns.TIME + " > ? and " + NextTriggerColumns.TIME + " <= ?", new String[] { Long.toString(after), Long.toString(until) },
+                NextTriggerColumns.INSTANCE_ID, null, null);
+    }
+
+
+    /**
+     * Rebuilds the triggers of all tasks.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     */
+    public static void rebuild(SQLiteDatabase db)
+    {
+        db.delete(Tables.NEXT_TRIGGER, null, null);
+        db.execSQL(SQL_INSERT_ALL);
+        insertFloating(db, SQL_SELECT_FLOATING_ALL, null);
+    }
+
+
+    /**
+     * Returns the actual timestamp of a floating or all-day instance timestamp in the given local time zone.
+     * <p>
+     * The instance timestamps of floating and all-day tasks contain the local time as if it was UTC.
+     */
+    static long localTimestamp(long instanceTimestamp, TimeZone timeZone)
+    {
+        return new DateTime(DateTime.UTC, instanceTimestamp).swapTimeZone(timeZone).getTimestamp();
+    }
+
+
+    /**
+     * Inserts the triggers of the floating and all-day instances returned by the given query. The local timestamps depend on the time zone rules, so they
+     * are calculated here rather than in SQL.
+     */
+    private static void insertFloating(SQLiteDatabase db, String query, String[] args)
+    {
+        TimeZone timeZone = TimeZone.getDefault();
+        SQLiteStatement insert = null;
+        try (Cursor c = db.rawQuery(query, args))
+        {
+            while (c.moveToNext())
+            {
+                if (insert == null)
+                {
+                    insert = db.compileStatement(SQL_INSERT_VALUES);
+                }
+                insertFloating(insert, c, NextTriggerColumns.TYPE_START, 2, timeZone);
+                insertFloating(insert, c, NextTriggerColumns.TYPE_DUE, 3, timeZone);
+            }
+        }
+        finally
+        {
+            if (insert != null)
+            {
+                insert.close();
+            }
+        }
+    }
+
+
+    private static void insertFloating(SQLiteStatement insert, Cursor cursor, int type, int column, TimeZone timeZone)
+    {
+        if (cursor.isNull(column))
+        {
+            return;
+        }
+        insert.bindLong(1, cursor.getLong(0));
+        insert.bindLong(2, cursor.getLong(1));
+        insert.bindLong(3, type);
+        insert.bindLong(4, localTimestamp(cursor.getLong(column), timeZone));
+        insert.executeInsert();
+    }
+
+
+    private static String select(int type, String column, String condition)
+    {
+        return String.format(Locale.ENGLISH, SQL_SELECT, type, column, condition);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.tasks.contract.TaskContract.Alarms;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Properties;
+import org.dmfs.tasks.contract.TaskContract.Property.Alarm;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+
+/**
+ * Maintains the reminder queue in the {@link Tables#ALARMS} table. The queue contains the trigger time of every alarm property for every instance of its task,
+ * so recurring tasks get one reminder per instance. The next reminder and the reminders to deliver are determined by a seek on the index of the trigger time,
+ * the alarm properties are never scanned for that.
+ * <p>
+ * The trigger times are actual timestamps, derived from the instance start and due timestamps in the same way as the triggers in {@link NextTriggers}.
+ * Whenever the instances or the alarms of a task change, the reminders of the task must be updated within the same transaction. When the local time zone
+ * changes, the reminders of floating and all-day tasks must be updated using {@link #updateFloating(SQLiteDatabase)}.
+ */
+public final class Reminders
+{
+    private final static String SQL_DELETE = String.format(Locale.ENGLISH, "DELETE FROM %s WHERE %s = ?", Tables.ALARMS, Alarms.TASK_ID);
+
+    private final static String SQL_DELETE_FLOATING = String.format(Locale.ENGLISH, "DELETE FROM %s WHERE %s IN (SELECT %s FROM %s WHERE NOT (%s))",
+            Tables.ALARMS, Alarms.TASK_ID, Tasks._ID, Tables.TASKS, NextTriggers.ZONED);
+
+    /**
+     * Selects the alarm id, instance id, task id, reference timestamp and minutes before of the reminders of open tasks. Alarms without minutes before
+     * trigger at the reference time.
+     */
+    private final static String SQL_SELECT = String.format(Locale.ENGLISH,
+            "SELECT * FROM (SELECT P.%1$s, I.%2$s, I.%3$s, (CASE WHEN P.%4$s = %5$d THEN I.%6$s ELSE I.%7$s END) AS reference_time, ifnull(P.%8$s, 0) AS %8$s "
+                    + "FROM %9$s P JOIN %10$s I ON (P.%11$s = I.%3$s) JOIN %12$s ON (I.%3$s = %12$s.%13$s) "
+                    + "WHERE P.%14$s = '%15$s' AND P.%16$s <> %17$d AND %12$s.%18$s = 0 AND %12$s.%19$s = 0 %%s) WHERE reference_time IS NOT NULL",
+            Properties.PROPERTY_ID, Instances._ID, Instances.TASK_ID,
+            Alarm.REFERENCE, Alarm.ALARM_REFERENCE_START_DATE, Instances.INSTANCE_START, Instances.INSTANCE_DUE, Alarm.MINUTES_BEFORE,
+            Tables.PROPERTIES, Tables.INSTANCES, Properties.TASK_ID, Tables.TASKS, Tasks._ID,
+            Properties.MIMETYPE, Alarm.CONTENT_ITEM_TYPE, Alarm.ALARM_TYPE, Alarm.ALARM_TYPE_NOTHING, Tasks.IS_CLOSED, Tasks._DELETED);
+
+    private final static String SQL_INSERT = String.format(Locale.ENGLISH, "INSERT INTO %s (%s, %s, %s, %s) ", Tables.ALARMS,
+            Alarms.ALARM_ID, Alarms.INSTANCE_ID, Alarms.TASK_ID, Alarms.NEXT_TRIGGER);
+
+    private final static String SQL_INSERT_VALUES = SQL_INSERT + "VALUES (?, ?, ?, ?)";
+
+    private final static String SQL_INSERT_ZONED = SQL_INSERT + "SELECT " + Properties.PROPERTY_ID + ", " + Instances._ID + ", " + Instances.TASK_ID
+            + ", reference_time - " + Alarm.MINUTES_BEFORE + " * 60000 FROM (" + SQL_SELECT + ")";
+
+    private final static String SQL_INSERT_TASK = String.format(Locale.ENGLISH, SQL_INSERT_ZONED, "AND I." + Instances.TASK_ID + " = ? AND " + NextTriggers.ZONED);
+
+    private final static String SQL_INSERT_ALL = String.format(Locale.ENGLISH, SQL_INSERT_ZONED, "AND " + NextTriggers.ZONED);
+
+    private final static String SQL_SELECT_FLOATING_TASK = String.format(Locale.ENGLISH, SQL_SELECT,
+            "AND I." + Instances.TASK_ID + " = ? AND NOT (" + NextTriggers.ZONED + ")");
+
+    private final static String SQL_SELECT_FLOATING_ALL = String.format(Locale.ENGLISH, SQL_SELECT, "AND NOT (" + NextTriggers.ZONED + ")");
+
+    private final static String SELECTION_RANGE = Alarms.NEXT_TRIGGER + " > ? and " + Alarms.NEXT_TRIGGER + " <= ?";
+
+
+    private Reminders()
+    {
+        // no instances
+    }
+
+
+    /**
+     * Updates the reminders of the given task to match its current instances and alarms.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param taskId
+     *         The id of the task.
+     */
+    public static void update(SQLiteDatabase db, long taskId)
+    {
+        Object[] taskIdArg = new Object[] { taskId };
+        db.execSQL(SQL_DELETE, taskIdArg);
+        db.execSQL(SQL_INSERT_TASK, taskIdArg);
+        insertFloating(db, SQL_SELECT_FLOATING_TASK, new String[] { Long.toString(taskId) });
+    }
+
+
+    /**
+     * Updates the reminders of all floating and all-day tasks. This must be called when the local time zone has changed.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     */
+    public static void updateFloating(SQLiteDatabase db)
+    {
+        db.execSQL(SQL_DELETE_FLOATING);
+        insertFloating(db, SQL_SELECT_FLOATING_ALL, null);
+    }
+
+
+    /**
+     * Returns the timestamp of the first reminder after the given timestamp or <code>null</code> if there is no such reminder.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param after
+     *         The timestamp to start at.
+     */
+    public static Long next(SQLiteDatabase db, long after)
+    {
+        try (Cursor c = db.query(Tables.ALARMS, new String[] { "min(" + Alarms.NEXT_TRIGGER + ")" }, Alarms.NEXT_TRIGGER + " > ?",
+                new String[] { Long.toString(after) }, null, null, null))
+        {
+            return c.moveToFirst() && !c.isNull(0) ? c.getLong(0) : null;
+        }
+    }
+
+
+    /**
+     * Returns the reminders that trigger in the given time range, ordered by their trigger time. The result contains the {@link Alarms#ALARM_ID} and the
+     * {@link Alarms#INSTANCE_ID} of each reminder.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param after
+     *         The exclusive start timestamp of the range.
+     * @param until
+     *         The inclusive end timestamp of the range.
+     */
+    public static Cursor triggered(SQLiteDatabase db, long after, long until)
+    {
+        return db.query(Tables.ALARMS, new String[] { Alarms.ALARM_ID, Alarms.INSTANCE_ID }, SELECTION_RANGE,
+                new String[] { Long.toString(after), Long.toString(until) }, null, null, Alarms.NEXT_TRIGGER);
+    }
+
+
+    /**
+     * Marks the reminders in the given time range as delivered.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param after
+     *         The exclusive start timestamp of the range.
+     * @param until
+     *         The inclusive end timestamp of the range.
+     * @param timestamp
+     *         The time of the delivery.
+     */
+    public static void delivered(SQLiteDatabase db, long after, long until, long timestamp)
+    {
+        ContentValues values = new ContentValues(1);
+        values.put(Alarms.LAST_TRIGGER, timestamp);
+        db.update(Tables.ALARMS, values, SELECTION_RANGE, new String[] { Long.toString(after), Long.toString(until) });
+    }
+
+
+    /**
+     * Rebuilds the reminders of all tasks.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     */
+    public static void rebuild(SQLiteDatabase db)
+    {
+        db.delete(Tables.ALARMS, null, null);
+        db.execSQL(SQL_INSERT_ALL);
+        insertFloating(db, SQL_SELECT_FLOATING_ALL, null);
+    }
+
+
+    /**
+     * Inserts the reminders of the floating and all-day instances returned by the given query. The local timestamps depend on the time zone rules, so they
+     * are calculated here rather than in SQL.
+     */
+    private static void insertFloating(SQLiteDatabase db, String query, String[] args)
+    {
+        TimeZone timeZone = TimeZone.getDefault();
+        SQLiteStatement insert = null;
+        try (Cursor c = db.rawQuery(query, args))
+        {
+            while (c.moveToNext())
+            {
+                if (insert == null)
+                {
+                    insert = db.compileStatement(SQL_INSERT_VALUES);
+                }
+                insert.bindLong(1, c.getLong(0));
+                insert.bindLong(2, c.getLong(1));
+                insert.bindLong(3, c.getLong(2));
+                insert.bindLong(4, NextTriggers.localTimestamp(c.getLong(3), timeZone) - c.getLong(4) * 60000L);
+                insert.executeInsert();
+            }
+        }
+        finally
+        {
+            if (insert != null)
+            {
+                insert.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+
+/**
+ * A cache of compiled {@link SQLiteStatement}s for the row by row writes of the task processors. Statements are keyed by their SQL, which only depends on the
+ * table, the set of columns and the selection, so a bulk operation on many rows compiles each statement only once.
+ * <p>
+ * Statements are only cached during a transaction that has been started with the {@link SQLiteTransactionListener} returned by {@link
+ * #transactionListener()}. They are bound to the thread that executes the transaction and closed when the outermost transaction ends. Outside of such a transaction every statement
+ * is compiled, executed and closed right away, just like {@link SQLiteDatabase#update(String, ContentValues, String, String[])} and friends do.
+ */
+public final class StatementCache
+{
+    /**
+     * The maximum number of statements to keep per transaction.
+     */
+    private final static int MAX_SIZE = 32;
+
+    private final static String TAG = "StatementCache";
+
+    private final static Map<SQLiteDatabase, StatementCache> CACHES = new WeakHashMap<>();
+
+
+    /**
+     * Returns the {@link StatementCache} of the given database.
+     *
+     * @param db
+     *         An {@link SQLiteDatabase}.
+     *
+     * @return The {@link StatementCache} of the database.
+     */
+    public static StatementCache of(SQLiteDatabase db)
+    {
+        synchronized (CACHES)
+        {
+            StatementCache cache = CACHES.get(db);
+            if (cache == null)
+            {
+                cache = new StatementCache();
+                CACHES.put(db, cache);
+            }
+            return cache;
+        }
+    }
+
+
+    /**
+     * The current transaction of a thread or <code>null</code> if the thread is not in a tracked transaction.
+     */
+    private final ThreadLocal<Transaction> mTransaction = new ThreadLocal<>();
+
+    private final SQLiteTransactionListener mTransactionListener = new SQLiteTransactionListener()
+    {
+        @Override
+        public void onBegin()
+        {
+            Transaction transaction = mTransaction.get();
+            if (transaction == null)
+            {
+                transaction = new Transaction();
+                mTransaction.set(transaction);
+            }
+            transaction.mDepth += 1;
+        }
+
+
+        @Override
+        public void onCommit()
+        {
+            end();
+        }
+
+
+        @Override
+        public void onRollback()
+        {
+            end();
+        }
+    };
+
+
+    private StatementCache()
+    {
+        // use of(SQLiteDatabase)
+    }
+
+
+    /**
+     * Returns the {@link SQLiteTransactionListener} which scopes the cached statements to a transaction.
+     */
+    public SQLiteTransactionListener transactionListener()
+    {
+        return mTransactionListener;
+    }
+
+
+    /**
+     * Inserts a row into the given table. Like {@link SQLiteDatabase#insert(String, String, ContentValues)} this returns <code>-1</code> if the row could
+     * not be inserted.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param table
+     *         The name of the table.
+     * @param values
+     *         The values of the new row.
+     *
+     * @return The row id of the new row or <code>-1</code> if an error occurred.
+     */
+    public long insert(SQLiteDatabase db, String table, ContentValues values)
+    {
+        if (values.size() == 0)
+        {
+            // nothing to bind, that's too rare to be worth a statement
+            return db.insert(table, "", values);
+        }
+
+        Set<String> columns = new TreeSet<>(values.keySet());
+        StringBuilder sql = new StringBuilder(128);
+        sql.append("INSERT INTO ").append(table).append(" (");
+        appendList(sql, columns, "");
+        sql.append(") VALUES (");
+        for (int i = 0, count = columns.size(); i < count; ++i)
+        {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        sql.append(")");
+
+        SQLiteStatement statement = statement(db, sql.toString());
+        try
+        {
+            bind(statement, values, columns);
+            return statement.executeInsert();
+        }
+        catch (SQLException e)
+        {
+            Log.e(TAG, "Error inserting " + values, e);
+            return -1;
+        }
+        finally
+        {
+            release(statement);
+        }
+    }
+
+
+    /**
+     * Updates the row with the given id.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param table
+     *         The name of the table.
+     * @param values
+     *         The new values.
+     * @param idColumn
+     *         The name of the id column.
+     * @param id
+     *         The id of the row to update.
+     *
+     * @return The number of updated rows.
+     */
+    public int update(SQLiteDatabase db, String table, ContentValues values, String idColumn, long id)
+    {
+        return update(db, table, values, idColumn + "=?", id);
+    }
+
+
+    /**
+     * Updates all rows matching the given selection.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param table
+     *         The name of the table.
+     * @param values
+     *         The new values.
+     * @param selection
+     *         The selection. To benefit from caching this must not contain any literal values, use arguments instead.
+     * @param selectionArgs
+     *         The arguments of the selection.
+     *
+     * @return The number of updated rows.
+     */
+    public int update(SQLiteDatabase db, String table, ContentValues values, String selection, Object... selectionArgs)
+    {
+        if (values.size() == 0)
+        {
+            return 0;
+        }
+
+        Set<String> columns = new TreeSet<>(values.keySet());
+        StringBuilder sql = new StringBuilder(128);
+        sql.append("UPDATE ").append(table).append(" SET ");
+        appendList(sql, columns, "=?");
+        sql.append(" WHERE ").append(selection);
+
+        SQLiteStatement statement = statement(db, sql.toString());
+        try
+        {
+            bind(statement, values, columns);
+            bind(statement, columns.size(), selectionArgs);
+            return statement.executeUpdateDelete();
+        }
+        finally
+        {
+            release(statement);
+        }
+    }
+
+
+    /**
+     * Deletes the row with the given id.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param table
+     *         The name of the table.
+     * @param idColumn
+     *         The name of the id column.
+     * @param id
+     *         The id of the row to delete.
+     *
+     * @return The number of deleted rows.
+     */
+    public int delete(SQLiteDatabase db, String table, String idColumn, long id)
+    {
+        return delete(db, table, idColumn + "=?", id);
+    }
+
+
+    /**
+     * Deletes all rows matching the given selection.
+     *
+     * @param db
+     *         The {@link SQLiteDatabase}.
+     * @param table
+     *         The name of the table.
+     * @param selection
+     *         The selection. To benefit from caching this must not contain any literal values, use arguments instead.
+     * @param selectionArgs
+     *         The arguments of the selection.
+     *
+     * @return The number of deleted rows.
+     */
+    public int delete(SQLiteDatabase db, String table, String selection, Object... selectionArgs)
+    {
+        SQLiteStatement statement = statement(db, "DELETE FROM " + table + " WHERE " + selection);
+        try
+        {
+            bind(statement, 0, selectionArgs);
+            return statement.executeUpdateDelete();
+        }
+        finally
+        {
+            release(statement);
+        }
+    }
+
+
+    private SQLiteStatement statement(SQLiteDatabase db, String sql)
+    {
+        Transaction transaction = mTransaction.get();
+        if (transaction == null)
+        {
+            return db.compileStatement(sql);
+        }
+
+        Map<String, SQLiteStatement> statements = transaction.mStatements;
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null)
+        {
+            statement = db.compileStatement(sql);
+            statements.put(sql, statement);
+            if (statements.size() > MAX_SIZE)
+            {
+                Iterator<SQLiteStatement> eldest = statements.values().iterator();
+                eldest.next().close();
+                eldest.remove();
+            }
+        }
+        return statement;
+    }
+
+
+    /**
+     * Releases a statement after use. Cached statements are kept for reuse, any other statement is closed.
+     */
+    private void release(SQLiteStatement statement)
+    {
+        Transaction transaction = mTransaction.get();
+        if (transaction != null && transaction.mStatements.containsValue(statement))
+        {
+            statement.clearBindings();
+        }
+        else
+        {
+            statement.close();
+        }
+    }
+
+
+    /**
+     * Ends a (possibly nested) transaction. The statements are closed when the outermost transaction ends, nested transactions run on the same connection, so
+     * the statements remain valid until then.
+     */
+    private void end()
+    {
+        Transaction transaction = mTransaction.get();
+        if (transaction != null && --transaction.mDepth == 0)
+        {
+            mTransaction.remove();
+            for (SQLiteStatement statement : transaction.mStatements.values())
+            {
+                statement.close();
+            }
+        }
+    }
+
+
+    private static void appendList(StringBuilder sql, Set<String> columns, String suffix)
+    {
+        boolean first = true;
+        for (String column : columns)
+        {
+            if (!first)
+            {
+                sql.append(",");
+            }
+            first = false;
+            sql.append(column).append(suffix);
+        }
+    }
+
+
+    private static void bind(SQLiteStatement statement, ContentValues values, Set<String> columns)
+    {
+        int index = 1;
+        for (String column : columns)
+        {
+            DatabaseUtils.bindObjectToProgram(statement, index++, values.get(column));
+        }
+    }
+
+
+    private static void bind(SQLiteStatement statement, int offset, Object[] args)
+    {
+        for (int i = 0; i < args.length; ++i)
+        {
+            DatabaseUtils.bindObjectToProgram(statement, offset + i + 1, args[i]);
+        }
+    }
+
+
+    /**
+     * The state of a tracked transaction of a thread.
+     */
+    private final static class Transaction
+    {
+        private int mDepth;
+        private final Map<String, SQLiteStatement> mStatements = new LinkedHashMap<>(MAX_SIZE * 2, 0.75f, true);
+    }
+}
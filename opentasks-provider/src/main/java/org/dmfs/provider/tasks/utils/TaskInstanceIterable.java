@@ -32,17 +32,41 @@ import java.util.TimeZone;
 
 /**
  * An {@link Iterable} of all the instances of a task.
+ * <p>
+ * Optionally the instances can be fast forwarded to a specific time, in which case iteration starts with the first instance at or after that time. For
+ * simple rules this doesn't iterate any of the skipped instances.
  *
  * @author Marten Gajda
  */
 public final class TaskInstanceIterable implements Iterable<DateTime>
 {
+    /**
+     * A special value to indicate that instances should not be fast forwarded.
+     */
+    private final static long NO_FAST_FORWARD = Long.MIN_VALUE;
+
     private final TaskAdapter mTaskAdapter;
+    private final long mFastForwardTo;
 
 
     public TaskInstanceIterable(TaskAdapter taskAdapter)
+    {
+        this(taskAdapter, NO_FAST_FORWARD);
+    }
+
+
+    /**
+     * An {@link Iterable} of the instances of a task, starting with the first instance at or after the given timestamp.
+     *
+     * @param taskAdapter
+     *         The {@link TaskAdapter} of the task.
+     * @param fastForwardTo
+     *         The timestamp to fast forward to.
+     */
+    public TaskInstanceIterable(TaskAdapter taskAdapter, long fastForwardTo)
     {
         mTaskAdapter = taskAdapter;
+        mFastForwardTo = fastForwardTo;
     }
 
 
@@ -76,8 +100,14 @@ public final class TaskInstanceIterable implements Iterable<DateTime>
         set.addInstances(new RecurrenceList(new Timestamps(mTaskAdapter.valueOf(TaskAdapter.RDATE)).value()));
         set.addExceptions(new RecurrenceList(new Timestamps(mTaskAdapter.valueOf(TaskAdapter.EXDATE)).value()));
 
-        RecurrenceSetIterator setIterator = set.iterator(dtstart.getTimeZone(), dtstart.getTimestamp(),
+        // when fast forwarding simple rules, we start iterating close to the target and skip the remaining instances (including any RDATEs) afterwards
+        DateTime iterationStart = mFastForwardTo == NO_FAST_FORWARD ? dtstart : new FastForwardedStart(dtstart, rule, mFastForwardTo).value();
+        RecurrenceSetIterator setIterator = set.iterator(dtstart.getTimeZone(), iterationStart.getTimestamp(),
                 System.currentTimeMillis() + 10L * 356L * 3600L * 1000L);
+        if (mFastForwardTo != NO_FAST_FORWARD)
+        {
+            setIterator.fastForward(mFastForwardTo);
+        }
 
         return new TaskInstanceIterator(dtstart, setIterator, mTaskAdapter.valueOf(TaskAdapter.TIMEZONE_RAW));
     }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.Batches;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.AutoCompleting;
+import org.dmfs.provider.tasks.processors.tasks.ChangeLogging;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.Moving;
+import org.dmfs.provider.tasks.processors.tasks.Originating;
+import org.dmfs.provider.tasks.processors.tasks.Relating;
+import org.dmfs.provider.tasks.processors.tasks.Reparenting;
+import org.dmfs.provider.tasks.processors.tasks.Searchable;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Validating;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.dmfs.tasks.contract.TaskContract;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * A benchmark of inserting tasks one by one vs. inserting them in batches with {@link Batches#insertAll(EntityProcessor, SQLiteDatabase, List, boolean)}.
+ * <p>
+ * The benchmark is skipped unless the system property <code>benchmark</code> is <code>true</code>.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BulkInsertBenchmarkTest
+{
+    private final static String TAG = "BulkInsertBenchmarkTest";
+    private final static int TASKS = 1000;
+    private final static int BATCH_SIZE = 100;
+
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+
+
+    @BeforeClass
+    public static void assumeBenchmark()
+    {
+        // inserting thousands of tasks through the full processor chain takes a while, only do that on request
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        EntityProcessor<TaskAdapter> committingChain = new Moving(new Originating(new TaskCommitProcessor()));
+        mProcessor = new Validating(new ChangeLogging(
+                new AutoCompleting(new Relating(new Reparenting(new Instantiating(new Searchable(committingChain)))))));
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testBulkInsert() throws Exception
+    {
+        long singleList = insertList("single");
+        long batchList = insertList("batch");
+
+        long singleStart = System.nanoTime();
+        mDb.beginTransaction();
+        try
+        {
+            for (TaskAdapter task : tasks(singleList, "single"))
+            {
+                mProcessor.insert(mDb, task, true);
+            }
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        long singleNanos = System.nanoTime() - singleStart;
+
+        long batchStart = System.nanoTime();
+        mDb.beginTransaction();
+        try
+        {
+            List<TaskAdapter> tasks = tasks(batchList, "batch");
+            for (int i = 0; i < tasks.size(); i += BATCH_SIZE)
+            {
+                Batches.insertAll(mProcessor, mDb, tasks.subList(i, Math.min(i + BATCH_SIZE, tasks.size())), true);
+            }
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        long batchNanos = System.nanoTime() - batchStart;
+
+        Log.i(TAG, String.format(Locale.ENGLISH,
+                "%d tasks: one by one %.0f rows/s, batches of %d %.0f rows/s",
+                TASKS, TASKS * 1000000000.0 / singleNanos, BATCH_SIZE, TASKS * 1000000000.0 / batchNanos));
+
+        // both ways result in the same tasks and instances
+        assertThat(taskCount(batchList), is(taskCount(singleList)));
+        assertThat(taskCount(batchList), is((long) TASKS));
+        assertThat(instanceCount(batchList), is(instanceCount(singleList)));
+    }
+
+
+    private List<TaskAdapter> tasks(long listId, String prefix)
+    {
+        List<TaskAdapter> result = new ArrayList<>(TASKS);
+        for (int i = 0; i < TASKS; ++i)
+        {
+            TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+            task.set(TaskAdapter.LIST_ID, listId);
+            task.set(TaskAdapter.SYNC_ID, prefix + i);
+            task.set(TaskAdapter._UID, prefix + "-uid-" + i);
+            task.set(TaskAdapter.TITLE, "Task number " + i);
+            task.set(TaskAdapter.DESCRIPTION, "Description of task number " + i);
+            task.set(TaskAdapter.DTSTART, new DateTime(2019, 0, 1 + i % 28));
+            if (i % 10 == 0)
+            {
+                task.set(TaskAdapter.RRULE, new RecurrenceRule("FREQ=WEEKLY;COUNT=10"));
+            }
+            result.add(task);
+        }
+        return result;
+    }
+
+
+    private long insertList(String name)
+    {
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, name);
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        listValues.put(TaskContract.TaskLists.LIST_NAME, name);
+        listValues.put(TaskContract.TaskLists.VISIBLE, 1);
+        return mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    private long taskCount(long listId)
+    {
+        return DatabaseUtils.queryNumEntries(mDb, Tables.TASKS, Tasks.LIST_ID + "=" + listId);
+    }
+
+
+    private long instanceCount(long listId)
+    {
+        return DatabaseUtils.queryNumEntries(mDb, Tables.INSTANCES,
+                Instances.TASK_ID + " IN (SELECT " + Tasks._ID + " FROM " + Tables.TASKS + " WHERE " + Tasks.LIST_ID + "=" + listId + ")");
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.ChangeLogging;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.provider.tasks.utils.ChangeLog;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Changes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test the change log written by {@link ChangeLogging} and the change log triggers.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ChangeLogTest
+{
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new ChangeLogging(new TaskCommitProcessor());
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, "org.example.test");
+        listValues.put(TaskContract.TaskLists.VISIBLE, 1);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testOperations()
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, "Buy groceries");
+        task.set(TaskAdapter.ACCOUNT_TYPE, "org.example.test");
+        long taskId = mProcessor.insert(mDb, task, false).id();
+
+        try (Cursor c = taskCursor(taskId))
+        {
+            TaskAdapter update = new CursorContentValuesTaskAdapter(c, new ContentValues());
+            update.set(TaskAdapter.TITLE, "Water plants");
+            mProcessor.update(mDb, update, false);
+        }
+
+        // not a sync adapter, so the task is just flagged as deleted
+        try (Cursor c = taskCursor(taskId))
+        {
+            mProcessor.delete(mDb, new CursorContentValuesTaskAdapter(c, new ContentValues()), false);
+        }
+        long flaggedVersion = ChangeLog.version(mDb, taskId);
+
+        // the sync adapter removes the task
+        try (Cursor c = taskCursor(taskId))
+        {
+            mProcessor.delete(mDb, new CursorContentValuesTaskAdapter(c, new ContentValues()), true);
+        }
+        assertThat(ChangeLog.version(mDb, taskId) == null, is(true));
+
+        try (Cursor c = mDb.query(Tables.CHANGES, null, null, null, null, null, Changes.SEQUENCE))
+        {
+            assertThat(c.getCount(), is(4));
+            int[] operations = { Changes.OPERATION_INSERT, Changes.OPERATION_UPDATE, Changes.OPERATION_DELETE, Changes.OPERATION_DELETE };
+            long previousVersion = -1;
+            long previousSequence = 0;
+            for (int operation : operations)
+            {
+                c.moveToNext();
+                assertThat(c.getLong(c.getColumnIndex(Changes.TASK_ID)), is(taskId));
+                assertThat(c.isNull(c.getColumnIndex(Changes.INSTANCE_ID)), is(true));
+                assertThat(c.getInt(c.getColumnIndex(Changes.OPERATION)), is(operation));
+                assertThat(c.getLong(c.getColumnIndex(Changes.SEQUENCE)) > previousSequence, is(true));
+                assertThat(c.getLong(c.getColumnIndex(Changes.VERSION)) >= previousVersion, is(true));
+                previousVersion = c.getLong(c.getColumnIndex(Changes.VERSION));
+                previousSequence = c.getLong(c.getColumnIndex(Changes.SEQUENCE));
+            }
+            // the removal is logged with the last known version
+            assertThat(previousVersion, is(flaggedVersion));
+        }
+    }
+
+
+    @Test
+    public void testListRemoval()
+    {
+        long[] taskIds = new long[3];
+        for (int i = 0; i < taskIds.length; ++i)
+        {
+            TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+            task.set(TaskAdapter.LIST_ID, mListId);
+            task.set(TaskAdapter.TITLE, "Task " + i);
+            task.set(TaskAdapter.ACCOUNT_TYPE, "org.example.test");
+            taskIds[i] = mProcessor.insert(mDb, task, false).id();
+        }
+
+        // removing the list removes its tasks by a trigger, bypassing the task processors
+        mDb.delete(Tables.LISTS, TaskContract.TaskLists._ID + "=" + mListId, null);
+
+        for (long taskId : taskIds)
+        {
+            assertThat(DatabaseUtils.queryNumEntries(mDb, Tables.CHANGES,
+                    Changes.TASK_ID + "=" + taskId + " and " + Changes.OPERATION + "=" + Changes.OPERATION_DELETE), is(1L));
+        }
+    }
+
+
+    @Test
+    public void testTruncation()
+    {
+        mDb.beginTransaction();
+        try
+        {
+            for (int i = 0; i < TaskDatabaseHelper.MAX_CHANGES + 100; ++i)
+            {
+                ChangeLog.log(mDb, i, null, Changes.OPERATION_UPDATE, (long) i);
+            }
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+
+        assertThat(DatabaseUtils.queryNumEntries(mDb, Tables.CHANGES), is((long) TaskDatabaseHelper.MAX_CHANGES));
+        assertThat(DatabaseUtils.longForQuery(mDb, "SELECT min(" + Changes.SEQUENCE + ") FROM " + Tables.CHANGES, null), is(101L));
+    }
+
+
+    private Cursor taskCursor(long taskId)
+    {
+        Cursor c = mDb.query(Tables.TASKS_VIEW, null, TaskContract.Tasks._ID + "=" + taskId, null, null, null, null);
+        c.moveToFirst();
+        return c;
+    }
+}
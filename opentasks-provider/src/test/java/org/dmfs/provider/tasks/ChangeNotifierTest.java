@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.dmfs.tasks.contract.TaskContract;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+
+/**
+ * Test {@link ChangeNotifier}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ChangeNotifierTest
+{
+    private final static Uri URI_1 = Uri.parse("content://test/tasks");
+    private final static Uri URI_2 = Uri.parse("content://test/instances");
+
+    private ShadowContentResolver mResolver;
+    private ChangeNotifier mNotifier;
+    private final AtomicInteger mTaskRuns = new AtomicInteger();
+    private final Runnable mTask = mTaskRuns::incrementAndGet;
+
+
+    @Before
+    public void setUp()
+    {
+        ContentResolver resolver = RuntimeEnvironment.application.getContentResolver();
+        mResolver = shadowOf(resolver);
+        mNotifier = new ChangeNotifier(resolver, new Handler(Looper.getMainLooper()), 500);
+    }
+
+
+    @Test
+    public void testCoalescing()
+    {
+        // simulate lots of small transactions of a sync adapter
+        for (int i = 0; i < 200; ++i)
+        {
+            mNotifier.addUri(URI_1, false);
+            mNotifier.addUri(URI_2, false);
+            mNotifier.addTask(mTask);
+            mNotifier.schedule(false);
+        }
+
+        assertThat(mResolver.getNotifiedUris().size(), is(0));
+        assertThat(mTaskRuns.get(), is(0));
+
+        ShadowLooper.idleMainLooper(600, TimeUnit.MILLISECONDS);
+
+        assertThat(mResolver.getNotifiedUris().size(), is(2));
+        assertThat(mTaskRuns.get(), is(1));
+
+        // nothing else is pending
+        ShadowLooper.idleMainLooper(600, TimeUnit.MILLISECONDS);
+        assertThat(mResolver.getNotifiedUris().size(), is(2));
+        assertThat(mTaskRuns.get(), is(1));
+    }
+
+
+    @Test
+    public void testImmediateFlush()
+    {
+        mNotifier.addUri(URI_1, false);
+        mNotifier.addTask(mTask);
+        mNotifier.schedule(false);
+
+        mNotifier.addUri(URI_1, true);
+        mNotifier.addUri(URI_2, false);
+        mNotifier.addTask(mTask);
+        // a change by a regular app flushes everything right away
+        mNotifier.schedule(true);
+
+        assertThat(mResolver.getNotifiedUris().size(), is(2));
+        assertThat(mTaskRuns.get(), is(1));
+        for (ShadowContentResolver.NotifiedUri notified : mResolver.getNotifiedUris())
+        {
+            // if any of the changes needs to be synced, the notification must ask for a sync
+            assertThat(notified.syncToNetwork, is(URI_1.equals(notified.uri)));
+        }
+
+        // the delayed flush must not send anything again
+        ShadowLooper.idleMainLooper(600, TimeUnit.MILLISECONDS);
+        assertThat(mResolver.getNotifiedUris().size(), is(2));
+        assertThat(mTaskRuns.get(), is(1));
+    }
+
+
+    @Test
+    public void testItemHints()
+    {
+        mNotifier.addUri(ChangeHints.itemUri(URI_1, 1, ChangeHints.of(Arrays.asList(TaskContract.Tasks.TITLE))), false);
+        mNotifier.addUri(ChangeHints.itemUri(URI_1, 1, ChangeHints.of(Arrays.asList(TaskContract.Tasks.DUE, TaskContract.Tasks.TZ))), false);
+        mNotifier.addUri(ChangeHints.itemUri(URI_1, 2, ChangeHints.of(Arrays.asList(TaskContract.Tasks.DESCRIPTION))), false);
+        mNotifier.flush();
+
+        Set<Uri> notified = new HashSet<>();
+        for (ShadowContentResolver.NotifiedUri uri : mResolver.getNotifiedUris())
+        {
+            notified.add(uri.uri);
+        }
+        assertThat(notified, is((Set<Uri>) new HashSet<>(Arrays.asList(
+                Uri.parse("content://test/tasks/1?changed=dates%2Ctitle"),
+                Uri.parse("content://test/tasks/2?changed=title")))));
+    }
+
+
+    @Test
+    public void testCollapseItems()
+    {
+        for (int i = 0; i < 20; ++i)
+        {
+            mNotifier.addUri(ChangeHints.itemUri(URI_1, i, ChangeHints.of(Arrays.asList(TaskContract.Tasks.TITLE))), false);
+        }
+        mNotifier.addUri(ChangeHints.itemUri(URI_1, 20, ChangeHints.of(Arrays.asList(TaskContract.Tasks.STATUS))), true);
+        mNotifier.flush();
+
+        // too many items, only the collection is notified
+        assertThat(mResolver.getNotifiedUris().size(), is(1));
+        assertThat(mResolver.getNotifiedUris().get(0).uri, is(Uri.parse("content://test/tasks?changed=status%2Ctitle")));
+        assertThat(mResolver.getNotifiedUris().get(0).syncToNetwork, is(true));
+    }
+
+
+    @Test
+    public void testCollapseItemsIntoCollection()
+    {
+        mNotifier.addUri(ChangeHints.itemUri(URI_1, 1, ChangeHints.of(Arrays.asList(TaskContract.Tasks.TITLE))), false);
+        // a change without hint, anything may have changed
+        mNotifier.addUri(URI_1, false);
+        mNotifier.flush();
+
+        assertThat(mResolver.getNotifiedUris().size(), is(1));
+        assertThat(mResolver.getNotifiedUris().get(0).uri, is(URI_1));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link ContentOperationQueue}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ContentOperationQueueTest
+{
+    private final static Uri URI = Uri.parse("content://test/content_operation");
+    private final static String CHUNK = "chunk";
+
+    private final List<String> mRuns = new ArrayList<>();
+    private ContentOperationQueue mQueue;
+    private ContentOperation mFireDuringRun;
+
+
+    @Before
+    public void setUp()
+    {
+        ShadowLooper.pauseMainLooper();
+        mQueue = new ContentOperationQueue(new Handler(Looper.getMainLooper()), (operation, uri, values) ->
+        {
+            int chunk = values.containsKey(CHUNK) ? values.getAsInteger(CHUNK) : 0;
+            mRuns.add(operation + ":" + chunk);
+            if (mFireDuringRun != null)
+            {
+                ContentOperation fire = mFireDuringRun;
+                mFireDuringRun = null;
+                mQueue.schedule(fire, uri, new ContentValues());
+            }
+            if (operation != ContentOperation.UPDATE_TIMEZONE || chunk == 2)
+            {
+                return null;
+            }
+            ContentValues next = new ContentValues();
+            next.put(CHUNK, chunk + 1);
+            return next;
+        });
+    }
+
+
+    @Test
+    public void testCoalescing()
+    {
+        for (int i = 0; i < 10; ++i)
+        {
+            mQueue.schedule(ContentOperation.UPDATE_NOTIFICATION_ALARM, URI, new ContentValues());
+        }
+        assertThat(mRuns.size(), is(0));
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(mRuns, is(Arrays.asList("UPDATE_NOTIFICATION_ALARM:0")));
+        assertThat(mQueue.coalesced(ContentOperation.UPDATE_NOTIFICATION_ALARM), is(9));
+        assertThat(mQueue.coalesced(ContentOperation.POST_NOTIFICATIONS), is(0));
+
+        // once it ran, it can be scheduled again
+        mQueue.schedule(ContentOperation.UPDATE_NOTIFICATION_ALARM, URI, new ContentValues());
+        ShadowLooper.runUiThreadTasks();
+        assertThat(mRuns.size(), is(2));
+    }
+
+
+    @Test
+    public void testPriority()
+    {
+        mQueue.schedule(ContentOperation.UPDATE_TIMEZONE, URI, new ContentValues());
+        mQueue.schedule(ContentOperation.UPDATE_NOTIFICATION_ALARM, URI, new ContentValues());
+        mQueue.schedule(ContentOperation.POST_NOTIFICATIONS, URI, new ContentValues());
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(mRuns, is(Arrays.asList(
+                "POST_NOTIFICATIONS:0", "UPDATE_NOTIFICATION_ALARM:0", "UPDATE_TIMEZONE:0", "UPDATE_TIMEZONE:1", "UPDATE_TIMEZONE:2")));
+    }
+
+
+    @Test
+    public void testChunks()
+    {
+        // alarm planning which is fired by a chunk runs before the next chunk
+        mFireDuringRun = ContentOperation.UPDATE_NOTIFICATION_ALARM;
+        mQueue.schedule(ContentOperation.UPDATE_TIMEZONE, URI, new ContentValues());
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(mRuns, is(Arrays.asList("UPDATE_TIMEZONE:0", "UPDATE_NOTIFICATION_ALARM:0", "UPDATE_TIMEZONE:1", "UPDATE_TIMEZONE:2")));
+    }
+
+
+    @Test
+    public void testRestart()
+    {
+        // firing an operation during one of its chunks starts it over
+        mFireDuringRun = ContentOperation.UPDATE_TIMEZONE;
+        mQueue.schedule(ContentOperation.UPDATE_TIMEZONE, URI, new ContentValues());
+
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(mRuns, is(Arrays.asList("UPDATE_TIMEZONE:0", "UPDATE_TIMEZONE:0", "UPDATE_TIMEZONE:1", "UPDATE_TIMEZONE:2")));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.DeferredSearchable;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.tasks.contract.TaskContract;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test the deferred search indexing of {@link DeferredSearchable} and {@link FTSDatabaseHelper}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DeferredSearchIndexTest
+{
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new Instantiating(new DeferredSearchable(new TaskCommitProcessor()));
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        listValues.put(TaskContract.TaskLists.VISIBLE, 1);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testInsertAndUpdate()
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, "Buy groceries");
+        long taskId = mProcessor.insert(mDb, task, false).id();
+
+        // not indexed yet
+        assertThat(FTSDatabaseHelper.hasPendingTaskFTSUpdates(mDb), is(true));
+        assertThat(searchResults("groceries"), is(0));
+
+        assertThat(FTSDatabaseHelper.updatePendingTaskFTSEntries(mDb, 10), is(1));
+        assertThat(FTSDatabaseHelper.hasPendingTaskFTSUpdates(mDb), is(false));
+        assertThat(searchResults("groceries"), is(1));
+
+        // update the title
+        try (Cursor c = mDb.query(Tables.TASKS, null, TaskContract.Tasks._ID + "=" + taskId, null, null, null, null))
+        {
+            c.moveToFirst();
+            TaskAdapter update = new CursorContentValuesTaskAdapter(c, new ContentValues());
+            update.set(TaskAdapter.TITLE, "Water plants");
+            mProcessor.update(mDb, update, false);
+        }
+
+        // the old index is still in place
+        assertThat(searchResults("groceries"), is(1));
+        assertThat(searchResults("plants"), is(0));
+
+        assertThat(FTSDatabaseHelper.updatePendingTaskFTSEntries(mDb, 10), is(1));
+        assertThat(searchResults("groceries"), is(0));
+        assertThat(searchResults("plants"), is(1));
+    }
+
+
+    @Test
+    public void testDeletedTask()
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, "Buy groceries");
+        long taskId = mProcessor.insert(mDb, task, false).id();
+
+        mDb.delete(Tables.TASKS, TaskContract.Tasks._ID + "=" + taskId, null);
+
+        assertThat(FTSDatabaseHelper.updatePendingTaskFTSEntries(mDb, 10), is(1));
+        assertThat(FTSDatabaseHelper.hasPendingTaskFTSUpdates(mDb), is(false));
+        assertThat(searchResults("groceries"), is(0));
+    }
+
+
+    @Test
+    public void testBatches()
+    {
+        for (int i = 0; i < 5; ++i)
+        {
+            TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+            task.set(TaskAdapter.LIST_ID, mListId);
+            task.set(TaskAdapter.TITLE, "Task " + i);
+            mProcessor.insert(mDb, task, false);
+        }
+
+        assertThat(FTSDatabaseHelper.updatePendingTaskFTSEntries(mDb, 2), is(2));
+        assertThat(FTSDatabaseHelper.updatePendingTaskFTSEntries(mDb, 2), is(2));
+        assertThat(FTSDatabaseHelper.updatePendingTaskFTSEntries(mDb, 2), is(1));
+        assertThat(FTSDatabaseHelper.hasPendingTaskFTSUpdates(mDb), is(false));
+    }
+
+
+    private int searchResults(String search)
+    {
+        try (Cursor c = FTSDatabaseHelper.getTaskSearchCursor(mDb, search, null, null, null, null))
+        {
+            return c.getCount();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.tasks.contract.TaskContract;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link FTS4DatabaseHelper}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class FTS4DatabaseHelperTest
+{
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new Instantiating(new TaskCommitProcessor());
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        listValues.put(TaskContract.TaskLists.VISIBLE, 1);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testMigrationAndTriggers()
+    {
+        long task1 = insert("Buy groceries", "Milk and bread");
+        long task2 = insert("Renew passport", null);
+        insert("Call mother", "about the birthday party");
+
+        // the migration runs in batches
+        assertThat(FTS4DatabaseHelper.migrate(mDb, 2), is(2));
+        assertThat(FTS4DatabaseHelper.migrate(mDb, 2), is(1));
+        assertThat(FTS4DatabaseHelper.migrate(mDb, 2), is(0));
+
+        assertThat(search("groceries"), is(1));
+        assertThat(search("bread"), is(1));
+        // prefix search
+        assertThat(search("pass"), is(1));
+        // but no matches in the middle of a word
+        assertThat(search("port"), is(0));
+        assertThat(search("xyz"), is(0));
+
+        // new tasks are indexed by a trigger
+        insert("Buy a birthday present", null);
+        assertThat(search("birthday"), is(2));
+
+        // so are updates
+        ContentValues values = new ContentValues();
+        values.put(TaskContract.Tasks.TITLE, "Buy vegetables");
+        mDb.update(Tables.TASKS, values, TaskContract.Tasks._ID + "=" + task1, null);
+        assertThat(search("groceries"), is(0));
+        assertThat(search("vegetables"), is(1));
+
+        // and deletes
+        mDb.delete(Tables.TASKS, TaskContract.Tasks._ID + "=" + task2, null);
+        assertThat(search("passport"), is(0));
+
+        FTS4DatabaseHelper.drop(mDb);
+        // tasks can still be inserted
+        insert("Another task", null);
+    }
+
+
+    @Test
+    public void testScore()
+    {
+        insert("Buy groceries", "Milk and bread");
+        insert("Buy bread", null);
+        FTS4DatabaseHelper.migrate(mDb, 100);
+
+        try (Cursor c = FTS4DatabaseHelper.getTaskSearchCursor(mDb, "buy milk bread", null, null, null, null))
+        {
+            assertThat(c.getCount(), is(2));
+            c.moveToFirst();
+            assertThat(c.getDouble(c.getColumnIndex(TaskContract.Tasks.SCORE)), closeTo(1.0, 0.001));
+            c.moveToNext();
+            assertThat(c.getDouble(c.getColumnIndex(TaskContract.Tasks.SCORE)), closeTo(2.0 / 3.0, 0.001));
+        }
+    }
+
+
+    @Test
+    public void testColumns()
+    {
+        insert("Buy groceries", null);
+        FTS4DatabaseHelper.migrate(mDb, 100);
+
+        try (Cursor fts4 = FTS4DatabaseHelper.getTaskSearchCursor(mDb, "groceries", null, null, null, null);
+             Cursor ngrams = FTSDatabaseHelper.getTaskSearchCursor(mDb, "groceries", null, null, null, null))
+        {
+            assertThat(Arrays.asList(fts4.getColumnNames()), is(Arrays.asList(ngrams.getColumnNames())));
+            fts4.moveToFirst();
+            assertThat(fts4.getString(fts4.getColumnIndex("text")), is("groceries"));
+        }
+    }
+
+
+    private long insert(String title, String description)
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, title);
+        task.set(TaskAdapter.DESCRIPTION, description);
+        return mProcessor.insert(mDb, task, false).id();
+    }
+
+
+    private int search(String search)
+    {
+        try (Cursor c = FTS4DatabaseHelper.getTaskSearchCursor(mDb, search, null, null, null, null))
+        {
+            return c.getCount();
+        }
+    }
+}
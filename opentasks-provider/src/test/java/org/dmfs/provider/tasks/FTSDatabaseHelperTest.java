@@ -0,0 +1,277 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.Searchable;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.tasks.contract.TaskContract;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test the search index maintenance of {@link FTSDatabaseHelper}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class FTSDatabaseHelperTest
+{
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new Instantiating(new Searchable(new TaskCommitProcessor()));
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        listValues.put(TaskContract.TaskLists.VISIBLE, 1);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testUpdateEntries()
+    {
+        long taskId = insert("Buy groceries", "Milk, bread and butter");
+        long referenceId = insert("Water the plants", "Milk, bread and cheese");
+        long referenceEntries = entries(referenceId);
+
+        assertThat(search("groceries"), is(1));
+        assertThat(search("butter"), is(1));
+        assertThat(search("cheese"), is(1));
+
+        update(taskId, "Water the plants", "Milk, bread and cheese");
+
+        // the entries must be identical to the ones of a task that has been inserted with these values
+        assertThat(entries(taskId), is(referenceEntries));
+        assertThat(search("groceries"), is(0));
+        assertThat(search("butter"), is(0));
+        assertThat(search("cheese"), is(2));
+
+        update(taskId, "", "");
+
+        assertThat(entries(taskId), is(0L));
+        assertThat(search("cheese"), is(1));
+    }
+
+
+    @Test
+    public void testPagination()
+    {
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 7; ++i)
+        {
+            expected.add(insert("Buy groceries " + i, i % 2 == 0 ? "groceries" : null));
+        }
+        insert("Something else", null);
+
+        assertThat(paginated("groceries", null, 3), is(expected));
+    }
+
+
+    @Test
+    public void testPaginationWithSortOrder()
+    {
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 7; ++i)
+        {
+            // all tasks have the same score and their titles sort in the opposite order of their ids
+            expected.add(insert("Groceries " + (char) ('z' - i), null));
+        }
+
+        assertThat(paginated("groceries", TaskContract.Tasks.TITLE, 3), is(expected));
+    }
+
+
+    @Test
+    public void testSearchIndexChanged()
+    {
+        FTSDatabaseHelper.searchIndexChanged();
+
+        long taskId = insert("Buy groceries", null);
+        assertThat(FTSDatabaseHelper.searchIndexChanged(), is(true));
+        // the state has been reset
+        assertThat(FTSDatabaseHelper.searchIndexChanged(), is(false));
+
+        // removing n-grams is not a change
+        update(taskId, "Buy", "");
+        assertThat(FTSDatabaseHelper.searchIndexChanged(), is(false));
+
+        update(taskId, "Buy bread", "");
+        assertThat(FTSDatabaseHelper.searchIndexChanged(), is(true));
+    }
+
+
+    @Test
+    public void testMinScore()
+    {
+        insert("Buy groceries", null);
+        insert("Buy bread", null);
+
+        try (Cursor c = FTSDatabaseHelper.getTaskSearchCursor(mDb, "buy groceries", null, null, null, null,
+                SearchResultWindow.fromUri(Uri.parse("content://test/tasks_search?min_score=0.9"))))
+        {
+            assertThat(c.getCount(), is(1));
+        }
+    }
+
+
+    @Test
+    public void testSearchSession()
+    {
+        insert("Buy groceries", "Milk, bread and butter");
+        insert("Grow tomatoes", null);
+        insert("Bring the grill", "for the barbecue");
+        insert("Water the plants", "Milk, bread and cheese");
+
+        SearchSession session = new SearchSession();
+        // type a query, then replace it with a different one, the results must always be the same as without a session
+        for (String query : new String[] { "gr", "gro", "groc", "groce", "groceries", "grill", "bre", "bread", "bread c", "bread ch" })
+        {
+            assertThat(query, results(query, session), is(results(query, null)));
+        }
+    }
+
+
+    private long insert(String title, String description)
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, title);
+        task.set(TaskAdapter.DESCRIPTION, description);
+        return mProcessor.insert(mDb, task, false).id();
+    }
+
+
+    private void update(long taskId, String title, String description)
+    {
+        try (Cursor c = mDb.query(Tables.TASKS, null, TaskContract.Tasks._ID + "=" + taskId, null, null, null, null))
+        {
+            c.moveToFirst();
+            TaskAdapter task = new CursorContentValuesTaskAdapter(c, new ContentValues());
+            task.set(TaskAdapter.TITLE, title);
+            task.set(TaskAdapter.DESCRIPTION, description);
+            mProcessor.update(mDb, task, false);
+        }
+    }
+
+
+    private long entries(long taskId)
+    {
+        return DatabaseUtils.queryNumEntries(mDb, FTSDatabaseHelper.FTS_CONTENT_TABLE, FTSDatabaseHelper.FTSContentColumns.TASK_ID + "=" + taskId);
+    }
+
+
+    /**
+     * Returns the ids of all results of the given search by paging through them, asserting that each result is returned exactly once.
+     */
+    private Set<Long> paginated(String search, String sortOrder, int limit)
+    {
+        Set<Long> found = new HashSet<>();
+        Uri firstPage = Uri.parse("content://test/tasks_search").buildUpon()
+                .appendQueryParameter(TaskContract.Tasks.SEARCH_LIMIT_PARAMETER, String.valueOf(limit))
+                .build();
+        Uri uri = firstPage;
+        int pages = 0;
+        while (true)
+        {
+            try (Cursor c = FTSDatabaseHelper.getTaskSearchCursor(mDb, search, null, null, null, sortOrder, SearchResultWindow.fromUri(uri)))
+            {
+                assertThat(c.getCount() <= limit, is(true));
+                if (!c.moveToFirst())
+                {
+                    break;
+                }
+                pages += 1;
+                do
+                {
+                    // each result must be returned exactly once
+                    assertThat(found.add(c.getLong(c.getColumnIndex(TaskContract.Instances.TASK_ID))), is(true));
+                } while (c.moveToNext());
+                c.moveToLast();
+                uri = firstPage.buildUpon()
+                        .appendQueryParameter(TaskContract.Tasks.SEARCH_AFTER_SCORE_PARAMETER,
+                                String.valueOf(c.getDouble(c.getColumnIndex(TaskContract.Tasks.SCORE))))
+                        .appendQueryParameter(TaskContract.Tasks.SEARCH_AFTER_TASK_ID_PARAMETER,
+                                String.valueOf(c.getLong(c.getColumnIndex(TaskContract.Instances.TASK_ID))))
+                        .build();
+            }
+        }
+        assertThat(pages, is((found.size() + limit - 1) / limit));
+        return found;
+    }
+
+
+    private Set<Long> results(String search, SearchSession session)
+    {
+        Set<Long> result = new HashSet<>();
+        try (Cursor c = FTSDatabaseHelper.getTaskSearchCursor(mDb, search, null, null, null, null, SearchResultWindow.DEFAULT, session, null))
+        {
+            while (c.moveToNext())
+            {
+                result.add(c.getLong(c.getColumnIndex(TaskContract.Instances.TASK_ID)));
+            }
+        }
+        return result;
+    }
+
+
+    private int search(String search)
+    {
+        try (Cursor c = FTSDatabaseHelper.getTaskSearchCursor(mDb, search, null, null, null, null))
+        {
+            return c.getCount();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link InstanceBuckets}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class InstanceBucketsTest
+{
+    private final static long HOUR = 3600L * 1000L;
+
+    private SQLiteDatabase mDb;
+
+
+    @Before
+    public void setUp()
+    {
+        mDb = SQLiteDatabase.create(null);
+        mDb.execSQL("CREATE TABLE test (_id INTEGER PRIMARY KEY, " + Instances.INSTANCE_DUE + " INTEGER, " + Instances.IS_ALLDAY + " INTEGER)");
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mDb.close();
+    }
+
+
+    @Test
+    public void testBuckets()
+    {
+        // UTC+2, so local midnight of a day is 22:00 UTC of the previous day
+        TimeZone timeZone = TimeZone.getTimeZone("GMT+02:00");
+        long day = 24 * HOUR;
+        long today = 10 * day - 2 * HOUR;
+        long tomorrow = today + day;
+
+        insert(1, null, false);
+        insert(2, today - 1, false);
+        insert(3, today, false);
+        insert(4, tomorrow - 1, false);
+        insert(5, tomorrow + 5 * day, false);
+        // all-day tasks are stored as UTC midnight
+        insert(6, 9 * day, true);
+        insert(7, 10 * day, true);
+        insert(8, 11 * day, true);
+
+        InstanceBuckets buckets = new InstanceBuckets(Instances.INSTANCE_DUE, new long[] { today, tomorrow }, timeZone);
+        List<Long> ids = new ArrayList<>();
+        List<Integer> bucketValues = new ArrayList<>();
+        try (Cursor c = mDb.query("test", buckets.projection(new String[] { "_id" }), null, null, null, null, buckets.sortOrder("_id")))
+        {
+            assertThat(c.getColumnIndex(Instances.BUCKET), is(1));
+            while (c.moveToNext())
+            {
+                ids.add(c.getLong(0));
+                bucketValues.add(c.getInt(1));
+            }
+        }
+
+        assertThat(ids, is(Arrays.asList(1L, 2L, 6L, 3L, 4L, 7L, 5L, 8L)));
+        assertThat(bucketValues, is(Arrays.asList(Instances.BUCKET_NONE, 0, 0, 1, 1, 1, 2, 2)));
+    }
+
+
+    @Test
+    public void testOf()
+    {
+        Uri uri = Instances.getBucketsContentUri("test", Instances.INSTANCE_START, 1, 2, 3);
+        assertThat(InstanceBuckets.of(uri) == null, is(false));
+        assertThat(InstanceBuckets.of(Instances.getContentUri("test")) == null, is(true));
+        assertThat(Arrays.asList(InstanceBuckets.of(uri).projection(new String[] { "_id", Instances.BUCKET })).contains(Instances.BUCKET), is(false));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidColumn()
+    {
+        InstanceBuckets.of(Instances.getBucketsContentUri("test", Instances.TITLE, 1, 2));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedBoundaries()
+    {
+        InstanceBuckets.of(Instances.getBucketsContentUri("test", Instances.INSTANCE_DUE, 2, 1));
+    }
+
+
+    private void insert(long id, Long due, boolean allDay)
+    {
+        ContentValues values = new ContentValues();
+        values.put("_id", id);
+        values.put(Instances.INSTANCE_DUE, due);
+        values.put(Instances.IS_ALLDAY, allDay ? 1 : 0);
+        mDb.insert("test", null, values);
+    }
+}
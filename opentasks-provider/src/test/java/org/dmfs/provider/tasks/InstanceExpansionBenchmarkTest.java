@@ -0,0 +1,163 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import org.dmfs.jems.single.Single;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.provider.tasks.utils.InstanceValuesIterable;
+import org.dmfs.provider.tasks.utils.Limited;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.tasks.contract.TaskContract;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * A benchmark of the per-update cost of {@link Instantiating} for infinite recurring tasks which started a long time ago.
+ * <p>
+ * For comparison this also measures the cost of expanding the instances up to the hard limit of 10000 instances, which is what each update used to cost.
+ * <p>
+ * Like all benchmarks this only runs if the system property <code>benchmark</code> is <code>true</code>.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class InstanceExpansionBenchmarkTest
+{
+    private final static String TAG = "InstanceExpansionBenchmarkTest";
+    private final static int UPDATES = 20;
+
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private long mListId;
+
+
+    @BeforeClass
+    public static void assumeBenchmark()
+    {
+        // the full expansions take a while, so this only runs on request
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "benchmark");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        listValues.put(TaskContract.TaskLists.VISIBLE, 1);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testInfiniteDaily() throws Exception
+    {
+        benchmark("FREQ=DAILY", new Instantiating(new TaskCommitProcessor()));
+    }
+
+
+    @Test
+    public void testInfiniteHourly() throws Exception
+    {
+        benchmark("FREQ=HOURLY", new Instantiating(new TaskCommitProcessor()));
+    }
+
+
+    private void benchmark(String rule, EntityProcessor<TaskAdapter> processor) throws Exception
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.DTSTART, DateTime.parse("Europe/Berlin", "20140101T090000"));
+        task.set(TaskAdapter.RRULE, new RecurrenceRule(rule));
+        task.set(TaskAdapter.IS_CLOSED, false);
+        long taskId = processor.insert(mDb, task, false).id();
+
+        // baseline: the cost of expanding all instances up to the hard limit, which was paid on every update
+        long baselineStart = System.nanoTime();
+        int baselineCount = 0;
+        for (int i = 0; i < UPDATES; ++i)
+        {
+            try (Cursor c = mDb.query(Tables.TASKS, null, TaskContract.Tasks._ID + "=" + taskId, null, null, null, null))
+            {
+                c.moveToFirst();
+                baselineCount = 0;
+                for (Single<ContentValues> values : new Limited<>(10000, new InstanceValuesIterable(new CursorContentValuesTaskAdapter(c, new ContentValues()))))
+                {
+                    values.value();
+                    baselineCount += 1;
+                }
+            }
+        }
+        long baselineNanos = System.nanoTime() - baselineStart;
+
+        // the actual cost of an update
+        long updateStart = System.nanoTime();
+        for (int i = 0; i < UPDATES; ++i)
+        {
+            try (Cursor c = mDb.query(Tables.TASKS, null, TaskContract.Tasks._ID + "=" + taskId, null, null, null, null))
+            {
+                c.moveToFirst();
+                ContentValues values = new ContentValues();
+                Instantiating.addUpdateRequest(values);
+                processor.update(mDb, new CursorContentValuesTaskAdapter(c, values), false);
+            }
+        }
+        long updateNanos = System.nanoTime() - updateStart;
+
+        Log.i(TAG, String.format(Locale.ENGLISH,
+                "%s: full expansion of %d instances %.3f ms per update, bounded update %.3f ms per update",
+                rule, baselineCount, baselineNanos / 1000000.0 / UPDATES, updateNanos / 1000000.0 / UPDATES));
+
+        // an open task has exactly one instance
+        assertThat(DatabaseUtils.queryNumEntries(mDb, Tables.INSTANCES, TaskContract.Instances.TASK_ID + "=" + taskId), is(1L));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.tasks.contract.TaskContract;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link KeysetPage}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KeysetPageTest
+{
+    private SQLiteDatabase mDb;
+
+
+    @Before
+    public void setUp()
+    {
+        mDb = SQLiteDatabase.create(null);
+        mDb.execSQL("CREATE TABLE test (_id INTEGER PRIMARY KEY, due INTEGER, title TEXT)");
+        // computed columns don't have an affinity, so they don't compare equal to text arguments
+        mDb.execSQL("CREATE VIEW test_view AS SELECT _id, due + 0 AS due, due / 3.0 AS fraction, title FROM test");
+        Random random = new Random(42);
+        for (int i = 0; i < 200; ++i)
+        {
+            ContentValues values = new ContentValues();
+            // lots of duplicates and null values
+            if (random.nextInt(4) != 0)
+            {
+                values.put("due", random.nextInt(20) * 1000000000L);
+            }
+            if (random.nextInt(5) != 0)
+            {
+                values.put("title", (random.nextBoolean() ? "Task, " : "task, ") + random.nextInt(10));
+            }
+            mDb.insert("test", null, values);
+        }
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mDb.close();
+    }
+
+
+    @Test
+    public void testSortOrders()
+    {
+        for (String sortOrder : Arrays.asList(null, "due", "due DESC", "due ASC, _id DESC", "title COLLATE NOCASE, due DESC", "title DESC, due",
+                "test.due"))
+        {
+            for (int pageSize : new int[] { 1, 7, 50, 200, 500 })
+            {
+                assertThat(sortOrder + " / " + pageSize, paged("test", sortOrder, pageSize, "_id > ?", "10"),
+                        is(all("test", sortOrder, "_id > ?", "10")));
+            }
+        }
+    }
+
+
+    @Test
+    public void testComputedColumns()
+    {
+        for (String sortOrder : Arrays.asList("due", "due DESC", "fraction", "fraction DESC, title", "title, fraction"))
+        {
+            for (int pageSize : new int[] { 1, 7, 50 })
+            {
+                assertThat(sortOrder + " / " + pageSize, paged("test_view", sortOrder, pageSize, "_id > ?", "10"),
+                        is(all("test_view", sortOrder, "_id > ?", "10")));
+            }
+        }
+    }
+
+
+    @Test
+    public void testProjection()
+    {
+        KeysetPage page = new KeysetPage("due DESC, title", 10, null);
+        assertThat(page.projection(new String[] { "title" }), is(new String[] { "title", "due", "_id" }));
+        assertThat(page.projection(null) == null, is(true));
+        assertThat(page.sortOrder(), is("due DESC, title, _id"));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedSortOrder()
+    {
+        new KeysetPage("ifnull(due, 0)", 10, null);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidKey()
+    {
+        new KeysetPage("due", 10, "=1").selection();
+    }
+
+
+    private List<Long> paged(String table, String sortOrder, int pageSize, String selection, String... selectionArgs)
+    {
+        List<Long> result = new ArrayList<>();
+        String after = null;
+        do
+        {
+            KeysetPage page = new KeysetPage(sortOrder, pageSize, after);
+            String pageSelection = page.selection() == null ? selection : page.selection() + " AND (" + selection + ")";
+            List<String> args = new ArrayList<>(Arrays.asList(page.selectionArgs()));
+            args.addAll(Arrays.asList(selectionArgs));
+            try (Cursor c = page.withNextPage(
+                    mDb.query(table, page.projection(new String[] { "_id" }), pageSelection, args.toArray(new String[0]), null, null, page.sortOrder(),
+                            page.limit())))
+            {
+                assertThat(c.getCount() <= pageSize, is(true));
+                while (c.moveToNext())
+                {
+                    result.add(c.getLong(c.getColumnIndex("_id")));
+                }
+                after = c.getExtras().getString(TaskContract.EXTRA_NEXT_PAGE);
+            }
+        }
+        while (after != null);
+        return result;
+    }
+
+
+    private List<Long> all(String table, String sortOrder, String selection, String... selectionArgs)
+    {
+        List<Long> result = new ArrayList<>();
+        // the page adds the _id to the sort order, so use the same for the reference query
+        try (Cursor c = mDb.query(table, new String[] { "_id" }, selection, selectionArgs, null, null,
+                new KeysetPage(sortOrder, 1, null).sortOrder()))
+        {
+            while (c.moveToNext())
+            {
+                result.add(c.getLong(0));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link NgramIdCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class NgramIdCacheTest
+{
+    private SQLiteDatabase mDb;
+
+
+    @Before
+    public void setUp()
+    {
+        mDb = SQLiteDatabase.create(null);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mDb.close();
+    }
+
+
+    @Test
+    public void testOutsideOfTransaction()
+    {
+        NgramIdCache cache = NgramIdCache.of(mDb);
+        assertThat(cache.get(" ab"), is(nullValue()));
+        cache.put(mDb, " ab", 12);
+        assertThat(cache.get(" ab"), is(12L));
+        assertThat(NgramIdCache.of(mDb).get(" ab"), is(12L));
+    }
+
+
+    @Test
+    public void testCommittedTransaction()
+    {
+        NgramIdCache cache = NgramIdCache.of(mDb);
+        mDb.beginTransactionWithListener(cache.transactionListener());
+        try
+        {
+            cache.put(mDb, " ab", 12);
+            // visible to the transaction
+            assertThat(cache.get(" ab"), is(12L));
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(cache.get(" ab"), is(12L));
+    }
+
+
+    @Test
+    public void testRolledBackTransaction()
+    {
+        NgramIdCache cache = NgramIdCache.of(mDb);
+        mDb.beginTransactionWithListener(cache.transactionListener());
+        try
+        {
+            cache.put(mDb, " ab", 12);
+            assertThat(cache.get(" ab"), is(12L));
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(cache.get(" ab"), is(nullValue()));
+    }
+
+
+    @Test
+    public void testNestedTransaction()
+    {
+        NgramIdCache cache = NgramIdCache.of(mDb);
+        mDb.beginTransactionWithListener(cache.transactionListener());
+        try
+        {
+            mDb.beginTransactionWithListener(cache.transactionListener());
+            try
+            {
+                cache.put(mDb, " ab", 12);
+                mDb.setTransactionSuccessful();
+            }
+            finally
+            {
+                mDb.endTransaction();
+            }
+            // still visible to the outer transaction
+            assertThat(cache.get(" ab"), is(12L));
+            cache.put(mDb, " cd", 13);
+        }
+        finally
+        {
+            // roll back the outer transaction
+            mDb.endTransaction();
+        }
+        // the committed inner transaction didn't publish anything
+        assertThat(cache.get(" ab"), is(nullValue()));
+        assertThat(cache.get(" cd"), is(nullValue()));
+    }
+
+
+    @Test
+    public void testFailedNestedTransaction()
+    {
+        NgramIdCache cache = NgramIdCache.of(mDb);
+        mDb.beginTransactionWithListener(cache.transactionListener());
+        try
+        {
+            cache.put(mDb, " ab", 12);
+            mDb.beginTransactionWithListener(cache.transactionListener());
+            try
+            {
+                cache.put(mDb, " cd", 13);
+            }
+            finally
+            {
+                mDb.endTransaction();
+            }
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        // a failed nested transaction fails the entire transaction
+        assertThat(cache.get(" ab"), is(nullValue()));
+        assertThat(cache.get(" cd"), is(nullValue()));
+    }
+
+
+    @Test
+    public void testUntrackedTransaction()
+    {
+        NgramIdCache cache = NgramIdCache.of(mDb);
+        mDb.beginTransaction();
+        try
+        {
+            cache.put(mDb, " ab", 12);
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(cache.get(" ab"), is(nullValue()));
+    }
+
+
+    @Test
+    public void testOtherDatabase()
+    {
+        NgramIdCache.of(mDb).put(mDb, " ab", 12);
+        SQLiteDatabase otherDb = SQLiteDatabase.create(null);
+        try
+        {
+            assertThat(NgramIdCache.of(otherDb).get(" ab"), is(nullValue()));
+        }
+        finally
+        {
+            otherDb.close();
+        }
+    }
+}
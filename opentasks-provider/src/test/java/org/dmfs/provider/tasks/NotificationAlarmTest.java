@@ -0,0 +1,182 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.app.AlarmManager;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.handler.AlarmHandler;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Properties;
+import org.dmfs.tasks.contract.TaskContract.Property.Alarm;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowAlarmManager;
+
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+
+/**
+ * Test the notification alarm scheduled by {@link ContentOperation#UPDATE_NOTIFICATION_ALARM}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class NotificationAlarmTest
+{
+    private final static TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+    private final static TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private final static long DAY = 24L * 3600L * 1000L;
+
+    private TimeZone mDefaultTimeZone;
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+    private DateTime mDay;
+
+
+    @Before
+    public void setUp()
+    {
+        mDefaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(BERLIN);
+
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new Instantiating(new TaskCommitProcessor());
+
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+
+        // a day in the near future, all tasks take place on that day
+        mDay = new DateTime(BERLIN, System.currentTimeMillis() + 2 * DAY).toAllDay();
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+
+    @Test
+    public void testNoTasks()
+    {
+        assertThat(scheduledAlarm(), is(nullValue()));
+    }
+
+
+    @Test
+    public void testZonedTask()
+    {
+        DateTime due = new DateTime(NEW_YORK, mDay.getYear(), mDay.getMonth(), mDay.getDayOfMonth(), 10, 0, 0);
+        insertTask(null, due);
+        assertThat(scheduledAlarm(), is(due.getTimestamp()));
+    }
+
+
+    @Test
+    public void testFloatingTask()
+    {
+        insertTask(new DateTime(mDay.getYear(), mDay.getMonth(), mDay.getDayOfMonth(), 10, 0, 0),
+                new DateTime(mDay.getYear(), mDay.getMonth(), mDay.getDayOfMonth(), 11, 0, 0));
+        // floating tasks start at their local time
+        assertThat(scheduledAlarm(), is(new DateTime(BERLIN, mDay.getYear(), mDay.getMonth(), mDay.getDayOfMonth(), 10, 0, 0).getTimestamp()));
+    }
+
+
+    @Test
+    public void testAllDayTask()
+    {
+        insertTask(null, mDay);
+        // all-day tasks become due at local midnight
+        assertThat(scheduledAlarm(), is(new DateTime(BERLIN, mDay.getYear(), mDay.getMonth(), mDay.getDayOfMonth(), 0, 0, 0).getTimestamp()));
+    }
+
+
+    @Test
+    public void testReminder()
+    {
+        DateTime due = new DateTime(NEW_YORK, mDay.getYear(), mDay.getMonth(), mDay.getDayOfMonth(), 10, 0, 0);
+        long taskId = insertTask(null, due);
+
+        ContentValues values = new ContentValues();
+        values.put(Properties.TASK_ID, taskId);
+        values.put(Properties.MIMETYPE, Alarm.CONTENT_ITEM_TYPE);
+        values.put(Alarm.MINUTES_BEFORE, 30);
+        values.put(Alarm.REFERENCE, Alarm.ALARM_REFERENCE_DUE_DATE);
+        values.put(Alarm.ALARM_TYPE, Alarm.ALARM_TYPE_MESSAGE);
+        new AlarmHandler().insert(mDb, taskId, values, false);
+
+        // the reminder triggers before the task becomes due
+        assertThat(scheduledAlarm(), is(new DateTime(NEW_YORK, mDay.getYear(), mDay.getMonth(), mDay.getDayOfMonth(), 9, 30, 0).getTimestamp()));
+    }
+
+
+    /**
+     * Runs {@link ContentOperation#UPDATE_NOTIFICATION_ALARM} and returns the time of the alarm it scheduled or <code>null</code> if no alarm has been
+     * scheduled.
+     */
+    private Long scheduledAlarm()
+    {
+        ContentOperation.UPDATE_NOTIFICATION_ALARM.handle(RuntimeEnvironment.application, Uri.EMPTY, mDb, null, null);
+        ShadowAlarmManager alarmManager = shadowOf((AlarmManager) RuntimeEnvironment.application.getSystemService(Context.ALARM_SERVICE));
+        ShadowAlarmManager.ScheduledAlarm alarm = alarmManager.getNextScheduledAlarm();
+        return alarm == null ? null : alarm.triggerAtTime;
+    }
+
+
+    private long insertTask(DateTime start, DateTime due)
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, "Task");
+        task.set(TaskAdapter.STATUS, Tasks.STATUS_NEEDS_ACTION);
+        task.set(TaskAdapter.IS_CLOSED, false);
+        if (start != null)
+        {
+            task.set(TaskAdapter.DTSTART, start);
+        }
+        task.set(TaskAdapter.DUE, due);
+        return mProcessor.insert(mDb, task, false).id();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link QuerySources} and verify the query plans of the chosen sources.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class QuerySourcesTest
+{
+    private final static String[] NOTIFICATION_PROJECTION = { Tasks._ID, Tasks.TITLE, Tasks.DUE, Tasks.IS_ALLDAY, Tasks.TZ };
+
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testTasks()
+    {
+        assertThat(QuerySources.tasks(NOTIFICATION_PROJECTION, Tasks.IS_CLOSED + "=0", Tasks.DUE), is(Tables.TASKS));
+        assertThat(tablesOf(QuerySources.tasks(NOTIFICATION_PROJECTION, Tasks.IS_CLOSED + "=0", Tasks.DUE), NOTIFICATION_PROJECTION,
+                Tasks.IS_CLOSED + "=0", Tasks.DUE), not(hasItem(Tables.LISTS)));
+
+        // list columns in projection, selection or sort order
+        assertThat(QuerySources.tasks(new String[] { Tasks._ID, Tasks.LIST_COLOR }, null, Tasks.DUE), is(Tables.TASKS_VIEW));
+        assertThat(QuerySources.tasks(NOTIFICATION_PROJECTION, Tasks.VISIBLE + "=1", Tasks.DUE), is(Tables.TASKS_VIEW));
+        assertThat(QuerySources.tasks(NOTIFICATION_PROJECTION, null, Tasks.LIST_NAME + ", " + Tasks.DUE), is(Tables.TASKS_VIEW));
+        assertThat(tablesOf(QuerySources.tasks(NOTIFICATION_PROJECTION, Tasks.VISIBLE + "=1", Tasks.DUE), NOTIFICATION_PROJECTION, Tasks.VISIBLE + "=1",
+                Tasks.DUE), hasItem(Tables.LISTS));
+
+        // all columns
+        assertThat(QuerySources.tasks(null, null, Tasks.DUE), is(Tables.TASKS_VIEW));
+        assertThat(QuerySources.tasks(new String[] { "*" }, null, Tasks.DUE), is(Tables.TASKS_VIEW));
+    }
+
+
+    @Test
+    public void testInstances()
+    {
+        String[] projection = { Instances._ID, Instances.TASK_ID, Instances.INSTANCE_START, Instances.INSTANCE_DUE, Tasks.TITLE };
+        String selection = Instances.INSTANCE_DUE_SORTING + " > 0";
+
+        assertThat(QuerySources.instances(projection, selection, Instances.DEFAULT_SORT_ORDER), is(Tables.INSTANCE_TASK_CLIENT_VIEW));
+        Set<String> tables = tablesOf(QuerySources.instances(projection, selection, Instances.DEFAULT_SORT_ORDER), projection, selection,
+                Instances.DEFAULT_SORT_ORDER);
+        assertThat(tables, not(hasItem(Tables.LISTS)));
+        assertThat(tables, hasItem(Tables.INSTANCES));
+        assertThat(tables, hasItem(Tables.TASKS));
+
+        assertThat(QuerySources.instances(projection, Tasks.VISIBLE + "=1", Instances.DEFAULT_SORT_ORDER), is(Tables.INSTANCE_CLIENT_VIEW));
+        assertThat(tablesOf(QuerySources.instances(projection, Tasks.VISIBLE + "=1", Instances.DEFAULT_SORT_ORDER), projection, Tasks.VISIBLE + "=1",
+                Instances.DEFAULT_SORT_ORDER), hasItem(Tables.LISTS));
+    }
+
+
+    @Test
+    public void testEquivalentColumns()
+    {
+        // the narrow instances view must provide the same columns as the wide one, except for the list columns
+        Set<String> wide = columnsOf(Tables.INSTANCE_CLIENT_VIEW);
+        wide.removeAll(TaskDatabaseHelper.LIST_COLUMNS);
+        assertThat(columnsOf(Tables.INSTANCE_TASK_CLIENT_VIEW), is(wide));
+
+        Set<String> wideTasks = columnsOf(Tables.TASKS_VIEW);
+        wideTasks.removeAll(TaskDatabaseHelper.LIST_COLUMNS);
+        assertThat(columnsOf(Tables.TASKS), is(wideTasks));
+    }
+
+
+    /**
+     * Returns the tables which are accessed by the given query, according to its query plan.
+     */
+    private Set<String> tablesOf(String source, String[] projection, String selection, String sortOrder)
+    {
+        String query = SQLiteQueryBuilder.buildQueryString(false, source, projection, selection, null, null, sortOrder, null);
+        Set<String> result = new HashSet<>();
+        try (Cursor c = mDb.rawQuery("EXPLAIN QUERY PLAN " + query, null))
+        {
+            int detail = c.getColumnIndex("detail");
+            while (c.moveToNext())
+            {
+                for (String table : new String[] { Tables.LISTS, Tables.TASKS, Tables.INSTANCES })
+                {
+                    if (c.getString(detail).matches("(SCAN|SEARCH)( TABLE)? " + table + "\\b.*"))
+                    {
+                        result.add(table);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+
+    private Set<String> columnsOf(String source)
+    {
+        try (Cursor c = mDb.query(source, null, null, null, null, null, null, "0"))
+        {
+            return new HashSet<>(Arrays.asList(c.getColumnNames()));
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.Searchable;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.tasks.contract.TaskContract;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * A side-by-side benchmark of the n-gram search engine of {@link FTSDatabaseHelper} and the FTS4 search engine of {@link FTS4DatabaseHelper}.
+ * <p>
+ * The number of tasks defaults to 50000 and can be changed with the system property {@value #TASK_COUNT_PROPERTY}.
+ * <p>
+ * This is a benchmark, it only runs if the system property <code>benchmark</code> is <code>true</code>.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SearchEngineBenchmarkTest
+{
+    private final static String TAG = "SearchEngineBenchmarkTest";
+    private final static String TASK_COUNT_PROPERTY = "opentasks.benchmark.tasks";
+    private final static int RUNS = 10;
+    private final static String[] WORDS = {
+            "buy", "groceries", "call", "mother", "meeting", "project", "report", "review", "dentist", "appointment", "renew", "passport", "water", "plants",
+            "garden", "invoice", "payment", "birthday", "present", "holiday", "booking", "train", "tickets", "laundry", "kitchen", "repair", "bicycle",
+            "insurance", "documents", "presentation", "slides", "budget", "quarterly", "conference", "library", "books", "return", "vacuum", "cleaner",
+            "recipe", "dinner", "party", "guests", "schedule", "doctor", "pharmacy", "prescription", "newsletter", "subscription", "backup" };
+    private final static String[] QUERIES = { "groceries", "dentist appointment", "quarterly budget report", "pass", "xyzzy" };
+
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+
+
+    @BeforeClass
+    public static void assumeBenchmark()
+    {
+        // benchmarks take a while, they only run on request
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "benchmark");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        listValues.put(TaskContract.TaskLists.VISIBLE, 1);
+        long listId = mDb.insert(Tables.LISTS, null, listValues);
+
+        int taskCount = Integer.getInteger(TASK_COUNT_PROPERTY, 50000);
+        Random random = new Random(1234);
+        EntityProcessor<TaskAdapter> processor = new Instantiating(new Searchable(new TaskCommitProcessor()));
+        long start = System.nanoTime();
+        mDb.beginTransaction();
+        try
+        {
+            for (int i = 0; i < taskCount; ++i)
+            {
+                TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+                task.set(TaskAdapter.LIST_ID, listId);
+                task.set(TaskAdapter.TITLE, words(random, 2 + random.nextInt(3)));
+                task.set(TaskAdapter.DESCRIPTION, words(random, random.nextInt(30)));
+                processor.insert(mDb, task, false);
+            }
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        Log.i(TAG, String.format(Locale.ENGLISH, "Inserting %d tasks with n-gram index took %.1f s", taskCount, (System.nanoTime() - start) / 1e9));
+
+        start = System.nanoTime();
+        int count;
+        do
+        {
+            mDb.beginTransaction();
+            try
+            {
+                count = FTS4DatabaseHelper.migrate(mDb, 500);
+                mDb.setTransactionSuccessful();
+            }
+            finally
+            {
+                mDb.endTransaction();
+            }
+        } while (count == 500);
+        Log.i(TAG, String.format(Locale.ENGLISH, "Migrating %d tasks to FTS4 took %.1f s", taskCount, (System.nanoTime() - start) / 1e9));
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testSearch()
+    {
+        for (String query : QUERIES)
+        {
+            int ngramResults = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < RUNS; ++i)
+            {
+                try (Cursor c = FTSDatabaseHelper.getTaskSearchCursor(mDb, query, null, null, null, null))
+                {
+                    ngramResults = c.getCount();
+                }
+            }
+            long ngramNanos = System.nanoTime() - start;
+
+            int fts4Results = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < RUNS; ++i)
+            {
+                try (Cursor c = FTS4DatabaseHelper.getTaskSearchCursor(mDb, query, null, null, null, null))
+                {
+                    fts4Results = c.getCount();
+                }
+            }
+            long fts4Nanos = System.nanoTime() - start;
+
+            Log.i(TAG, String.format(Locale.ENGLISH, "\"%s\": n-gram %d results in %.1f ms, FTS4 %d results in %.1f ms", query, ngramResults,
+                    ngramNanos / 1e6 / RUNS, fts4Results, fts4Nanos / 1e6 / RUNS));
+        }
+
+        try (Cursor c = FTS4DatabaseHelper.getTaskSearchCursor(mDb, "groceries", null, null, null, null))
+        {
+            assertThat(c.getCount(), greaterThan(0));
+        }
+    }
+
+
+    private static String words(Random random, int count)
+    {
+        StringBuilder result = new StringBuilder(count * 10);
+        for (int i = 0; i < count; ++i)
+        {
+            if (i > 0)
+            {
+                result.append(' ');
+            }
+            result.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return result.toString();
+    }
+}
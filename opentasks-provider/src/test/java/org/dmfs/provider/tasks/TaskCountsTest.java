@@ -0,0 +1,194 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Counts;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link TaskCounts}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TaskCountsTest
+{
+    private final static TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private final static long HOUR = 3600L * 1000L;
+
+    /**
+     * 2019-01-15 12:00 UTC
+     */
+    private final static long NOW = new DateTime(UTC, 2019, 0, 15, 12, 0, 0).getTimestamp();
+
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+    private long mEmptyListId;
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new Instantiating(new TaskCommitProcessor());
+        mListId = insertList();
+        mEmptyListId = insertList();
+
+        insertTask(new DateTime(UTC, NOW - HOUR), false, false);
+        insertTask(new DateTime(UTC, NOW + HOUR), false, false);
+        insertTask(new DateTime(UTC, NOW + 24 * HOUR), false, false);
+        insertTask(null, false, true);
+        insertTask(new DateTime(2019, 0, 15), false, false);
+        insertTask(new DateTime(2019, 0, 14), false, false);
+        // closed tasks are not counted
+        insertTask(new DateTime(UTC, NOW + HOUR), true, true);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testCounts()
+    {
+        TaskCounts counts = new TaskCounts();
+        try (Cursor c = counts.query(mDb, null, null, null, null, null, NOW, UTC))
+        {
+            assertThat(c.getCount(), is(2));
+            c.moveToFirst();
+            assertCounts(c, mListId, 6, 2, 2, 1, 1, 1);
+            c.moveToNext();
+            assertCounts(c, mEmptyListId, 0, 0, 0, 0, 0, 0);
+        }
+
+        // with a selection
+        try (Cursor c = counts.query(mDb, new String[] { Counts.LIST_ID, Counts.OPEN_COUNT }, Counts.LIST_ID + "=?",
+                new String[] { String.valueOf(mListId) }, null, null, NOW, UTC))
+        {
+            assertThat(c.getCount(), is(1));
+            c.moveToFirst();
+            assertThat(c.getColumnCount(), is(2));
+            assertThat(c.getLong(c.getColumnIndex(Counts.OPEN_COUNT)), is(6L));
+        }
+    }
+
+
+    @Test
+    public void testCache()
+    {
+        TaskCounts counts = new TaskCounts();
+        assertThat(openCount(counts, NOW), is(6L));
+
+        // the cache doesn't see this until it's invalidated
+        insertTask(null, false, false);
+        assertThat(openCount(counts, NOW), is(6L));
+        counts.invalidate();
+        assertThat(openCount(counts, NOW), is(7L));
+
+        // the cached counts expire with the next due date
+        try (Cursor c = counts.query(mDb, null, null, null, null, null, NOW + HOUR + 1, UTC))
+        {
+            c.moveToFirst();
+            assertCounts(c, mListId, 7, 3, 1, 1, 2, 1);
+        }
+
+        // and at the end of the day
+        try (Cursor c = counts.query(mDb, null, null, null, null, null, NOW + 13 * HOUR, UTC))
+        {
+            c.moveToFirst();
+            assertCounts(c, mListId, 7, 4, 1, 0, 2, 1);
+        }
+    }
+
+
+    private long openCount(TaskCounts counts, long now)
+    {
+        try (Cursor c = counts.query(mDb, new String[] { Counts.OPEN_COUNT }, null, null, null, null, now, UTC))
+        {
+            c.moveToFirst();
+            return c.getLong(0);
+        }
+    }
+
+
+    private void assertCounts(Cursor c, long listId, long open, long overdue, long today, long later, long noDue, long pinned)
+    {
+        assertThat(c.getLong(c.getColumnIndex(Counts.LIST_ID)), is(listId));
+        assertThat(c.getLong(c.getColumnIndex(Counts.OPEN_COUNT)), is(open));
+        assertThat(c.getLong(c.getColumnIndex(Counts.OVERDUE_COUNT)), is(overdue));
+        assertThat(c.getLong(c.getColumnIndex(Counts.DUE_TODAY_COUNT)), is(today));
+        assertThat(c.getLong(c.getColumnIndex(Counts.DUE_LATER_COUNT)), is(later));
+        assertThat(c.getLong(c.getColumnIndex(Counts.NO_DUE_COUNT)), is(noDue));
+        assertThat(c.getLong(c.getColumnIndex(Counts.PINNED_COUNT)), is(pinned));
+    }
+
+
+    private long insertList()
+    {
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        listValues.put(TaskContract.TaskLists.VISIBLE, 1);
+        return mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    private void insertTask(DateTime due, boolean closed, boolean pinned)
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, "Task");
+        if (due != null)
+        {
+            task.set(TaskAdapter.DUE, due);
+        }
+        task.set(TaskAdapter.STATUS, closed ? TaskContract.Tasks.STATUS_COMPLETED : TaskContract.Tasks.STATUS_NEEDS_ACTION);
+        task.set(TaskAdapter.IS_CLOSED, closed);
+        task.set(TaskAdapter.PINNED, pinned);
+        mProcessor.insert(mDb, task, false);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.processors.tasks;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.NoOpProcessor;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link ParallelInstantiation}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ParallelInstantiationTest
+{
+    private final static TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+    private final static String MASTERS = Tasks.ORIGINAL_INSTANCE_ID + " is null";
+
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new Instantiating(new TaskCommitProcessor());
+
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testUpdate() throws Exception
+    {
+        insertTask(new DateTime(BERLIN, 2019, 0, 15, 10, 0, 0), null, false);
+        insertTask(new DateTime(2019, 0, 16), null, false);
+        long master = insertTask(new DateTime(BERLIN, 2019, 0, 15, 10, 0, 0), new RecurrenceRule("FREQ=DAILY;COUNT=5"), false);
+        insertTask(new DateTime(BERLIN, 2014, 0, 1, 9, 0, 0), new RecurrenceRule("FREQ=HOURLY"), false);
+        insertTask(new DateTime(2019, 0, 1, 9, 0, 0), new RecurrenceRule("FREQ=WEEKLY"), true);
+        insertTask(new DateTime(BERLIN, 2019, 0, 1, 9, 0, 0), new RecurrenceRule("FREQ=MONTHLY;COUNT=12"), true);
+
+        // an override of the second instance of the daily task
+        TaskAdapter override = new ContentValuesTaskAdapter(new ContentValues());
+        override.set(TaskAdapter.LIST_ID, mListId);
+        override.set(TaskAdapter.TITLE, "Override");
+        override.set(TaskAdapter.STATUS, Tasks.STATUS_COMPLETED);
+        override.set(TaskAdapter.IS_CLOSED, true);
+        override.set(TaskAdapter.DTSTART, new DateTime(BERLIN, 2019, 0, 16, 10, 0, 0));
+        override.set(TaskAdapter.ORIGINAL_INSTANCE_ID, master);
+        override.set(TaskAdapter.ORIGINAL_INSTANCE_TIME, new DateTime(BERLIN, 2019, 0, 16, 10, 0, 0));
+        mProcessor.insert(mDb, override, false);
+
+        List<String> expectedWithIds = instances(true);
+        List<String> expected = instances(false);
+
+        // updating up to date instances doesn't change anything, not even the row ids
+        assertThat(update(2), is(6));
+        assertThat(instances(true), is(expectedWithIds));
+
+        // the instances are restored exactly
+        mDb.delete(Tables.INSTANCES, Instances.TASK_ID + " in (select " + Tasks._ID + " from " + Tables.TASKS + " where " + MASTERS + ")", null);
+        assertThat(update(4), is(6));
+        assertThat(instances(false), is(expected));
+    }
+
+
+    private int update(int batchSize)
+    {
+        try (Cursor c = mDb.query(Tables.TASKS, null, MASTERS, null, null, null, Tasks._ID))
+        {
+            return new ParallelInstantiation(new Instantiating(new NoOpProcessor<>()), batchSize).update(mDb, c);
+        }
+    }
+
+
+    private List<String> instances(boolean withIds)
+    {
+        List<String> result = new ArrayList<>();
+        try (Cursor c = mDb.query(Tables.INSTANCES,
+                new String[] {
+                        Instances._ID, Instances.TASK_ID, Instances.INSTANCE_ORIGINAL_TIME, Instances.INSTANCE_START_SORTING, Instances.INSTANCE_DUE_SORTING,
+                        Instances.DISTANCE_FROM_CURRENT },
+                null, null, null, null, Instances.TASK_ID + ", " + Instances.INSTANCE_ORIGINAL_TIME))
+        {
+            while (c.moveToNext())
+            {
+                StringBuilder row = new StringBuilder();
+                for (int i = withIds ? 0 : 1; i < c.getColumnCount(); ++i)
+                {
+                    row.append(c.getString(i)).append(';');
+                }
+                result.add(row.toString());
+            }
+        }
+        return result;
+    }
+
+
+    private long insertTask(DateTime start, RecurrenceRule rule, boolean closed)
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, "Task");
+        task.set(TaskAdapter.STATUS, closed ? Tasks.STATUS_COMPLETED : Tasks.STATUS_NEEDS_ACTION);
+        task.set(TaskAdapter.IS_CLOSED, closed);
+        if (start != null)
+        {
+            task.set(TaskAdapter.DTSTART, start);
+        }
+        if (rule != null)
+        {
+            task.set(TaskAdapter.RRULE, rule);
+        }
+        return mProcessor.insert(mDb, task, false).id();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.dmfs.provider.tasks.utils;
+
+import android.database.sqlite.SQLiteTransactionListener;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test {@link CompositeTransactionListener}.
+ */
+public class CompositeTransactionListenerTest
+{
+    @Test
+    public void testAllDelegatesNotified()
+    {
+        List<String> events = new ArrayList<>();
+        RuntimeException error = new IllegalStateException("first");
+        SQLiteTransactionListener listener = new CompositeTransactionListener(
+                new Recording("a", events, error),
+                new Recording("b", events, new IllegalStateException("second")),
+                new Recording("c", events, null));
+
+        try
+        {
+            listener.onCommit();
+            fail("onCommit didn't throw");
+        }
+        catch (RuntimeException e)
+        {
+            // the first exception is rethrown, the others are suppressed
+            assertThat(e, is(error));
+            assertThat(e.getSuppressed().length, is(1));
+        }
+        assertThat(events, contains("a commit", "b commit", "c commit"));
+    }
+
+
+    /**
+     * An {@link SQLiteTransactionListener} which records the events and optionally throws.
+     */
+    private final static class Recording implements SQLiteTransactionListener
+    {
+        private final String mName;
+        private final List<String> mEvents;
+        private final RuntimeException mError;
+
+
+        private Recording(String name, List<String> events, RuntimeException error)
+        {
+            mName = name;
+            mEvents = events;
+            mError = error;
+        }
+
+
+        @Override
+        public void onBegin()
+        {
+            record("begin");
+        }
+
+
+        @Override
+        public void onCommit()
+        {
+            record("commit");
+        }
+
+
+        @Override
+        public void onRollback()
+        {
+            record("rollback");
+        }
+
+
+        private void record(String event)
+        {
+            mEvents.add(mName + " " + event);
+            if (mError != null)
+            {
+                throw mError;
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link LocalSortingUpdate}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class LocalSortingUpdateTest
+{
+    private final static TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+    private final static TimeZone TOKYO = TimeZone.getTimeZone("Asia/Tokyo");
+    private final static TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    private TimeZone mDefaultTimeZone;
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+
+
+    @Before
+    public void setUp()
+    {
+        mDefaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(BERLIN);
+
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new Instantiating(new TaskCommitProcessor());
+
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+
+    @Test
+    public void testUpdate()
+    {
+        DateTime zonedDue = new DateTime(NEW_YORK, 2019, 0, 15, 12, 0, 0);
+        DateTime floatingDue = new DateTime(2019, 0, 15, 12, 0, 0);
+        DateTime allDayDue = new DateTime(2019, 0, 16);
+
+        long zoned1 = insertTask(new DateTime(NEW_YORK, 2019, 0, 15, 8, 0, 0), zonedDue);
+        long floating = insertTask(null, floatingDue);
+        long zoned2 = insertTask(null, new DateTime(DateTime.UTC, 2019, 0, 17, 9, 30, 0));
+        long allDay = insertTask(null, allDayDue);
+
+        long floatingSorting = sorting(floating, Instances.INSTANCE_DUE_SORTING);
+        long allDaySorting = sorting(allDay, Instances.INSTANCE_DUE_SORTING);
+        assertThat(sorting(zoned1, Instances.INSTANCE_DUE_SORTING), is(zonedDue.shiftTimeZone(BERLIN).getInstance()));
+
+        TimeZone.setDefault(TOKYO);
+        LocalSortingUpdate update = new LocalSortingUpdate(mDb, TOKYO);
+        assertThat(update.candidates(), is(2L));
+
+        // update in chunks of a single instance
+        long after = -1;
+        int chunks = 0;
+        while (update.update(after, 1) > 0)
+        {
+            after = update.lastId();
+            chunks += 1;
+        }
+        assertThat(chunks, is(2));
+
+        assertThat(sorting(zoned1, Instances.INSTANCE_DUE_SORTING), is(zonedDue.shiftTimeZone(TOKYO).getInstance()));
+        assertThat(sorting(zoned1, Instances.INSTANCE_START_SORTING), is(new DateTime(NEW_YORK, 2019, 0, 15, 8, 0, 0).shiftTimeZone(TOKYO).getInstance()));
+        assertThat(sorting(zoned2, Instances.INSTANCE_DUE_SORTING),
+                is(new DateTime(DateTime.UTC, 2019, 0, 17, 9, 30, 0).shiftTimeZone(TOKYO).getInstance()));
+        // floating and all-day instances don't depend on the local time zone
+        assertThat(sorting(floating, Instances.INSTANCE_DUE_SORTING), is(floatingSorting));
+        assertThat(sorting(allDay, Instances.INSTANCE_DUE_SORTING), is(allDaySorting));
+
+        // the triggers of zoned tasks don't change, the floating ones move with the local time zone
+        NextTriggers.updateFloating(mDb);
+        assertThat(NextTriggers.next(mDb, Long.MIN_VALUE), is(new DateTime(TOKYO, 2019, 0, 15, 12, 0, 0).getTimestamp()));
+        assertThat(NextTriggers.next(mDb, new DateTime(TOKYO, 2019, 0, 15, 12, 0, 0).getTimestamp()),
+                is(new DateTime(NEW_YORK, 2019, 0, 15, 8, 0, 0).getTimestamp()));
+
+        // the result is the same as if the instances were created in the new time zone
+        long fresh = insertTask(new DateTime(NEW_YORK, 2019, 0, 15, 8, 0, 0), zonedDue);
+        assertThat(sorting(fresh, Instances.INSTANCE_DUE_SORTING), is(sorting(zoned1, Instances.INSTANCE_DUE_SORTING)));
+    }
+
+
+    @Test
+    public void testWithoutAllDayFlag()
+    {
+        DateTime zonedDue = new DateTime(NEW_YORK, 2019, 0, 15, 12, 0, 0);
+        long zoned = insertTask(null, zonedDue);
+
+        // tasks written by sync adapters may not have an all-day flag, these are not all-day tasks
+        ContentValues values = new ContentValues();
+        values.putNull(Tasks.IS_ALLDAY);
+        mDb.update(Tables.TASKS, values, Tasks._ID + "=" + zoned, null);
+
+        TimeZone.setDefault(TOKYO);
+        LocalSortingUpdate update = new LocalSortingUpdate(mDb, TOKYO);
+        assertThat(update.candidates(), is(1L));
+        assertThat(update.update(-1, 10), is(1));
+        assertThat(sorting(zoned, Instances.INSTANCE_DUE_SORTING), is(zonedDue.shiftTimeZone(TOKYO).getInstance()));
+    }
+
+
+    private long sorting(long taskId, String column)
+    {
+        try (Cursor c = mDb.query(Tables.INSTANCES, new String[] { column }, Instances.TASK_ID + "=" + taskId, null, null, null, null))
+        {
+            c.moveToFirst();
+            return c.getLong(0);
+        }
+    }
+
+
+    private long insertTask(DateTime start, DateTime due)
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, "Task");
+        task.set(TaskAdapter.STATUS, Tasks.STATUS_NEEDS_ACTION);
+        task.set(TaskAdapter.IS_CLOSED, false);
+        if (start != null)
+        {
+            task.set(TaskAdapter.DTSTART, start);
+        }
+        task.set(TaskAdapter.DUE, due);
+        return mProcessor.insert(mDb, task, false).id();
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.tasks.contract.TaskContract.Categories;
+import org.dmfs.tasks.contract.TaskContract.TaskLists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link MetadataCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MetadataCacheTest
+{
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private MetadataCache mCache;
+
+
+    @Before
+    public void setUp()
+    {
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mCache = MetadataCache.of(mDb);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+    }
+
+
+    @Test
+    public void testTaskLists()
+    {
+        long list1 = insertList("account1", true);
+        MetadataCache.TaskList taskList = mCache.taskList(mDb, list1);
+        assertThat(taskList.accountName(), is("account1"));
+        assertThat(taskList.accountType(), is("org.dmfs.test"));
+        assertThat(taskList.isVisible(), is(true));
+
+        // the lists are cached, so a list which has been inserted without invalidating the cache is not visible
+        long list2 = insertList("account2", false);
+        assertThat(mCache.taskList(mDb, list2), is(nullValue()));
+
+        mCache.invalidateTaskLists(mDb);
+        assertThat(mCache.taskList(mDb, list2).accountName(), is("account2"));
+        assertThat(mCache.taskList(mDb, list2).isVisible(), is(false));
+    }
+
+
+    @Test
+    public void testTaskListsCommit()
+    {
+        long list = insertList("account", true);
+        assertThat(mCache.taskList(mDb, list).isVisible(), is(true));
+
+        mDb.beginTransactionWithListener(mCache.transactionListener());
+        try
+        {
+            setVisible(list, false);
+            assertThat(mCache.taskList(mDb, list).isVisible(), is(false));
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(mCache.taskList(mDb, list).isVisible(), is(false));
+    }
+
+
+    @Test
+    public void testTaskListsLoadedDuringCommit()
+    {
+        long list = insertList("account", true);
+        assertThat(mCache.taskList(mDb, list).isVisible(), is(true));
+
+        mDb.beginTransactionWithListener(mCache.transactionListener());
+        try
+        {
+            setVisible(list, false);
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+
+        // lists which have been cached while the commit was in progress may be outdated, so they are dropped when the transaction has ended
+        assertThat(mCache.taskList(mDb, list).isVisible(), is(false));
+        ContentValues values = new ContentValues();
+        values.put(TaskLists.VISIBLE, 1);
+        mDb.update(Tables.LISTS, values, TaskLists._ID + "=" + list, null);
+        assertThat(mCache.taskList(mDb, list).isVisible(), is(false));
+
+        mCache.onTransactionEnded();
+        assertThat(mCache.taskList(mDb, list).isVisible(), is(true));
+    }
+
+
+    @Test
+    public void testTaskListsRollback()
+    {
+        long list = insertList("account", true);
+        assertThat(mCache.taskList(mDb, list).isVisible(), is(true));
+
+        mDb.beginTransactionWithListener(mCache.transactionListener());
+        try
+        {
+            setVisible(list, false);
+            assertThat(mCache.taskList(mDb, list).isVisible(), is(false));
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(mCache.taskList(mDb, list).isVisible(), is(true));
+    }
+
+
+    @Test
+    public void testCategories()
+    {
+        long id = insertCategory("account", "Work", 0xff0000);
+        MetadataCache.Category category = mCache.category(mDb, "account", "org.dmfs.test", "Work");
+        assertThat(category.id(), is(id));
+        assertThat(category.name(), is("Work"));
+        assertThat(category.color(), is(0xff0000));
+        assertThat(mCache.category(mDb, "other", "org.dmfs.test", "Work"), is(nullValue()));
+        assertThat(mCache.category(mDb, "account", "org.dmfs.test", "work"), is(nullValue()));
+
+        // a category which has been inserted in a rolled back transaction is forgotten
+        mDb.beginTransactionWithListener(mCache.transactionListener());
+        try
+        {
+            long newId = insertCategory("account", "Home", 0x00ff00);
+            mCache.putCategory(mDb, "account", "org.dmfs.test", new MetadataCache.Category(newId, "Home", 0x00ff00));
+            assertThat(mCache.category(mDb, "account", "org.dmfs.test", "Home").id(), is(newId));
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(mCache.category(mDb, "account", "org.dmfs.test", "Home"), is(nullValue()));
+
+        // updated categories are reloaded after the transaction has been committed
+        mDb.beginTransactionWithListener(mCache.transactionListener());
+        try
+        {
+            ContentValues values = new ContentValues();
+            values.put(Categories.COLOR, 0x0000ff);
+            mDb.update(Tables.CATEGORIES, values, Categories._ID + "=" + id, null);
+            mCache.invalidateCategories(mDb);
+            assertThat(mCache.category(mDb, "account", "org.dmfs.test", "Work").color(), is(0x0000ff));
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(mCache.category(mDb, "account", "org.dmfs.test", "Work"), is(notNullValue()));
+        assertThat(mCache.category(mDb, "account", "org.dmfs.test", "Work").color(), is(0x0000ff));
+    }
+
+
+    private long insertList(String accountName, boolean visible)
+    {
+        ContentValues values = new ContentValues();
+        values.put(TaskLists.ACCOUNT_NAME, accountName);
+        values.put(TaskLists.ACCOUNT_TYPE, "org.dmfs.test");
+        values.put(TaskLists.LIST_NAME, "list");
+        values.put(TaskLists.VISIBLE, visible ? 1 : 0);
+        return mDb.insert(Tables.LISTS, null, values);
+    }
+
+
+    private void setVisible(long listId, boolean visible)
+    {
+        ContentValues values = new ContentValues();
+        values.put(TaskLists.VISIBLE, visible ? 1 : 0);
+        mDb.update(Tables.LISTS, values, TaskLists._ID + "=" + listId, null);
+        mCache.invalidateTaskLists(mDb);
+    }
+
+
+    private long insertCategory(String accountName, String name, int color)
+    {
+        ContentValues values = new ContentValues();
+        values.put(Categories.ACCOUNT_NAME, accountName);
+        values.put(Categories.ACCOUNT_TYPE, "org.dmfs.test");
+        values.put(Categories.NAME, name);
+        values.put(Categories.COLOR, color);
+        return mDb.insert(Tables.CATEGORIES, null, values);
+    }
+}
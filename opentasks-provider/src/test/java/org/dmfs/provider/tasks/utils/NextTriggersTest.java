@@ -0,0 +1,294 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.NextTriggerColumns;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.CursorContentValuesInstanceAdapter;
+import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.InstanceAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.Duration;
+import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link NextTriggers} by comparing its results to the date-times of the instances after random changes.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class NextTriggersTest
+{
+    private final static TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+    private final static TimeZone TOKYO = TimeZone.getTimeZone("Asia/Tokyo");
+    private final static long HOUR = 3600L * 1000L;
+    private final static long START = new DateTime(BERLIN, 2019, 0, 15, 12, 0, 0).getTimestamp();
+
+    private TimeZone mDefaultTimeZone;
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+    private Random mRandom;
+
+
+    @Before
+    public void setUp()
+    {
+        mDefaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(BERLIN);
+
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new Instantiating(new TaskCommitProcessor());
+        mRandom = new Random(1234);
+
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+
+    @Test
+    public void testRandomChanges()
+    {
+        List<Long> taskIds = new ArrayList<>();
+        for (int i = 0; i < 40; ++i)
+        {
+            taskIds.add(insertTask());
+        }
+        assertTriggers();
+
+        for (int i = 0; i < 60; ++i)
+        {
+            long taskId = taskIds.get(mRandom.nextInt(taskIds.size()));
+            try (Cursor c = mDb.query(Tables.TASKS, null, Tasks._ID + "=" + taskId, null, null, null, null))
+            {
+                if (!c.moveToFirst())
+                {
+                    // already removed
+                    continue;
+                }
+                TaskAdapter task = new CursorContentValuesTaskAdapter(c, new ContentValues());
+                switch (mRandom.nextInt(4))
+                {
+                    case 0:
+                        mProcessor.delete(mDb, task, mRandom.nextBoolean());
+                        break;
+                    case 1:
+                        boolean closed = mRandom.nextBoolean();
+                        task.set(TaskAdapter.IS_CLOSED, closed);
+                        task.set(TaskAdapter.STATUS, closed ? Tasks.STATUS_COMPLETED : Tasks.STATUS_NEEDS_ACTION);
+                        mProcessor.update(mDb, task, false);
+                        break;
+                    default:
+                        setDates(task);
+                        mProcessor.update(mDb, task, false);
+                }
+            }
+            assertTriggers();
+        }
+
+        // a rebuild results in the same triggers
+        NextTriggers.rebuild(mDb);
+        assertTriggers();
+
+        // the triggers of all-day tasks move with the local time zone
+        TimeZone.setDefault(TOKYO);
+        NextTriggers.updateFloating(mDb);
+        assertTriggers();
+    }
+
+
+    private void assertTriggers()
+    {
+        List<long[]> expected = expectedTriggers();
+        for (long time = START - 48 * HOUR; time < START + 24 * 30 * HOUR; time += 7 * HOUR)
+        {
+            assertThat(NextTriggers.next(mDb, time), is(expectedNext(expected, time)));
+            assertThat(triggered(time, time + 19 * HOUR), is(expectedTriggered(expected, time, time + 19 * HOUR)));
+        }
+    }
+
+
+    /**
+     * Returns the instance id, the type and the timestamp of all triggers, as determined from the date-times of the open instances.
+     */
+    private List<long[]> expectedTriggers()
+    {
+        List<long[]> result = new ArrayList<>();
+        try (Cursor c = mDb.query(Tables.INSTANCE_VIEW, null, Instances.IS_CLOSED + "=0 and " + Tasks._DELETED + "=0", null, null, null, null))
+        {
+            while (c.moveToNext())
+            {
+                InstanceAdapter instance = new CursorContentValuesInstanceAdapter(InstanceAdapter._ID.getFrom(c), c, null);
+                DateTime start = instance.valueOf(InstanceAdapter.INSTANCE_START);
+                if (start != null)
+                {
+                    result.add(new long[] { instance.id(), NextTriggerColumns.TYPE_START, timestamp(start) });
+                }
+                DateTime due = instance.valueOf(InstanceAdapter.INSTANCE_DUE);
+                if (due != null)
+                {
+                    result.add(new long[] { instance.id(), NextTriggerColumns.TYPE_DUE, timestamp(due) });
+                }
+            }
+        }
+        return result;
+    }
+
+
+    private Long expectedNext(List<long[]> triggers, long after)
+    {
+        Long result = null;
+        for (long[] trigger : triggers)
+        {
+            if (trigger[2] > after && (result == null || trigger[2] < result))
+            {
+                result = trigger[2];
+            }
+        }
+        return result;
+    }
+
+
+    private TreeMap<Long, Integer> expectedTriggered(List<long[]> triggers, long after, long until)
+    {
+        TreeMap<Long, Integer> result = new TreeMap<>();
+        for (long[] trigger : triggers)
+        {
+            if (trigger[2] > after && trigger[2] <= until)
+            {
+                // due wins over start
+                Integer type = result.get(trigger[0]);
+                result.put(trigger[0], type == null ? (int) trigger[1] : Math.max(type, (int) trigger[1]));
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the actual timestamp of the given {@link DateTime}, floating and all-day date-times are taken in the local time zone.
+     */
+    private static long timestamp(DateTime dateTime)
+    {
+        return dateTime.isFloating() ?
+                new DateTime(TimeZone.getDefault(), dateTime.getYear(), dateTime.getMonth(), dateTime.getDayOfMonth(), dateTime.getHours(),
+                        dateTime.getMinutes(), dateTime.getSeconds()).getTimestamp() : dateTime.getTimestamp();
+    }
+
+
+    private TreeMap<Long, Integer> triggered(long after, long until)
+    {
+        TreeMap<Long, Integer> result = new TreeMap<>();
+        try (Cursor c = NextTriggers.triggered(mDb, after, until))
+        {
+            while (c.moveToNext())
+            {
+                result.put(c.getLong(0), c.getInt(1));
+            }
+        }
+        return result;
+    }
+
+
+    private long insertTask()
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, "Task");
+        task.set(TaskAdapter.STATUS, Tasks.STATUS_NEEDS_ACTION);
+        task.set(TaskAdapter.IS_CLOSED, false);
+        setDates(task);
+        return mProcessor.insert(mDb, task, false).id();
+    }
+
+
+    private void setDates(TaskAdapter task)
+    {
+        boolean allDay = mRandom.nextInt(4) == 0;
+        DateTime start = new DateTime(BERLIN, START + (mRandom.nextInt(24 * 20) - 48) * HOUR);
+        if (allDay)
+        {
+            start = start.toAllDay();
+        }
+        DateTime due = allDay ? start.addDuration(new Duration(1, 1 + mRandom.nextInt(3), 0)) : new DateTime(BERLIN,
+                start.getTimestamp() + (1 + mRandom.nextInt(72)) * HOUR);
+
+        // 0: start and due, 1: due only, 2: start only, 3: neither start nor due
+        int dates = mRandom.nextInt(4);
+        task.set(TaskAdapter.DTSTART, dates == 0 || dates == 2 ? start : null);
+        task.set(TaskAdapter.DUE, dates == 0 || dates == 1 ? due : null);
+        task.set(TaskAdapter.IS_ALLDAY, allDay);
+
+        if (dates == 0 && mRandom.nextBoolean())
+        {
+            try
+            {
+                task.set(TaskAdapter.RRULE, new RecurrenceRule("FREQ=DAILY;INTERVAL=" + (2 + mRandom.nextInt(3)) + ";COUNT=" + (2 + mRandom.nextInt(6))));
+            }
+            catch (InvalidRecurrenceRuleException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+        else
+        {
+            task.set(TaskAdapter.RRULE, null);
+        }
+    }
+}
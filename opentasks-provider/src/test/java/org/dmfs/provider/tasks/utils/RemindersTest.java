@@ -0,0 +1,278 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.dmfs.provider.tasks.TaskDatabaseHelper;
+import org.dmfs.provider.tasks.TaskDatabaseHelper.Tables;
+import org.dmfs.provider.tasks.handler.AlarmHandler;
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.CursorContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.provider.tasks.processors.EntityProcessor;
+import org.dmfs.provider.tasks.processors.tasks.Instantiating;
+import org.dmfs.provider.tasks.processors.tasks.TaskCommitProcessor;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Alarms;
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.contract.TaskContract.Properties;
+import org.dmfs.tasks.contract.TaskContract.Property.Alarm;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link Reminders}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RemindersTest
+{
+    private final static TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+    private final static TimeZone TOKYO = TimeZone.getTimeZone("Asia/Tokyo");
+
+    private TimeZone mDefaultTimeZone;
+    private TaskDatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private EntityProcessor<TaskAdapter> mProcessor;
+    private long mListId;
+
+
+    @Before
+    public void setUp()
+    {
+        mDefaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(BERLIN);
+
+        mHelper = new TaskDatabaseHelper(RuntimeEnvironment.application, null);
+        mDb = mHelper.getWritableDatabase();
+        mProcessor = new Instantiating(new TaskCommitProcessor());
+
+        ContentValues listValues = new ContentValues();
+        listValues.put(TaskContract.TaskLists.ACCOUNT_NAME, "test");
+        listValues.put(TaskContract.TaskLists.ACCOUNT_TYPE, TaskContract.LOCAL_ACCOUNT_TYPE);
+        mListId = mDb.insert(Tables.LISTS, null, listValues);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mHelper.close();
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+
+    @Test
+    public void testSingleTask()
+    {
+        long taskId = insertTask(new DateTime(BERLIN, 2019, 0, 15, 10, 0, 0), new DateTime(BERLIN, 2019, 0, 15, 12, 0, 0), null);
+        long startReminder = new DateTime(BERLIN, 2019, 0, 15, 9, 55, 0).getTimestamp();
+        long dueReminder = new DateTime(BERLIN, 2019, 0, 15, 11, 45, 0).getTimestamp();
+
+        assertThat(Reminders.next(mDb, Long.MIN_VALUE), is(nullValue()));
+
+        long dueAlarm = insertAlarm(taskId, 15, Alarm.ALARM_REFERENCE_DUE_DATE, Alarm.ALARM_TYPE_MESSAGE);
+        assertThat(Reminders.next(mDb, Long.MIN_VALUE), is(dueReminder));
+
+        long startAlarm = insertAlarm(taskId, 5, Alarm.ALARM_REFERENCE_START_DATE, Alarm.ALARM_TYPE_MESSAGE);
+        // alarms without a type don't trigger
+        insertAlarm(taskId, 30, Alarm.ALARM_REFERENCE_START_DATE, Alarm.ALARM_TYPE_NOTHING);
+        assertThat(Reminders.next(mDb, Long.MIN_VALUE), is(startReminder));
+        assertThat(Reminders.next(mDb, startReminder), is(dueReminder));
+        assertThat(Reminders.next(mDb, dueReminder), is(nullValue()));
+        assertThat(triggered(Long.MIN_VALUE, Long.MAX_VALUE), is(Arrays.asList(startAlarm, dueAlarm)));
+        assertThat(triggered(startReminder, dueReminder), is(Arrays.asList(dueAlarm)));
+
+        // moving the alarm moves the reminder
+        ContentValues values = new ContentValues();
+        values.put(Alarm.MINUTES_BEFORE, 60);
+        values.put(Alarm.REFERENCE, Alarm.ALARM_REFERENCE_DUE_DATE);
+        values.put(Alarm.ALARM_TYPE, Alarm.ALARM_TYPE_MESSAGE);
+        new AlarmHandler().update(mDb, taskId, dueAlarm, values, null, false);
+        assertThat(Reminders.next(mDb, startReminder), is(new DateTime(BERLIN, 2019, 0, 15, 11, 0, 0).getTimestamp()));
+
+        // removing an alarm removes its reminders
+        mDb.delete(Tables.PROPERTIES, Properties.PROPERTY_ID + "=" + startAlarm, null);
+        assertThat(triggered(Long.MIN_VALUE, Long.MAX_VALUE), is(Arrays.asList(dueAlarm)));
+
+        // delivered reminders are marked
+        Reminders.delivered(mDb, Long.MIN_VALUE, Long.MAX_VALUE, 1234L);
+        try (Cursor c = mDb.query(Tables.ALARMS, new String[] { Alarms.LAST_TRIGGER }, null, null, null, null, null))
+        {
+            assertThat(c.moveToFirst(), is(true));
+            assertThat(c.getLong(0), is(1234L));
+        }
+    }
+
+
+    @Test
+    public void testRecurringTask() throws InvalidRecurrenceRuleException
+    {
+        long taskId = insertTask(null, new DateTime(BERLIN, 2019, 0, 15, 12, 0, 0), new RecurrenceRule("FREQ=DAILY;COUNT=3"));
+        long alarmId = insertAlarm(taskId, 10, Alarm.ALARM_REFERENCE_DUE_DATE, Alarm.ALARM_TYPE_MESSAGE);
+
+        // one reminder per expanded instance
+        List<Long> expected = new ArrayList<>();
+        try (Cursor c = mDb.query(Tables.INSTANCES, null, Instances.TASK_ID + "=" + taskId, null, null, null, null))
+        {
+            assertThat(c.getCount() > 0, is(true));
+            while (c.moveToNext())
+            {
+                expected.add(alarmId);
+            }
+        }
+        assertThat(triggered(Long.MIN_VALUE, Long.MAX_VALUE), is(expected));
+        assertThat(Reminders.next(mDb, Long.MIN_VALUE), is(new DateTime(BERLIN, 2019, 0, 15, 11, 50, 0).getTimestamp()));
+        assertThat(Reminders.next(mDb, new DateTime(BERLIN, 2019, 0, 15, 11, 50, 0).getTimestamp()),
+                is(new DateTime(BERLIN, 2019, 0, 16, 11, 50, 0).getTimestamp()));
+
+        // closed tasks don't have any reminders
+        try (Cursor c = mDb.query(Tables.TASKS, null, Tasks._ID + "=" + taskId, null, null, null, null))
+        {
+            c.moveToFirst();
+            TaskAdapter task = new CursorContentValuesTaskAdapter(c, new ContentValues());
+            task.set(TaskAdapter.IS_CLOSED, true);
+            task.set(TaskAdapter.STATUS, Tasks.STATUS_COMPLETED);
+            mProcessor.update(mDb, task, false);
+        }
+        assertThat(Reminders.next(mDb, Long.MIN_VALUE), is(nullValue()));
+
+        // a rebuild doesn't bring them back
+        Reminders.rebuild(mDb);
+        assertThat(Reminders.next(mDb, Long.MIN_VALUE), is(nullValue()));
+    }
+
+
+    @Test
+    public void testFloatingAndAllDayTasks()
+    {
+        long floatingTask = insertTask(null, new DateTime(2019, 0, 15, 12, 0, 0), null);
+        insertAlarm(floatingTask, 10, Alarm.ALARM_REFERENCE_DUE_DATE, Alarm.ALARM_TYPE_MESSAGE);
+        long allDayTask = insertTask(null, new DateTime(2019, 0, 17), null);
+        insertAlarm(allDayTask, 60, Alarm.ALARM_REFERENCE_DUE_DATE, Alarm.ALARM_TYPE_MESSAGE);
+
+        // floating and all-day reminders trigger at the local time
+        assertThat(Reminders.next(mDb, Long.MIN_VALUE), is(new DateTime(BERLIN, 2019, 0, 15, 11, 50, 0).getTimestamp()));
+        assertThat(Reminders.next(mDb, new DateTime(BERLIN, 2019, 0, 15, 11, 50, 0).getTimestamp()),
+                is(new DateTime(BERLIN, 2019, 0, 16, 23, 0, 0).getTimestamp()));
+
+        // and move with the local time zone
+        TimeZone.setDefault(TOKYO);
+        Reminders.updateFloating(mDb);
+        assertThat(Reminders.next(mDb, Long.MIN_VALUE), is(new DateTime(TOKYO, 2019, 0, 15, 11, 50, 0).getTimestamp()));
+        assertThat(Reminders.next(mDb, new DateTime(TOKYO, 2019, 0, 15, 11, 50, 0).getTimestamp()),
+                is(new DateTime(TOKYO, 2019, 0, 16, 23, 0, 0).getTimestamp()));
+    }
+
+
+    @Test
+    public void testWithoutMinutesBefore()
+    {
+        long zonedTask = insertTask(null, new DateTime(BERLIN, 2019, 0, 15, 12, 0, 0), null);
+        long floatingTask = insertTask(null, new DateTime(2019, 0, 16, 12, 0, 0), null);
+
+        // alarms without minutes before (e.g. written by an older version) trigger at the reference time, the rebuild during an upgrade must not fail
+        for (long taskId : new long[] { zonedTask, floatingTask })
+        {
+            ContentValues values = new ContentValues();
+            values.put(Properties.TASK_ID, taskId);
+            values.put(Properties.MIMETYPE, Alarm.CONTENT_ITEM_TYPE);
+            values.putNull(Alarm.MINUTES_BEFORE);
+            values.put(Alarm.REFERENCE, Alarm.ALARM_REFERENCE_DUE_DATE);
+            values.put(Alarm.ALARM_TYPE, Alarm.ALARM_TYPE_MESSAGE);
+            mDb.insert(Tables.PROPERTIES, null, values);
+        }
+        Reminders.rebuild(mDb);
+
+        assertThat(Reminders.next(mDb, Long.MIN_VALUE), is(new DateTime(BERLIN, 2019, 0, 15, 12, 0, 0).getTimestamp()));
+        assertThat(Reminders.next(mDb, new DateTime(BERLIN, 2019, 0, 15, 12, 0, 0).getTimestamp()),
+                is(new DateTime(BERLIN, 2019, 0, 16, 12, 0, 0).getTimestamp()));
+
+        // same for updates of a single task
+        Reminders.update(mDb, zonedTask);
+        Reminders.update(mDb, floatingTask);
+        assertThat(triggered(Long.MIN_VALUE, Long.MAX_VALUE).size(), is(2));
+    }
+
+
+    private List<Long> triggered(long after, long until)
+    {
+        List<Long> result = new ArrayList<>();
+        try (Cursor c = Reminders.triggered(mDb, after, until))
+        {
+            while (c.moveToNext())
+            {
+                result.add(c.getLong(0));
+            }
+        }
+        return result;
+    }
+
+
+    private long insertTask(DateTime start, DateTime due, RecurrenceRule rule)
+    {
+        TaskAdapter task = new ContentValuesTaskAdapter(new ContentValues());
+        task.set(TaskAdapter.LIST_ID, mListId);
+        task.set(TaskAdapter.TITLE, "Task");
+        task.set(TaskAdapter.STATUS, Tasks.STATUS_NEEDS_ACTION);
+        task.set(TaskAdapter.IS_CLOSED, false);
+        if (start != null)
+        {
+            task.set(TaskAdapter.DTSTART, start);
+        }
+        task.set(TaskAdapter.DUE, due);
+        if (rule != null)
+        {
+            task.set(TaskAdapter.RRULE, rule);
+        }
+        return mProcessor.insert(mDb, task, false).id();
+    }
+
+
+    private long insertAlarm(long taskId, int minutesBefore, int reference, int type)
+    {
+        ContentValues values = new ContentValues();
+        values.put(Properties.TASK_ID, taskId);
+        values.put(Properties.MIMETYPE, Alarm.CONTENT_ITEM_TYPE);
+        values.put(Alarm.MINUTES_BEFORE, minutesBefore);
+        values.put(Alarm.REFERENCE, reference);
+        values.put(Alarm.ALARM_TYPE, type);
+        return new AlarmHandler().insert(mDb, taskId, values, false);
+    }
+}
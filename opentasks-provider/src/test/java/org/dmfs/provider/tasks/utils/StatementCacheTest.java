@@ -0,0 +1,193 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Test {@link StatementCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class StatementCacheTest
+{
+    private SQLiteDatabase mDb;
+
+
+    @Before
+    public void setUp()
+    {
+        mDb = SQLiteDatabase.create(null);
+        mDb.execSQL("CREATE TABLE test (_id INTEGER PRIMARY KEY, a TEXT, b INTEGER)");
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        mDb.close();
+    }
+
+
+    @Test
+    public void testInTrackedTransaction()
+    {
+        StatementCache cache = StatementCache.of(mDb);
+        mDb.beginTransactionWithListener(cache.transactionListener());
+        try
+        {
+            exercise(cache);
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(DatabaseUtils.queryNumEntries(mDb, "test"), is(50L));
+    }
+
+
+    @Test
+    public void testRollback()
+    {
+        StatementCache cache = StatementCache.of(mDb);
+        mDb.beginTransactionWithListener(cache.transactionListener());
+        try
+        {
+            exercise(cache);
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(DatabaseUtils.queryNumEntries(mDb, "test"), is(0L));
+
+        // the cache must still work after a rollback
+        exercise(cache);
+        assertThat(DatabaseUtils.queryNumEntries(mDb, "test"), is(50L));
+    }
+
+
+    @Test
+    public void testNestedTransaction()
+    {
+        StatementCache cache = StatementCache.of(mDb);
+        mDb.beginTransactionWithListener(cache.transactionListener());
+        try
+        {
+            mDb.beginTransactionWithListener(cache.transactionListener());
+            try
+            {
+                ContentValues values = new ContentValues();
+                values.put("a", "nested");
+                cache.insert(mDb, "test", values);
+                mDb.setTransactionSuccessful();
+            }
+            finally
+            {
+                mDb.endTransaction();
+            }
+            // the statements of the outer transaction must still be usable
+            exercise(cache);
+            mDb.setTransactionSuccessful();
+        }
+        finally
+        {
+            mDb.endTransaction();
+        }
+        assertThat(DatabaseUtils.queryNumEntries(mDb, "test"), is(51L));
+    }
+
+
+    @Test
+    public void testWithoutTransaction()
+    {
+        exercise(StatementCache.of(mDb));
+        assertThat(DatabaseUtils.queryNumEntries(mDb, "test"), is(50L));
+    }
+
+
+    /**
+     * Inserts 100 rows, updates them with varying column sets and deletes every other row.
+     */
+    private void exercise(StatementCache cache)
+    {
+        long[] ids = new long[100];
+        for (int i = 0; i < ids.length; ++i)
+        {
+            ContentValues values = new ContentValues();
+            values.put("a", "row " + i);
+            if (i % 3 == 0)
+            {
+                values.put("b", i);
+            }
+            ids[i] = cache.insert(mDb, "test", values);
+            assertThat(ids[i] > 0, is(true));
+        }
+
+        for (int i = 0; i < ids.length; ++i)
+        {
+            ContentValues values = new ContentValues();
+            values.put("b", i * 2);
+            if (i % 2 == 0)
+            {
+                values.putNull("a");
+            }
+            assertThat(cache.update(mDb, "test", values, "_id", ids[i]), is(1));
+        }
+
+        for (int i = 0; i < ids.length; i += 2)
+        {
+            assertThat(cache.delete(mDb, "test", "_id", ids[i]), is(1));
+        }
+
+        for (int i = 1; i < ids.length; i += 2)
+        {
+            try (Cursor c = mDb.query("test", new String[] { "a", "b" }, "_id=" + ids[i], null, null, null, null))
+            {
+                assertThat(c.moveToFirst(), is(true));
+                assertThat(c.getString(0), is("row " + i));
+                assertThat(c.getInt(1), is(i * 2));
+            }
+        }
+
+        // a selection with several arguments
+        ContentValues values = new ContentValues();
+        values.put("b", -1);
+        assertThat(cache.update(mDb, "test", values, "a = ? and b = ?", "row 1", 2), is(1));
+        assertThat(cache.delete(mDb, "test", "b = ?", -1), is(1));
+        assertThat(cache.update(mDb, "test", values, "a = ? and b = ?", "row 1", 2), is(0));
+
+        // put the row back, so we end up with 50 rows
+        values.put("a", "row 1");
+        cache.insert(mDb, "test", values);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.provider.tasks.utils;
+
+import android.content.ContentValues;
+import android.util.Log;
+
+import org.dmfs.provider.tasks.model.ContentValuesTaskAdapter;
+import org.dmfs.provider.tasks.model.TaskAdapter;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Iterator;
+import java.util.Locale;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * A micro benchmark comparing the cost of finding the first instance after "now" by plain iteration and by fast forwarding {@link TaskInstanceIterable}.
+ * <p>
+ * Only runs if the system property <code>benchmark</code> is <code>true</code>.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TaskInstanceIterableBenchmarkTest
+{
+    private final static String TAG = "TaskInstanceIterableBenchmarkTest";
+    private final static int RUNS = 50;
+
+
+    @BeforeClass
+    public static void assumeBenchmark()
+    {
+        // the timings are the only result, so don't bother unless requested
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+
+    @Test
+    public void testDaily() throws Exception
+    {
+        benchmark(DateTime.parse("Europe/Berlin", "20100606T121314"), "FREQ=DAILY;INTERVAL=2");
+    }
+
+
+    @Test
+    public void testAllDayDaily() throws Exception
+    {
+        benchmark(DateTime.parse("20100606"), "FREQ=DAILY;INTERVAL=2");
+    }
+
+
+    @Test
+    public void testHourly() throws Exception
+    {
+        benchmark(DateTime.parse("Europe/Berlin", "20170606T121314"), "FREQ=HOURLY;INTERVAL=3");
+    }
+
+
+    @Test
+    public void testWeekly() throws Exception
+    {
+        benchmark(DateTime.parse("Europe/Berlin", "19900606T121314"), "FREQ=WEEKLY");
+    }
+
+
+    @Test
+    public void testMonthly() throws Exception
+    {
+        benchmark(DateTime.parse("Europe/Berlin", "19900615T121314"), "FREQ=MONTHLY");
+    }
+
+
+    @Test
+    public void testWithByPart() throws Exception
+    {
+        // this one can't be fast forwarded in one step, both should take roughly the same time
+        benchmark(DateTime.parse("Europe/Berlin", "20100606T121314"), "FREQ=WEEKLY;BYDAY=MO,WE,FR");
+    }
+
+
+    private void benchmark(DateTime start, String rule) throws Exception
+    {
+        TaskAdapter taskAdapter = new ContentValuesTaskAdapter(new ContentValues());
+        taskAdapter.set(TaskAdapter.DTSTART, start);
+        taskAdapter.set(TaskAdapter.RRULE, new RecurrenceRule(rule));
+        long now = System.currentTimeMillis();
+
+        DateTime iterated = null;
+        long iteratedStart = System.nanoTime();
+        for (int i = 0; i < RUNS; ++i)
+        {
+            Iterator<DateTime> iterator = new TaskInstanceIterable(taskAdapter).iterator();
+            do
+            {
+                iterated = iterator.next();
+            } while (iterated.getTimestamp() < now);
+        }
+        long iteratedNanos = System.nanoTime() - iteratedStart;
+
+        DateTime fastForwarded = null;
+        long fastForwardedStart = System.nanoTime();
+        for (int i = 0; i < RUNS; ++i)
+        {
+            fastForwarded = new TaskInstanceIterable(taskAdapter, now).iterator().next();
+        }
+        long fastForwardedNanos = System.nanoTime() - fastForwardedStart;
+
+        Log.i(TAG, String.format(Locale.ENGLISH, "%s %s: iterated %.3f ms, fast forwarded %.3f ms", start, rule,
+                iteratedNanos / 1000000.0 / RUNS, fastForwardedNanos / 1000000.0 / RUNS));
+
+        assertThat(fastForwarded, is(iterated));
+    }
+}
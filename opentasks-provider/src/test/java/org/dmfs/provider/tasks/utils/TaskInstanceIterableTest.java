@@ -185,4 +185,101 @@ public class TaskInstanceIterableTest
                         DateTime.parse("Europe/Berlin", "20170624T121314")
                 ));
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void testFastForwarded() throws Exception
+    {
+        TaskAdapter taskAdapter = new ContentValuesTaskAdapter(new ContentValues());
+        taskAdapter.set(TaskAdapter.DTSTART, DateTime.parse("Europe/Berlin", "20170606T121314"));
+        taskAdapter.set(TaskAdapter.RRULE, new RecurrenceRule("FREQ=DAILY;INTERVAL=2;UNTIL=20170624T101314Z"));
+
+        assertThat(new TaskInstanceIterable(taskAdapter, DateTime.parse("Europe/Berlin", "20170615T000000").getTimestamp()),
+                iteratesTo(
+                        DateTime.parse("Europe/Berlin", "20170616T121314"),
+                        DateTime.parse("Europe/Berlin", "20170618T121314"),
+                        DateTime.parse("Europe/Berlin", "20170620T121314"),
+                        DateTime.parse("Europe/Berlin", "20170622T121314"),
+                        DateTime.parse("Europe/Berlin", "20170624T121314")
+                ));
+    }
+
+
+    @Test
+    public void testFastForwardedWithCount() throws Exception
+    {
+        TaskAdapter taskAdapter = new ContentValuesTaskAdapter(new ContentValues());
+        taskAdapter.set(TaskAdapter.DTSTART, DateTime.parse("Europe/Berlin", "20170606T121314"));
+        taskAdapter.set(TaskAdapter.RRULE, new RecurrenceRule("FREQ=DAILY;INTERVAL=2;COUNT=10"));
+
+        assertThat(new TaskInstanceIterable(taskAdapter, DateTime.parse("Europe/Berlin", "20170615T000000").getTimestamp()),
+                iteratesTo(
+                        DateTime.parse("Europe/Berlin", "20170616T121314"),
+                        DateTime.parse("Europe/Berlin", "20170618T121314"),
+                        DateTime.parse("Europe/Berlin", "20170620T121314"),
+                        DateTime.parse("Europe/Berlin", "20170622T121314"),
+                        DateTime.parse("Europe/Berlin", "20170624T121314")
+                ));
+    }
+
+
+    @Test
+    public void testFastForwardedWithRDateAndExDate() throws Exception
+    {
+        TaskAdapter taskAdapter = new ContentValuesTaskAdapter(new ContentValues());
+        taskAdapter.set(TaskAdapter.DTSTART, DateTime.parse("Europe/Berlin", "20170606T121314"));
+        taskAdapter.set(TaskAdapter.RRULE, new RecurrenceRule("FREQ=DAILY;INTERVAL=2;UNTIL=20170624T101314Z"));
+        taskAdapter.set(TaskAdapter.RDATE, new Seq<>(
+                DateTime.parse("Europe/Berlin", "20170607T121314"),
+                DateTime.parse("Europe/Berlin", "20170617T121314"),
+                DateTime.parse("Europe/Berlin", "20170619T121314")
+        ));
+        taskAdapter.set(TaskAdapter.EXDATE, new Seq<>(
+                DateTime.parse("Europe/Berlin", "20170608T121314"),
+                DateTime.parse("Europe/Berlin", "20170618T121314"),
+                DateTime.parse("Europe/Berlin", "20170622T121314")
+        ));
+
+        assertThat(new TaskInstanceIterable(taskAdapter, DateTime.parse("Europe/Berlin", "20170615T000000").getTimestamp()),
+                iteratesTo(
+                        DateTime.parse("Europe/Berlin", "20170616T121314"),
+                        DateTime.parse("Europe/Berlin", "20170617T121314"),
+                        DateTime.parse("Europe/Berlin", "20170619T121314"),
+                        DateTime.parse("Europe/Berlin", "20170620T121314"),
+                        DateTime.parse("Europe/Berlin", "20170624T121314")
+                ));
+    }
+
+
+    @Test
+    public void testFastForwardedMonthly() throws Exception
+    {
+        TaskAdapter taskAdapter = new ContentValuesTaskAdapter(new ContentValues());
+        taskAdapter.set(TaskAdapter.DTSTART, DateTime.parse("Europe/Berlin", "20150115T090000"));
+        taskAdapter.set(TaskAdapter.RRULE, new RecurrenceRule("FREQ=MONTHLY;UNTIL=20170615T070000Z"));
+
+        assertThat(new TaskInstanceIterable(taskAdapter, DateTime.parse("Europe/Berlin", "20170301T000000").getTimestamp()),
+                iteratesTo(
+                        DateTime.parse("Europe/Berlin", "20170315T090000"),
+                        DateTime.parse("Europe/Berlin", "20170415T090000"),
+                        DateTime.parse("Europe/Berlin", "20170515T090000"),
+                        DateTime.parse("Europe/Berlin", "20170615T090000")
+                ));
+    }
+
+
+    @Test
+    public void testFastForwardedAllDay() throws Exception
+    {
+        TaskAdapter taskAdapter = new ContentValuesTaskAdapter(new ContentValues());
+        taskAdapter.set(TaskAdapter.DTSTART, DateTime.parse("20170606"));
+        taskAdapter.set(TaskAdapter.RRULE, new RecurrenceRule("FREQ=DAILY;UNTIL=20170612"));
+
+        assertThat(new TaskInstanceIterable(taskAdapter, DateTime.parse("20170609T120000Z").getTimestamp()),
+                iteratesTo(
+                        DateTime.parse("20170610"),
+                        DateTime.parse("20170611"),
+                        DateTime.parse("20170612")
+                ));
+    }
+}
@@ -33,6 +33,7 @@ import org.dmfs.tasks.groupings.cursorloaders.TimeRangeCursorFactory;
 import org.dmfs.tasks.groupings.cursorloaders.TimeRangeStartCursorFactory;
 import org.dmfs.tasks.groupings.cursorloaders.TimeRangeStartCursorLoaderFactory;
 import org.dmfs.tasks.model.TaskFieldAdapters;
+import org.dmfs.tasks.utils.BucketChildDescriptor;
 import org.dmfs.tasks.utils.DateFormatter;
 import org.dmfs.tasks.utils.DateFormatter.DateFormatContext;
 import org.dmfs.tasks.utils.ExpandableChildDescriptor;
@@ -293,12 +294,9 @@ public class ByStartDate extends AbstractGroupingFactory
     @Override
     ExpandableChildDescriptor makeExpandableChildDescriptor(String authority)
     {
-        // Note that we're using INSTANCE_START_SORTING to get correct grouping of all-day tasks
-        return new ExpandableChildDescriptor(Instances.getContentUri(authority), INSTANCE_PROJECTION, Instances.VISIBLE + "=1 and (" + Instances.IS_ALLDAY
-                + "=0 and (((" + Instances.INSTANCE_START + ">=?) and (" + Instances.INSTANCE_START + "<?)) or ((" + Instances.INSTANCE_START + ">=? or "
-                + Instances.INSTANCE_START + " is ?) and ? is null)) or " + Instances.IS_ALLDAY + "=1 and (((" + Instances.INSTANCE_START + ">=?+?) and ("
-                + Instances.INSTANCE_START + "<?+?)) or ((" + Instances.INSTANCE_START + ">=?+? or " + Instances.INSTANCE_START + " is ?) and ? is null)))",
-                Instances.INSTANCE_START, 0, 1, 0, 1, 1, 0, 9, 1, 10, 0, 9, 1, 1).setViewDescriptor(TASK_VIEW_DESCRIPTOR);
+        // load the instances of all time ranges with a single query
+        return new BucketChildDescriptor(authority, Instances.INSTANCE_START, INSTANCE_PROJECTION, Instances.VISIBLE + "=1", Instances.INSTANCE_START)
+                .setViewDescriptor(TASK_VIEW_DESCRIPTOR);
     }
 
 
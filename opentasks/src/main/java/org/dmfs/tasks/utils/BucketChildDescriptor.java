@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.groupings.cursorloaders.TimeRangeCursorFactory;
+import org.dmfs.tasks.groupings.filters.AbstractFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import androidx.loader.content.CursorLoader;
+
+
+/**
+ * Describes how to load the children of all groups of a time range grouping (as created by {@link TimeRangeCursorFactory}) at once.
+ * <p>
+ * Instead of one query per group, the start and end times of all groups are sent to the provider as {@link Instances#BUCKETS_PARAMETER} and the result is
+ * split into the groups in memory, see {@link #split(Uri, Cursor, Cursor)}.
+ */
+public class BucketChildDescriptor extends ExpandableChildDescriptor
+{
+    private final String mAuthority;
+    private final String mBucketColumn;
+
+
+    /**
+     * Create a new {@link BucketChildDescriptor} using the given values.
+     *
+     * @param authority
+     *         The authority of the task provider.
+     * @param bucketColumn
+     *         The column to group the instances by, either {@link Instances#INSTANCE_DUE} or {@link Instances#INSTANCE_START}.
+     * @param projection
+     *         The projection of the children.
+     * @param selection
+     *         The selection of the children, it must not contain any arguments.
+     * @param sortOrder
+     *         The sort order of the children within a group.
+     */
+    public BucketChildDescriptor(String authority, String bucketColumn, String[] projection, String selection, String sortOrder)
+    {
+        super();
+        mAuthority = authority;
+        mBucketColumn = bucketColumn;
+        mProjection = projection;
+        mSelection = selection;
+        mSortOrder = sortOrder;
+    }
+
+
+    /**
+     * Get a new {@link CursorLoader} that loads the children of all groups in the given group {@link Cursor}.
+     *
+     * @param context
+     *         A {@link Context}.
+     * @param groupCursor
+     *         The {@link Cursor} with all the groups.
+     * @param filter
+     *         An additional {@link AbstractFilter} to apply to the selection, may be <code>null</code>.
+     *
+     * @return A new {@link CursorLoader} instance.
+     */
+    public CursorLoader getBucketCursorLoader(Context context, Cursor groupCursor, AbstractFilter filter)
+    {
+        String selection = mSelection;
+        String[] selectionArgs = null;
+        if (filter != null)
+        {
+            StringBuilder selectionBuilder = new StringBuilder(120);
+            if (mSelection != null)
+            {
+                selectionBuilder.append("(").append(mSelection).append(") and ");
+            }
+            selectionBuilder.append("(");
+            filter.getSelection(selectionBuilder);
+            selectionBuilder.append(")");
+            selection = selectionBuilder.toString();
+
+            List<String> selectionArgList = new ArrayList<String>();
+            filter.getSelectionArgs(selectionArgList);
+            selectionArgs = selectionArgList.toArray(new String[selectionArgList.size()]);
+        }
+
+        return new CursorLoader(context, Instances.getBucketsContentUri(mAuthority, mBucketColumn, boundaries(groupCursor)), mProjection, selection,
+                selectionArgs, mSortOrder);
+    }
+
+
+    /**
+     * Splits the children into the groups.
+     *
+     * @param uri
+     *         The {@link Uri} the children have been loaded from.
+     * @param groupCursor
+     *         The {@link Cursor} with all the groups.
+     * @param children
+     *         The {@link Cursor} with the children of all groups, as loaded by the {@link CursorLoader} returned by {@link #getBucketCursorLoader(Context,
+     *         Cursor, AbstractFilter)}.
+     *
+     * @return An array with the children {@link Cursor} of each group position.
+     */
+    public Cursor[] split(Uri uri, Cursor groupCursor, Cursor children)
+    {
+        long[] boundaries = parse(uri.getQueryParameter(Instances.BUCKETS_PARAMETER));
+
+        // the children are sorted by bucket, so the children of each group are a contiguous range of rows
+        int[] buckets = new int[children.getCount()];
+        int bucketIndex = children.getColumnIndexOrThrow(Instances.BUCKET);
+        for (int i = 0; i < buckets.length; ++i)
+        {
+            children.moveToPosition(i);
+            buckets[i] = children.getInt(bucketIndex);
+        }
+
+        Cursor[] result = new Cursor[groupCursor.getCount()];
+        int startIndex = groupCursor.getColumnIndexOrThrow(TimeRangeCursorFactory.RANGE_START);
+        int endIndex = groupCursor.getColumnIndexOrThrow(TimeRangeCursorFactory.RANGE_END);
+        int groupPosition = groupCursor.getPosition();
+        try
+        {
+            for (int i = 0; i < result.length; ++i)
+            {
+                groupCursor.moveToPosition(i);
+                int first;
+                int last;
+                if (groupCursor.isNull(startIndex) && groupCursor.isNull(endIndex))
+                {
+                    // the group of instances without a value
+                    first = Instances.BUCKET_NONE;
+                    last = Instances.BUCKET_NONE + 1;
+                }
+                else
+                {
+                    first = groupCursor.isNull(startIndex) ? 0 : upperBound(boundaries, groupCursor.getLong(startIndex));
+                    last = groupCursor.isNull(endIndex) ? Integer.MAX_VALUE : upperBound(boundaries, groupCursor.getLong(endIndex));
+                }
+                int offset = lowerBound(buckets, first);
+                result[i] = new SliceCursor(children, offset, lowerBound(buckets, last) - offset);
+            }
+        }
+        finally
+        {
+            groupCursor.moveToPosition(groupPosition);
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns all start and end times in the given group {@link Cursor} in ascending order.
+     */
+    private static long[] boundaries(Cursor groupCursor)
+    {
+        TreeSet<Long> boundaries = new TreeSet<>();
+        int startIndex = groupCursor.getColumnIndexOrThrow(TimeRangeCursorFactory.RANGE_START);
+        int endIndex = groupCursor.getColumnIndexOrThrow(TimeRangeCursorFactory.RANGE_END);
+        int groupPosition = groupCursor.getPosition();
+        try
+        {
+            for (int i = 0, count = groupCursor.getCount(); i < count; ++i)
+            {
+                groupCursor.moveToPosition(i);
+                if (!groupCursor.isNull(startIndex))
+                {
+                    boundaries.add(groupCursor.getLong(startIndex));
+                }
+                if (!groupCursor.isNull(endIndex))
+                {
+                    boundaries.add(groupCursor.getLong(endIndex));
+                }
+            }
+        }
+        finally
+        {
+            groupCursor.moveToPosition(groupPosition);
+        }
+
+        long[] result = new long[boundaries.size()];
+        int i = 0;
+        for (Long boundary : boundaries)
+        {
+            result[i++] = boundary;
+        }
+        return result;
+    }
+
+
+    private static long[] parse(String buckets)
+    {
+        if (TextUtils.isEmpty(buckets))
+        {
+            return new long[0];
+        }
+        String[] values = TextUtils.split(buckets, ",");
+        long[] result = new long[values.length];
+        for (int i = 0; i < values.length; ++i)
+        {
+            result[i] = Long.parseLong(values[i]);
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the number of boundaries at or before the given time, i.e. the bucket of the given time.
+     */
+    private static int upperBound(long[] boundaries, long time)
+    {
+        int index = Arrays.binarySearch(boundaries, time);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+
+    /**
+     * Returns the position of the first element that's not less than the given bucket.
+     */
+    private static int lowerBound(int[] buckets, int bucket)
+    {
+        int low = 0;
+        int high = buckets.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (buckets[mid] < bucket)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
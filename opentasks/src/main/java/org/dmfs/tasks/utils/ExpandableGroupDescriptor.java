@@ -100,6 +100,55 @@ public class ExpandableGroupDescriptor
     }
 
 
+    /**
+     * Returns whether the children of all groups are loaded with a single {@link Loader}, see {@link #getBucketCursorLoader(Context, Cursor,
+     * AbstractFilter)}.
+     *
+     * @return <code>true</code> if all children are loaded at once, <code>false</code> if each group loads its own children.
+     */
+    public boolean loadsAllChildren()
+    {
+        return mChildDescriptor instanceof BucketChildDescriptor;
+    }
+
+
+    /**
+     * Get a {@link Loader} that loads the children of all groups at once. Only valid if {@link #loadsAllChildren()} returns <code>true</code>.
+     *
+     * @param context
+     *         A {@link Context}.
+     * @param groupCursor
+     *         The {@link Cursor} with all the groups.
+     * @param filter
+     *         An additional filter to filter the children.
+     *
+     * @return A {@link CursorLoader}.
+     */
+    public CursorLoader getBucketCursorLoader(Context context, Cursor groupCursor, AbstractFilter filter)
+    {
+        return ((BucketChildDescriptor) mChildDescriptor).getBucketCursorLoader(context, groupCursor, filter);
+    }
+
+
+    /**
+     * Splits the children of all groups, as loaded by the {@link Loader} returned by {@link #getBucketCursorLoader(Context, Cursor, AbstractFilter)}, into
+     * the children of each group.
+     *
+     * @param loader
+     *         The {@link CursorLoader} that loaded the children.
+     * @param groupCursor
+     *         The {@link Cursor} with all the groups.
+     * @param children
+     *         The {@link Cursor} with the children.
+     *
+     * @return An array with the children {@link Cursor} of each group position.
+     */
+    public Cursor[] splitChildren(CursorLoader loader, Cursor groupCursor, Cursor children)
+    {
+        return ((BucketChildDescriptor) mChildDescriptor).split(loader.getUri(), groupCursor, children);
+    }
+
+
     /**
      * Set the {@link ViewDescriptor} that knows how to populate the group views.
      *
@@ -34,13 +34,15 @@ import java.util.Set;
 
 import androidx.annotation.NonNull;
 import androidx.loader.app.LoaderManager;
+import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 
 
 /**
  * An adapter that adapts an {@link ExpandableGroupDescriptor} to an {@link ExpandableListView}.
  * <p>
- * It supports asynchronous loading of the group children.
+ * It supports asynchronous loading of the group children. If the {@link ExpandableGroupDescriptor} {@link ExpandableGroupDescriptor#loadsAllChildren()
+ * loads all children at once}, a single {@link Loader} loads the children of all groups, otherwise each group has its own {@link Loader}.
  * <p>
  * TODO: manage loader ids to avoid clashes with other instances using the {@link LoaderManager}.
  *
@@ -48,6 +50,11 @@ import androidx.loader.content.Loader;
  */
 public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implements LoaderManager.LoaderCallbacks<Cursor>
 {
+    /**
+     * The id of the {@link Loader} that loads the children of all groups at once. The other ids are the group positions and -1 is used for the groups.
+     */
+    private final static int ALL_CHILDREN_LOADER_ID = -3;
+
     private final Context mContext;
     private final LayoutInflater mLayoutInflater;
     private final LoaderManager mLoaderManager;
@@ -58,6 +65,12 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
     private AbstractFilter mChildCursorFilter;
     private Handler mHandler = new Handler();
 
+    /**
+     * The children of each group, if all children are loaded at once.
+     */
+    private Cursor[] mChildren;
+    private boolean mAllChildrenReloadPending;
+
 
     public ExpandableGroupDescriptorAdapter(@NonNull Cursor cursor, @NonNull Context context, @NonNull LoaderManager loaderManager, @NonNull ExpandableGroupDescriptor descriptor)
     {
@@ -91,6 +104,17 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
     @Override
     public Loader<Cursor> onCreateLoader(int pos, Bundle arguments)
     {
+        if (pos == ALL_CHILDREN_LOADER_ID)
+        {
+            // none of the child cursors is valid anymore
+            mLoadedGroups.clear();
+            if (getGroupCount() > 0)
+            {
+                return mDescriptor.getBucketCursorLoader(mContext, getCursor(), mChildCursorFilter);
+            }
+            return new EmptyCursorLoaderFactory(mContext, new String[] { "_id" });
+        }
+
         // the child cursor is no longer valid
         mLoadedGroups.remove(pos);
 
@@ -133,6 +157,15 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
     {
         int pos = loader.getId();
 
+        if (pos == ALL_CHILDREN_LOADER_ID)
+        {
+            if (loader instanceof CursorLoader && getGroupCount() > 0)
+            {
+                onAllChildrenLoaded((CursorLoader) loader, cursor);
+            }
+            return;
+        }
+
         if (pos < getGroupCount())
         {
             // the child cursor has been loaded
@@ -147,6 +180,23 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
     }
 
 
+    private void onAllChildrenLoaded(CursorLoader loader, Cursor cursor)
+    {
+        Cursor[] children = mDescriptor.splitChildren(loader, getCursor(), cursor);
+        mChildren = children;
+        for (int i = 0; i < children.length; ++i)
+        {
+            mLoadedGroups.add(i);
+            setChildrenCursor(i, children[i]);
+
+            if (mOnChildLoadedListener != null)
+            {
+                mOnChildLoadedListener.onChildLoaded(i, children[i]);
+            }
+        }
+    }
+
+
     @Override
     public void onLoaderReset(Loader<Cursor> loader)
     {
@@ -175,13 +225,26 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
     @Override
     protected Cursor getChildrenCursor(Cursor groupCursor)
     {
-        reloadGroup(groupCursor.getPosition());
+        int position = groupCursor.getPosition();
+        if (mDescriptor.loadsAllChildren() && mChildren != null && position < mChildren.length && mLoadedGroups.contains(position)
+                && !mChildren[position].isClosed())
+        {
+            // the children of this group have already been loaded along with the other groups
+            return mChildren[position];
+        }
+        reloadGroup(position);
         return null;
     }
 
 
     public void reloadGroup(final int position)
     {
+        if (mDescriptor.loadsAllChildren())
+        {
+            reloadAllChildren();
+            return;
+        }
+
         // the child cursor is no longer valid
         mLoadedGroups.remove(position);
         if (position < getGroupCount())
@@ -204,6 +267,12 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
 
     public void reloadLoadedGroups()
     {
+        if (mDescriptor.loadsAllChildren())
+        {
+            reloadAllChildren();
+            return;
+        }
+
         // we operate on a copy of the set to avoid concurrent modification when a group is loaded before we're done here
         for (Integer i : new HashSet<Integer>(mLoadedGroups))
         {
@@ -217,6 +286,32 @@ public class ExpandableGroupDescriptorAdapter extends CursorTreeAdapter implemen
     }
 
 
+    /**
+     * Reloads the children of all groups with a single {@link Loader}. Multiple calls in a row result in a single reload.
+     */
+    private void reloadAllChildren()
+    {
+        if (mAllChildrenReloadPending)
+        {
+            return;
+        }
+        mAllChildrenReloadPending = true;
+        mHandler.post(new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                mAllChildrenReloadPending = false;
+                if (getGroupCount() > 0)
+                {
+                    mLoaderManager.restartLoader(ALL_CHILDREN_LOADER_ID, null, ExpandableGroupDescriptorAdapter.this);
+                }
+            }
+        });
+    }
+
+
     @Override
     protected View newChildView(Context context, Cursor cursor, boolean isLastChild, ViewGroup parent)
     {
@@ -23,6 +23,7 @@ import androidx.loader.content.CursorLoader;
 
 import org.dmfs.tasks.contract.TaskContract.Tasks;
 import org.dmfs.tasks.groupings.filters.AbstractFilter;
+import org.dmfs.tasks.utils.SearchHistoryDatabaseHelper.SearchHistoryColumns;
 
 
 /**
@@ -32,6 +33,12 @@ import org.dmfs.tasks.groupings.filters.AbstractFilter;
  */
 public class SearchChildDescriptor extends ExpandableChildDescriptor
 {
+    /**
+     * The maximum number of search results to load. That's more than enough to fill the screen, there is no point in loading hundreds of results nobody
+     * is going to scroll through.
+     */
+    private final static int SEARCH_RESULT_LIMIT = 50;
+
     private String mAuthority;
     private String mQueryColumn;
 
@@ -72,7 +79,11 @@ public class SearchChildDescriptor extends ExpandableChildDescriptor
     public CursorLoader getCursorLoader(Context context, Cursor cursor, AbstractFilter filter)
     {
         CursorLoader cursorLoader = super.getCursorLoader(context, cursor, filter);
-        cursorLoader.setUri(Tasks.getSearchUri(mAuthority, cursor.getString(cursor.getColumnIndex(mQueryColumn))));
+        // the id of the search history entry stays the same while the user is typing, so it identifies the search session
+        cursorLoader.setUri(Tasks.getSearchUri(mAuthority, cursor.getString(cursor.getColumnIndex(mQueryColumn)), SEARCH_RESULT_LIMIT)
+                .buildUpon()
+                .appendQueryParameter(Tasks.SEARCH_SESSION_PARAMETER, cursor.getString(cursor.getColumnIndex(SearchHistoryColumns._ID)))
+                .build());
 
         return cursorLoader;
     }
@@ -26,6 +26,9 @@ import org.dmfs.tasks.utils.SearchHistoryDatabaseHelper.SearchHistoryColumns;
 
 /**
  * Helper to access the search history.
+ * <p>
+ * Updates of the current search are buffered and only written when the search history is read or modified otherwise. That way typing a search query
+ * doesn't result in a database write for every single key stroke.
  *
  * @author Marten Gajda <marten@dmfs.org>
  */
@@ -36,6 +39,16 @@ public class SearchHistoryHelper
      */
     private final SQLiteDatabase mDb;
 
+    /**
+     * The current search query which has not been written yet or <code>null</code>.
+     */
+    private String mPendingQuery;
+
+    /**
+     * The current search query which has been written last or <code>null</code>.
+     */
+    private String mWrittenQuery;
+
 
     /**
      * Creates a new {@link SearchHistoryHelper}.
@@ -55,8 +68,9 @@ public class SearchHistoryHelper
      *
      * @return A {@link Cursor}.
      */
-    public Cursor getSearchHistory()
+    public synchronized Cursor getSearchHistory()
     {
+        flush();
         return mDb.query(SearchHistoryDatabaseHelper.SEARCH_HISTORY_TABLE, null, null, null, null, null, SearchHistoryColumns._ID + " desc");
     }
 
@@ -67,23 +81,19 @@ public class SearchHistoryHelper
      * @param query
      *         The search query.
      */
-    public void updateSearch(String query)
+    public synchronized void updateSearch(String query)
     {
-        ContentValues values = new ContentValues(1);
-        values.put(SearchHistoryDatabaseHelper.SearchHistoryColumns.SEARCH_QUERY, query);
-        values.put(SearchHistoryDatabaseHelper.SearchHistoryColumns.TIMESTAMP, System.currentTimeMillis());
-        if (mDb.update(SearchHistoryDatabaseHelper.SEARCH_HISTORY_TABLE, values, SearchHistoryColumns.HISTORIC + "=0", null) == 0)
-        {
-            mDb.insert(SearchHistoryDatabaseHelper.SEARCH_HISTORY_TABLE, "", values);
-        }
+        mPendingQuery = query;
     }
 
 
     /**
      * Commit the current search, if any, making it a historic search entry.
      */
-    public void commitSearch()
+    public synchronized void commitSearch()
     {
+        flush();
+        mWrittenQuery = null;
         ContentValues values = new ContentValues(1);
         values.put(SearchHistoryDatabaseHelper.SearchHistoryColumns.HISTORIC, 1);
         mDb.update(SearchHistoryDatabaseHelper.SEARCH_HISTORY_TABLE, values, SearchHistoryColumns.HISTORIC + "=0", null);
@@ -93,8 +103,10 @@ public class SearchHistoryHelper
     /**
      * Remove the current search entry, if any.
      */
-    public void removeCurrentSearch()
+    public synchronized void removeCurrentSearch()
     {
+        mPendingQuery = null;
+        mWrittenQuery = null;
         mDb.delete(SearchHistoryDatabaseHelper.SEARCH_HISTORY_TABLE, SearchHistoryColumns.HISTORIC + "=0", null);
     }
 
@@ -102,8 +114,9 @@ public class SearchHistoryHelper
     /**
      * Remove a specific search entry.
      */
-    public void removeSearch(long id)
+    public synchronized void removeSearch(long id)
     {
+        flush();
         mDb.delete(SearchHistoryDatabaseHelper.SEARCH_HISTORY_TABLE, SearchHistoryColumns._ID + "=" + id, null);
     }
 
@@ -111,8 +124,32 @@ public class SearchHistoryHelper
     /**
      * Close the database connection.
      */
-    public void close()
+    public synchronized void close()
     {
+        flush();
         mDb.close();
     }
+
+
+    /**
+     * Writes the pending update of the current search entry, if any.
+     */
+    private void flush()
+    {
+        String query = mPendingQuery;
+        mPendingQuery = null;
+        if (query == null || query.equals(mWrittenQuery))
+        {
+            return;
+        }
+
+        ContentValues values = new ContentValues(1);
+        values.put(SearchHistoryDatabaseHelper.SearchHistoryColumns.SEARCH_QUERY, query);
+        values.put(SearchHistoryDatabaseHelper.SearchHistoryColumns.TIMESTAMP, System.currentTimeMillis());
+        if (mDb.update(SearchHistoryDatabaseHelper.SEARCH_HISTORY_TABLE, values, SearchHistoryColumns.HISTORIC + "=0", null) == 0)
+        {
+            mDb.insert(SearchHistoryDatabaseHelper.SEARCH_HISTORY_TABLE, "", values);
+        }
+        mWrittenQuery = query;
+    }
 }
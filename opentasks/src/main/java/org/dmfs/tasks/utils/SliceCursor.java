@@ -0,0 +1,260 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.utils;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+
+/**
+ * A {@link Cursor} that presents a contiguous range of rows of another {@link Cursor}.
+ * <p>
+ * Multiple slices may share the same {@link Cursor}, so each slice moves the shared {@link Cursor} to its own position before reading a value. Closing a
+ * slice doesn't close the shared {@link Cursor}, that's up to the owner of the shared {@link Cursor}.
+ */
+public final class SliceCursor extends CursorWrapper
+{
+    private final int mOffset;
+    private final int mCount;
+    private int mPosition = -1;
+    private boolean mClosed;
+
+
+    /**
+     * @param cursor
+     *         The shared {@link Cursor}.
+     * @param offset
+     *         The position of the first row of the slice in the shared {@link Cursor}.
+     * @param count
+     *         The number of rows in the slice.
+     */
+    public SliceCursor(Cursor cursor, int offset, int count)
+    {
+        super(cursor);
+        mOffset = offset;
+        mCount = count;
+    }
+
+
+    @Override
+    public int getCount()
+    {
+        return mCount;
+    }
+
+
+    @Override
+    public int getPosition()
+    {
+        return mPosition;
+    }
+
+
+    @Override
+    public boolean moveToPosition(int position)
+    {
+        if (position < 0)
+        {
+            mPosition = -1;
+            return false;
+        }
+        if (position >= mCount)
+        {
+            mPosition = mCount;
+            return false;
+        }
+        mPosition = position;
+        return super.moveToPosition(mOffset + position);
+    }
+
+
+    @Override
+    public boolean move(int offset)
+    {
+        return moveToPosition(mPosition + offset);
+    }
+
+
+    @Override
+    public boolean moveToFirst()
+    {
+        return moveToPosition(0);
+    }
+
+
+    @Override
+    public boolean moveToLast()
+    {
+        return moveToPosition(mCount - 1);
+    }
+
+
+    @Override
+    public boolean moveToNext()
+    {
+        return moveToPosition(mPosition + 1);
+    }
+
+
+    @Override
+    public boolean moveToPrevious()
+    {
+        return moveToPosition(mPosition - 1);
+    }
+
+
+    @Override
+    public boolean isFirst()
+    {
+        return mCount > 0 && mPosition == 0;
+    }
+
+
+    @Override
+    public boolean isLast()
+    {
+        return mCount > 0 && mPosition == mCount - 1;
+    }
+
+
+    @Override
+    public boolean isBeforeFirst()
+    {
+        return mCount == 0 || mPosition == -1;
+    }
+
+
+    @Override
+    public boolean isAfterLast()
+    {
+        return mCount == 0 || mPosition == mCount;
+    }
+
+
+    @Override
+    public boolean isNull(int columnIndex)
+    {
+        sync();
+        return super.isNull(columnIndex);
+    }
+
+
+    @Override
+    public int getType(int columnIndex)
+    {
+        sync();
+        return super.getType(columnIndex);
+    }
+
+
+    @Override
+    public byte[] getBlob(int columnIndex)
+    {
+        sync();
+        return super.getBlob(columnIndex);
+    }
+
+
+    @Override
+    public String getString(int columnIndex)
+    {
+        sync();
+        return super.getString(columnIndex);
+    }
+
+
+    @Override
+    public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer)
+    {
+        sync();
+        super.copyStringToBuffer(columnIndex, buffer);
+    }
+
+
+    @Override
+    public short getShort(int columnIndex)
+    {
+        sync();
+        return super.getShort(columnIndex);
+    }
+
+
+    @Override
+    public int getInt(int columnIndex)
+    {
+        sync();
+        return super.getInt(columnIndex);
+    }
+
+
+    @Override
+    public long getLong(int columnIndex)
+    {
+        sync();
+        return super.getLong(columnIndex);
+    }
+
+
+    @Override
+    public float getFloat(int columnIndex)
+    {
+        sync();
+        return super.getFloat(columnIndex);
+    }
+
+
+    @Override
+    public double getDouble(int columnIndex)
+    {
+        sync();
+        return super.getDouble(columnIndex);
+    }
+
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void deactivate()
+    {
+        // the shared cursor is managed by its owner, deactivating it would affect all the other slices
+    }
+
+
+    @Override
+    public void close()
+    {
+        // the shared cursor is closed by its owner
+        mClosed = true;
+    }
+
+
+    @Override
+    public boolean isClosed()
+    {
+        return mClosed || super.isClosed();
+    }
+
+
+    private void sync()
+    {
+        Cursor cursor = getWrappedCursor();
+        if (mPosition >= 0 && mPosition < mCount && cursor.getPosition() != mOffset + mPosition)
+        {
+            cursor.moveToPosition(mOffset + mPosition);
+        }
+    }
+}
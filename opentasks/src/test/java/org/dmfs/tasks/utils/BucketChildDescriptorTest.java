@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.tasks.utils;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import org.dmfs.tasks.contract.TaskContract.Instances;
+import org.dmfs.tasks.groupings.cursorloaders.TimeRangeCursorFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * Unit test for {@link BucketChildDescriptor}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public final class BucketChildDescriptorTest
+{
+    private final static long MIN = Long.MIN_VALUE / 2;
+    private final static long MAX = Long.MAX_VALUE / 2;
+
+
+    @Test
+    public void testSplit()
+    {
+        MatrixCursor groups = new MatrixCursor(new String[] { TimeRangeCursorFactory.RANGE_START, TimeRangeCursorFactory.RANGE_END });
+        groups.addRow(new Object[] { null, null });
+        groups.addRow(new Object[] { MIN, 1000L });
+        groups.addRow(new Object[] { 1000L, 2000L });
+        groups.addRow(new Object[] { 2000L, MAX });
+
+        // boundaries are MIN, 1000, 2000, MAX
+        MatrixCursor children = new MatrixCursor(new String[] { Instances._ID, Instances.BUCKET });
+        children.addRow(new Object[] { 1, Instances.BUCKET_NONE });
+        children.addRow(new Object[] { 2, 1 });
+        children.addRow(new Object[] { 3, 1 });
+        children.addRow(new Object[] { 4, 3 });
+
+        Uri uri = Instances.getBucketsContentUri("test", Instances.INSTANCE_DUE, MIN, 1000L, 2000L, MAX);
+        Cursor[] result = new BucketChildDescriptor("test", Instances.INSTANCE_DUE, null, null, null).split(uri, groups, children);
+
+        assertThat(result.length, is(4));
+        assertThat(result[0].getCount(), is(1));
+        assertThat(result[1].getCount(), is(2));
+        assertThat(result[2].getCount(), is(0));
+        assertThat(result[3].getCount(), is(1));
+
+        assertThat(result[0].moveToFirst(), is(true));
+        assertThat(result[0].getLong(0), is(1L));
+        assertThat(result[1].moveToLast(), is(true));
+        assertThat(result[1].getLong(0), is(3L));
+        assertThat(result[1].moveToNext(), is(false));
+        assertThat(result[1].isAfterLast(), is(true));
+        assertThat(result[2].moveToFirst(), is(false));
+        assertThat(result[3].moveToFirst(), is(true));
+        assertThat(result[3].getLong(0), is(4L));
+
+        // all slices share the same cursor, each of them must still read its own row
+        assertThat(result[1].moveToFirst(), is(true));
+        assertThat(result[0].getLong(0), is(1L));
+        assertThat(result[1].getLong(0), is(2L));
+        assertThat(result[3].getLong(0), is(4L));
+
+        // closing a slice doesn't close the shared cursor
+        result[0].close();
+        assertThat(result[0].isClosed(), is(true));
+        assertThat(children.isClosed(), is(false));
+        assertThat(result[1].getLong(0), is(2L));
+    }
+}
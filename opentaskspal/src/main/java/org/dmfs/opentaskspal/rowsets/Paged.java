@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.opentaskspal.rowsets;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+
+import org.dmfs.android.contentpal.Predicate;
+import org.dmfs.android.contentpal.Projection;
+import org.dmfs.android.contentpal.RowSet;
+import org.dmfs.android.contentpal.RowSnapshot;
+import org.dmfs.android.contentpal.Table;
+import org.dmfs.android.contentpal.UriParams;
+import org.dmfs.android.contentpal.View;
+import org.dmfs.android.contentpal.rowsets.QueryRowSet;
+import org.dmfs.jems.optional.Optional;
+import org.dmfs.tasks.contract.TaskContract;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * A {@link RowSet} which loads the rows of a {@link TaskContract.Tasks} or {@link TaskContract.Instances} {@link View} page by page, using the keyset paging
+ * of the task provider (see {@link TaskContract#PAGE_SIZE_PARAMETER}). Only one page is held in memory at a time and the next page is only loaded when the
+ * iteration reaches the end of the current one.
+ * <p>
+ * Note, each page reflects the state of the database at the time it has been loaded.
+ */
+public final class Paged<T> implements RowSet<T>
+{
+    private final View<T> mView;
+    private final Projection<? super T> mProjection;
+    private final Predicate<? super T> mPredicate;
+    private final int mPageSize;
+
+
+    public Paged(@NonNull View<T> view, @NonNull Projection<? super T> projection, @NonNull Predicate<? super T> predicate, int pageSize)
+    {
+        mView = view;
+        mProjection = projection;
+        mPredicate = predicate;
+        mPageSize = pageSize;
+    }
+
+
+    @NonNull
+    @Override
+    public Iterator<RowSnapshot<T>> iterator()
+    {
+        return new PageIterator();
+    }
+
+
+    private final class PageIterator implements Iterator<RowSnapshot<T>>
+    {
+        private String mNextPage;
+        private boolean mLastPage;
+        private Iterator<RowSnapshot<T>> mCurrent;
+
+
+        @Override
+        public boolean hasNext()
+        {
+            while ((mCurrent == null || !mCurrent.hasNext()) && !mLastPage)
+            {
+                // load the next page, the page view updates mNextPage when it's been queried
+                String after = mNextPage;
+                mNextPage = null;
+                mCurrent = new QueryRowSet<>(new PageView(after), mProjection, mPredicate).iterator();
+                // make sure the page has been queried before we check for a next page
+                mCurrent.hasNext();
+                mLastPage = mNextPage == null;
+            }
+            return mCurrent.hasNext();
+        }
+
+
+        @Override
+        public RowSnapshot<T> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException("No more rows to iterate");
+            }
+            return mCurrent.next();
+        }
+
+
+        /**
+         * A {@link View} of a single page, which stores the key of the next page.
+         */
+        private final class PageView implements View<T>
+        {
+            private final String mAfter;
+
+
+            private PageView(String after)
+            {
+                mAfter = after;
+            }
+
+
+            @NonNull
+            @Override
+            public Cursor rows(@NonNull final UriParams uriParams, @NonNull Projection<? super T> projection, @NonNull Predicate<? super T> predicate, @NonNull Optional<String> sorting) throws RemoteException
+            {
+                Cursor cursor = mView.rows(new UriParams()
+                {
+                    @NonNull
+                    @Override
+                    public Uri.Builder withParam(@NonNull Uri.Builder uriBuilder)
+                    {
+                        uriParams.withParam(uriBuilder).appendQueryParameter(TaskContract.PAGE_SIZE_PARAMETER, String.valueOf(mPageSize));
+                        if (mAfter != null)
+                        {
+                            uriBuilder.appendQueryParameter(TaskContract.PAGE_AFTER_PARAMETER, mAfter);
+                        }
+                        return uriBuilder;
+                    }
+                }, projection, predicate, sorting);
+                mNextPage = cursor.getExtras().getString(TaskContract.EXTRA_NEXT_PAGE);
+                return cursor;
+            }
+
+
+            @NonNull
+            @Override
+            public Table<T> table()
+            {
+                return mView.table();
+            }
+        }
+    }
+}
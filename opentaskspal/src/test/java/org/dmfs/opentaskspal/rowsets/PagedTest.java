@@ -0,0 +1,162 @@
+/*
+ * Copyright 2026 dmfs GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.dmfs.opentaskspal.rowsets;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import org.dmfs.android.contentpal.Predicate;
+import org.dmfs.android.contentpal.Projection;
+import org.dmfs.android.contentpal.RowSnapshot;
+import org.dmfs.android.contentpal.Table;
+import org.dmfs.android.contentpal.UriParams;
+import org.dmfs.android.contentpal.View;
+import org.dmfs.android.contentpal.predicates.AnyOf;
+import org.dmfs.android.contentpal.projections.MultiProjection;
+import org.dmfs.jems.optional.Optional;
+import org.dmfs.tasks.contract.TaskContract;
+import org.dmfs.tasks.contract.TaskContract.Tasks;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+
+/**
+ * Unit test for {@link Paged}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public final class PagedTest
+{
+    @Test
+    public void test_thatAllRowsAreIteratedPageByPage()
+    {
+        PagingView view = new PagingView(10);
+        Iterator<RowSnapshot<Tasks>> iterator = new Paged<>(view, new MultiProjection<>(Tasks._ID, Tasks.TITLE), new AnyOf<>(), 3).iterator();
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; ++i)
+        {
+            ids.add(id(iterator.next()));
+        }
+        // the next page is only loaded when it's needed
+        assertThat(view.mRequests, is(Arrays.asList("3/null")));
+
+        while (iterator.hasNext())
+        {
+            ids.add(id(iterator.next()));
+        }
+        assertThat(ids, is(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L)));
+        assertThat(view.mRequests, is(Arrays.asList("3/null", "3/3", "3/6", "3/9")));
+    }
+
+
+    @Test
+    public void test_thatAFullLastPageEndsWithAnEmptyPage()
+    {
+        PagingView view = new PagingView(6);
+        Iterator<RowSnapshot<Tasks>> iterator = new Paged<>(view, new MultiProjection<>(Tasks._ID, Tasks.TITLE), new AnyOf<>(), 3).iterator();
+
+        int count = 0;
+        while (iterator.hasNext())
+        {
+            iterator.next();
+            count += 1;
+        }
+        assertThat(count, is(6));
+        assertThat(view.mRequests, is(Arrays.asList("3/null", "3/3", "3/6")));
+    }
+
+
+    private static long id(RowSnapshot<Tasks> row)
+    {
+        return row.values().data(Tasks._ID, Long::valueOf).value();
+    }
+
+
+    /**
+     * A {@link View} of the given number of tasks, which implements the keyset paging of the task provider, using the task id as the page key.
+     */
+    private final static class PagingView implements View<Tasks>
+    {
+        private final int mRows;
+        private final List<String> mRequests = new ArrayList<>();
+
+
+        private PagingView(int rows)
+        {
+            mRows = rows;
+        }
+
+
+        @NonNull
+        @Override
+        public Cursor rows(@NonNull UriParams uriParams, @NonNull Projection<? super Tasks> projection, @NonNull Predicate<? super Tasks> predicate, @NonNull Optional<String> sorting)
+        {
+            Uri uri = uriParams.withParam(Uri.parse("content://org.dmfs.tasks/tasks").buildUpon()).build();
+            int pageSize = Integer.parseInt(uri.getQueryParameter(TaskContract.PAGE_SIZE_PARAMETER));
+            String after = uri.getQueryParameter(TaskContract.PAGE_AFTER_PARAMETER);
+            mRequests.add(pageSize + "/" + after);
+
+            MatrixCursor cursor = new MatrixCursor(new String[] { Tasks._ID, Tasks.TITLE });
+            long id = after == null ? 1 : Long.parseLong(after) + 1;
+            for (; id <= mRows && cursor.getCount() < pageSize; ++id)
+            {
+                cursor.addRow(new Object[] { id, "Task " + id });
+            }
+
+            final Bundle extras = new Bundle();
+            if (cursor.getCount() == pageSize)
+            {
+                // like the provider, every full page has a next page
+                extras.putString(TaskContract.EXTRA_NEXT_PAGE, String.valueOf(id - 1));
+            }
+            return new CursorWrapper(cursor)
+            {
+                @Override
+                public Bundle getExtras()
+                {
+                    return extras;
+                }
+            };
+        }
+
+
+        @NonNull
+        @Override
+        public Table<Tasks> table()
+        {
+            return mock(Table.class);
+        }
+    }
+}